@@ -8,7 +8,9 @@ import java.util.Map.Entry;
 import buffer.BufferManager;
 import catalog.CatalogManager;
 import config.GeneralConfig;
+import config.JoinConfig;
 import config.ParallelConfig;
+import config.PlannerMode;
 import config.StartupConfig;
 import console.SkinnerCmd;
 import diskio.PathUtil;
@@ -32,9 +34,8 @@ public class BenchAndVerify {
 	 * 
 	 * @param args	first argument is Skinner DB directory, 
 	 * 				second argument is query directory
-	 * 				third argument is Postgres database name
-	 * 				fourth argument is Postgres user name
-	 * 				fifth argument is Postgres user password
+	 * 				optional third argument is the attribute order
+	 * 				planner (HEURISTIC or COST_BASED)
 	 * @throws Exception
 	 */
 	public static void main(String[] args) throws Exception {
@@ -43,6 +44,10 @@ public class BenchAndVerify {
 		String queryDir = args[1];
 		Map<String, Statement> nameToQuery =
 				BenchUtil.readAllQueries(queryDir);
+		if (args.length > 2) {
+			JoinConfig.PLANNER = PlannerMode.valueOf(args[2]);
+		}
+		System.out.println("Attribute order planner: " + JoinConfig.PLANNER);
 
 
 
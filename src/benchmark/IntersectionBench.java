@@ -0,0 +1,110 @@
+package benchmark;
+
+import java.util.Random;
+
+import config.IntersectionKernel;
+import config.JoinConfig;
+import joining.LeapFrogJoin;
+import joining.TrieManager;
+
+/**
+ * Measures time and allocated bytes per join list of the
+ * leapfrog intersection, on synthetic sorted value lists,
+ * for each intersection kernel. Compares a join instance
+ * that is reused across join lists (as done by join threads)
+ * against allocating a fresh instance per join list.
+ */
+public class IntersectionBench {
+	/**
+	 * Runs the intersection benchmark.
+	 *
+	 * @param args	first argument is the number of lists per join list,
+	 * 				second argument is the length of the shortest list,
+	 * 				third argument is the length ratio between longest and shortest list,
+	 * 				fourth argument is the number of join lists per run
+	 */
+	public static void main(String[] args) {
+		int nrLists = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		int minLength = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+		int ratio = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+		int nrJoinLists = args.length > 3 ? Integer.parseInt(args[3]) : 1_000_000;
+		// Generate sorted lists with increasing length
+		Random random = new Random(0);
+		int[][] lists = new int[nrLists][];
+		int[][] status = new int[nrLists][];
+		for (int listCtr = 0; listCtr < nrLists; ++listCtr) {
+			int length = nrLists == 1 ? minLength :
+				minLength + (minLength * (ratio - 1)) * listCtr / (nrLists - 1);
+			lists[listCtr] = sortedList(random, length, minLength * ratio * 2);
+			status[listCtr] = new int[length];
+		}
+		System.out.println("Lists: " + nrLists + "\tShortest: " + minLength +
+				"\tRatio: " + ratio + "\tJoin lists: " + nrJoinLists);
+		for (IntersectionKernel kernel : IntersectionKernel.values()) {
+			JoinConfig.INTERSECTION = kernel;
+			for (boolean reuse : new boolean[] {true, false}) {
+				// Warm up before measuring
+				run(lists, status, nrJoinLists / 10, reuse);
+				long startBytes = TrieManager.allocatedBytes();
+				long startNanos = System.nanoTime();
+				run(lists, status, nrJoinLists, reuse);
+				long nanos = System.nanoTime() - startNanos;
+				long bytes = TrieManager.allocatedBytes() - startBytes;
+				System.out.println(kernel + "\treuse: " + reuse + "\tns per join list: " +
+						nanos / nrJoinLists + "\tbytes per join list: " +
+						String.format("%.2f", (double) bytes / nrJoinLists));
+			}
+		}
+	}
+	/**
+	 * Intersects the given lists repeatedly.
+	 *
+	 * @param lists			sorted value lists
+	 * @param status		match flags per list
+	 * @param nrJoinLists	number of intersections
+	 * @param reuse			whether to reuse one join instance
+	 */
+	static void run(int[][] lists, int[][] status, int nrJoinLists, boolean reuse) {
+		int nrLists = lists.length;
+		LeapFrogJoin join = new LeapFrogJoin(nrLists);
+		for (int joinCtr = 0; joinCtr < nrJoinLists; ++joinCtr) {
+			if (!reuse) {
+				join = new LeapFrogJoin(nrLists);
+			}
+			join.reset(nrLists);
+			for (int listCtr = 0; listCtr < nrLists; ++listCtr) {
+				join.setList(listCtr, lists[listCtr], 0,
+						lists[listCtr].length, status[listCtr]);
+			}
+			join.sortIterators();
+			join.execute();
+		}
+	}
+	/**
+	 * Generates a sorted list of distinct values.
+	 *
+	 * @param random	random generator
+	 * @param length	number of values
+	 * @param maxValue	values are drawn from [0, maxValue)
+	 * @return			sorted list without duplicates
+	 */
+	static int[] sortedList(Random random, int length, int maxValue) {
+		boolean[] used = new boolean[maxValue];
+		int nrUsed = 0;
+		while (nrUsed < length) {
+			int value = random.nextInt(maxValue);
+			if (!used[value]) {
+				used[value] = true;
+				++nrUsed;
+			}
+		}
+		int[] list = new int[length];
+		int pos = 0;
+		for (int value = 0; value < maxValue; ++value) {
+			if (used[value]) {
+				list[pos++] = value;
+			}
+		}
+		return list;
+	}
+}
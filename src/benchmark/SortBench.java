@@ -0,0 +1,78 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import util.RadixSort;
+
+/**
+ * Compares the boxed comparator sort previously used to order
+ * trie tuples against the primitive radix sort engine, on
+ * synthetic integer columns. Both paths are stable, so their
+ * outputs must be identical.
+ */
+public class SortBench {
+	/**
+	 * Runs the sort benchmark.
+	 *
+	 * @param args	first argument is the number of rows,
+	 * 				second argument is the number of key columns,
+	 * 				third argument is the number of distinct values per column,
+	 * 				fourth argument is the number of repetitions
+	 */
+	public static void main(String[] args) {
+		int cardinality = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+		int nrCols = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		int nrDistinct = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+		int nrRuns = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+		// Generate key columns
+		Random random = new Random(0);
+		List<int[]> keyCols = new ArrayList<>(nrCols);
+		for (int colCtr = 0; colCtr < nrCols; ++colCtr) {
+			int[] col = new int[cardinality];
+			for (int row = 0; row < cardinality; ++row) {
+				col[row] = random.nextInt(nrDistinct);
+			}
+			keyCols.add(col);
+		}
+		System.out.println("Rows: " + cardinality + "\tColumns: " + nrCols +
+				"\tDistinct values: " + nrDistinct);
+		for (int runCtr = 0; runCtr < nrRuns; ++runCtr) {
+			long startMillis = System.currentTimeMillis();
+			int[] boxedOrder = boxedOrder(keyCols, cardinality);
+			long boxedMillis = System.currentTimeMillis() - startMillis;
+			startMillis = System.currentTimeMillis();
+			int[] radixOrder = RadixSort.sortedOrder(keyCols, cardinality);
+			long radixMillis = System.currentTimeMillis() - startMillis;
+			boolean identical = Arrays.equals(boxedOrder, radixOrder);
+			System.out.println("Run " + runCtr + "\tBoxed: " + boxedMillis +
+					" ms\tRadix: " + radixMillis + " ms\tIdentical: " + identical);
+		}
+	}
+	/**
+	 * Sorts row indices via boxed parallel stream and comparator.
+	 *
+	 * @param keyCols		key columns in significance order
+	 * @param cardinality	number of rows
+	 * @return				permutation of row indices
+	 */
+	static int[] boxedOrder(List<int[]> keyCols, int cardinality) {
+		return IntStream.range(0, cardinality).boxed().parallel().sorted(
+				new Comparator<Integer>() {
+					@Override
+					public int compare(Integer row1, Integer row2) {
+						for (int[] col : keyCols) {
+							int cmp = Integer.compare(col[row1], col[row2]);
+							if (cmp != 0) {
+								return cmp;
+							}
+						}
+						return 0;
+					}
+				}).mapToInt(i -> i).toArray();
+	}
+}
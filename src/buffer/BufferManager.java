@@ -1,18 +1,23 @@
 package buffer;
 
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import catalog.CatalogManager;
 import catalog.info.ColumnInfo;
 import catalog.info.TableInfo;
+import config.BufferConfig;
 import config.LoggingConfig;
 import data.ColumnData;
 import data.Dictionary;
 import data.DoubleData;
+import data.EncodedIntData;
 import data.IntData;
 import data.LongData;
 import data.StringData;
+import diskio.ColumnFile;
 import diskio.DiskUtil;
 import diskio.PathUtil;
 import indexing.Index;
@@ -43,6 +48,13 @@ public class BufferManager {
 	 */
 	public final static Map<ColumnRef, Index> colToIndex =
 			new ConcurrentHashMap<ColumnRef, Index>();
+	/**
+	 * Plain copies of encoded integer columns, decoded once
+	 * for operators reading value arrays (tries and indices
+	 * on join columns). Dropped with the encoded column.
+	 */
+	public final static Map<ColumnRef, IntData> colToDecoded =
+			new ConcurrentHashMap<ColumnRef, IntData>();
 	/**
 	 * Filtering cache used in pre-processing.
 	 */
@@ -57,6 +69,69 @@ public class BufferManager {
 	 * Previous query name.
 	 */
 	public static String prevQuery;
+	/**
+	 * Buffer frames of base table columns that can be
+	 * reloaded from disk, indexed by column.
+	 */
+	final static Map<ColumnRef, Frame> colToFrame =
+			new ConcurrentHashMap<ColumnRef, Frame>();
+	/**
+	 * Frames in order of the clock used for eviction.
+	 * Guards all other eviction state.
+	 */
+	final static List<Frame> clock = new ArrayList<Frame>();
+	/**
+	 * Position of the clock hand.
+	 */
+	static int clockHand = 0;
+	/**
+	 * Estimated number of bytes used by base columns
+	 * in the buffer pool.
+	 */
+	static long usedBytes = 0;
+	/**
+	 * Number of queries currently being processed.
+	 * Columns accessed while this is positive are
+	 * pinned until no query is running.
+	 */
+	final static AtomicInteger activeQueries = new AtomicInteger();
+	/**
+	 * Lock objects used to load each column only once
+	 * if several threads request it concurrently.
+	 */
+	final static Map<ColumnRef, Object> loadLocks =
+			new ConcurrentHashMap<ColumnRef, Object>();
+	/**
+	 * Buffer frame holding one base table column.
+	 */
+	static class Frame {
+		/**
+		 * Column whose data is held.
+		 */
+		final ColumnRef columnRef;
+		/**
+		 * Estimated size of column data in bytes.
+		 */
+		final long bytes;
+		/**
+		 * Size of decoded copy of column in bytes (zero
+		 * unless column is encoded and was decoded).
+		 */
+		long decodedBytes = 0;
+		/**
+		 * Set on each access, cleared by the clock hand.
+		 */
+		volatile boolean referenced = true;
+		/**
+		 * Whether the column is used by a running query.
+		 */
+		volatile boolean pinned = false;
+
+		Frame(ColumnRef columnRef, long bytes) {
+			this.columnRef = columnRef;
+			this.bytes = bytes;
+		}
+	}
 
 	/**
 	 * Loads dictionary from hard disk.
@@ -90,8 +165,19 @@ public class BufferManager {
 	public static void loadDB() throws Exception {
 		// Remove previously loaded data
 		colToData.clear();
+		synchronized (clock) {
+			colToFrame.clear();
+			clock.clear();
+			clockHand = 0;
+			usedBytes = 0;
+		}
 		// Load dictionary from disk
 		loadDictionary();
+		// Columns are loaded on first access unless configured otherwise
+		if (!BufferConfig.EAGER_LOADING) {
+			System.out.println("Columns are loaded on demand.");
+			return;
+		}
 		// Collect columns to load in joining.parallel
 		List<ColumnRef> colsToLoad = new ArrayList<ColumnRef>();
 		for (TableInfo table : CatalogManager.currentDB.nameToTable.values()) {
@@ -121,32 +207,54 @@ public class BufferManager {
 	 * @throws Exception
 	 */
 	public static void loadColumn(ColumnRef columnRef) throws Exception {
-		// Check whether column is already loaded
-		if (!colToData.containsKey(columnRef)) {
+		load(columnRef);
+	}
+	/**
+	 * Loads data for specified column from hard disk unless
+	 * it is in the buffer already, adds it to the buffer
+	 * pool, and evicts other columns if the memory budget
+	 * is exceeded.
+	 * 
+	 * @param columnRef	reference to column to load
+	 * @return			data of column
+	 * @throws Exception
+	 */
+	static ColumnData load(ColumnRef columnRef) throws Exception {
+		Object loadLock = loadLocks.computeIfAbsent(columnRef, c -> new Object());
+		ColumnData data;
+		synchronized (loadLock) {
+			// Check whether column is already loaded
+			data = colToData.get(columnRef);
+			if (data != null) {
+				return data;
+			}
 			long startMillis = System.currentTimeMillis();
 			// Get column information from catalog
 			ColumnInfo column = CatalogManager.getColumn(columnRef);
 			log("Loaded column meta-data: " + column.toString());
-			// Read generic object from file
+			// Read column from file (mapped or deserialized)
 			String dataPath = PathUtil.colToPath.get(column);
-			Object object = DiskUtil.loadObject(dataPath);	
+			Object object = DiskUtil.loadColumn(dataPath);
 			// Cast object according to column type
 			JavaType javaType = TypeUtil.toJavaType(column.type);
 			log("Column data type:\t" + javaType);
 			switch (javaType) {
 			case INT:
-				colToData.put(columnRef, (IntData)object);
+				data = object instanceof EncodedIntData ?
+						(EncodedIntData)object : (IntData)object;
 				break;
 			case LONG:
-				colToData.put(columnRef, (LongData)object);
+				data = (LongData)object;
 				break;
 			case DOUBLE:
-				colToData.put(columnRef, (DoubleData)object);
+				data = (DoubleData)object;
 				break;
 			case STRING:
-				colToData.put(columnRef, (StringData)object);
+				data = (StringData)object;
 				break;
 			}
+			colToData.put(columnRef, data);
+			addFrame(columnRef, data);
 			// Generate statistics for output
 			if (LoggingConfig.BUFFER_VERBOSE) {
 				long totalMillis = System.currentTimeMillis() - startMillis;
@@ -155,33 +263,239 @@ public class BufferManager {
 			}
 			// Generate debugging output
 			log("*** Column " + columnRef.toString() + " sample ***");
-			int cardinality = colToData.get(columnRef).getCardinality();
+			int cardinality = data.getCardinality();
 			int sampleSize = Math.min(10, cardinality);
 			for (int i=0; i<sampleSize; ++i) {
 				switch (column.type) {
 				case STRING_CODE:
-					int code = ((IntData)object).data[i];
+					int code = (int)data.longForRow(i);
 					log(dictionary.getString(code));
 					break;
 				}
 			}
 			log("******");
 		}
+		evict();
+		return data;
+	}
+	/**
+	 * Adds base table column data (stored on disk) to the
+	 * buffer pool, making it subject to eviction.
+	 * 
+	 * @param columnRef	reference to base table column
+	 * @param data		data of column
+	 */
+	public static void putData(ColumnRef columnRef, ColumnData data) {
+		colToData.put(columnRef, data);
+		addFrame(columnRef, data);
+		evict();
+	}
+	/**
+	 * Registers a buffer frame for given column data,
+	 * replacing any previous frame for that column.
+	 * 
+	 * @param columnRef	reference to base table column
+	 * @param data		data of column
+	 */
+	static void addFrame(ColumnRef columnRef, ColumnData data) {
+		Frame frame = new Frame(columnRef, sizeInBytes(data));
+		frame.pinned = activeQueries.get() > 0;
+		synchronized (clock) {
+			removeFrame(columnRef);
+			colToFrame.put(columnRef, frame);
+			clock.add(frame);
+			usedBytes += frame.bytes;
+		}
+	}
+	/**
+	 * Removes frame of given column from the buffer pool
+	 * (without removing the column data). Caller must
+	 * hold the clock lock.
+	 * 
+	 * @param columnRef	reference to column
+	 */
+	static void removeFrame(ColumnRef columnRef) {
+		Frame frame = colToFrame.remove(columnRef);
+		colToDecoded.remove(columnRef);
+		if (frame != null) {
+			int pos = clock.indexOf(frame);
+			clock.remove(pos);
+			if (pos < clockHand) {
+				--clockHand;
+			}
+			usedBytes -= frame.bytes + frame.decodedBytes;
+		}
+	}
+	/**
+	 * Evicts unpinned columns in clock order while the
+	 * estimated memory consumption exceeds the budget.
+	 * Columns referenced since the hand last passed
+	 * get a second chance. Evicted columns (and their
+	 * indices) are reloaded from disk when needed.
+	 */
+	static void evict() {
+		if (usedBytes <= BufferConfig.MEMORY_BUDGET) {
+			return;
+		}
+		synchronized (clock) {
+			// Two sweeps clear all reference bits
+			int maxSteps = 2 * clock.size();
+			int nrSteps = 0;
+			while (usedBytes > BufferConfig.MEMORY_BUDGET &&
+					nrSteps < maxSteps) {
+				if (clockHand >= clock.size()) {
+					clockHand = 0;
+				}
+				Frame frame = clock.get(clockHand);
+				if (frame.pinned) {
+					++clockHand;
+				} else if (frame.referenced) {
+					frame.referenced = false;
+					++clockHand;
+				} else {
+					ColumnRef columnRef = frame.columnRef;
+					removeFrame(columnRef);
+					colToData.remove(columnRef);
+					colToIndex.remove(columnRef);
+					if (LoggingConfig.BUFFER_VERBOSE) {
+						System.out.println("Evicted " + columnRef);
+					}
+				}
+				++nrSteps;
+			}
+		}
+	}
+	/**
+	 * Estimates number of bytes occupied by column data.
+	 * 
+	 * @param data	column data
+	 * @return		estimated size in bytes
+	 */
+	static long sizeInBytes(ColumnData data) {
+		long bytes = data.cardinality / 8;
+		if (data instanceof IntData) {
+			bytes += 4L * data.cardinality;
+		} else if (data instanceof EncodedIntData) {
+			bytes += ((EncodedIntData)data).dataBytes();
+		} else if (data instanceof LongData || data instanceof DoubleData) {
+			bytes += 8L * data.cardinality;
+		} else if (data instanceof StringData) {
+			for (String string : ((StringData)data).data) {
+				// Reference, object headers, and characters
+				bytes += 8 + (string == null ? 0 : 40 + string.length());
+			}
+		}
+		return bytes;
+	}
+	/**
+	 * Marks the start of query processing: all columns
+	 * accessed from now on stay in the buffer until no
+	 * query is running anymore.
+	 */
+	public static void startQuery() {
+		activeQueries.incrementAndGet();
+	}
+	/**
+	 * Marks the end of query processing, unpins all
+	 * columns if no other query is running, and evicts
+	 * columns if the memory budget is exceeded.
+	 */
+	public static void finishQuery() {
+		if (activeQueries.decrementAndGet() == 0) {
+			for (Frame frame : colToFrame.values()) {
+				frame.pinned = false;
+			}
+			evict();
+		}
 	}
 	/**
 	 * Returns data of specified column, loads data from disk if
-	 * currently not loaded.
+	 * currently not loaded. Marks the column as referenced and
+	 * pins it if a query is running.
 	 * 
 	 * @param columnRef	request data for this column
 	 * @return			data of requested column
 	 * @throws Exception
 	 */
 	public static ColumnData getData(ColumnRef columnRef) throws Exception {
+		ColumnData data = colToData.get(columnRef);
+		Frame frame = colToFrame.get(columnRef);
+		if (frame != null) {
+			frame.referenced = true;
+			if (activeQueries.get() > 0) {
+				frame.pinned = true;
+			}
+		}
 		// Load data if necessary
-		if (!colToData.containsKey(columnRef)) {
-			loadColumn(columnRef);
+		if (data == null) {
+			data = load(columnRef);
 		}
-		return colToData.get(columnRef);
+		return data;
+	}
+	/**
+	 * Returns data of specified column with plain value arrays:
+	 * encoded integer columns are decoded once and the decoded
+	 * copy is kept (and accounted for) until the column leaves
+	 * the buffer. Other columns are returned as they are.
+	 * 
+	 * @param columnRef	request data for this column
+	 * @return			column data without encoding
+	 * @throws Exception
+	 */
+	public static ColumnData getDecodedData(ColumnRef columnRef) throws Exception {
+		ColumnData data = getData(columnRef);
+		if (!(data instanceof EncodedIntData)) {
+			return data;
+		}
+		IntData decoded = colToDecoded.get(columnRef);
+		if (decoded != null) {
+			return decoded;
+		}
+		Object loadLock = loadLocks.computeIfAbsent(columnRef, c -> new Object());
+		synchronized (loadLock) {
+			decoded = colToDecoded.get(columnRef);
+			if (decoded != null) {
+				return decoded;
+			}
+			decoded = ((EncodedIntData)data).decode();
+			synchronized (clock) {
+				// Only cache copies of columns still in the buffer
+				if (colToData.get(columnRef) == data) {
+					colToDecoded.put(columnRef, decoded);
+					Frame frame = colToFrame.get(columnRef);
+					if (frame != null) {
+						frame.decodedBytes = sizeInBytes(decoded);
+						usedBytes += frame.decodedBytes;
+					}
+				}
+			}
+			log("Decoded " + columnRef);
+		}
+		evict();
+		return decoded;
+	}
+	/**
+	 * Returns cardinality of specified column without loading
+	 * its data if it is not in the buffer but stored in the
+	 * binary columnar format.
+	 * 
+	 * @param columnRef	reference to column
+	 * @return			number of rows
+	 * @throws Exception
+	 */
+	public static int getCardinality(ColumnRef columnRef) throws Exception {
+		ColumnData data = colToData.get(columnRef);
+		if (data != null) {
+			return data.getCardinality();
+		}
+		ColumnInfo column = CatalogManager.getColumn(columnRef);
+		String dataPath = column == null || PathUtil.colToPath == null ?
+				null : PathUtil.colToPath.get(column);
+		if (dataPath != null && new File(dataPath).exists() &&
+				ColumnFile.isColumnFile(dataPath)) {
+			return ColumnFile.readCardinality(dataPath);
+		}
+		return getData(columnRef).getCardinality();
 	}
 	/**
 	 * Remove given column from buffer space.
@@ -195,6 +509,9 @@ public class BufferManager {
 		}
 		colToData.remove(columnRef);
 		colToIndex.remove(columnRef);
+		synchronized (clock) {
+			removeFrame(columnRef);
+		}
 	}
 	/**
 	 * Unload all columns of temporary tables (typically after
@@ -8,17 +8,22 @@ import buffer.BufferManager;
 import catalog.CatalogManager;
 import catalog.info.ColumnInfo;
 import catalog.info.TableInfo;
+import config.GeneralConfig;
+import data.ColumnData;
 import data.Dictionary;
+import data.EncodedIntData;
 import data.IntData;
 import data.StringData;
 import diskio.PathUtil;
 import query.ColumnRef;
+import types.JavaType;
 import types.SQLtype;
+import types.TypeUtil;
 
 /**
  * Compresses the current database for smaller memory footprint
- * and faster processing. Currently focused on compressing string
- * columns.
+ * and faster processing. Replaces strings by dictionary codes
+ * and stores integer columns in compact encodings.
  * 
  * @author immanueltrummer
  *
@@ -47,6 +52,56 @@ public class Compressor {
 		// Update and store catalog.
 		updateCatalog(stringCols);
 		System.out.println("Updated catalog.");
+		// Store integer columns (including codes) encoded.
+		if (GeneralConfig.encodeIntColumns) {
+			System.out.println("Encoding integer columns ...");
+			encodeColumns(intColumns());
+			System.out.println("Integer columns encoded.");
+		}
+	}
+	/**
+	 * Returns references to all integer columns in the database.
+	 * 
+	 * @return	list of integer column references
+	 */
+	static List<ColumnRef> intColumns() {
+		List<ColumnRef> columns = new ArrayList<ColumnRef>();
+		for (TableInfo tableInfo : 
+			CatalogManager.currentDB.nameToTable.values()) {
+			String tableName = tableInfo.name;
+			for (ColumnInfo colInfo : tableInfo.nameToCol.values()) {
+				if (TypeUtil.toJavaType(colInfo.type).equals(JavaType.INT)) {
+					String columnName = colInfo.name;
+					columns.add(new ColumnRef(tableName, columnName));
+				}
+			}
+		}
+		return columns;
+	}
+	/**
+	 * Replaces integer columns on disk by encoded versions
+	 * if an encoding saves space.
+	 * 
+	 * @param columns	integer columns to encode
+	 * @throws Exception
+	 */
+	static void encodeColumns(List<ColumnRef> columns) throws Exception {
+		columns.stream().parallel().forEach(colRef -> {
+			try {
+				ColumnInfo colInfo = CatalogManager.getColumn(colRef);
+				ColumnData data = BufferManager.getData(colRef);
+				ColumnData encoded = EncodedIntData.encode(colInfo, data);
+				if (encoded != data) {
+					String dataPath = PathUtil.colToPath.get(colInfo);
+					encoded.store(dataPath);
+					BufferManager.unloadColumn(colRef);
+					System.out.println("Encoded " + colRef + " as " + 
+							encoded.getClass().getSimpleName());
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		});
 	}
 	/**
 	 * Returns references to all string columns in the database.
@@ -0,0 +1,18 @@
+package config;
+
+/**
+ * Configures the buffer pool holding base table columns.
+ * 
+ */
+public class BufferConfig {
+	/**
+	 * Whether to load all columns when the database is
+	 * loaded (otherwise, columns are loaded on first use).
+	 */
+	public static boolean EAGER_LOADING = false;
+	/**
+	 * Memory budget for base table columns in bytes. Columns
+	 * not used by running queries are evicted if exceeded.
+	 */
+	public static long MEMORY_BUDGET = Long.MAX_VALUE;
+}
@@ -28,4 +28,21 @@ public class GeneralConfig {
 	 * Number of test cases.
 	 */
 	public static int TEST_CASE = 1;
+	/**
+	 * Whether to store columns in the binary columnar format
+	 * (otherwise as serialized Java objects). Both formats
+	 * can be loaded.
+	 */
+	public static boolean binaryColumns = true;
+	/**
+	 * Whether to parse CSV files in parallel chunks (otherwise
+	 * sequentially via a CSV reader library).
+	 */
+	public static boolean parallelLoad = true;
+	/**
+	 * Whether to store integer columns that are no keys in
+	 * a compact encoding (chosen per column when loading
+	 * or compressing data).
+	 */
+	public static boolean encodeIntColumns = true;
 }
@@ -0,0 +1,13 @@
+package config;
+
+/**
+ * Describes how sorted value lists are intersected
+ * by the leapfrog join of one attribute.
+ * 
+ */
+public enum IntersectionKernel {
+	BINARY,		// linear scan for short ranges, binary search from the current position otherwise
+	GALLOPING,	// exponential search from the current position
+	BLOCK,		// branch-free comparison of eight values at a time
+	ADAPTIVE	// chosen per call from list sizes, merge for two similarly sized lists
+}
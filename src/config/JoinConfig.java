@@ -41,4 +41,88 @@ public class JoinConfig {
 	public static int NTHREAD = 1;
 
 	public static int INITCUBE = 64;
+	/**
+	 * How block combinations of the trie manager
+	 * are dispensed to join threads.
+	 */
+	public static SchedulingMode SCHEDULING = SchedulingMode.WORK_STEALING;
+	/**
+	 * How the attribute order of the join is planned
+	 * (the cost-based planner samples join columns).
+	 */
+	public static PlannerMode PLANNER = PlannerMode.HEURISTIC;
+	/**
+	 * How value lists are intersected when joining
+	 * one attribute.
+	 */
+	public static IntersectionKernel INTERSECTION = IntersectionKernel.ADAPTIVE;
+	/**
+	 * Whether to split the join space on value ranges
+	 * of the first join attribute (falls back to row
+	 * blocks of the largest tables otherwise).
+	 */
+	public static boolean VALUE_PARTITIONING = true;
+	/**
+	 * Whether a long-running block combination is split
+	 * in two once all combinations have been dispensed
+	 * and some join thread is idle.
+	 */
+	public static boolean ADAPTIVE_SPLITTING = true;
+	/**
+	 * Minimal running time of a combination (in milliseconds)
+	 * before it may be split.
+	 */
+	public static long SPLIT_AFTER_MILLIS = 50;
+	/**
+	 * Whether aggregates (without group-by or grouped on
+	 * join columns) are computed during the join from the
+	 * factorized join result (if the query shape allows it).
+	 */
+	public static boolean FACTORIZED_AGGREGATION = true;
+	/**
+	 * Whether block combinations are joined under several
+	 * candidate attribute orders (sharing the first attribute)
+	 * and the order with the least measured work per input row
+	 * is preferred for remaining combinations.
+	 */
+	public static boolean ADAPTIVE_ORDER = false;
+	/**
+	 * Number of candidate attribute orders (including the
+	 * planned one) considered by adaptive order selection.
+	 */
+	public static int ORDER_CANDIDATES = 3;
+	/**
+	 * Weight for the exploration term when selecting
+	 * attribute orders adaptively.
+	 */
+	public static double ORDER_EXPLORATION_WEIGHT = 0.3;
+	/**
+	 * Whether queries with only non-equality join predicates
+	 * are joined by sorting on the compared columns (instead
+	 * of a nested loop over the first two tables).
+	 */
+	public static boolean INEQUALITY_JOIN = true;
+	/**
+	 * Whether join threads stop once the number of join
+	 * result tuples reaches the LIMIT of a query without
+	 * aggregates and ORDER BY clause.
+	 */
+	public static boolean LIMIT_PUSHDOWN = true;
+	/**
+	 * Whether EXISTS sub-queries are evaluated as semi-joins.
+	 * Sub-query aliases joined by column equalities only take
+	 * part in the trie join and each join result keeps the
+	 * first matching row (witness) of these aliases instead of
+	 * enumerating all of them. For other existential aliases,
+	 * the witness is searched once per outer row in the
+	 * non-equi filter and reused for all join results
+	 * containing that row.
+	 */
+	public static boolean SEMI_JOIN = true;
+	/**
+	 * Whether large trie levels and join list batches within
+	 * one combination are split into fork/join sub-tasks
+	 * while other join threads are idle.
+	 */
+	public static boolean INTRA_COMBINATION_PARALLELISM = true;
 }
@@ -0,0 +1,11 @@
+package config;
+
+/**
+ * Describes how the attribute (variable) order
+ * for the worst-case optimal join is chosen.
+ *
+ */
+public enum PlannerMode {
+	HEURISTIC,		// score by row count and class size, greedy connectivity
+	COST_BASED		// cost model over NDV and sampled intersections, DP or beam search
+}
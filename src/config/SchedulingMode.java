@@ -0,0 +1,12 @@
+package config;
+
+/**
+ * Describes how trie block combinations are
+ * dispensed to join threads.
+ * 
+ */
+public enum SchedulingMode {
+	SYNCHRONIZED,	// shared counter guarded by a lock
+	ATOMIC,			// shared atomic cursor
+	WORK_STEALING	// per-thread ranges, idle threads steal half of a range
+}
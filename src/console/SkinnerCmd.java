@@ -9,6 +9,7 @@ import compression.Compressor;
 import config.*;
 import data.ColumnData;
 import ddl.TableCreator;
+import diskio.AppendCSV;
 import diskio.LoadCSV;
 import diskio.PathUtil;
 import execution.Master;
@@ -124,6 +125,18 @@ public class SkinnerCmd {
      * @throws Exception
      */
     static void processLoadCmd(String input) throws Exception {
+        processLoadCmd(input, false);
+    }
+
+    /**
+     * Processes a command for loading data from a CSV file on disk,
+     * either replacing the table content or appending to it.
+     *
+     * @param input  input command
+     * @param append whether to append rows to the table
+     * @throws Exception
+     */
+    static void processLoadCmd(String input, boolean append) throws Exception {
         // Load data from file into table
         String[] inputFrags = input.split("\\s");
         if (inputFrags.length != 5) {
@@ -150,8 +163,13 @@ public class SkinnerCmd {
                     } else {
                         char separator = separatorStr.charAt(0);
                         String nullRepresentation = inputFrags[4];
-                        LoadCSV.load(csvPath, table,
-                                separator, nullRepresentation);
+                        if (append) {
+                            AppendCSV.append(csvPath, table,
+                                    separator, nullRepresentation);
+                        } else {
+                            LoadCSV.load(csvPath, table,
+                                    separator, nullRepresentation);
+                        }
                     }
                 }
             }
@@ -413,6 +431,8 @@ public class SkinnerCmd {
             String[] inputFrags = input.split("\\s");
             processExplain(inputFrags);
         } else if (input.equals("help")) {
+            System.out.println("'append <table> <CSV file> <separator> <NULL representation>' "
+                    + "to append rows from .csv file to table");
             System.out.println("'bench <query Dir> <output file>' to benchmark queries in *.sql files");
             System.out.println("'compress' to compress database");
             System.out.println("'exec <SQL file>' to execute file");
@@ -432,6 +452,8 @@ public class SkinnerCmd {
             System.out.println(CatalogManager.currentDB.toString());
         } else if (input.startsWith("load ")) {
             processLoadCmd(input);
+        } else if (input.startsWith("append ")) {
+            processLoadCmd(input, true);
         } else if (input.isEmpty()) {
             // Nothing to do ...
         } else {
@@ -448,11 +470,15 @@ public class SkinnerCmd {
      * Run Skinner console, using database schema
      * at specified location.
      *
-     * @param args path to database directory
+     * @param args path to database directory, optionally
+     *             followed by buffer pool budget in MB
      */
     public static void main(String[] args) throws Exception {
         // Verify number of command line arguments
         dbDir = args[0];
+        if (args.length > 1) {
+            BufferConfig.MEMORY_BUDGET = Long.parseLong(args[1]) << 20;
+        }
         PathUtil.initSchemaPaths(dbDir);
         CatalogManager.loadDB(PathUtil.schemaPath);
         PathUtil.initDataPaths(CatalogManager.currentDB);
@@ -6,6 +6,7 @@ import java.util.Collection;
 import java.util.List;
 
 import indexing.Index;
+import joining.result.JoinResultSink;
 import joining.result.ResultTuple;
 
 /**
@@ -15,6 +16,11 @@ import joining.result.ResultTuple;
  *
  */
 public abstract class ColumnData implements Serializable {
+	/**
+	 * Fixed to the value of previously stored columns so
+	 * that existing databases remain readable.
+	 */
+	private static final long serialVersionUID = -6444615213262430872L;
 
 	/**
 	 * Cardinality of this column.
@@ -113,6 +119,17 @@ public abstract class ColumnData implements Serializable {
 	 */
 	public abstract ColumnData copyRows(
 			Collection<ResultTuple> tuples, int tableIdx);
+	/**
+	 * Produces new column by copying rows that appear
+	 * at given table index within the join results
+	 * collected by given sinks, in sink order.
+	 * 
+	 * @param sinks		columnar join results of all threads
+	 * @param tableIdx	copy tuple indices for that table
+	 * @return			new column that copies given rows
+	 */
+	public abstract ColumnData copyRows(
+			List<JoinResultSink> sinks, int tableIdx);
 	/**
 	 * Returns number of rows stored for column.
 	 * 
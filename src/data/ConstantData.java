@@ -1,6 +1,7 @@
 package data;
 
 import indexing.Index;
+import joining.result.JoinResultSink;
 import joining.result.ResultTuple;
 
 import java.util.BitSet;
@@ -8,6 +9,11 @@ import java.util.Collection;
 import java.util.List;
 
 public class ConstantData extends ColumnData {
+    /**
+     * Fixed to the value of previously stored columns so
+     * that existing databases remain readable.
+     */
+    private static final long serialVersionUID = 3403274280052156480L;
     /**
      * Holds double data.
      */
@@ -67,4 +73,9 @@ public class ConstantData extends ColumnData {
     public ColumnData copyRows(Collection<ResultTuple> tuples, int tableIdx) {
         return null;
     }
+
+    @Override
+    public ColumnData copyRows(List<JoinResultSink> sinks, int tableIdx) {
+        return null;
+    }
 }
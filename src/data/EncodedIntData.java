@@ -0,0 +1,294 @@
+package data;
+
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+import catalog.info.ColumnInfo;
+import config.GeneralConfig;
+import diskio.ColumnFile;
+import indexing.Index;
+import joining.result.JoinResultSink;
+import joining.result.ResultTuple;
+
+/**
+ * Represents content of an integer column in a compact
+ * encoding. Encoded columns are base table columns: values
+ * are accessed row by row or decoded block-wise, rows copied
+ * out of them are stored as plain integer columns. Swapping
+ * rows (when sorting) keeps values within the encoded domain
+ * and is done in place.
+ *
+ */
+public abstract class EncodedIntData extends ColumnData implements Serializable {
+	private static final long serialVersionUID = 4352958431460916542L;
+	/**
+	 * Bit-packing is chosen over byte or short arrays only
+	 * if it needs at most that share of their space (as
+	 * unpacking values is more expensive).
+	 */
+	static final double PACKED_SHARE = 0.75;
+	/**
+	 * Run-length encoding is chosen only if it needs at most
+	 * that share of the space of the best array encoding (as
+	 * accessing single rows requires searching runs).
+	 */
+	static final double RUN_LENGTH_SHARE = 0.5;
+	/**
+	 * Initializes flags indicating NULL values.
+	 *
+	 * @param cardinality	number of rows in column
+	 */
+	public EncodedIntData(int cardinality) {
+		super(cardinality);
+	}
+	/**
+	 * Returns integer value in specified row.
+	 *
+	 * @param row	index of row
+	 * @return		value in given row
+	 */
+	public abstract int getInt(int row);
+	/**
+	 * Overwrites value in specified row by a value that
+	 * already appears in the column (as when swapping rows).
+	 *
+	 * @param row	index of row
+	 * @param value	new value of given row
+	 */
+	protected abstract void setInt(int row, int value);
+	/**
+	 * Writes values of consecutive rows into target array.
+	 *
+	 * @param first		index of first row to decode
+	 * @param nrRows	number of rows to decode
+	 * @param target	write values into this array
+	 * @param offset	position of first value in target
+	 */
+	public void decode(int first, int nrRows, int[] target, int offset) {
+		for (int i = 0; i < nrRows; ++i) {
+			target[offset + i] = getInt(first + i);
+		}
+	}
+	/**
+	 * Returns number of bytes occupied by encoded values
+	 * (excluding NULL flags).
+	 *
+	 * @return	size of encoded values in bytes
+	 */
+	public abstract long dataBytes();
+	/**
+	 * Decodes all rows into a plain integer column.
+	 *
+	 * @return	integer column with same content
+	 */
+	public IntData decode() {
+		IntData intData = new IntData(cardinality);
+		decode(0, cardinality, intData.data, 0);
+		intData.isNull.or(isNull);
+		return intData;
+	}
+	/**
+	 * Returns encoded version of given column if the column
+	 * should be stored encoded and an encoding saves space,
+	 * returns the column itself otherwise. Key columns stay
+	 * plain since join indices refer to their arrays.
+	 *
+	 * @param column	meta-data of column
+	 * @param data		content of column
+	 * @return			column in chosen representation
+	 */
+	public static ColumnData encode(ColumnInfo column, ColumnData data) {
+		if (!GeneralConfig.encodeIntColumns || column.isPrimary ||
+				column.isForeign || !(data instanceof IntData)) {
+			return data;
+		}
+		return encode((IntData)data);
+	}
+	/**
+	 * Chooses the encoding with the smallest footprint for
+	 * given integer column: run-length encoding, small-domain
+	 * byte or short arrays, or frame-of-reference bit-packing.
+	 * Values in rows containing NULL are kept so that decoding
+	 * reproduces the original array.
+	 *
+	 * @param intData	integer column to encode
+	 * @return			encoded column or original column
+	 */
+	public static ColumnData encode(IntData intData) {
+		int cardinality = intData.cardinality;
+		if (cardinality == 0) {
+			return intData;
+		}
+		int[] data = intData.data;
+		int min = data[0];
+		int max = data[0];
+		int nrRuns = 1;
+		for (int row = 1; row < cardinality; ++row) {
+			int value = data[row];
+			if (value < min) {
+				min = value;
+			} else if (value > max) {
+				max = value;
+			}
+			if (value != data[row - 1]) {
+				++nrRuns;
+			}
+		}
+		long range = (long)max - min;
+		int bitWidth = 64 - Long.numberOfLeadingZeros(range);
+		// Determine size of array encodings
+		long plainBytes = 4L * cardinality;
+		long arrayBytes = plainBytes;
+		if (bitWidth <= 8) {
+			arrayBytes = cardinality;
+		} else if (bitWidth <= 16) {
+			arrayBytes = 2L * cardinality;
+		}
+		long packedBytes = 8 * PackedIntData.nrWords(cardinality, bitWidth);
+		boolean packed = packedBytes <= PACKED_SHARE * arrayBytes;
+		long bestBytes = packed ? packedBytes : arrayBytes;
+		long runBytes = 8L * nrRuns;
+		ColumnData encoded;
+		if (runBytes <= RUN_LENGTH_SHARE * bestBytes) {
+			encoded = RunLengthIntData.encode(data, cardinality, nrRuns);
+		} else if (packed) {
+			encoded = PackedIntData.encode(data, cardinality, min, bitWidth);
+		} else if (bitWidth <= 8) {
+			encoded = ByteIntData.encode(data, cardinality, min);
+		} else if (bitWidth <= 16) {
+			encoded = ShortIntData.encode(data, cardinality, min);
+		} else {
+			return intData;
+		}
+		encoded.isNull.or(intData.isNull);
+		return encoded;
+	}
+
+	@Override
+	public int compareRows(int row1, int row2) {
+		if (isNull.get(row1) || isNull.get(row2)) {
+			return 2;
+		} else {
+			return Integer.compare(getInt(row1), getInt(row2));
+		}
+	}
+
+	@Override
+	public long longForRow(int row) {
+		return getInt(row);
+	}
+
+	@Override
+	public int hashForRow(int row) {
+		return Integer.hashCode(getInt(row));
+	}
+
+	@Override
+	public void swapRows(int row1, int row2) {
+		// Swap values
+		int tempValue = getInt(row1);
+		setInt(row1, getInt(row2));
+		setInt(row2, tempValue);
+		// Swap NULL values
+		super.swapRows(row1, row2);
+	}
+
+	@Override
+	public void store(String path) throws Exception {
+		if (GeneralConfig.binaryColumns) {
+			ColumnFile.write(this, path);
+			return;
+		}
+		Files.createDirectories(Paths.get(path).getParent());
+		FileOutputStream fileOut = new FileOutputStream(path);
+		ObjectOutputStream objOut = new ObjectOutputStream(fileOut);
+		objOut.writeObject(this);
+		objOut.close();
+		fileOut.close();
+	}
+
+	@Override
+	public ColumnData copyRows(List<Integer> rowsToCopy) {
+		IntData copyColumn = new IntData(rowsToCopy.size());
+		int copiedRowCtr = 0;
+		for (int row : rowsToCopy) {
+			// Treat special case: insertion of null values
+			if (row==-1) {
+				copyColumn.data[copiedRowCtr] = 0;
+				copyColumn.isNull.set(copiedRowCtr);
+			} else {
+				copyColumn.data[copiedRowCtr] = getInt(row);
+				copyColumn.isNull.set(copiedRowCtr, isNull.get(row));
+			}
+			++copiedRowCtr;
+		}
+		return copyColumn;
+	}
+
+	@Override
+	public ColumnData copyRangeRows(int first, int last, Index index) {
+		IntData copyColumn = new IntData(last - first);
+		int copiedRowCtr = 0;
+		for (int rid = first; rid < last; rid++) {
+			int row = index.sortedRow[rid];
+			copyColumn.data[copiedRowCtr] = getInt(row);
+			copyColumn.isNull.set(copiedRowCtr, isNull.get(row));
+			++copiedRowCtr;
+		}
+		return copyColumn;
+	}
+
+	@Override
+	public ColumnData copyRows(BitSet rowsToCopy) {
+		IntData copyColumn = new IntData(rowsToCopy.cardinality());
+		int copiedRowCtr = 0;
+		for (int row=rowsToCopy.nextSetBit(0); row!=-1;
+				row=rowsToCopy.nextSetBit(row+1)) {
+			copyColumn.data[copiedRowCtr] = getInt(row);
+			copyColumn.isNull.set(copiedRowCtr, isNull.get(row));
+			++copiedRowCtr;
+		}
+		return copyColumn;
+	}
+
+	@Override
+	public ColumnData copyRows(Collection<ResultTuple> tuples, int tableIdx) {
+		IntData copyColumn = new IntData(tuples.size());
+		int copiedRowCtr = 0;
+		for (ResultTuple compositeTuple : tuples) {
+			int baseTuple = compositeTuple.baseIndices[tableIdx];
+			copyColumn.data[copiedRowCtr] = getInt(baseTuple);
+			copyColumn.isNull.set(copiedRowCtr, isNull.get(baseTuple));
+			++copiedRowCtr;
+		}
+		return copyColumn;
+	}
+
+	@Override
+	public ColumnData copyRows(List<JoinResultSink> sinks, int tableIdx) {
+		IntData copyColumn = new IntData(JoinResultSink.totalSize(sinks));
+		// Chunks map to disjoint target ranges and can be copied in parallel
+		JoinResultSink.forEachChunk(sinks, tableIdx, true, (rows, nrRows, offset) -> {
+			for (int i = 0; i < nrRows; ++i) {
+				copyColumn.data[offset + i] = getInt(rows[i]);
+			}
+		});
+		// Bit sets are not thread-safe, hence copy null flags sequentially
+		if (!isNull.isEmpty()) {
+			JoinResultSink.forEachChunk(sinks, tableIdx, false, (rows, nrRows, offset) -> {
+				for (int i = 0; i < nrRows; ++i) {
+					if (isNull.get(rows[i])) {
+						copyColumn.isNull.set(offset + i);
+					}
+				}
+			});
+		}
+		return copyColumn;
+	}
+}
@@ -9,7 +9,10 @@ import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 
+import config.GeneralConfig;
+import diskio.ColumnFile;
 import indexing.Index;
+import joining.result.JoinResultSink;
 import joining.result.ResultTuple;
 
 /**
@@ -19,6 +22,11 @@ import joining.result.ResultTuple;
  *
  */
 public class IntData extends ColumnData implements Serializable {
+	/**
+	 * Fixed to the value of previously stored columns so
+	 * that existing databases remain readable.
+	 */
+	private static final long serialVersionUID = -5993812386392900869L;
 	/**
 	 * Holds integer data.
 	 */
@@ -64,6 +72,10 @@ public class IntData extends ColumnData implements Serializable {
 
 	@Override
 	public void store(String path) throws Exception {
+		if (GeneralConfig.binaryColumns) {
+			ColumnFile.write(this, path);
+			return;
+		}
 		Files.createDirectories(Paths.get(path).getParent());
 		FileOutputStream fileOut = new FileOutputStream(path);
 		ObjectOutputStream objOut = new ObjectOutputStream(fileOut);
@@ -118,6 +130,28 @@ public class IntData extends ColumnData implements Serializable {
 		return copyColumn;
 	}
 
+	@Override
+	public ColumnData copyRows(List<JoinResultSink> sinks, int tableIdx) {
+		IntData copyColumn = new IntData(JoinResultSink.totalSize(sinks));
+		// Chunks map to disjoint target ranges and can be copied in parallel
+		JoinResultSink.forEachChunk(sinks, tableIdx, true, (rows, nrRows, offset) -> {
+			for (int i = 0; i < nrRows; ++i) {
+				copyColumn.data[offset + i] = data[rows[i]];
+			}
+		});
+		// Bit sets are not thread-safe, hence copy null flags sequentially
+		if (!isNull.isEmpty()) {
+			JoinResultSink.forEachChunk(sinks, tableIdx, false, (rows, nrRows, offset) -> {
+				for (int i = 0; i < nrRows; ++i) {
+					if (isNull.get(rows[i])) {
+						copyColumn.isNull.set(offset + i);
+					}
+				}
+			});
+		}
+		return copyColumn;
+	}
+
 	@Override
 	public ColumnData copyRows(BitSet rowsToCopy) {
 		IntData copyColumn = new IntData(rowsToCopy.cardinality());
@@ -0,0 +1,147 @@
+package data;
+
+import java.io.Serializable;
+
+/**
+ * Represents content of an integer column via
+ * frame-of-reference bit-packing: the offset of each
+ * value from the minimal value is stored with a fixed
+ * number of bits, packed into 64-bit words.
+ *
+ */
+public class PackedIntData extends EncodedIntData implements Serializable {
+	private static final long serialVersionUID = 2038405627213316478L;
+	/**
+	 * Minimal value of column, added to each offset.
+	 */
+	public final int base;
+	/**
+	 * Number of bits per value (between 0 and 31).
+	 */
+	public final int bitWidth;
+	/**
+	 * Selects the lowest bits of a word holding one value.
+	 */
+	final long mask;
+	/**
+	 * Holds packed offsets, value i occupies bits starting
+	 * from bit i * bitWidth (counting from the lowest bit
+	 * of the first word).
+	 */
+	public final long[] words;
+	/**
+	 * Initializes word array for given cardinality.
+	 *
+	 * @param cardinality	number of rows
+	 * @param base			value represented by offset zero
+	 * @param bitWidth		number of bits per value
+	 */
+	public PackedIntData(int cardinality, int base, int bitWidth) {
+		super(cardinality);
+		this.base = base;
+		this.bitWidth = bitWidth;
+		this.mask = (1L << bitWidth) - 1;
+		this.words = new long[nrWords(cardinality, bitWidth)];
+	}
+	/**
+	 * Returns number of words required for packing values.
+	 *
+	 * @param cardinality	number of values
+	 * @param bitWidth		number of bits per value
+	 * @return				number of 64-bit words
+	 */
+	public static int nrWords(int cardinality, int bitWidth) {
+		return (int)(((long)cardinality * bitWidth + 63) >>> 6);
+	}
+	/**
+	 * Packs given values whose difference to the base
+	 * value fits into the given number of bits.
+	 *
+	 * @param values		values to encode
+	 * @param cardinality	number of values
+	 * @param base			minimal value
+	 * @param bitWidth		number of bits per value
+	 * @return				encoded column without NULL flags
+	 */
+	static PackedIntData encode(int[] values, int cardinality,
+			int base, int bitWidth) {
+		PackedIntData encoded = new PackedIntData(cardinality, base, bitWidth);
+		if (bitWidth == 0) {
+			return encoded;
+		}
+		long[] words = encoded.words;
+		for (int row = 0; row < cardinality; ++row) {
+			long offset = (values[row] - base) & 0xFFFFFFFFL;
+			long bitPos = (long)row * bitWidth;
+			int word = (int)(bitPos >>> 6);
+			int shift = (int)(bitPos & 63);
+			words[word] |= offset << shift;
+			// Value spans two words
+			if (shift + bitWidth > 64) {
+				words[word + 1] |= offset >>> (64 - shift);
+			}
+		}
+		return encoded;
+	}
+
+	@Override
+	public int getInt(int row) {
+		if (bitWidth == 0) {
+			return base;
+		}
+		long bitPos = (long)row * bitWidth;
+		int word = (int)(bitPos >>> 6);
+		int shift = (int)(bitPos & 63);
+		long offset = words[word] >>> shift;
+		if (shift + bitWidth > 64) {
+			offset |= words[word + 1] << (64 - shift);
+		}
+		return base + (int)(offset & mask);
+	}
+
+	@Override
+	protected void setInt(int row, int value) {
+		if (bitWidth == 0) {
+			return;
+		}
+		long offset = (value - base) & mask;
+		long bitPos = (long)row * bitWidth;
+		int word = (int)(bitPos >>> 6);
+		int shift = (int)(bitPos & 63);
+		words[word] = (words[word] & ~(mask << shift)) | (offset << shift);
+		// Value spans two words
+		if (shift + bitWidth > 64) {
+			int nrHighBits = shift + bitWidth - 64;
+			long highMask = (1L << nrHighBits) - 1;
+			words[word + 1] = (words[word + 1] & ~highMask) |
+					(offset >>> (64 - shift));
+		}
+	}
+
+	@Override
+	public void decode(int first, int nrRows, int[] target, int offset) {
+		if (bitWidth == 0) {
+			for (int i = 0; i < nrRows; ++i) {
+				target[offset + i] = base;
+			}
+			return;
+		}
+		// Advance bit position instead of multiplying per row
+		long bitPos = (long)first * bitWidth;
+		for (int i = 0; i < nrRows; ++i) {
+			int word = (int)(bitPos >>> 6);
+			int shift = (int)(bitPos & 63);
+			long value = words[word] >>> shift;
+			if (shift + bitWidth > 64) {
+				value |= words[word + 1] << (64 - shift);
+			}
+			target[offset + i] = base + (int)(value & mask);
+			bitPos += bitWidth;
+		}
+	}
+
+	@Override
+	public long dataBytes() {
+		return 8L * words.length;
+	}
+}
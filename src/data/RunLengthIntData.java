@@ -0,0 +1,144 @@
+package data;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Represents content of an integer column as a sequence
+ * of runs of equal values. Suited for sorted or clustered
+ * columns with few distinct values.
+ *
+ */
+public class RunLengthIntData extends EncodedIntData implements Serializable {
+	private static final long serialVersionUID = -1480725364028743991L;
+	/**
+	 * Value of each run.
+	 */
+	public final int[] values;
+	/**
+	 * Index of first row after each run (in increasing order).
+	 */
+	public final int[] runEnds;
+	/**
+	 * Index of run accessed last, speeds up accessing rows
+	 * in order. Only used as hint, hence not synchronized.
+	 */
+	transient int lastRun = 0;
+	/**
+	 * Plain values, replacing the runs once a row has been
+	 * changed (changes split runs), null before.
+	 */
+	int[] plainValues = null;
+	/**
+	 * Initializes run arrays for given number of runs.
+	 *
+	 * @param cardinality	number of rows
+	 * @param nrRuns		number of runs
+	 */
+	public RunLengthIntData(int cardinality, int nrRuns) {
+		super(cardinality);
+		this.values = new int[nrRuns];
+		this.runEnds = new int[nrRuns];
+	}
+	/**
+	 * Encodes given values as runs.
+	 *
+	 * @param values		values to encode
+	 * @param cardinality	number of values (at least one)
+	 * @param nrRuns		number of runs of equal values
+	 * @return				encoded column without NULL flags
+	 */
+	static RunLengthIntData encode(int[] values, int cardinality, int nrRuns) {
+		RunLengthIntData encoded = new RunLengthIntData(cardinality, nrRuns);
+		int runCtr = 0;
+		for (int row = 1; row < cardinality; ++row) {
+			if (values[row] != values[row - 1]) {
+				encoded.values[runCtr] = values[row - 1];
+				encoded.runEnds[runCtr] = row;
+				++runCtr;
+			}
+		}
+		encoded.values[runCtr] = values[cardinality - 1];
+		encoded.runEnds[runCtr] = cardinality;
+		return encoded;
+	}
+	/**
+	 * Returns index of run containing given row.
+	 *
+	 * @param row	index of row
+	 * @return		index of run
+	 */
+	int findRun(int row) {
+		int run = lastRun;
+		// Check hint (and its successor) before searching
+		if (run < runEnds.length && row < runEnds[run] &&
+				(run == 0 || row >= runEnds[run - 1])) {
+			return run;
+		}
+		++run;
+		if (run < runEnds.length && row < runEnds[run] &&
+				row >= runEnds[run - 1]) {
+			lastRun = run;
+			return run;
+		}
+		int pos = Arrays.binarySearch(runEnds, row);
+		// Row equals end of run: row starts the next run
+		run = pos >= 0 ? pos + 1 : -pos - 1;
+		lastRun = run;
+		return run;
+	}
+
+	@Override
+	public int getInt(int row) {
+		if (plainValues != null) {
+			return plainValues[row];
+		}
+		return values[findRun(row)];
+	}
+
+	@Override
+	protected void setInt(int row, int value) {
+		if (plainValues == null) {
+			int[] decoded = new int[cardinality];
+			decode(0, cardinality, decoded, 0);
+			plainValues = decoded;
+		}
+		plainValues[row] = value;
+	}
+
+	@Override
+	public void decode(int first, int nrRows, int[] target, int offset) {
+		if (nrRows == 0) {
+			return;
+		}
+		if (plainValues != null) {
+			System.arraycopy(plainValues, first, target, offset, nrRows);
+			return;
+		}
+		int run = findRun(first);
+		int last = first + nrRows;
+		int row = first;
+		while (row < last) {
+			int runEnd = Math.min(runEnds[run], last);
+			Arrays.fill(target, offset + row - first,
+					offset + runEnd - first, values[run]);
+			row = runEnd;
+			++run;
+		}
+	}
+
+	@Override
+	public long dataBytes() {
+		return plainValues != null ? 4L * cardinality : 8L * values.length;
+	}
+
+	@Override
+	public void store(String path) throws Exception {
+		// Runs no longer reflect changed rows, hence encode anew
+		if (plainValues != null) {
+			encode(decode()).store(path);
+		} else {
+			super.store(path);
+		}
+	}
+}
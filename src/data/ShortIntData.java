@@ -0,0 +1,70 @@
+package data;
+
+import java.io.Serializable;
+
+/**
+ * Represents content of an integer column with a small
+ * domain: each value is stored as unsigned short offset
+ * from the minimal value of the column.
+ *
+ */
+public class ShortIntData extends EncodedIntData implements Serializable {
+	private static final long serialVersionUID = 7741364402197312261L;
+	/**
+	 * Minimal value of column, added to each offset.
+	 */
+	public final int base;
+	/**
+	 * Holds offsets of values from base value.
+	 */
+	public final short[] data;
+	/**
+	 * Initializes offset array for given cardinality.
+	 *
+	 * @param cardinality	number of rows
+	 * @param base			value represented by offset zero
+	 */
+	public ShortIntData(int cardinality, int base) {
+		super(cardinality);
+		this.base = base;
+		this.data = new short[cardinality];
+	}
+	/**
+	 * Encodes given values whose difference to the base
+	 * value fits into 16 bits.
+	 *
+	 * @param values		values to encode
+	 * @param cardinality	number of values
+	 * @param base			minimal value
+	 * @return				encoded column without NULL flags
+	 */
+	static ShortIntData encode(int[] values, int cardinality, int base) {
+		ShortIntData encoded = new ShortIntData(cardinality, base);
+		for (int row = 0; row < cardinality; ++row) {
+			encoded.data[row] = (short)(values[row] - base);
+		}
+		return encoded;
+	}
+
+	@Override
+	public int getInt(int row) {
+		return base + (data[row] & 0xFFFF);
+	}
+
+	@Override
+	protected void setInt(int row, int value) {
+		data[row] = (short)(value - base);
+	}
+
+	@Override
+	public void decode(int first, int nrRows, int[] target, int offset) {
+		for (int i = 0; i < nrRows; ++i) {
+			target[offset + i] = base + (data[first + i] & 0xFFFF);
+		}
+	}
+
+	@Override
+	public long dataBytes() {
+		return 2L * cardinality;
+	}
+}
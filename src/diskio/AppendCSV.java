@@ -0,0 +1,221 @@
+package diskio;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+import buffer.BufferManager;
+import catalog.CatalogManager;
+import catalog.info.ColumnInfo;
+import catalog.info.TableInfo;
+import catalog.stats.TableStats;
+import data.ColumnData;
+import data.DoubleData;
+import data.EncodedIntData;
+import data.IntData;
+import indexing.Index;
+import joining.BaseTrie;
+import joining.parallel.indexing.IntPartitionIndex;
+import query.ColumnRef;
+import util.RadixSort;
+
+/**
+ * Appends rows from a CSV file to a table. Instead of rebuilding
+ * derived data from scratch, partition indices on integer columns
+ * and cached sort orders are extended by the appended rows.
+ *
+ */
+public class AppendCSV {
+	/**
+	 * Appends content of CSV file to given table, rewrites its
+	 * column files, and updates statistics, indices, and cached
+	 * sort orders.
+	 *
+	 * @param csvPath				path to source CSV file
+	 * @param table					table to which rows are appended
+	 * @param separator				character separating CSV fields
+	 * @param nullRepresentation	how the null value is represented
+	 * @throws Exception
+	 */
+	public static void append(String csvPath, TableInfo table,
+			char separator, String nullRepresentation) throws Exception {
+		if (CatalogManager.currentDB.compressed) {
+			throw new Exception("Cannot append to compressed database");
+		}
+		System.out.println("Appending data to table " + table);
+		long startMillis = System.currentTimeMillis();
+		String tableName = table.name;
+		TableStats oldStats = CatalogManager.currentStats.
+				tableToStats.get(tableName);
+		int oldCardinality = oldStats == null ? 0 : oldStats.cardinality;
+		// Replace column files and buffered columns (parsed columns
+		// are only referenced until they are stored)
+		storeData(table, ParallelLoadCSV.parse(csvPath, table,
+				separator, nullRepresentation,
+				prefix(table, oldCardinality)));
+		System.out.println("Stored table on disk");
+		// Update cardinality estimates
+		CatalogManager.updateStats(tableName);
+		TableStats tableStats = CatalogManager.currentStats.
+				tableToStats.get(tableName);
+		System.out.println("Updated table statistics: ");
+		System.out.println(tableStats);
+		// Extend derived data by appended rows
+		if (oldCardinality > 0) {
+			mergeIndices(table);
+			mergeSortOrders(tableName, oldCardinality,
+					tableStats.cardinality);
+		}
+		// Cached filtering results refer to previous table content
+		BufferManager.indexCache.clear();
+		BufferManager.predicateToID.clear();
+		long totalMillis = System.currentTimeMillis() - startMillis;
+		System.out.println("Appended " + (tableStats.cardinality -
+				oldCardinality) + " rows in " + totalMillis + " ms");
+	}
+	/**
+	 * Returns existing columns of given table, forming the
+	 * prefix of the extended columns.
+	 *
+	 * @param table				table to which rows are appended
+	 * @param oldCardinality	number of rows before appending
+	 * @return					buffered columns or null if empty
+	 * @throws Exception
+	 */
+	static List<ColumnData> prefix(TableInfo table,
+			int oldCardinality) throws Exception {
+		if (oldCardinality == 0) {
+			return null;
+		}
+		List<ColumnData> prefix = new ArrayList<>();
+		for (String columnName : table.columnNames) {
+			ColumnRef colRef = new ColumnRef(table.name, columnName);
+			prefix.add(BufferManager.getData(colRef));
+		}
+		return prefix;
+	}
+	/**
+	 * Stores extended columns on disk and in the buffer pool.
+	 * Columns are written to temporary files first so that an
+	 * interrupted append leaves the previous content intact.
+	 *
+	 * @param table		table for which to store data
+	 * @param data		data to store
+	 * @throws Exception
+	 */
+	static void storeData(TableInfo table, List<ColumnData> data) throws Exception {
+		int nrColumns = table.columnNames.size();
+		ParallelLoadCSV.forEachParallel(nrColumns, colCtr -> {
+			String columnName = table.columnNames.get(colCtr);
+			ColumnInfo column = table.nameToCol.get(columnName);
+			ColumnData colData = EncodedIntData.encode(column, data.get(colCtr));
+			Path dataPath = Paths.get(PathUtil.colToPath.get(column));
+			Path tempPath = Paths.get(dataPath + ".tmp");
+			colData.store(tempPath.toString());
+			Files.move(tempPath, dataPath, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			ColumnRef colRef = new ColumnRef(table.name, columnName);
+			BufferManager.putData(colRef, colData);
+		});
+	}
+	/**
+	 * Extends partition indices on integer columns of given table
+	 * by appended rows. Other indices are dropped and created
+	 * again when needed. Encoded columns are decoded only if
+	 * they have an index to extend (the index refers to the
+	 * decoded values).
+	 *
+	 * @param table		table whose rows were extended
+	 * @throws Exception
+	 */
+	static void mergeIndices(TableInfo table) throws Exception {
+		for (String columnName : table.columnNames) {
+			ColumnRef colRef = new ColumnRef(table.name, columnName);
+			Index index = BufferManager.colToIndex.get(colRef);
+			if (index == null) {
+				continue;
+			}
+			ColumnData colData = index instanceof IntPartitionIndex ?
+					BufferManager.getData(colRef) : null;
+			IntData intData = null;
+			if (colData instanceof IntData) {
+				intData = (IntData)colData;
+			} else if (colData instanceof EncodedIntData) {
+				intData = ((EncodedIntData)colData).decode();
+			}
+			if (intData != null) {
+				IntPartitionIndex merged = new IntPartitionIndex(
+						intData, (IntPartitionIndex)index);
+				BufferManager.colToIndex.put(colRef, merged);
+			} else {
+				BufferManager.colToIndex.remove(colRef);
+			}
+		}
+	}
+	/**
+	 * Extends cached sort orders of given table by appended rows,
+	 * merging the sorted appended rows into the cached order.
+	 *
+	 * @param tableName			name of table whose rows were extended
+	 * @param oldCardinality	number of rows before appending
+	 * @param cardinality		number of rows after appending
+	 * @throws Exception
+	 */
+	static void mergeSortOrders(String tableName, int oldCardinality,
+			int cardinality) throws Exception {
+		if (BaseTrie.orderCache == null) {
+			return;
+		}
+		Iterator<Entry<List<ColumnRef>, int[]>> entries =
+				BaseTrie.orderCache.entrySet().iterator();
+		while (entries.hasNext()) {
+			Entry<List<ColumnRef>, int[]> entry = entries.next();
+			List<ColumnRef> order = entry.getKey();
+			if (order.isEmpty() ||
+					!order.get(0).aliasName.equals(tableName)) {
+				continue;
+			}
+			// Orders not covering all previous rows are outdated
+			if (entry.getValue().length != oldCardinality) {
+				entries.remove();
+				continue;
+			}
+			// Same sort keys as used for tries
+			List<int[]> keyCols = new ArrayList<>();
+			for (ColumnRef colRef : order) {
+				keyCols.add(sortKeys(BufferManager.getData(colRef)));
+			}
+			int[] merged = RadixSort.mergeAppended(
+					entry.getValue(), keyCols, cardinality);
+			entry.setValue(merged);
+		}
+	}
+	/**
+	 * Returns integer keys by which tries sort the given column.
+	 *
+	 * @param colData	integer (plain or encoded) or double column
+	 * @return			integer values of column
+	 */
+	static int[] sortKeys(ColumnData colData) {
+		if (colData instanceof IntData) {
+			return ((IntData)colData).data;
+		} else if (colData instanceof EncodedIntData) {
+			return ((EncodedIntData)colData).decode().data;
+		} else if (colData instanceof DoubleData) {
+			double[] doubleData = ((DoubleData)colData).data;
+			int[] intData = new int[doubleData.length];
+			for (int i=0; i<doubleData.length; ++i) {
+				intData[i] = (int)doubleData[i];
+			}
+			return intData;
+		} else {
+			throw new IllegalArgumentException("Unsupported column data type: " +
+					colData.getClass().getName());
+		}
+	}
+}
@@ -0,0 +1,527 @@
+package diskio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+import data.ColumnData;
+import data.ByteIntData;
+import data.DoubleData;
+import data.EncodedIntData;
+import data.IntData;
+import data.LongData;
+import data.PackedIntData;
+import data.RunLengthIntData;
+import data.ShortIntData;
+import data.StringData;
+
+/**
+ * Reads and writes columns in a binary columnar file format
+ * that is read through memory mapping instead of Java
+ * serialization. All numbers are little-endian.
+ *
+ * Layout: a header of six integers (magic number, format
+ * version, value type, cardinality, number of 64-bit words
+ * in the null bitmap, padding), followed by the null bitmap
+ * (as produced by BitSet.toLongArray) and by the raw values.
+ * Integer, long, and double values are stored as a plain
+ * array. String columns store the UTF-8 length of each
+ * row (-1 for a missing string object), padded to eight
+ * bytes, followed by the concatenated UTF-8 bytes.
+ * Encoded integer columns store two integers with encoding
+ * parameters, followed by the encoded values: byte, short,
+ * or 64-bit word arrays for small-domain and bit-packed
+ * columns, run values and run ends for run-length encoded
+ * columns.
+ *
+ */
+public class ColumnFile {
+	/**
+	 * Marks files in this format ("SKC1" in file byte order).
+	 * Serialized Java objects start with bytes 0xACED instead.
+	 */
+	public static final int MAGIC = 0x31434B53;
+	/**
+	 * Current version of the file format.
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * Size of header in bytes.
+	 */
+	static final int HEADER_BYTES = 24;
+	/**
+	 * Codes for the type of stored values.
+	 */
+	static final int INT_TYPE = 0;
+	static final int LONG_TYPE = 1;
+	static final int DOUBLE_TYPE = 2;
+	static final int STRING_TYPE = 3;
+	static final int BYTE_INT_TYPE = 4;
+	static final int SHORT_INT_TYPE = 5;
+	static final int PACKED_INT_TYPE = 6;
+	static final int RUN_LENGTH_INT_TYPE = 7;
+	/**
+	 * Maximal number of bytes mapped at once (mappings
+	 * are limited to 2 GB, larger columns are read in
+	 * several segments).
+	 */
+	static final int MAX_SEGMENT_BYTES = 1 << 30;
+	/**
+	 * Size of buffer used for writing.
+	 */
+	static final int WRITE_BUFFER_BYTES = 1 << 20;
+	/**
+	 * Returns true iff the file at given path is stored
+	 * in the binary columnar format.
+	 *
+	 * @param path	path to column file
+	 * @return		true iff file starts with magic number
+	 * @throws IOException
+	 */
+	public static boolean isColumnFile(String path) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(path),
+				StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_BYTES) {
+				return false;
+			}
+			ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			channel.read(magic, 0);
+			return magic.getInt(0) == MAGIC;
+		}
+	}
+	/**
+	 * Returns the number of rows of the column stored at
+	 * given path by reading the file header only.
+	 *
+	 * @param path	path to column file
+	 * @return		cardinality of column
+	 * @throws IOException
+	 */
+	public static int readCardinality(String path) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(path),
+				StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			channel.read(header, 0);
+			if (header.getInt(0) != MAGIC) {
+				throw new IOException("Not a column file: '" + path + "'");
+			}
+			return header.getInt(12);
+		}
+	}
+	/**
+	 * Writes given column to specified path.
+	 *
+	 * @param column	integer (plain or encoded), long, double, or string column
+	 * @param path		path of file to write
+	 * @throws IOException
+	 */
+	public static void write(ColumnData column, String path) throws IOException {
+		int type;
+		if (column instanceof IntData) {
+			type = INT_TYPE;
+		} else if (column instanceof LongData) {
+			type = LONG_TYPE;
+		} else if (column instanceof DoubleData) {
+			type = DOUBLE_TYPE;
+		} else if (column instanceof StringData) {
+			type = STRING_TYPE;
+		} else if (column instanceof ByteIntData) {
+			type = BYTE_INT_TYPE;
+		} else if (column instanceof ShortIntData) {
+			type = SHORT_INT_TYPE;
+		} else if (column instanceof PackedIntData) {
+			type = PACKED_INT_TYPE;
+		} else if (column instanceof RunLengthIntData) {
+			type = RUN_LENGTH_INT_TYPE;
+		} else {
+			throw new IllegalArgumentException("Unsupported column type: " +
+					column.getClass().getSimpleName());
+		}
+		Path filePath = Paths.get(path);
+		Files.createDirectories(filePath.getParent());
+		try (FileChannel channel = FileChannel.open(filePath,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(
+					WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			int cardinality = column.cardinality;
+			long[] nullWords = column.isNull.toLongArray();
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(type);
+			buffer.putInt(cardinality).putInt(nullWords.length).putInt(0);
+			for (long word : nullWords) {
+				buffer = ensureSpace(channel, buffer, 8);
+				buffer.putLong(word);
+			}
+			switch (type) {
+			case INT_TYPE:
+				buffer = putInts(channel, buffer, ((IntData)column).data);
+				break;
+			case LONG_TYPE:
+				long[] longs = ((LongData)column).data;
+				for (int row = 0; row < cardinality;) {
+					buffer = ensureSpace(channel, buffer, 8);
+					int nrValues = Math.min(buffer.remaining() / 8, cardinality - row);
+					buffer.asLongBuffer().put(longs, row, nrValues);
+					buffer.position(buffer.position() + 8 * nrValues);
+					row += nrValues;
+				}
+				break;
+			case DOUBLE_TYPE:
+				double[] doubles = ((DoubleData)column).data;
+				for (int row = 0; row < cardinality;) {
+					buffer = ensureSpace(channel, buffer, 8);
+					int nrValues = Math.min(buffer.remaining() / 8, cardinality - row);
+					buffer.asDoubleBuffer().put(doubles, row, nrValues);
+					buffer.position(buffer.position() + 8 * nrValues);
+					row += nrValues;
+				}
+				break;
+			case STRING_TYPE:
+				String[] strings = ((StringData)column).data;
+				byte[][] bytes = new byte[cardinality][];
+				for (int row = 0; row < cardinality; ++row) {
+					bytes[row] = strings[row] == null ? null :
+						strings[row].getBytes(StandardCharsets.UTF_8);
+					buffer = ensureSpace(channel, buffer, 4);
+					buffer.putInt(bytes[row] == null ? -1 : bytes[row].length);
+				}
+				if (cardinality % 2 != 0) {
+					buffer = ensureSpace(channel, buffer, 4);
+					buffer.putInt(0);
+				}
+				for (int row = 0; row < cardinality; ++row) {
+					if (bytes[row] != null) {
+						buffer = ensureSpace(channel, buffer, bytes[row].length);
+						buffer.put(bytes[row]);
+					}
+				}
+				break;
+			case BYTE_INT_TYPE:
+				ByteIntData byteData = (ByteIntData)column;
+				buffer = ensureSpace(channel, buffer, 8);
+				buffer.putInt(byteData.base).putInt(0);
+				for (int row = 0; row < cardinality;) {
+					buffer = ensureSpace(channel, buffer, 1);
+					int nrValues = Math.min(buffer.remaining(), cardinality - row);
+					buffer.put(byteData.data, row, nrValues);
+					row += nrValues;
+				}
+				break;
+			case SHORT_INT_TYPE:
+				ShortIntData shortData = (ShortIntData)column;
+				buffer = ensureSpace(channel, buffer, 8);
+				buffer.putInt(shortData.base).putInt(0);
+				for (int row = 0; row < cardinality;) {
+					buffer = ensureSpace(channel, buffer, 2);
+					int nrValues = Math.min(buffer.remaining() / 2, cardinality - row);
+					buffer.asShortBuffer().put(shortData.data, row, nrValues);
+					buffer.position(buffer.position() + 2 * nrValues);
+					row += nrValues;
+				}
+				break;
+			case PACKED_INT_TYPE:
+				PackedIntData packedData = (PackedIntData)column;
+				buffer = ensureSpace(channel, buffer, 8);
+				buffer.putInt(packedData.base).putInt(packedData.bitWidth);
+				long[] words = packedData.words;
+				for (int word = 0; word < words.length;) {
+					buffer = ensureSpace(channel, buffer, 8);
+					int nrWords = Math.min(buffer.remaining() / 8, words.length - word);
+					buffer.asLongBuffer().put(words, word, nrWords);
+					buffer.position(buffer.position() + 8 * nrWords);
+					word += nrWords;
+				}
+				break;
+			case RUN_LENGTH_INT_TYPE:
+				RunLengthIntData runData = (RunLengthIntData)column;
+				buffer = ensureSpace(channel, buffer, 8);
+				buffer.putInt(runData.values.length).putInt(0);
+				buffer = putInts(channel, buffer, runData.values);
+				buffer = putInts(channel, buffer, runData.runEnds);
+				break;
+			}
+			flush(channel, buffer);
+		}
+	}
+	/**
+	 * Adds given integers to buffer, writing out buffer
+	 * content whenever the buffer is full.
+	 *
+	 * @param channel	write buffer content to this channel
+	 * @param buffer	buffer being filled
+	 * @param ints		integers to write
+	 * @return			buffer holding remaining content
+	 * @throws IOException
+	 */
+	static ByteBuffer putInts(FileChannel channel,
+			ByteBuffer buffer, int[] ints) throws IOException {
+		for (int pos = 0; pos < ints.length;) {
+			buffer = ensureSpace(channel, buffer, 4);
+			int nrValues = Math.min(buffer.remaining() / 4, ints.length - pos);
+			buffer.asIntBuffer().put(ints, pos, nrValues);
+			buffer.position(buffer.position() + 4 * nrValues);
+			pos += nrValues;
+		}
+		return buffer;
+	}
+	/**
+	 * Writes out buffer content if fewer than the given
+	 * number of bytes remain, returns a buffer that can
+	 * hold at least the given number of bytes.
+	 *
+	 * @param channel	write buffer content to this channel
+	 * @param buffer	buffer being filled
+	 * @param nrBytes	number of bytes to write next
+	 * @return			buffer with sufficient space
+	 * @throws IOException
+	 */
+	static ByteBuffer ensureSpace(FileChannel channel,
+			ByteBuffer buffer, int nrBytes) throws IOException {
+		if (buffer.remaining() < nrBytes) {
+			flush(channel, buffer);
+			if (buffer.capacity() < nrBytes) {
+				return ByteBuffer.allocate(nrBytes).order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}
+		return buffer;
+	}
+	/**
+	 * Writes buffer content to channel and clears buffer.
+	 *
+	 * @param channel	write to this channel
+	 * @param buffer	buffer whose content is written
+	 * @throws IOException
+	 */
+	static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+	/**
+	 * Reads column stored at given path. Maps the file
+	 * and fills the column arrays by bulk transfers.
+	 *
+	 * @param path	path to column file
+	 * @return		column data read from file
+	 * @throws IOException
+	 */
+	public static ColumnData read(String path) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(path),
+				StandardOpenOption.READ)) {
+			MappedByteBuffer header = map(channel, 0, HEADER_BYTES);
+			if (header.getInt(0) != MAGIC) {
+				throw new IOException("Not a column file: '" + path + "'");
+			}
+			int version = header.getInt(4);
+			if (version != VERSION) {
+				throw new IOException("Unsupported column file version " +
+						version + " at '" + path + "'");
+			}
+			int type = header.getInt(8);
+			int cardinality = header.getInt(12);
+			int nrNullWords = header.getInt(16);
+			// Read null bitmap
+			long pos = HEADER_BYTES;
+			long[] nullWords = new long[nrNullWords];
+			if (nrNullWords > 0) {
+				map(channel, pos, 8L * nrNullWords).asLongBuffer().get(nullWords);
+				pos += 8L * nrNullWords;
+			}
+			ColumnData column;
+			switch (type) {
+			case INT_TYPE:
+				IntData intData = new IntData(cardinality);
+				getInts(channel, pos, intData.data);
+				column = intData;
+				break;
+			case LONG_TYPE:
+				LongData longData = new LongData(cardinality);
+				int longStep = MAX_SEGMENT_BYTES / 8;
+				for (int from = 0; from < cardinality; from += longStep) {
+					int nrValues = Math.min(longStep, cardinality - from);
+					map(channel, pos, 8L * nrValues).asLongBuffer().get(
+							longData.data, from, nrValues);
+					pos += 8L * nrValues;
+				}
+				column = longData;
+				break;
+			case DOUBLE_TYPE:
+				DoubleData doubleData = new DoubleData(cardinality);
+				int doubleStep = MAX_SEGMENT_BYTES / 8;
+				for (int from = 0; from < cardinality; from += doubleStep) {
+					int nrValues = Math.min(doubleStep, cardinality - from);
+					map(channel, pos, 8L * nrValues).asDoubleBuffer().get(
+							doubleData.data, from, nrValues);
+					pos += 8L * nrValues;
+				}
+				column = doubleData;
+				break;
+			case STRING_TYPE:
+				column = readStrings(channel, pos, cardinality);
+				break;
+			case BYTE_INT_TYPE:
+			case SHORT_INT_TYPE:
+			case PACKED_INT_TYPE:
+			case RUN_LENGTH_INT_TYPE:
+				column = readEncoded(channel, pos, type, cardinality);
+				break;
+			default:
+				throw new IOException("Unknown value type " + type +
+						" at '" + path + "'");
+			}
+			column.isNull.or(BitSet.valueOf(nullWords));
+			return column;
+		}
+	}
+	/**
+	 * Reads integers starting from given file position
+	 * into the given array.
+	 *
+	 * @param channel	channel of column file
+	 * @param pos		position of first integer
+	 * @param ints		fill this array completely
+	 * @return			position after last integer
+	 * @throws IOException
+	 */
+	static long getInts(FileChannel channel, long pos,
+			int[] ints) throws IOException {
+		int intStep = MAX_SEGMENT_BYTES / 4;
+		for (int from = 0; from < ints.length; from += intStep) {
+			int nrValues = Math.min(intStep, ints.length - from);
+			map(channel, pos, 4L * nrValues).asIntBuffer().get(
+					ints, from, nrValues);
+			pos += 4L * nrValues;
+		}
+		return pos;
+	}
+	/**
+	 * Reads encoded integer values starting from given
+	 * file position.
+	 *
+	 * @param channel		channel of column file
+	 * @param pos			position of encoding parameters
+	 * @param type			code of value type
+	 * @param cardinality	number of rows
+	 * @return				encoded column without null flags
+	 * @throws IOException
+	 */
+	static EncodedIntData readEncoded(FileChannel channel, long pos,
+			int type, int cardinality) throws IOException {
+		MappedByteBuffer params = map(channel, pos, 8);
+		int param1 = params.getInt(0);
+		int param2 = params.getInt(4);
+		pos += 8;
+		switch (type) {
+		case BYTE_INT_TYPE:
+			ByteIntData byteData = new ByteIntData(cardinality, param1);
+			for (int from = 0; from < cardinality; from += MAX_SEGMENT_BYTES) {
+				int nrValues = Math.min(MAX_SEGMENT_BYTES, cardinality - from);
+				map(channel, pos, nrValues).get(byteData.data, from, nrValues);
+				pos += nrValues;
+			}
+			return byteData;
+		case SHORT_INT_TYPE:
+			ShortIntData shortData = new ShortIntData(cardinality, param1);
+			int shortStep = MAX_SEGMENT_BYTES / 2;
+			for (int from = 0; from < cardinality; from += shortStep) {
+				int nrValues = Math.min(shortStep, cardinality - from);
+				map(channel, pos, 2L * nrValues).asShortBuffer().get(
+						shortData.data, from, nrValues);
+				pos += 2L * nrValues;
+			}
+			return shortData;
+		case PACKED_INT_TYPE:
+			PackedIntData packedData = new PackedIntData(
+					cardinality, param1, param2);
+			long[] words = packedData.words;
+			int longStep = MAX_SEGMENT_BYTES / 8;
+			for (int from = 0; from < words.length; from += longStep) {
+				int nrWords = Math.min(longStep, words.length - from);
+				map(channel, pos, 8L * nrWords).asLongBuffer().get(
+						words, from, nrWords);
+				pos += 8L * nrWords;
+			}
+			return packedData;
+		default:
+			RunLengthIntData runData = new RunLengthIntData(cardinality, param1);
+			pos = getInts(channel, pos, runData.values);
+			getInts(channel, pos, runData.runEnds);
+			return runData;
+		}
+	}
+	/**
+	 * Reads string values starting from given file position.
+	 *
+	 * @param channel		channel of column file
+	 * @param pos			position of string lengths
+	 * @param cardinality	number of rows
+	 * @return				string column without null flags
+	 * @throws IOException
+	 */
+	static StringData readStrings(FileChannel channel, long pos,
+			int cardinality) throws IOException {
+		StringData stringData = new StringData(cardinality);
+		int[] lengths = new int[cardinality];
+		pos = getInts(channel, pos, lengths);
+		if (cardinality % 2 != 0) {
+			pos += 4;
+		}
+		// Map string bytes segment by segment, without
+		// splitting strings across segments.
+		byte[] bytes = new byte[64];
+		int row = 0;
+		while (row < cardinality) {
+			long segmentBytes = 0;
+			int endRow = row;
+			while (endRow < cardinality) {
+				long length = Math.max(lengths[endRow], 0);
+				if (endRow > row && segmentBytes + length > MAX_SEGMENT_BYTES) {
+					break;
+				}
+				segmentBytes += length;
+				++endRow;
+			}
+			MappedByteBuffer segment = map(channel, pos, segmentBytes);
+			for (; row < endRow; ++row) {
+				int length = lengths[row];
+				if (length < 0) {
+					continue;
+				}
+				if (bytes.length < length) {
+					bytes = new byte[Math.max(length, 2 * bytes.length)];
+				}
+				segment.get(bytes, 0, length);
+				stringData.data[row] = new String(bytes, 0, length,
+						StandardCharsets.UTF_8);
+			}
+			pos += segmentBytes;
+		}
+		return stringData;
+	}
+	/**
+	 * Maps given file region read-only in little-endian order.
+	 *
+	 * @param channel	channel of file to map
+	 * @param pos		start of region
+	 * @param size		number of bytes to map
+	 * @return			mapped region
+	 * @throws IOException
+	 */
+	static MappedByteBuffer map(FileChannel channel,
+			long pos, long size) throws IOException {
+		MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, pos, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+}
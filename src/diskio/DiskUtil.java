@@ -3,6 +3,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.ObjectInputStream;
 
+import data.ColumnData;
+
 /**
  * Implements utility methods for loading
  * or storing data from/to disk.
@@ -41,4 +43,25 @@ public class DiskUtil {
 			throw new Exception("Error loading object at path '" + path + "': " + e.getMessage(), e);
 		}
 	}
+	/**
+	 * Loads column data from specified path on hard disk,
+	 * using memory mapping for columns stored in the binary
+	 * columnar format and deserialization otherwise.
+	 * 
+	 * @param path	path on hard disk
+	 * @return		column data loaded from disk
+	 * @throws Exception
+	 */
+	public static ColumnData loadColumn(String path) throws Exception {
+		File file = new File(path);
+		if (file.exists() && ColumnFile.isColumnFile(path)) {
+			try {
+				return ColumnFile.read(path);
+			} catch (Exception e) {
+				throw new Exception("Error loading column at path '" + 
+						path + "': " + e.getMessage(), e);
+			}
+		}
+		return (ColumnData)loadObject(path);
+	}
 }
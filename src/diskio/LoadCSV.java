@@ -18,6 +18,7 @@ import catalog.stats.TableStats;
 import config.GeneralConfig;
 import data.ColumnData;
 import data.DoubleData;
+import data.EncodedIntData;
 import data.IntData;
 import data.LongData;
 import data.StringData;
@@ -188,20 +189,21 @@ public class LoadCSV {
 	 */
 	static void storeData(TableInfo table, List<ColumnData> data) throws Exception {
 		int nrColumns = table.columnNames.size();
-		for (int colCtr=0; colCtr<nrColumns; ++colCtr) {
+		// Columns are stored in separate files, written in parallel
+		ParallelLoadCSV.forEachParallel(nrColumns, colCtr -> {
 			// Store data on hard disk
 			String columnName = table.columnNames.get(colCtr);
 			ColumnInfo column = table.nameToCol.get(columnName);
-			ColumnData colData = data.get(colCtr);
+			ColumnData colData = EncodedIntData.encode(column, data.get(colCtr));
 			String dataPath = PathUtil.colToPath.get(column);
 			colData.store(dataPath);
 			// Load data into buffer pool if required
 			if (GeneralConfig.inMemory) {
 				String tableName = table.name;
 				ColumnRef colRef = new ColumnRef(tableName, columnName);
-				BufferManager.colToData.put(colRef, colData);
+				BufferManager.putData(colRef, colData);
 			}
-		}
+		});
 	}
 	/**
 	 * Overrides table content on hard disk for given table
@@ -216,13 +218,20 @@ public class LoadCSV {
 	public static void load(String csvPath, TableInfo table, 
 			char separator, String nullRepresentation) throws Exception {
 		System.out.println("Loading data for table " + table);
-		// Determine number of lines in CSV file
-		int cardinality = lineCount(csvPath);
-		System.out.println("Loading " + cardinality + " rows ...");
-		// Create objects for holding data
-		List<ColumnData> data = initData(table, cardinality);
-		// Parse data from CSV file
-		parseData(csvPath, table, data, separator, nullRepresentation);
+		List<ColumnData> data;
+		if (GeneralConfig.parallelLoad) {
+			// Parse chunks of CSV file on all cores
+			data = ParallelLoadCSV.parse(csvPath, table,
+					separator, nullRepresentation);
+		} else {
+			// Determine number of lines in CSV file
+			int cardinality = lineCount(csvPath);
+			System.out.println("Loading " + cardinality + " rows ...");
+			// Create objects for holding data
+			data = initData(table, cardinality);
+			// Parse data from CSV file
+			parseData(csvPath, table, data, separator, nullRepresentation);
+		}
 		// Store column data to hard disk
 		storeData(table, data);
 		System.out.println("Stored table on disk");
@@ -0,0 +1,999 @@
+package diskio;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import catalog.info.ColumnInfo;
+import catalog.info.TableInfo;
+import data.ColumnData;
+import data.DoubleData;
+import data.EncodedIntData;
+import data.IntData;
+import data.LongData;
+import data.StringData;
+import types.SQLtype;
+
+/**
+ * Parses CSV files using all cores. The file is mapped into
+ * memory and split into blocks. A first parallel pass tracks
+ * quote states and counts line breaks per block (for each
+ * possible state at the block start), which determines chunks
+ * starting at line breaks outside of quoted fields together
+ * with the index of the first row in each chunk. A second
+ * parallel pass parses the fields of each chunk from bytes
+ * directly into the arrays of the column data objects.
+ *
+ * Fields may be enclosed in double quotes (so they can
+ * contain separators and line breaks), double quotes within
+ * quoted fields are escaped by doubling them. A double quote
+ * starts a quoted field only at the beginning of a field,
+ * elsewhere outside of quoted fields it is a literal byte.
+ *
+ */
+public class ParallelLoadCSV {
+	/**
+	 * Number of bytes per block scanned in the first pass.
+	 */
+	static final int BLOCK_BYTES = 1 << 24;
+	/**
+	 * Powers of ten that are represented exactly as doubles.
+	 */
+	static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19,
+			1e20, 1e21, 1e22};
+	/**
+	 * Quote state at the beginning of a field.
+	 */
+	static final int FIELD_START = 0;
+	/**
+	 * Quote state in an unquoted field or after the closing
+	 * quote of a quoted field (quotes are literal bytes).
+	 */
+	static final int UNQUOTED = 1;
+	/**
+	 * Quote state inside a quoted field.
+	 */
+	static final int QUOTED = 2;
+	/**
+	 * Quote state after a quote inside a quoted field (which
+	 * either closes the field or starts an escaped quote).
+	 */
+	static final int CLOSED = 3;
+	/**
+	 * Number of quote states.
+	 */
+	static final int NR_STATES = 4;
+	/**
+	 * Maps quote state and byte class (other byte, quote,
+	 * separator, line break) to the next quote state.
+	 */
+	static final int[][] NEXT_STATE = {
+			{UNQUOTED, QUOTED, FIELD_START, FIELD_START},
+			{UNQUOTED, UNQUOTED, FIELD_START, FIELD_START},
+			{QUOTED, CLOSED, QUOTED, QUOTED},
+			{UNQUOTED, QUOTED, FIELD_START, FIELD_START}};
+	/**
+	 * Maps byte class and the quote states for all possible
+	 * block start states, packed into two bits per start
+	 * state, to the packed next states.
+	 */
+	static final byte[] NEXT_STATES = new byte[4 << 8];
+	static {
+		for (int states=0; states<(1 << 8); ++states) {
+			for (int byteClass=0; byteClass<4; ++byteClass) {
+				int next = 0;
+				for (int start=0; start<NR_STATES; ++start) {
+					int state = (states >>> (2 * start)) & 3;
+					next |= NEXT_STATE[state][byteClass] << (2 * start);
+				}
+				NEXT_STATES[(byteClass << 8) | states] = (byte)next;
+			}
+		}
+	}
+	/**
+	 * Result of scanning one block of the input file.
+	 */
+	static class Block {
+		/**
+		 * Offset of first block byte in file.
+		 */
+		final long start;
+		/**
+		 * Number of bytes in block.
+		 */
+		final int length;
+		/**
+		 * Quote state after the last block byte, indexed by
+		 * the quote state at the block start.
+		 */
+		final int[] endState = new int[NR_STATES];
+		/**
+		 * Offset of first line break outside of quotes in
+		 * block (-1 if none), indexed by the quote state at
+		 * the block start.
+		 */
+		final int[] firstBreak = {-1, -1, -1, -1};
+		/**
+		 * Number of line breaks outside of quotes in block,
+		 * indexed by the quote state at the block start.
+		 */
+		final int[] nrBreaks = new int[NR_STATES];
+
+		Block(long start, int length) {
+			this.start = start;
+			this.length = length;
+		}
+	}
+	/**
+	 * Chunk of input file containing complete rows.
+	 */
+	static class Chunk {
+		/**
+		 * Offset of first chunk byte in file.
+		 */
+		final long start;
+		/**
+		 * Offset after last chunk byte in file.
+		 */
+		long end;
+		/**
+		 * Index of first row in chunk.
+		 */
+		final int firstRow;
+
+		Chunk(long start, int firstRow) {
+			this.start = start;
+			this.firstRow = firstRow;
+		}
+	}
+	/**
+	 * Parses the fields of one chunk and keeps state
+	 * that is reused across fields.
+	 */
+	static class ChunkParser {
+		/**
+		 * Types of table columns.
+		 */
+		final SQLtype[] columnTypes;
+		/**
+		 * Data of table columns.
+		 */
+		final List<ColumnData> data;
+		/**
+		 * Separates fields in a row.
+		 */
+		final byte separator;
+		/**
+		 * Representation of null values.
+		 */
+		final String nullRepresentation;
+		/**
+		 * UTF-8 bytes representing null values.
+		 */
+		final byte[] nullBytes;
+		/**
+		 * Local time zone, used for dates and timestamps.
+		 */
+		final ZoneId zone = ZoneId.systemDefault();
+		/**
+		 * Holds bytes of quoted fields without quotes.
+		 */
+		byte[] unquoted = new byte[64];
+		/**
+		 * Contains bytes of the current field (the chunk or,
+		 * for quoted fields, the array of unquoted bytes).
+		 */
+		byte[] field;
+		/**
+		 * Position of first byte of current field.
+		 */
+		int fieldStart;
+		/**
+		 * Number of bytes in current field.
+		 */
+		int fieldLength;
+		/**
+		 * Year, month, and day of the last parsed date
+		 * (dates repeat often within a chunk).
+		 */
+		int lastYear = -1, lastMonth = -1, lastDay = -1;
+		/**
+		 * Seconds since epoch at the last parsed date.
+		 */
+		long lastDaySeconds;
+		/**
+		 * Whether the last parsed date has 24 hours (i.e., no
+		 * change of the time zone offset on that day).
+		 */
+		boolean lastDayRegular;
+
+		ChunkParser(SQLtype[] columnTypes, List<ColumnData> data,
+				char separator, String nullRepresentation) {
+			this.columnTypes = columnTypes;
+			this.data = data;
+			this.separator = (byte)separator;
+			this.nullRepresentation = nullRepresentation;
+			this.nullBytes = nullRepresentation.getBytes(
+					StandardCharsets.UTF_8);
+		}
+		/**
+		 * Parses all rows of the given chunk.
+		 *
+		 * @param buffer	mapped bytes of chunk
+		 * @param firstRow	index of first row in chunk
+		 * @throws Exception
+		 */
+		void parse(byte[] bytes, int limit, int firstRow) throws Exception {
+			int nrColumns = columnTypes.length;
+			// Collect null flags locally since bit sets are not thread-safe
+			BitSet[] localNulls = new BitSet[nrColumns];
+			for (int colCtr=0; colCtr<nrColumns; ++colCtr) {
+				localNulls[colCtr] = new BitSet();
+			}
+			int pos = 0;
+			int row = firstRow;
+			while (pos < limit) {
+				for (int colCtr=0; colCtr<nrColumns; ++colCtr) {
+					pos = readField(bytes, pos, limit);
+					int terminator = pos > limit ? '\n' : bytes[pos - 1];
+					if (terminator != separator && colCtr < nrColumns - 1) {
+						throw new Exception("Line " + row + " has only " +
+								(colCtr + 1) + " of " + nrColumns + " fields");
+					}
+					boolean isNull = fieldLength == 0 || isNullField();
+					if (isNull) {
+						localNulls[colCtr].set(row - firstRow);
+					}
+					try {
+						parseField(colCtr, row, isNull);
+					} catch (Exception e) {
+						System.err.println("Error parsing field " +
+								fieldString() + " in column " + colCtr +
+								" of line " + row);
+						throw e;
+					}
+					// Skip additional fields in this row
+					if (colCtr == nrColumns - 1) {
+						while (terminator == separator) {
+							pos = readField(bytes, pos, limit);
+							terminator = pos > limit ? '\n' : bytes[pos - 1];
+						}
+					}
+				}
+				++row;
+			}
+			// Transfer null flags into column data
+			for (int colCtr=0; colCtr<nrColumns; ++colCtr) {
+				BitSet isNull = data.get(colCtr).isNull;
+				BitSet local = localNulls[colCtr];
+				if (!local.isEmpty()) {
+					synchronized (isNull) {
+						for (int i = local.nextSetBit(0); i >= 0;
+								i = local.nextSetBit(i + 1)) {
+							isNull.set(firstRow + i);
+						}
+					}
+				}
+			}
+		}
+		/**
+		 * Copies the field starting at given position into
+		 * the field buffer, removing enclosing quotes and
+		 * a carriage return before the line break.
+		 *
+		 * @param bytes		bytes of chunk
+		 * @param pos		position of first field byte
+		 * @param limit		position after last byte of chunk
+		 * @return			position after the field terminator
+		 * 					(limit + 1 at the end of the chunk)
+		 * @throws Exception
+		 */
+		int readField(byte[] bytes, int pos,
+				int limit) throws Exception {
+			fieldLength = 0;
+			if (pos < limit && bytes[pos] == '"') {
+				field = unquoted;
+				fieldStart = 0;
+				++pos;
+				while (true) {
+					if (pos >= limit) {
+						throw new Exception("Unterminated quoted field");
+					}
+					byte b = bytes[pos++];
+					if (b == '"') {
+						if (pos < limit && bytes[pos] == '"') {
+							++pos;
+						} else {
+							break;
+						}
+					}
+					append(b);
+				}
+				// Keep bytes between closing quote and separator
+				while (pos < limit && bytes[pos] != separator &&
+						bytes[pos] != '\n') {
+					append(bytes[pos++]);
+				}
+			} else {
+				// Refer to unquoted field in chunk without copying
+				field = bytes;
+				fieldStart = pos;
+				while (pos < limit && bytes[pos] != separator &&
+						bytes[pos] != '\n') {
+					++pos;
+				}
+				fieldLength = pos - fieldStart;
+			}
+			boolean endOfLine = pos >= limit || bytes[pos] == '\n';
+			if (endOfLine && fieldLength > 0 &&
+					at(fieldLength - 1) == '\r') {
+				--fieldLength;
+			}
+			return pos + 1;
+		}
+		/**
+		 * Appends byte to current quoted field.
+		 *
+		 * @param b	byte to append
+		 */
+		void append(byte b) {
+			if (fieldLength == unquoted.length) {
+				unquoted = Arrays.copyOf(unquoted, 2 * unquoted.length);
+				field = unquoted;
+			}
+			unquoted[fieldLength++] = b;
+		}
+		/**
+		 * Returns byte of current field at given position.
+		 *
+		 * @param pos	position within field
+		 * @return		byte at that position
+		 */
+		byte at(int pos) {
+			return field[fieldStart + pos];
+		}
+		/**
+		 * Returns true iff the current field matches the
+		 * representation of null values.
+		 *
+		 * @return	true iff field represents null
+		 */
+		boolean isNullField() {
+			if (fieldLength != nullBytes.length) {
+				return false;
+			}
+			for (int i=0; i<fieldLength; ++i) {
+				if (at(i) != nullBytes[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+		/**
+		 * Returns current field as string.
+		 *
+		 * @return	string decoded from field bytes
+		 */
+		String fieldString() {
+			return new String(field, fieldStart, fieldLength,
+					StandardCharsets.UTF_8);
+		}
+		/**
+		 * Stores value of current field in given column.
+		 *
+		 * @param colCtr	index of column
+		 * @param row		index of row
+		 * @param isNull	whether the field represents null
+		 * @throws Exception
+		 */
+		void parseField(int colCtr, int row, boolean isNull) throws Exception {
+			switch (columnTypes[colCtr]) {
+			case ANY_TYPE:
+				throw new Exception("Cannot parse undetermined type");
+			case BYTE:
+			case INT:
+				IntData intData = ((IntData)data.get(colCtr));
+				intData.data[row] = isNull?0:(int)parseLong(
+						Integer.MIN_VALUE, Integer.MAX_VALUE);
+				break;
+			case LONG:
+				LongData longData = ((LongData)data.get(colCtr));
+				longData.data[row] = isNull?0:parseLong(
+						Long.MIN_VALUE, Long.MAX_VALUE);
+				break;
+			case DOUBLE:
+				DoubleData doubleData = ((DoubleData)data.get(colCtr));
+				doubleData.data[row] = isNull?0:parseDouble();
+				break;
+			case STRING:
+				StringData stringData = ((StringData)data.get(colCtr));
+				stringData.data[row] = isNull?nullRepresentation:fieldString();
+				break;
+			case DATE:
+				IntData dateData = ((IntData)data.get(colCtr));
+				if (!isNull) {
+					dateData.data[row] = (int)parseDate();
+				}
+				break;
+			case TIME:
+				IntData timeData = ((IntData)data.get(colCtr));
+				if (!isNull) {
+					timeData.data[row] = (int)parseTime();
+				}
+				break;
+			case TIMESTAMP:
+				IntData tsData = ((IntData)data.get(colCtr));
+				if (!isNull) {
+					tsData.data[row] = (int)parseTimestamp();
+				}
+				break;
+			default:
+				throw new Exception("Unsupported type: " +
+						columnTypes[colCtr]);
+			}
+		}
+		/**
+		 * Parses current field as integer number in given
+		 * range, following the rules of Long.parseLong.
+		 *
+		 * @param min	minimal admissible value
+		 * @param max	maximal admissible value
+		 * @return		parsed number
+		 */
+		long parseLong(long min, long max) {
+			int i = 0;
+			boolean negative = false;
+			if (fieldLength > 0 && (at(0) == '-' || at(0) == '+')) {
+				negative = at(0) == '-';
+				++i;
+			}
+			if (i == fieldLength) {
+				throw new NumberFormatException(
+						"For input string: \"" + fieldString() + "\"");
+			}
+			// Accumulate negatively to cover the minimal value
+			long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+			long multMin = limit / 10;
+			long result = 0;
+			for (; i<fieldLength; ++i) {
+				int digit = at(i) - '0';
+				if (digit < 0 || digit > 9 || result < multMin) {
+					throw new NumberFormatException(
+							"For input string: \"" + fieldString() + "\"");
+				}
+				result *= 10;
+				if (result < limit + digit) {
+					throw new NumberFormatException(
+							"For input string: \"" + fieldString() + "\"");
+				}
+				result -= digit;
+			}
+			result = negative ? result : -result;
+			if (result < min || result > max) {
+				throw new NumberFormatException("Value out of range. " +
+						"Value:\"" + fieldString() + "\"");
+			}
+			return result;
+		}
+		/**
+		 * Parses current field as floating point number. Numbers
+		 * with at most 15 significant digits and small exponents
+		 * are converted exactly via one multiplication or division,
+		 * all others via Double.parseDouble.
+		 *
+		 * @return	parsed number
+		 */
+		double parseDouble() {
+			int i = 0;
+			boolean negative = false;
+			if (fieldLength > 0 && (at(0) == '-' || at(0) == '+')) {
+				negative = at(0) == '-';
+				++i;
+			}
+			long mantissa = 0;
+			int nrDigitChars = 0;
+			int nrDigits = 0;
+			int exponent = 0;
+			boolean fraction = false;
+			for (; i<fieldLength; ++i) {
+				byte b = at(i);
+				if (b >= '0' && b <= '9') {
+					++nrDigitChars;
+					if (nrDigits > 0 || b != '0') {
+						++nrDigits;
+					}
+					mantissa = 10 * mantissa + (b - '0');
+					if (fraction) {
+						--exponent;
+					}
+				} else if (b == '.' && !fraction) {
+					fraction = true;
+				} else {
+					break;
+				}
+			}
+			if (i < fieldLength && (at(i) == 'e' || at(i) == 'E')) {
+				int j = i + 1;
+				boolean negativeExp = false;
+				if (j < fieldLength && (at(j) == '-' || at(j) == '+')) {
+					negativeExp = at(j) == '-';
+					++j;
+				}
+				int exp = 0;
+				int start = j;
+				for (; j<fieldLength && j-start<4; ++j) {
+					int digit = at(j) - '0';
+					if (digit < 0 || digit > 9) {
+						break;
+					}
+					exp = 10 * exp + digit;
+				}
+				if (j > start) {
+					exponent += negativeExp ? -exp : exp;
+					i = j;
+				}
+			}
+			if (i == fieldLength && nrDigitChars > 0 && nrDigits <= 15 &&
+					exponent >= -22 && exponent <= 22) {
+				double value = exponent >= 0 ?
+						mantissa * POWERS_OF_TEN[exponent] :
+						mantissa / POWERS_OF_TEN[-exponent];
+				return negative ? -value : value;
+			}
+			return Double.parseDouble(fieldString());
+		}
+		/**
+		 * Parses digits of current field at given position.
+		 *
+		 * @param pos		position of first digit
+		 * @param nrDigits	number of digits
+		 * @return			parsed number or -1 if no digits
+		 */
+		int digits(int pos, int nrDigits) {
+			if (pos + nrDigits > fieldLength) {
+				return -1;
+			}
+			int result = 0;
+			for (int i=pos; i<pos+nrDigits; ++i) {
+				int digit = at(i) - '0';
+				if (digit < 0 || digit > 9) {
+					return -1;
+				}
+				result = 10 * result + digit;
+			}
+			return result;
+		}
+		/**
+		 * Returns number of digits at given position of
+		 * the current field, followed by given delimiter
+		 * (or the field end if the delimiter is zero).
+		 *
+		 * @param pos		position of first digit
+		 * @param delimiter	expected after digits
+		 * @return			number of digits or -1
+		 */
+		int nrDigits(int pos, byte delimiter) {
+			int end = pos;
+			while (end < fieldLength && at(end) >= '0' &&
+					at(end) <= '9') {
+				++end;
+			}
+			boolean delimited = delimiter == 0 ? end == fieldLength :
+				end < fieldLength && at(end) == delimiter;
+			return end > pos && delimited ? end - pos : -1;
+		}
+		/**
+		 * Returns seconds since epoch at local midnight of given
+		 * date, normalizing days beyond the end of the month like
+		 * Date.valueOf does.
+		 *
+		 * @param year	year of date
+		 * @param month	month of year (1 to 12)
+		 * @param day	day of month (1 to 31)
+		 * @return		seconds since epoch
+		 */
+		long daySeconds(int year, int month, int day) {
+			if (year != lastYear || month != lastMonth || day != lastDay) {
+				lastYear = year;
+				lastMonth = month;
+				lastDay = day;
+				LocalDate date = LocalDate.of(year, month, 1).plusDays(day - 1);
+				lastDaySeconds = date.atStartOfDay(zone).toEpochSecond();
+				long nextDaySeconds = date.plusDays(1).
+						atStartOfDay(zone).toEpochSecond();
+				lastDayRegular = nextDaySeconds - lastDaySeconds == 86400;
+			}
+			return lastDaySeconds;
+		}
+		/**
+		 * Parses date in format yyyy-[m]m-[d]d starting at given
+		 * position of current field.
+		 *
+		 * @param pos		position of first year digit
+		 * @param delimiter	expected after date (zero for field end)
+		 * @return			seconds since epoch or -1 if malformed
+		 */
+		long dateAt(int pos, byte delimiter) {
+			if (nrDigits(pos, (byte)'-') != 4) {
+				return -1;
+			}
+			int year = digits(pos, 4);
+			int monthDigits = nrDigits(pos + 5, (byte)'-');
+			if (monthDigits < 1 || monthDigits > 2) {
+				return -1;
+			}
+			int month = digits(pos + 5, monthDigits);
+			int dayPos = pos + 6 + monthDigits;
+			int dayDigits = nrDigits(dayPos, delimiter);
+			if (dayDigits < 1 || dayDigits > 2) {
+				return -1;
+			}
+			int day = digits(dayPos, dayDigits);
+			if (month < 1 || month > 12 || day < 1 || day > 31) {
+				return -1;
+			}
+			return daySeconds(year, month, day);
+		}
+		/**
+		 * Parses current field as date (like Date.valueOf).
+		 *
+		 * @return	seconds since epoch at local midnight
+		 */
+		long parseDate() {
+			long seconds = dateAt(0, (byte)0);
+			if (seconds == -1) {
+				seconds = Date.valueOf(fieldString()).getTime() / 1000;
+			}
+			return seconds;
+		}
+		/**
+		 * Parses current field as time (like Time.valueOf).
+		 *
+		 * @return	seconds since epoch at this time on 1970-01-01
+		 */
+		long parseTime() {
+			if (fieldLength == 8 && at(2) == ':' && at(5) == ':') {
+				int hour = digits(0, 2);
+				int minute = digits(3, 2);
+				int second = digits(6, 2);
+				if (hour >= 0 && minute >= 0 && second >= 0) {
+					long daySeconds = daySeconds(1970, 1, 1);
+					if (lastDayRegular && hour < 24 && minute < 60 &&
+							second < 60) {
+						return daySeconds + 3600 * hour + 60 * minute + second;
+					}
+					return LocalDateTime.of(1970, 1, 1, 0, 0).
+							plusHours(hour).plusMinutes(minute).
+							plusSeconds(second).atZone(zone).
+							toEpochSecond();
+				}
+			}
+			return Time.valueOf(fieldString()).getTime() / 1000;
+		}
+		/**
+		 * Parses current field as timestamp (like Timestamp.valueOf)
+		 * in format yyyy-[m]m-[d]d hh:mm:ss[.f...].
+		 *
+		 * @return	seconds since epoch, rounded towards zero
+		 */
+		long parseTimestamp() {
+			int timePos = 0;
+			while (timePos < fieldLength && at(timePos) != ' ') {
+				++timePos;
+			}
+			++timePos;
+			long daySeconds = dateAt(0, (byte)' ');
+			if (daySeconds != -1 && timePos + 8 <= fieldLength &&
+					at(timePos + 2) == ':' && at(timePos + 5) == ':') {
+				int hour = digits(timePos, 2);
+				int minute = digits(timePos + 3, 2);
+				int second = digits(timePos + 6, 2);
+				int fractionPos = timePos + 8;
+				int fractionDigits = fractionPos == fieldLength ? 0 :
+					at(fractionPos) == '.' ?
+							nrDigits(fractionPos + 1, (byte)0) : -1;
+				if (hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59 &&
+						second >= 0 && second <= 59 && fractionDigits <= 9 &&
+						(fractionDigits >= 0 || fractionPos == fieldLength)) {
+					int nanos = fractionDigits > 0 ?
+							digits(fractionPos + 1, fractionDigits) : 0;
+					for (int i=fractionDigits; i<9; ++i) {
+						nanos *= 10;
+					}
+					long seconds = daySeconds +
+							3600 * hour + 60 * minute + second;
+					// Time zone offset changes on this day (rare)
+					if (!lastDayRegular) {
+						seconds = LocalDateTime.of(lastYear, lastMonth, 1,
+								hour, minute, second).plusDays(lastDay - 1).
+								atZone(zone).toEpochSecond();
+					}
+					// Timestamp.getTime()/1000 rounds towards zero
+					if (seconds < 0 && nanos >= 1000000) {
+						++seconds;
+					}
+					return seconds;
+				}
+			}
+			return Timestamp.valueOf(fieldString()).getTime() / 1000;
+		}
+	}
+	/**
+	 * Maps given range of input file and copies it into a new
+	 * buffer (array accesses are cheaper than accesses to the
+	 * mapped buffer while parsing). The buffer is only used by
+	 * the calling task and released once the task finishes.
+	 *
+	 * @param channel	channel of input file
+	 * @param start		offset of first byte to read
+	 * @param length	number of bytes to read
+	 * @return			buffer containing read bytes
+	 * @throws Exception
+	 */
+	static byte[] read(FileChannel channel, long start,
+			int length) throws Exception {
+		byte[] bytes = new byte[length];
+		MappedByteBuffer buffer = channel.map(
+				MapMode.READ_ONLY, start, length);
+		buffer.get(bytes, 0, length);
+		return bytes;
+	}
+	/**
+	 * Scans block of input file for quotes and line breaks,
+	 * following the quote states for all possible states at
+	 * the block start at once. Quotes are interpreted as by
+	 * the field parser.
+	 *
+	 * @param channel	channel of input file
+	 * @param block		block to scan
+	 * @param separator	sign separating fields
+	 * @throws Exception
+	 */
+	static void scanBlock(FileChannel channel, Block block,
+			byte separator) throws Exception {
+		byte[] bytes = read(channel, block.start, block.length);
+		// Start state i is initially in state i
+		int states = FIELD_START | (UNQUOTED << 2) |
+				(QUOTED << 4) | (CLOSED << 6);
+		for (int i=0; i<block.length; ++i) {
+			byte b = bytes[i];
+			int byteClass = 0;
+			if (b == '"') {
+				byteClass = 1;
+			} else if (b == separator) {
+				byteClass = 2;
+			} else if (b == '\n') {
+				byteClass = 3;
+				for (int start=0; start<NR_STATES; ++start) {
+					if (((states >>> (2 * start)) & 3) != QUOTED) {
+						if (block.firstBreak[start] < 0) {
+							block.firstBreak[start] = i;
+						}
+						++block.nrBreaks[start];
+					}
+				}
+			}
+			states = NEXT_STATES[(byteClass << 8) | states] & 0xFF;
+		}
+		for (int start=0; start<NR_STATES; ++start) {
+			block.endState[start] = (states >>> (2 * start)) & 3;
+		}
+	}
+	/**
+	 * Divides input file into chunks of complete rows.
+	 *
+	 * @param channel	channel of input file
+	 * @param fileSize	size of input file in bytes
+	 * @param separator	sign separating fields
+	 * @param nrRows	stores total number of rows at index 0
+	 * @return			chunks of input file in file order
+	 * @throws Exception
+	 */
+	static List<Chunk> chunks(FileChannel channel, long fileSize,
+			byte separator, long[] nrRows) throws Exception {
+		// Scan blocks in parallel
+		int nrBlocks = (int)((fileSize + BLOCK_BYTES - 1) / BLOCK_BYTES);
+		Block[] blocks = new Block[nrBlocks];
+		for (int blockCtr=0; blockCtr<nrBlocks; ++blockCtr) {
+			long start = (long)blockCtr * BLOCK_BYTES;
+			int length = (int)Math.min(BLOCK_BYTES, fileSize - start);
+			blocks[blockCtr] = new Block(start, length);
+		}
+		forEachParallel(nrBlocks, blockCtr ->
+			scanBlock(channel, blocks[blockCtr], separator));
+		// Derive chunk boundaries and first rows from quote states
+		List<Chunk> chunks = new ArrayList<>();
+		chunks.add(new Chunk(0, 0));
+		long rowCtr = 0;
+		int state = FIELD_START;
+		for (int blockCtr=0; blockCtr<nrBlocks; ++blockCtr) {
+			Block block = blocks[blockCtr];
+			int firstBreak = block.firstBreak[state];
+			long chunkStart = block.start + firstBreak + 1;
+			if (blockCtr > 0 && firstBreak >= 0 && chunkStart < fileSize) {
+				chunks.get(chunks.size() - 1).end = chunkStart;
+				chunks.add(new Chunk(chunkStart, (int)(rowCtr + 1)));
+			}
+			rowCtr += block.nrBreaks[state];
+			state = block.endState[state];
+		}
+		chunks.get(chunks.size() - 1).end = fileSize;
+		// Last line may not be terminated by a line break
+		if (fileSize > 0) {
+			MappedByteBuffer last = channel.map(
+					MapMode.READ_ONLY, fileSize - 1, 1);
+			if (last.get(0) != '\n') {
+				++rowCtr;
+			}
+		}
+		if (rowCtr > Integer.MAX_VALUE) {
+			throw new Exception("Too many rows: " + rowCtr);
+		}
+		nrRows[0] = rowCtr;
+		return chunks;
+	}
+	/**
+	 * Parses data for table from CSV file.
+	 *
+	 * @param csvPath				path to source CSV file
+	 * @param table					table for which to parse data
+	 * @param separator				sign separating fields in .csv file
+	 * @param nullRepresentation	representation of null values
+	 * @return						parsed data of table columns
+	 * @throws Exception
+	 */
+	public static List<ColumnData> parse(String csvPath, TableInfo table,
+			char separator, String nullRepresentation) throws Exception {
+		return parse(csvPath, table, separator, nullRepresentation, null);
+	}
+	/**
+	 * Parses data for table from CSV file, placing the parsed rows
+	 * after the rows of given prefix columns.
+	 *
+	 * @param csvPath				path to source CSV file
+	 * @param table					table for which to parse data
+	 * @param separator				sign separating fields in .csv file
+	 * @param nullRepresentation	representation of null values
+	 * @param prefix				existing table columns or null
+	 * @return						prefix rows followed by parsed rows
+	 * @throws Exception
+	 */
+	public static List<ColumnData> parse(String csvPath, TableInfo table,
+			char separator, String nullRepresentation,
+			List<ColumnData> prefix) throws Exception {
+		long startMillis = System.currentTimeMillis();
+		// Extract column types for quick access
+		int nrColumns = table.columnNames.size();
+		SQLtype[] columnTypes = new SQLtype[nrColumns];
+		for (int colCtr=0; colCtr<nrColumns; ++colCtr) {
+			String colName = table.columnNames.get(colCtr);
+			ColumnInfo column = table.nameToCol.get(colName);
+			columnTypes[colCtr] = column.type;
+		}
+		try (FileChannel channel = FileChannel.open(Paths.get(csvPath),
+				StandardOpenOption.READ)) {
+			long fileSize = channel.size();
+			// Divide file into chunks of rows
+			long[] nrRows = new long[1];
+			List<Chunk> chunks = chunks(channel, fileSize,
+					(byte)separator, nrRows);
+			int cardinality = (int)nrRows[0];
+			System.out.println("Loading " + cardinality + " rows in " +
+					chunks.size() + " chunks ...");
+			// Create objects for holding data
+			int prefixCardinality = prefix == null || prefix.isEmpty() ?
+					0 : prefix.get(0).cardinality;
+			if ((long)prefixCardinality + cardinality > Integer.MAX_VALUE) {
+				throw new Exception("Too many rows: " + prefixCardinality +
+						" + " + cardinality);
+			}
+			List<ColumnData> data = LoadCSV.initData(table,
+					prefixCardinality + cardinality);
+			if (prefixCardinality > 0) {
+				forEachParallel(nrColumns, colCtr ->
+					copyPrefix(prefix.get(colCtr), data.get(colCtr)));
+			}
+			// Parse chunks in parallel
+			forEachParallel(chunks.size(), chunkCtr -> {
+				Chunk chunk = chunks.get(chunkCtr);
+				long length = chunk.end - chunk.start;
+				if (length > Integer.MAX_VALUE) {
+					throw new Exception("Line exceeds 2 GB");
+				}
+				byte[] bytes = read(channel, chunk.start, (int)length);
+				ChunkParser parser = new ChunkParser(columnTypes,
+						data, separator, nullRepresentation);
+				parser.parse(bytes, (int)length,
+						prefixCardinality + chunk.firstRow);
+			});
+			// Report throughput
+			long totalMillis = Math.max(1,
+					System.currentTimeMillis() - startMillis);
+			double megabytes = fileSize / (1024.0 * 1024.0);
+			System.out.println(String.format("Parsed %d rows (%.1f MB) " +
+					"in %d ms (%.1f MB/s)", cardinality, megabytes,
+					totalMillis, megabytes * 1000 / totalMillis));
+			return data;
+		}
+	}
+	/**
+	 * Copies all rows of source column to the first rows
+	 * of target column (of the same type, encoded integer
+	 * columns are decoded).
+	 *
+	 * @param source	column to copy
+	 * @param target	column with at least as many rows
+	 * @throws Exception
+	 */
+	static void copyPrefix(ColumnData source, ColumnData target) throws Exception {
+		int cardinality = source.cardinality;
+		if (source instanceof IntData && target instanceof IntData) {
+			System.arraycopy(((IntData)source).data, 0,
+					((IntData)target).data, 0, cardinality);
+		} else if (source instanceof EncodedIntData && target instanceof IntData) {
+			((EncodedIntData)source).decode(0, cardinality,
+					((IntData)target).data, 0);
+		} else if (source instanceof LongData && target instanceof LongData) {
+			System.arraycopy(((LongData)source).data, 0,
+					((LongData)target).data, 0, cardinality);
+		} else if (source instanceof DoubleData && target instanceof DoubleData) {
+			System.arraycopy(((DoubleData)source).data, 0,
+					((DoubleData)target).data, 0, cardinality);
+		} else if (source instanceof StringData && target instanceof StringData) {
+			System.arraycopy(((StringData)source).data, 0,
+					((StringData)target).data, 0, cardinality);
+		} else {
+			throw new Exception("Cannot extend " + source.getClass().
+					getSimpleName() + " by " + target.getClass().getSimpleName());
+		}
+		target.isNull.or(source.isNull);
+	}
+	/**
+	 * Task that may throw a checked exception.
+	 */
+	interface IndexTask {
+		void run(int index) throws Exception;
+	}
+	/**
+	 * Executes task for each index in parallel and rethrows
+	 * the first exception raised by any task.
+	 *
+	 * @param nrIndices	number of indices
+	 * @param task		task to execute per index
+	 * @throws Exception
+	 */
+	static void forEachParallel(int nrIndices,
+			IndexTask task) throws Exception {
+		AtomicReference<Exception> error = new AtomicReference<>();
+		IntStream.range(0, nrIndices).parallel().forEach(index -> {
+			if (error.get() != null) {
+				return;
+			}
+			try {
+				task.run(index);
+			} catch (Exception e) {
+				error.compareAndSet(null, e);
+			}
+		});
+		if (error.get() != null) {
+			throw error.get();
+		}
+	}
+}
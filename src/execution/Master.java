@@ -72,62 +72,68 @@ public class Master {
             System.out.println("Sub-query sequence generated during unnesting: ");
             System.out.println(unnestor.unnestedQueries);
         }
-        // Process sub-queries in order
-        Set<String> subQueryResults = new HashSet<>();
-        int nrSubQueries = unnestor.unnestedQueries.size();
-        for (int subQueryCtr = 0; subQueryCtr < nrSubQueries; ++subQueryCtr) {
-            // Retrieve next sub-query
-            PlainSelect subQuery = unnestor.unnestedQueries.get(subQueryCtr);
-            Set<String> temporary = unnestor.temporaryTables.get(subQueryCtr);
-            // Analyze sub-query
-            QueryInfo subQueryInfo = new QueryInfo(subQuery, temporary, explain,
-                    plotAtMost, plotEvery, plotDir);
-            PreConfig.FILTER = PreConfig.PRE_FILTER;
-            // Filter, projection, and indexing for join phase
-            Preprocessor.performance = true;
-            Context context = Preprocessor.process(subQueryInfo);
-            if (Preprocessor.terminated) {
-                JoinStats.exeTime = 0;
-                JoinStats.subExeTime.add(JoinStats.exeTime);
-                PostStats.postMillis = 0;
-                PostStats.subPostMillis.add(PostStats.postMillis);
-                String targetRelName = NamingConfig.JOINED_NAME;
-                Materialize.execute(new HashSet<>(), subQueryInfo.aliasToIndex,
-                        subQueryInfo.colsForPostProcessing,
-                        context.columnMapping, targetRelName);
-//            // Update processing context
-                context.columnMapping.clear();
-                for (ColumnRef postCol : subQueryInfo.colsForPostProcessing) {
-                    String newColName = postCol.aliasName + "." + postCol.columnName;
-                    ColumnRef newRef = new ColumnRef(targetRelName, newColName);
-                    context.columnMapping.put(postCol, newRef);
+        // Columns used by sub-queries stay in the buffer until done
+        BufferManager.startQuery();
+        try {
+            // Process sub-queries in order
+            Set<String> subQueryResults = new HashSet<>();
+            int nrSubQueries = unnestor.unnestedQueries.size();
+            for (int subQueryCtr = 0; subQueryCtr < nrSubQueries; ++subQueryCtr) {
+                // Retrieve next sub-query
+                PlainSelect subQuery = unnestor.unnestedQueries.get(subQueryCtr);
+                Set<String> temporary = unnestor.temporaryTables.get(subQueryCtr);
+                // Analyze sub-query
+                QueryInfo subQueryInfo = new QueryInfo(subQuery, temporary, explain,
+                        plotAtMost, plotEvery, plotDir);
+                PreConfig.FILTER = PreConfig.PRE_FILTER;
+                // Filter, projection, and indexing for join phase
+                Preprocessor.performance = true;
+                Context context = Preprocessor.process(subQueryInfo);
+                if (Preprocessor.terminated) {
+                    JoinStats.exeTime = 0;
+                    JoinStats.subExeTime.add(JoinStats.exeTime);
+                    PostStats.postMillis = 0;
+                    PostStats.subPostMillis.add(PostStats.postMillis);
+                    String targetRelName = NamingConfig.JOINED_NAME;
+                    Materialize.execute(new HashSet<>(), subQueryInfo.aliasToIndex,
+                            subQueryInfo.colsForPostProcessing,
+                            context.columnMapping, targetRelName);
+    //            // Update processing context
+                    context.columnMapping.clear();
+                    for (ColumnRef postCol : subQueryInfo.colsForPostProcessing) {
+                        String newColName = postCol.aliasName + "." + postCol.columnName;
+                        ColumnRef newRef = new ColumnRef(targetRelName, newColName);
+                        context.columnMapping.put(postCol, newRef);
+                    }
+                    JoinStats.subMateriazed.add(0L);
+                    // Store number of join result tuples
+                    JoinStats.skinnerJoinCards.add(0);
+                    break;
                 }
-                JoinStats.subMateriazed.add(0L);
-                // Store number of join result tuples
-                JoinStats.skinnerJoinCards.add(0);
-                break;
-            }
 
-            // Convert nonEqui-predicates into nodes
-            if (subQueryInfo.nonEquiJoinPreds.size() > 0) {
-                subQueryInfo.convertNonEquiPredicates(context);
-            }
-            // Join processing
-            ParallelJoinProcessor.process(subQueryInfo, context);
+                // Convert nonEqui-predicates into nodes
+                if (subQueryInfo.nonEquiJoinPreds.size() > 0) {
+                    subQueryInfo.convertNonEquiPredicates(context);
+                }
+                // Join processing
+                ParallelJoinProcessor.process(subQueryInfo, context);
 
-            // Determine result table name and properties
-            boolean lastSubQuery = subQueryCtr == nrSubQueries - 1;
-            boolean tempResult = lastSubQuery ? finalTempResult : true;
-            String resultRel = subQuery.getIntoTables().get(0).getName();
-            // Aggregation, grouping, and sorting if required
-            PostProcessor.process(subQueryInfo, context,
-                    resultRel, tempResult);
-            System.out.println(Arrays.toString(PostStats.subPostMillis.toArray()));
-//			RelationPrinter.print(resultRel);
-            // Clean up intermediate results except result table
-            subQueryResults.add(resultRel);
-            BufferManager.unloadTempData(subQueryResults);
-            CatalogManager.removeTempTables(subQueryResults);
+                // Determine result table name and properties
+                boolean lastSubQuery = subQueryCtr == nrSubQueries - 1;
+                boolean tempResult = lastSubQuery ? finalTempResult : true;
+                String resultRel = subQuery.getIntoTables().get(0).getName();
+                // Aggregation, grouping, and sorting if required
+                PostProcessor.process(subQueryInfo, context,
+                        resultRel, tempResult);
+                System.out.println(Arrays.toString(PostStats.subPostMillis.toArray()));
+    //			RelationPrinter.print(resultRel);
+                // Clean up intermediate results except result table
+                subQueryResults.add(resultRel);
+                BufferManager.unloadTempData(subQueryResults);
+                CatalogManager.removeTempTables(subQueryResults);
+            }
+        } finally {
+            BufferManager.finishQuery();
         }
     }
 
@@ -24,6 +24,10 @@ public class AggInfo {
 	 * SQL representation of aggregate with input.
 	 */
 	public final String SQLstring;
+	/**
+	 * Whether aggregate is applied to distinct input values.
+	 */
+	public final boolean isDistinct;
 	/**
 	 * Initialize aggregate info from given expression.
 	 * 
@@ -36,6 +40,7 @@ public class AggInfo {
 		String fctName = agg.getName().toLowerCase();
 		this.aggFunction = SQLfunction(fctName);
 		this.SQLstring = agg.toString();
+		this.isDistinct = agg.isDistinct();
 	}
 	/**
 	 * Translates an SQL function name into the internal representation.
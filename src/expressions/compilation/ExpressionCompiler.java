@@ -23,6 +23,7 @@ import catalog.CatalogManager;
 import catalog.info.ColumnInfo;
 import config.LoggingConfig;
 import data.DoubleData;
+import data.EncodedIntData;
 import data.IntData;
 import data.LongData;
 import data.StringData;
@@ -120,6 +121,10 @@ import org.objectweb.asm.util.TraceMethodVisitor;
  *
  */
 public class ExpressionCompiler extends SkinnerVisitor {
+	/**
+	 * Type descriptor of fields holding encoded integer columns.
+	 */
+	static final String ENCODED_DESCRIPTOR = "Ldata/EncodedIntData;";
 	/**
 	 * Used for generating a unique class name for newly compiled
 	 * expressions. Is incremented by one after each compilation.
@@ -313,7 +318,7 @@ public class ExpressionCompiler extends SkinnerVisitor {
 			String typeDescriptor = null;
 			switch (javaType) {
 			case INT:
-				typeDescriptor = "[I";
+				typeDescriptor = isEncoded(dbRef) ? ENCODED_DESCRIPTOR : "[I";
 				break;
 			case LONG:
 				typeDescriptor = "[J";
@@ -354,6 +359,29 @@ public class ExpressionCompiler extends SkinnerVisitor {
 		IntData intData = (IntData)BufferManager.colToData.get(columnRef);
 		return intData.data;
 	}
+	/**
+	 * Returns encoded integer column.
+	 * 
+	 * @param tableName		name of table to retrieve
+	 * @param columnName	name of column to retrieve
+	 * @return				encoded integer column
+	 */
+	public static EncodedIntData getEncodedIntData(String tableName, 
+			String columnName) {
+		ColumnRef columnRef = new ColumnRef(tableName, columnName);
+		return (EncodedIntData)BufferManager.colToData.get(columnRef);
+	}
+	/**
+	 * Returns true iff the given integer column is stored
+	 * encoded. Evaluators then read its values via method
+	 * calls instead of accessing a decoded array.
+	 * 
+	 * @param dbRef		reference to buffered column
+	 * @return			true iff column is encoded
+	 */
+	static boolean isEncoded(ColumnRef dbRef) {
+		return BufferManager.colToData.get(dbRef) instanceof EncodedIntData;
+	}
 	/**
 	 * Returns array holding data for a long column.
 	 * 
@@ -461,6 +489,16 @@ public class ExpressionCompiler extends SkinnerVisitor {
 			JavaType javaType = TypeUtil.toJavaType(colInfo.type);
 			switch (javaType) {
 			case INT:
+				if (isEncoded(dbRef)) {
+					constructorVisitor.visitMethodInsn(Opcodes.INVOKESTATIC,
+							"expressions/compilation/ExpressionCompiler", 
+							"getEncodedIntData", 
+							"(Ljava/lang/String;Ljava/lang/String;)" + 
+							ENCODED_DESCRIPTOR, false);
+					constructorVisitor.visitFieldInsn(Opcodes.PUTFIELD, 
+							classAndPackage, fieldName, ENCODED_DESCRIPTOR);
+					break;
+				}
 				constructorVisitor.visitMethodInsn(Opcodes.INVOKESTATIC,
 						"expressions/compilation/ExpressionCompiler", 
 						"getIntData", 
@@ -1545,10 +1583,11 @@ public class ExpressionCompiler extends SkinnerVisitor {
 		ColumnRef dbRef = columnMapping.get(queryRef);
 		ColumnInfo colInfo = CatalogManager.getColumn(dbRef);
 		JavaType javaType = TypeUtil.toJavaType(colInfo.type);
+		boolean encoded = javaType == JavaType.INT && isEncoded(dbRef);
 		String fieldDescriptor = null;
 		switch (javaType) {
 		case INT:
-			fieldDescriptor = "[I";
+			fieldDescriptor = encoded ? ENCODED_DESCRIPTOR : "[I";
 			break;
 		case LONG:
 			fieldDescriptor = "[J";
@@ -1604,11 +1643,16 @@ public class ExpressionCompiler extends SkinnerVisitor {
 		// Generate local variable for storing index
 		int tupleIdxVar = evaluationLocals.newLocal(Type.INT_TYPE);
 		evaluationVisitor.visitVarInsn(Opcodes.ISTORE, tupleIdxVar);
-		// Access array at given position
+		// Access array (or encoded column) at given position
 		evaluationVisitor.visitVarInsn(Opcodes.ILOAD, tupleIdxVar);
 		switch (javaType) {
 		case INT:
-			evaluationVisitor.visitInsn(Opcodes.IALOAD);
+			if (encoded) {
+				evaluationVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, 
+						"data/EncodedIntData", "getInt", "(I)I", false);
+			} else {
+				evaluationVisitor.visitInsn(Opcodes.IALOAD);
+			}
 			break;
 		case LONG:
 			evaluationVisitor.visitInsn(Opcodes.LALOAD);
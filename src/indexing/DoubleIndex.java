@@ -8,9 +8,7 @@ import com.koloboke.collect.map.hash.HashDoubleIntMaps;
 import config.LoggingConfig;
 import data.DoubleData;
 import statistics.JoinStats;
-
-import java.util.Comparator;
-import java.util.stream.IntStream;
+import util.RadixSort;
 
 /**
  * Indexes double values (not necessarily unique).
@@ -157,8 +155,6 @@ public class DoubleIndex extends Index {
 
 	@Override
 	public void sortRows() {
-		sortedRow = IntStream.range(0, cardinality)
-				.boxed().sorted(Comparator.comparingDouble(i -> doubleData.data[i]))
-				.mapToInt(ele -> ele).toArray();
+		sortedRow = RadixSort.sortedOrder(doubleData.data, cardinality);
 	}
 }
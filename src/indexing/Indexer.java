@@ -14,9 +14,9 @@ import joining.parallel.indexing.IntPartitionIndex;
 import joining.parallel.indexing.PartitionIndex;
 import query.ColumnRef;
 import types.SQLtype;
+import util.RadixSort;
 
 import java.util.*;
-import java.util.stream.IntStream;
 
 /**
  * Features utility functions for creating indexes.
@@ -35,6 +35,19 @@ public class Indexer {
             "p_type", "p_name", "p_brand", "p_container", "p_size",
             "ps_partkey");
 
+    /**
+     * Returns data of column to index. Indices refer to values
+     * by row, hence encoded integer columns are decoded (once,
+     * the buffer manager keeps the decoded copy).
+     *
+     * @param colRef column to index
+     * @return column data with plain arrays
+     * @throws Exception
+     */
+    static ColumnData indexData(ColumnRef colRef) throws Exception {
+        return BufferManager.getDecodedData(colRef);
+    }
+
     /**
      * Create an index on the specified column.
      *
@@ -43,7 +56,7 @@ public class Indexer {
     public static void index(ColumnRef colRef, boolean sorted) throws Exception {
         // Check if index already exists
         if (!BufferManager.colToIndex.containsKey(colRef)) {
-            ColumnData data = BufferManager.getData(colRef);
+            ColumnData data = indexData(colRef);
             if (data instanceof IntData) {
                 IntData intData = (IntData) data;
                 IntIndex index = new IntIndex(intData);
@@ -68,7 +81,7 @@ public class Indexer {
                                       boolean isPrimary, boolean isSeq, boolean sorted) throws Exception {
         // Check if index already exists
         if (!BufferManager.colToIndex.containsKey(colRef)) {
-            ColumnData data = BufferManager.getData(colRef);
+            ColumnData data = indexData(colRef);
             if (data instanceof IntData) {
                 IntData intData = (IntData) data;
                 IntPartitionIndex intIndex = oldIndex == null ? null : (IntPartitionIndex) oldIndex;
@@ -225,26 +238,7 @@ public class Indexer {
                 e.printStackTrace();
             }
         }
-        int[] tupleOrder = IntStream.range(0, card).boxed().parallel().sorted(new Comparator<Integer>() {
-            @Override
-            public int compare(Integer row1, Integer row2) {
-                for (ColumnData colData : trieCols) {
-                    int cmp = colData.compareRows(row1, row2);
-                    if (cmp == 2) {
-                        boolean row1null = colData.isNull.get(row1);
-                        boolean row2null = colData.isNull.get(row2);
-                        if (row1null && !row2null) {
-                            return -1;
-                        } else if (!row1null && row2null) {
-                            return 1;
-                        }
-                    } else if (cmp != 0) {
-                        return cmp;
-                    }
-                }
-                return 0;
-            }
-        }).mapToInt(i -> i).toArray();
+        int[] tupleOrder = RadixSort.sortedColumnOrder(trieCols, card, true);
         BaseTrie.orderCache.put(trieRefs, tupleOrder);
     }
 }
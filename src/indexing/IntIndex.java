@@ -8,8 +8,7 @@ import com.koloboke.collect.map.hash.HashIntIntMaps;
 import config.LoggingConfig;
 import data.IntData;
 import statistics.JoinStats;
-
-import java.util.stream.IntStream;
+import util.RadixSort;
 
 /**
  * Indexes integer values (not necessarily unique).
@@ -158,16 +157,6 @@ public class IntIndex extends Index {
 
 	@Override
 	public void sortRows() {
-		sortedRow = IntStream.range(0, cardinality)
-				.boxed().sorted((o1, o2) -> {
-					int d1 = intData.data[o1];
-					int d2 = intData.data[o2];
-					int diff = d1 - d2;
-					if (diff == 0) {
-						return o1 - o2;
-					}
-					return diff;
-				})
-				.mapToInt(ele -> ele).toArray();
+		sortedRow = RadixSort.sortedOrder(intData.data, cardinality);
 	}
 }
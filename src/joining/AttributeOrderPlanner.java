@@ -0,0 +1,377 @@
+package joining;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import buffer.BufferManager;
+import config.LoggingConfig;
+import data.ColumnData;
+import preprocessing.Context;
+import query.ColumnRef;
+import query.QueryInfo;
+
+/**
+ * 基于代价的属性（变量）顺序规划。
+ * 统计量：各连接列的不同值个数（NDV，抽样 + GEE 估计），以及等价类内各列的抽样交集比例
+ * （NDV 最小列的抽样值在其余列等距抽样行中的命中率，按抽样覆盖率修正）。
+ * 代价模型：按顺序逐个绑定变量。表在已绑定变量下的剩余行数（trie 扇出）按独立性假设为
+ * 行数 / 已绑定列 NDV 之积；新变量的候选值数取各表 min(NDV, 剩余行数) 的最小值，
+ * 再乘以交集比例得到每个前缀的扩展数。代价 = Σ 前缀数 ×（leapfrog 求交代价 + 扩展数）。
+ * 变量数不超过 MAX_DP_VARS 时对已绑定变量集合做 DP，否则做 beam search。
+ * 与原规划器一样，只要存在与已绑定表相连的变量，就只在这些变量中选择。
+ */
+public class AttributeOrderPlanner {
+    static final int SAMPLE_SIZE = 4096;        // 每列抽样行数
+    static final int MAX_DP_VARS = 12;          // 超过则改用 beam search
+    static final int BEAM_WIDTH = 16;
+    static final int PROBE_SAMPLE_SIZE = 1 << 16;   // 估计命中率时每列最多读取的行数
+    static final double MIN_SELECTIVITY = 1e-6; // 交集比例下限，避免代价全部为 0
+
+    private final List<Set<ColumnRef>> vars;
+    private final int nrVars;
+    private final int[] tableCards;         // aliasID -> 过滤后的行数
+    private final int[][] varTables;        // 变量 -> 参与的 aliasID
+    private final double[][] varNdv;        // 变量 -> 各参与表上该列的 NDV
+    private final double[] selectivity;     // 变量 -> 抽样交集比例
+    private final long[] tableVars;         // aliasID -> 包含该表的变量集合（位掩码）
+
+    AttributeOrderPlanner(QueryInfo query, Context context) throws Exception {
+        vars = query.equiJoinAttribute;
+        nrVars = vars.size();
+        Map<String, Integer> alias2ID = query.aliasToIndex;
+        int nrTables = query.aliases.length;
+        tableCards = new int[nrTables];
+        tableVars = new long[nrTables];
+        varTables = new int[nrVars][];
+        varNdv = new double[nrVars][];
+        selectivity = new double[nrVars];
+        for (int varCtr = 0; varCtr < nrVars; varCtr++) {
+            List<ColumnData> cols = new ArrayList<>();
+            List<Integer> tables = new ArrayList<>();
+            for (ColumnRef colRef : vars.get(varCtr)) {
+                int aliasID = alias2ID.get(colRef.aliasName);
+                String table = context.aliasToFiltered.get(colRef.aliasName);
+                ColumnData data = BufferManager.getData(new ColumnRef(table, colRef.columnName));
+                tableCards[aliasID] = data.cardinality;
+                tableVars[aliasID] |= 1L << varCtr;
+                cols.add(data);
+                tables.add(aliasID);
+            }
+            varTables[varCtr] = tables.stream().mapToInt(i -> i).toArray();
+            varNdv[varCtr] = new double[cols.size()];
+            // 各列抽样，NDV 最小的列作为交集探测的来源
+            List<Map<Long, Integer>> samples = new ArrayList<>();
+            int minCol = 0;
+            for (int colCtr = 0; colCtr < cols.size(); colCtr++) {
+                Map<Long, Integer> sample = sample(cols.get(colCtr));
+                samples.add(sample);
+                varNdv[varCtr][colCtr] = estimateNdv(sample, cols.get(colCtr).cardinality);
+                if (varNdv[varCtr][colCtr] < varNdv[varCtr][minCol]) {
+                    minCol = colCtr;
+                }
+            }
+            double sel = 1;
+            Set<Long> probeKeys = samples.get(minCol).keySet();
+            for (int colCtr = 0; colCtr < cols.size(); colCtr++) {
+                if (colCtr != minCol && !probeKeys.isEmpty()) {
+                    sel *= hitRate(cols.get(colCtr), varNdv[varCtr][colCtr], probeKeys);
+                }
+            }
+            selectivity[varCtr] = Math.max(MIN_SELECTIVITY, sel);
+        }
+    }
+
+    /**
+     * 生成代价最小的属性顺序。
+     */
+    public static List<Set<ColumnRef>> plan(QueryInfo query, Context context) throws Exception {
+        if (query.equiJoinAttribute.size() > 63) {
+            // 位掩码放不下，退回启发式规划
+            return null;
+        }
+        AttributeOrderPlanner planner = new AttributeOrderPlanner(query, context);
+        int[] order = planner.nrVars <= MAX_DP_VARS ? planner.dpOrder() : planner.beamOrder();
+        List<Set<ColumnRef>> plan = new ArrayList<>();
+        for (int var : order) {
+            plan.add(planner.vars.get(var));
+        }
+        if (LoggingConfig.PARALLEL_JOIN_VERBOSE) {
+            System.out.println("Cost-based attribute order: " + plan +
+                    "\tEstimated cost: " + planner.cost(order));
+        }
+        return plan;
+    }
+
+    /**
+     * 生成与给定顺序第一个变量相同、估计代价最小的若干其它属性顺序（供自适应选择）。
+     * 第一个变量相同保证按其值域切分的组合对所有候选顺序都有效。
+     *
+     * @param primary   已选定的属性顺序
+     * @param k         最多返回的候选数
+     */
+    public static List<List<Set<ColumnRef>>> alternatives(QueryInfo query, Context context,
+                                                         List<Set<ColumnRef>> primary, int k) throws Exception {
+        List<List<Set<ColumnRef>>> result = new ArrayList<>();
+        if (k <= 0 || primary.size() < 3 || primary.size() > 63) {
+            return result;
+        }
+        AttributeOrderPlanner planner = new AttributeOrderPlanner(query, context);
+        int firstVar = planner.vars.indexOf(primary.get(0));
+        // 不合并相同绑定集合的 beam search，保留不同的完整顺序
+        List<BeamState> beam = new ArrayList<>();
+        double[] first = planner.step(0, firstVar);
+        beam.add(new BeamState(new int[] { firstVar }, 1L << firstVar,
+                first[1] + first[0], first[0]));
+        int width = Math.max(BEAM_WIDTH, k + 1);
+        for (int depth = 1; depth < planner.nrVars; depth++) {
+            List<BeamState> next = new ArrayList<>();
+            for (BeamState state : beam) {
+                for (int var : planner.candidates(state.bound)) {
+                    double[] step = planner.step(state.bound, var);
+                    int[] order = Arrays.copyOf(state.order, depth + 1);
+                    order[depth] = var;
+                    next.add(new BeamState(order, state.bound | (1L << var),
+                            state.cost + state.prefixes * (step[1] + step[0]),
+                            state.prefixes * step[0]));
+                }
+            }
+            next.sort(Comparator.comparingDouble(s -> s.cost));
+            beam = next.size() > width ? new ArrayList<>(next.subList(0, width)) : next;
+        }
+        for (BeamState state : beam) {
+            List<Set<ColumnRef>> order = new ArrayList<>();
+            for (int var : state.order) {
+                order.add(planner.vars.get(var));
+            }
+            if (!order.equals(primary) && result.size() < k) {
+                result.add(order);
+            }
+        }
+        return result;
+    }
+
+    // 已绑定变量集合 bound 下，把 var 作为下一个变量的扩展数（每个前缀的新绑定数）与求交代价
+    private double[] step(long bound, int var) {
+        double minCand = Double.MAX_VALUE;
+        double seekCost = 0;
+        int[] tables = varTables[var];
+        for (int t = 0; t < tables.length; t++) {
+            int aliasID = tables[t];
+            // 已绑定变量下该表的剩余行数（trie 当前层的扇出上界）
+            double rows = tableCards[aliasID];
+            long boundVars = bound & tableVars[aliasID];
+            for (int u = 0; u < nrVars; u++) {
+                if ((boundVars & (1L << u)) != 0) {
+                    rows /= ndvOf(u, aliasID);
+                }
+            }
+            double cand = Math.min(varNdv[var][t], Math.max(1, rows));
+            minCand = Math.min(minCand, cand);
+            seekCost += Math.log(cand + 1) / Math.log(2) + 1;
+        }
+        double extension = minCand * selectivity[var];
+        return new double[] { extension, minCand * seekCost };
+    }
+
+    private double ndvOf(int var, int aliasID) {
+        int[] tables = varTables[var];
+        for (int t = 0; t < tables.length; t++) {
+            if (tables[t] == aliasID) {
+                return Math.max(1, varNdv[var][t]);
+            }
+        }
+        return 1;
+    }
+
+    // var 是否与已绑定变量涉及的表相连
+    private boolean connected(long bound, int var) {
+        for (int aliasID : varTables[var]) {
+            if ((tableVars[aliasID] & bound) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 可作为下一个变量的候选：优先与已绑定表相连的变量
+    private List<Integer> candidates(long bound) {
+        List<Integer> connectedVars = new ArrayList<>();
+        List<Integer> otherVars = new ArrayList<>();
+        for (int var = 0; var < nrVars; var++) {
+            if ((bound & (1L << var)) != 0) {
+                continue;
+            }
+            if (bound == 0 || connected(bound, var)) {
+                connectedVars.add(var);
+            } else {
+                otherVars.add(var);
+            }
+        }
+        return connectedVars.isEmpty() ? otherVars : connectedVars;
+    }
+
+    // 对已绑定变量集合做 DP
+    private int[] dpOrder() {
+        int nrStates = 1 << nrVars;
+        double[] bestCost = new double[nrStates];
+        double[] prefixes = new double[nrStates];
+        int[] lastVar = new int[nrStates];
+        Arrays.fill(bestCost, Double.MAX_VALUE);
+        bestCost[0] = 0;
+        prefixes[0] = 1;
+        for (int bound = 0; bound < nrStates; bound++) {
+            if (bestCost[bound] == Double.MAX_VALUE) {
+                continue;
+            }
+            for (int var : candidates(bound)) {
+                double[] step = step(bound, var);
+                double cost = bestCost[bound] + prefixes[bound] * (step[1] + step[0]);
+                int next = bound | (1 << var);
+                if (cost < bestCost[next]) {
+                    bestCost[next] = cost;
+                    prefixes[next] = prefixes[bound] * step[0];
+                    lastVar[next] = var;
+                }
+            }
+        }
+        int[] order = new int[nrVars];
+        int state = nrStates - 1;
+        for (int pos = nrVars - 1; pos >= 0; pos--) {
+            order[pos] = lastVar[state];
+            state &= ~(1 << lastVar[state]);
+        }
+        return order;
+    }
+
+    // 变量较多时的 beam search
+    private int[] beamOrder() {
+        List<BeamState> beam = new ArrayList<>();
+        beam.add(new BeamState(new int[0], 0, 0, 1));
+        for (int depth = 0; depth < nrVars; depth++) {
+            Map<Long, BeamState> nextStates = new HashMap<>();
+            for (BeamState state : beam) {
+                for (int var : candidates(state.bound)) {
+                    double[] step = step(state.bound, var);
+                    double cost = state.cost + state.prefixes * (step[1] + step[0]);
+                    long bound = state.bound | (1L << var);
+                    BeamState known = nextStates.get(bound);
+                    if (known == null || cost < known.cost) {
+                        int[] order = Arrays.copyOf(state.order, depth + 1);
+                        order[depth] = var;
+                        nextStates.put(bound, new BeamState(order, bound, cost,
+                                state.prefixes * step[0]));
+                    }
+                }
+            }
+            beam = new ArrayList<>(nextStates.values());
+            beam.sort(Comparator.comparingDouble(s -> s.cost));
+            if (beam.size() > BEAM_WIDTH) {
+                beam = new ArrayList<>(beam.subList(0, BEAM_WIDTH));
+            }
+        }
+        return beam.get(0).order;
+    }
+
+    // 给定顺序的估计代价
+    double cost(int[] order) {
+        long bound = 0;
+        double prefixes = 1;
+        double cost = 0;
+        for (int var : order) {
+            double[] step = step(bound, var);
+            cost += prefixes * (step[1] + step[0]);
+            prefixes *= step[0];
+            bound |= 1L << var;
+        }
+        return cost;
+    }
+
+    private static class BeamState {
+        final int[] order;
+        final long bound;
+        final double cost;
+        final double prefixes;
+
+        BeamState(int[] order, long bound, double cost, double prefixes) {
+            this.order = order;
+            this.bound = bound;
+            this.cost = cost;
+            this.prefixes = prefixes;
+        }
+    }
+
+    /*=========================================统计量===========================================*/
+
+    // 等距抽样，返回抽样值（longForRow）及其出现次数
+    static Map<Long, Integer> sample(ColumnData data) {
+        int card = data.cardinality;
+        int nrSamples = Math.min(card, SAMPLE_SIZE);
+        Map<Long, Integer> counts = new HashMap<>(nrSamples * 2);
+        if (nrSamples == 0) {
+            return counts;
+        }
+        double stride = (double) card / nrSamples;
+        for (int i = 0; i < nrSamples; i++) {
+            int row = (int) (i * stride);
+            if (!data.isNull.get(row)) {
+                counts.merge(data.longForRow(row), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    // GEE 估计：sqrt(N/n)·f1 + Σ_{j≥2} f_j，全表抽样时为精确值
+    static double estimateNdv(Map<Long, Integer> sample, int card) {
+        int sampled = 0;
+        int singletons = 0;
+        for (int count : sample.values()) {
+            sampled += count;
+            if (count == 1) {
+                singletons++;
+            }
+        }
+        int distinct = sample.size();
+        if (sampled == 0) {
+            return 1;
+        }
+        if (sampled >= card) {
+            return distinct;
+        }
+        double estimate = Math.sqrt((double) card / sampled) * singletons + (distinct - singletons);
+        return Math.min(card, Math.max(distinct, estimate));
+    }
+
+    // 探测值在该列中出现的比例：等距读取至多 PROBE_SAMPLE_SIZE 行，
+    // 未读完整列时除以每个值（平均 card / ndv 行）至少被读到一次的概率
+    static double hitRate(ColumnData data, double ndv, Set<Long> probeKeys) {
+        int card = data.cardinality;
+        int nrRows = Math.min(card, PROBE_SAMPLE_SIZE);
+        Set<Long> values = new HashSet<>(nrRows * 2);
+        double stride = (double) card / Math.max(1, nrRows);
+        for (int i = 0; i < nrRows; i++) {
+            int row = (int) (i * stride);
+            if (!data.isNull.get(row)) {
+                values.add(data.longForRow(row));
+            }
+        }
+        int hits = 0;
+        for (long key : probeKeys) {
+            if (values.contains(key)) {
+                hits++;
+            }
+        }
+        double observed = (double) hits / probeKeys.size();
+        if (nrRows >= card) {
+            return observed;
+        }
+        double fraction = (double) nrRows / card;
+        double coverage = 1 - Math.pow(1 - fraction, card / Math.max(1, ndv));
+        return Math.min(1, observed / Math.max(fraction, coverage));
+    }
+}
@@ -1,20 +1,19 @@
 package joining;
 import java.util.Set;
-import java.util.stream.IntStream;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import buffer.BufferManager;
 import catalog.CatalogManager;
+import config.LoggingConfig;
 import data.ColumnData;
 import data.DoubleData;
 import data.IntData;
 import preprocessing.Context;
 import query.ColumnRef;
 import query.QueryInfo;
+import util.RadixSort;
 
 public class BaseTrie {
     public final int aliasID;               // 表别名ID
@@ -22,6 +21,7 @@ public class BaseTrie {
     public final int cardinality;           // 获取表的基数（行数）
 
     public final int maxLevel;  // 参与连接的列数：也即最大层数;  但有效层是从0开始的（层下标），也就是说如果curLevel == maxLevel，说明已经不是最后一层了
+    public final boolean existential;   // EXISTS 子查询的表（半连接）：每个连接结果只保留一个见证行，不能按行切分
     public List<int[]> trieCols;
     public List<ColumnData> trieRefCols;
 
@@ -36,72 +36,91 @@ public class BaseTrie {
         table = context.aliasToFiltered.get(alias);
         cardinality = CatalogManager.getCardinality(table); // 表基数是所有列的数量
         trieRefCols = new ArrayList<>();
-        List<ColumnRef> order = new ArrayList<>();
+        String baseTable = query.aliasToTable.get(alias);
+        List<ColumnRef> baseOrder = new ArrayList<>();  // 原表上相同列序的缓存键
         // 初始化实际数据
         for (Set<ColumnRef> eqClass : globalVarOrder) {
             for (ColumnRef colRef : eqClass) {      
                 if (colRef.aliasName.equals(alias)) {   // 只存储参与了等值连接的列，不存储其他列
                     String colName = colRef.columnName;
                     ColumnRef bufferRef = new ColumnRef(table, colName);
-                    order.add(bufferRef);
-                    ColumnData colData = BufferManager.getData(bufferRef);
+                    baseOrder.add(new ColumnRef(baseTable, colName));
+                    // 编码列只解码一次，解码结果缓存在 BufferManager 中
+                    ColumnData colData = BufferManager.getDecodedData(bufferRef);
                     trieRefCols.add(colData);
                 }
             }
         }
         maxLevel = trieRefCols.size();
+        existential = query.existentialAliases.contains(alias);
 
-        boolean notFiltered = !context.aliasToFiltered.get(alias).contains(".");
+        // 转换为 int[]，排序与后续构造层时使用相同的键
+        trieCols = new ArrayList<>(maxLevel);
+        for(ColumnData cd: trieRefCols) {
+            trieCols.add(getIntValues(cd));
+        }
+
+        boolean notFiltered = !table.contains(".");
 
-        if(notFiltered && orderCache.containsKey(order)) {
-            tupleOrder = orderCache.get(order);
-            System.out.println("Cache Hit!");
+        if(notFiltered && orderCache.containsKey(baseOrder)) {
+            tupleOrder = orderCache.get(baseOrder);
+            log("Cache Hit!");
+        } else if (!notFiltered && (tupleOrder = deriveOrder(
+                context.filteredToBaseRows.get(table), orderCache.get(baseOrder))) != null) {
+            log("Derived Cache Hit!");
         } else {
-            tupleOrder = IntStream.range(0, cardinality).boxed().parallel().sorted(new Comparator<Integer>() {
-                        @Override
-                        public int compare(Integer row1, Integer row2) {
-                            for (ColumnData colData : trieRefCols) {
-                                int cmp = compareColumnValues(colData, row1, row2);
-                                if (cmp != 0) {
-                                    return cmp;
-                                }
-                            }
-                            return 0;
-                        }
-                    }).mapToInt(i -> i).toArray();
+            tupleOrder = RadixSort.sortedOrder(trieCols, cardinality);
 
             if(notFiltered) {
-                orderCache.put(order, tupleOrder);
+                orderCache.put(baseOrder, tupleOrder);
             }
         }
-
-
-        trieCols = new ArrayList<>(maxLevel);
-        for(ColumnData cd: trieRefCols) {
-            trieCols.add(getIntValues(cd));
-        }
     }
 
-    private static int compareColumnValues(ColumnData colData, int row1, int row2) {
-        if (colData instanceof IntData) {
-            IntData intData = (IntData) colData;
-            return Integer.compare(intData.data[row1], intData.data[row2]);
-        } else if (colData instanceof DoubleData) {
-            DoubleData doubleData = (DoubleData) colData;
-            return Double.compare(doubleData.data[row1], doubleData.data[row2]);
-        } else {
-            throw new IllegalArgumentException("Unsupported column data type: " + colData.getClass().getName());
+    /**
+     * 由原表的缓存排序推导过滤表的排序：过滤行在原表有序排列中的
+     * 相对顺序即为其按相同键的有序排列，只需一次线性扫描。
+     * 若原表远大于过滤表，扫描代价高于直接排序，返回 null。
+     *
+     * @param filteredToBase    过滤表每行对应的原表行
+     * @param baseOrderRows     原表按相同列序的排序结果
+     * @return                  过滤表行的排序结果，无法推导时为 null
+     */
+    int[] deriveOrder(int[] filteredToBase, int[] baseOrderRows) {
+        if (filteredToBase == null || baseOrderRows == null ||
+                filteredToBase.length != cardinality ||
+                baseOrderRows.length > (long) cardinality * Math.max(maxLevel, 1) * 8) {
+            return null;
         }
+        // 原表行 -> 过滤表行 + 1（0 表示该行被过滤掉）
+        int[] baseToFiltered = new int[baseOrderRows.length];
+        for (int row = 0; row < cardinality; row++) {
+            baseToFiltered[filteredToBase[row]] = row + 1;
+        }
+        int[] result = new int[cardinality];
+        int resultCtr = 0;
+        for (int baseRow : baseOrderRows) {
+            int filteredRow = baseToFiltered[baseRow];
+            if (filteredRow != 0) {
+                if (resultCtr == cardinality) {
+                    return null;
+                }
+                result[resultCtr++] = filteredRow - 1;
+            }
+        }
+        // 过滤表行与原表行不一一对应时放弃推导
+        return resultCtr == cardinality ? result : null;
     }
 
-    public Integer compareTuples(int row1, int row2) {
-        for (ColumnData colData : trieRefCols) {
-            int cmp = compareColumnValues(colData, row1, row2);
-            if (cmp != 0) {
-                return cmp;
-            }
+    /**
+     * 连接日志开启时输出信息。
+     *
+     * @param text  输出内容
+     */
+    static void log(String text) {
+        if (LoggingConfig.PARALLEL_JOIN_VERBOSE) {
+            System.out.println(text);
         }
-        return 0;
     }
 
     private int[] getIntValues(ColumnData colData) {
@@ -0,0 +1,164 @@
+package joining;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import config.SchedulingMode;
+
+/**
+ * 分发 TrieManager 的块组合编号给连接线程。
+ * 组合编号在 [0, totalCombination) 内，每个编号恰好分发一次。
+ */
+public interface CombinationScheduler {
+
+    /**
+     * 取下一个待处理的组合编号。
+     *
+     * @param threadId  调用线程的编号
+     * @return          组合编号，全部分发完毕时返回 -1
+     */
+    int next(int threadId);
+
+    /**
+     * 按配置创建调度器。
+     *
+     * @param mode              调度方式
+     * @param totalCombination  组合总数
+     * @param nrThreads         连接线程数
+     */
+    static CombinationScheduler create(SchedulingMode mode, int totalCombination, int nrThreads) {
+        switch (mode) {
+            case SYNCHRONIZED:
+                return new Synchronized(totalCombination);
+            case ATOMIC:
+                return new Atomic(totalCombination);
+            default:
+                return new WorkStealing(totalCombination, nrThreads);
+        }
+    }
+
+    /**
+     * 原有方式：加锁递增共享计数器。
+     */
+    class Synchronized implements CombinationScheduler {
+        private final int total;
+        private int cursor = 0;
+
+        Synchronized(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public synchronized int next(int threadId) {
+            return cursor < total ? cursor++ : -1;
+        }
+    }
+
+    /**
+     * 无锁共享游标：每次 getAndIncrement 取一个编号。
+     */
+    class Atomic implements CombinationScheduler {
+        private final int total;
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        Atomic(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public int next(int threadId) {
+            if (cursor.get() >= total) {
+                return -1;
+            }
+            int id = cursor.getAndIncrement();
+            return id < total ? id : -1;
+        }
+    }
+
+    /**
+     * 工作窃取：每个线程持有一段连续编号区间 [lo, hi)，打包在一个 long 中
+     * （高 32 位 lo，低 32 位 hi）。线程从自己区间头部取编号；区间为空时
+     * 从其它线程区间尾部窃取一半。所有修改都通过 CAS 完成，无锁。
+     */
+    class WorkStealing implements CombinationScheduler {
+        private final AtomicLongArray ranges;
+        private final int nrThreads;
+
+        WorkStealing(int total, int nrThreads) {
+            this.nrThreads = Math.max(1, nrThreads);
+            ranges = new AtomicLongArray(this.nrThreads);
+            // 初始按线程均匀切分连续区间，相邻组合共享大表块，局部性更好
+            for (int t = 0; t < this.nrThreads; t++) {
+                int lo = (int) ((long) t * total / this.nrThreads);
+                int hi = (int) ((long) (t + 1) * total / this.nrThreads);
+                ranges.set(t, pack(lo, hi));
+            }
+        }
+
+        private static long pack(int lo, int hi) {
+            return ((long) lo << 32) | (hi & 0xFFFFFFFFL);
+        }
+
+        private static int lo(long range) {
+            return (int) (range >>> 32);
+        }
+
+        private static int hi(long range) {
+            return (int) range;
+        }
+
+        @Override
+        public int next(int threadId) {
+            int own = threadId % nrThreads;
+            while (true) {
+                // 从自己的区间头部取
+                long range = ranges.get(own);
+                int lo = lo(range), hi = hi(range);
+                if (lo < hi) {
+                    if (ranges.compareAndSet(own, range, pack(lo + 1, hi))) {
+                        return lo;
+                    }
+                    continue;
+                }
+                // 自己的区间已空，窃取
+                if (!steal(own)) {
+                    return -1;
+                }
+            }
+        }
+
+        /**
+         * 从剩余最多的线程处窃取其区间的后一半，放入自己的区间。
+         *
+         * @return 是否窃取成功；所有区间都为空时返回 false
+         */
+        private boolean steal(int own) {
+            while (true) {
+                int victim = -1;
+                int maxRemaining = 0;
+                for (int t = 0; t < nrThreads; t++) {
+                    long range = ranges.get(t);
+                    int remaining = hi(range) - lo(range);
+                    if (t != own && remaining > maxRemaining) {
+                        victim = t;
+                        maxRemaining = remaining;
+                    }
+                }
+                if (victim < 0) {
+                    return false;
+                }
+                long range = ranges.get(victim);
+                int lo = lo(range), hi = hi(range);
+                if (lo >= hi) {
+                    continue;
+                }
+                int mid = lo + (hi - lo) / 2;   // 只剩一个时 mid == lo，整段取走
+                if (ranges.compareAndSet(victim, range, pack(lo, mid))) {
+                    // 自己的区间为空时其它线程不会修改它，可以直接写入
+                    ranges.set(own, pack(mid, hi));
+                    return true;
+                }
+            }
+        }
+    }
+}
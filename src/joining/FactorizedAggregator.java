@@ -0,0 +1,399 @@
+package joining;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import buffer.BufferManager;
+import catalog.CatalogManager;
+import catalog.info.ColumnInfo;
+import catalog.info.TableInfo;
+import config.NamingConfig;
+import data.ColumnData;
+import data.DoubleData;
+import data.EncodedIntData;
+import data.IntData;
+import data.LongData;
+import expressions.ExpressionInfo;
+import expressions.aggregates.AggInfo;
+import expressions.aggregates.SQLaggFunction;
+import joining.result.FactorizedResult;
+import net.sf.jsqlparser.expression.LongValue;
+import preprocessing.Context;
+import query.ColumnRef;
+import query.QueryInfo;
+import types.SQLtype;
+
+/**
+ * 分解式聚合：直接在 LFTJ 的结果（每个结果元组对应各 trie 最后一层的行区间）上
+ * 计算 COUNT(*) 以及 SUM/MIN/MAX/AVG，不展开笛卡尔积。
+ * 一个结果元组代表各区间长度之积条连接结果；某表列上的 SUM 等于该表区间内的和
+ * 乘以其余表区间长度之积。每个连接线程持有一个实例，最后合并。
+ * GROUP BY 列均为连接键时，同一结果元组内各行的分组值相同，按区间代表行分组即可。
+ */
+public class FactorizedAggregator {
+    private final List<AggInfo> aggs;       // 查询中的聚合（顺序固定）
+    private final int nrAggs;
+    private final int[] aggAlias;           // 聚合列所属表的 aliasID，常量输入为 -1
+    private final ColumnData[] aggData;     // 聚合列数据（过滤后的表）
+    private final SQLtype[] aggType;
+    private final long[] constants;         // 常量输入（SUM(1) 等）
+
+    private final List<ColumnRef> groupCols;    // GROUP BY 列（查询中的列）
+    private final int nrGroupCols;
+    private final int[] groupAlias;             // GROUP BY 列所属表的 aliasID
+    private final ColumnData[] groupData;       // GROUP BY 列数据（过滤后的表）
+    private final Map<GroupKey, Integer> groupIDs = new HashMap<>();
+    private int nrGroups = 0;
+
+    // 以下按组存放；聚合状态下标为 group * nrAggs + aggCtr
+    private int[] groupRows;                // 每组各 GROUP BY 列的代表行
+    private long[] counts;                  // 连接结果条数
+    private long[] longSums;
+    private double[] doubleSums;
+    private long[] nonNullCounts;           // 聚合输入非空的结果条数
+    private long[] longBest;                // MIN/MAX 当前值
+    private double[] doubleBest;
+
+    public FactorizedAggregator(QueryInfo query, Context context) throws Exception {
+        aggs = new ArrayList<>(query.aggregates);
+        nrAggs = aggs.size();
+        aggAlias = new int[nrAggs];
+        aggData = new ColumnData[nrAggs];
+        aggType = new SQLtype[nrAggs];
+        constants = new long[nrAggs];
+        for (int aggCtr = 0; aggCtr < nrAggs; aggCtr++) {
+            AggInfo agg = aggs.get(aggCtr);
+            aggType[aggCtr] = agg.aggInput.resultType;
+            if (agg.aggInput.columnsMentioned.isEmpty()) {
+                aggAlias[aggCtr] = -1;
+                constants[aggCtr] = ((LongValue) agg.aggInput.finalExpression).getValue();
+            } else {
+                ColumnRef queryRef = agg.aggInput.columnsMentioned.iterator().next();
+                aggAlias[aggCtr] = query.aliasToIndex.get(queryRef.aliasName);
+                aggData[aggCtr] = BufferManager.getData(context.columnMapping.get(queryRef));
+            }
+        }
+        groupCols = new ArrayList<>();
+        for (ExpressionInfo groupExpr : query.groupByExpressions) {
+            groupCols.add(groupExpr.columnsMentioned.iterator().next());
+        }
+        nrGroupCols = groupCols.size();
+        groupAlias = new int[nrGroupCols];
+        groupData = new ColumnData[nrGroupCols];
+        for (int colCtr = 0; colCtr < nrGroupCols; colCtr++) {
+            ColumnRef queryRef = groupCols.get(colCtr);
+            groupAlias[colCtr] = query.aliasToIndex.get(queryRef.aliasName);
+            groupData[colCtr] = BufferManager.getData(context.columnMapping.get(queryRef));
+        }
+        groupRows = new int[16 * nrGroupCols];
+        counts = new long[16];
+        longSums = new long[16 * nrAggs];
+        doubleSums = new double[16 * nrAggs];
+        nonNullCounts = new long[16 * nrAggs];
+        longBest = new long[16 * nrAggs];
+        doubleBest = new double[16 * nrAggs];
+        // 无 GROUP BY 时所有结果属于唯一的组（即使连接结果为空）
+        if (nrGroupCols == 0) {
+            addGroup(new GroupKey(new long[0]), new int[0]);
+        }
+    }
+
+    /**
+     * 累加一个分解式结果中的所有元组。
+     *
+     * @param result    当前组合的分解式连接结果
+     */
+    public void accumulate(FactorizedResult result) {
+        long[] probe = new long[nrGroupCols];
+        int[] repRows = new int[nrGroupCols];
+        for (int tuple = 0; tuple < result.size; tuple++) {
+            long product = result.multiplicity(tuple);
+            if (product == 0) {
+                continue;
+            }
+            int group = 0;
+            if (nrGroupCols > 0) {
+                for (int colCtr = 0; colCtr < nrGroupCols; colCtr++) {
+                    repRows[colCtr] = result.representativeRow(tuple, groupAlias[colCtr]);
+                    probe[colCtr] = groupData[colCtr].longForRow(repRows[colCtr]);
+                }
+                Integer groupID = groupIDs.get(new GroupKey(probe));
+                group = groupID != null ? groupID : addGroup(new GroupKey(probe.clone()), repRows);
+            }
+            counts[group] += product;
+            for (int aggCtr = 0; aggCtr < nrAggs; aggCtr++) {
+                int state = group * nrAggs + aggCtr;
+                int alias = aggAlias[aggCtr];
+                if (alias < 0) {
+                    longSums[state] += product * constants[aggCtr];
+                    nonNullCounts[state] += product;
+                    continue;
+                }
+                // 其余表区间长度之积即区间内每行的出现次数
+                int start = result.start(tuple, alias);
+                int end = result.end(tuple, alias);
+                long multiplicity = product / (end - start);
+                accumulateRange(aggCtr, state, result.rows[alias], start, end, multiplicity);
+            }
+        }
+    }
+
+    // 登记新组，返回组号
+    private int addGroup(GroupKey key, int[] repRows) {
+        int group = nrGroups++;
+        if (nrGroups > counts.length) {
+            int capacity = counts.length * 2;
+            groupRows = Arrays.copyOf(groupRows, capacity * nrGroupCols);
+            counts = Arrays.copyOf(counts, capacity);
+            longSums = Arrays.copyOf(longSums, capacity * nrAggs);
+            doubleSums = Arrays.copyOf(doubleSums, capacity * nrAggs);
+            nonNullCounts = Arrays.copyOf(nonNullCounts, capacity * nrAggs);
+            longBest = Arrays.copyOf(longBest, capacity * nrAggs);
+            doubleBest = Arrays.copyOf(doubleBest, capacity * nrAggs);
+        }
+        System.arraycopy(repRows, 0, groupRows, group * nrGroupCols, nrGroupCols);
+        groupIDs.put(key, group);
+        return group;
+    }
+
+    private void accumulateRange(int aggCtr, int state, int[] rows, int start, int end, long multiplicity) {
+        ColumnData data = aggData[aggCtr];
+        SQLaggFunction fct = aggs.get(aggCtr).aggFunction;
+        boolean isMax = fct == SQLaggFunction.MAX;
+        boolean isMin = fct == SQLaggFunction.MIN;
+        long nonNull = 0;
+        switch (aggType[aggCtr]) {
+            case DOUBLE: {
+                double[] values = ((DoubleData) data).data;
+                double sum = 0;
+                double best = doubleBest[state];
+                boolean hasBest = nonNullCounts[state] > 0;
+                for (int i = start; i < end; i++) {
+                    int row = rows[i];
+                    if (data.isNull.get(row)) {
+                        continue;
+                    }
+                    double value = values[row];
+                    sum += value;
+                    if (!hasBest || isMax && value > best || isMin && value < best) {
+                        best = value;
+                        hasBest = true;
+                    }
+                    nonNull++;
+                }
+                doubleSums[state] += sum * multiplicity;
+                doubleBest[state] = best;
+                break;
+            }
+            default: {
+                int[] intValues = data instanceof IntData ? ((IntData) data).data : null;
+                long[] longValues = data instanceof LongData ? ((LongData) data).data : null;
+                // 编码列按行读取，不解码整列
+                EncodedIntData encoded = data instanceof EncodedIntData ? (EncodedIntData) data : null;
+                long sum = 0;
+                long best = longBest[state];
+                boolean hasBest = nonNullCounts[state] > 0;
+                for (int i = start; i < end; i++) {
+                    int row = rows[i];
+                    if (data.isNull.get(row)) {
+                        continue;
+                    }
+                    long value = intValues != null ? intValues[row] :
+                            encoded != null ? encoded.getInt(row) : longValues[row];
+                    sum += value;
+                    if (!hasBest || isMax && value > best || isMin && value < best) {
+                        best = value;
+                        hasBest = true;
+                    }
+                    nonNull++;
+                }
+                longSums[state] += sum * multiplicity;
+                longBest[state] = best;
+                break;
+            }
+        }
+        nonNullCounts[state] += nonNull * multiplicity;
+    }
+
+    /**
+     * 合并另一个线程的部分结果（按分组值对齐）。
+     */
+    public void merge(FactorizedAggregator other) {
+        for (Map.Entry<GroupKey, Integer> entry : other.groupIDs.entrySet()) {
+            int otherGroup = entry.getValue();
+            Integer groupID = groupIDs.get(entry.getKey());
+            int group = groupID != null ? groupID : addGroup(entry.getKey(),
+                    Arrays.copyOfRange(other.groupRows, otherGroup * nrGroupCols,
+                            (otherGroup + 1) * nrGroupCols));
+            counts[group] += other.counts[otherGroup];
+            for (int aggCtr = 0; aggCtr < nrAggs; aggCtr++) {
+                int state = group * nrAggs + aggCtr;
+                int otherState = otherGroup * nrAggs + aggCtr;
+                if (other.nonNullCounts[otherState] == 0) {
+                    continue;
+                }
+                boolean hasBest = nonNullCounts[state] > 0;
+                SQLaggFunction fct = aggs.get(aggCtr).aggFunction;
+                boolean isMax = fct == SQLaggFunction.MAX;
+                if (!hasBest || isMax && other.longBest[otherState] > longBest[state] ||
+                        !isMax && other.longBest[otherState] < longBest[state]) {
+                    longBest[state] = other.longBest[otherState];
+                }
+                if (!hasBest || isMax && other.doubleBest[otherState] > doubleBest[state] ||
+                        !isMax && other.doubleBest[otherState] < doubleBest[state]) {
+                    doubleBest[state] = other.doubleBest[otherState];
+                }
+                longSums[state] += other.longSums[otherState];
+                doubleSums[state] += other.doubleSums[otherState];
+                nonNullCounts[state] += other.nonNullCounts[otherState];
+            }
+        }
+    }
+
+    /**
+     * 连接结果条数。
+     */
+    public long getCount() {
+        long count = 0;
+        for (int group = 0; group < nrGroups; group++) {
+            count += counts[group];
+        }
+        return count;
+    }
+
+    /**
+     * 分组数（无 GROUP BY 时为 1）。
+     */
+    public int getNrGroups() {
+        return nrGroups;
+    }
+
+    /**
+     * 物化分组表：每组一行，包含各 GROUP BY 列（取自代表行），行号即组号。
+     * 并更新 context.columnMapping，使后处理对 GROUP BY 列的引用指向该表。
+     *
+     * @param context   查询执行上下文
+     * @param groupRel  分组表名（作为连接结果表供后处理使用）
+     */
+    public void storeGroups(Context context, String groupRel) throws Exception {
+        TableInfo groupInfo = new TableInfo(groupRel, true);
+        CatalogManager.currentDB.addTable(groupInfo);
+        for (int colCtr = 0; colCtr < nrGroupCols; colCtr++) {
+            ColumnRef queryRef = groupCols.get(colCtr);
+            ColumnRef srcRef = context.columnMapping.get(queryRef);
+            ColumnInfo srcInfo = CatalogManager.getColumn(srcRef);
+            String targetCol = queryRef.aliasName + "." + queryRef.columnName;
+            groupInfo.addColumn(new ColumnInfo(targetCol, srcInfo.type, false, false, false, false));
+            List<Integer> repRows = new ArrayList<>(nrGroups);
+            for (int group = 0; group < nrGroups; group++) {
+                repRows.add(groupRows[group * nrGroupCols + colCtr]);
+            }
+            ColumnRef targetRef = new ColumnRef(groupRel, targetCol);
+            BufferManager.colToData.put(targetRef, groupData[colCtr].copyRows(repRows));
+            context.columnMapping.put(queryRef, targetRef);
+        }
+        CatalogManager.updateStats(groupRel);
+    }
+
+    /**
+     * 将聚合结果写入聚合结果表（每个聚合一列、每组一行），
+     * 并登记到 context.aggToData，与 PostProcessor.aggregate 的输出一致。
+     *
+     * @param context   查询执行上下文
+     * @param aggTbl    聚合结果表名
+     */
+    public void store(Context context, String aggTbl) throws Exception {
+        TableInfo aggTblInfo = CatalogManager.currentDB.nameToTable.get(aggTbl);
+        for (int aggCtr = 0; aggCtr < nrAggs; aggCtr++) {
+            AggInfo agg = aggs.get(aggCtr);
+            String targetCol = NamingConfig.AGG_COL_PRE + aggCtr;
+            ColumnRef targetRef = new ColumnRef(aggTbl, targetCol);
+            SQLtype type = aggType[aggCtr];
+            boolean isSum = agg.aggFunction == SQLaggFunction.SUM;
+            boolean isAvg = agg.aggFunction == SQLaggFunction.AVG;
+            ColumnData target;
+            switch (type) {
+                case INT: {
+                    IntData intTarget = new IntData(nrGroups);
+                    for (int group = 0; group < nrGroups; group++) {
+                        int state = group * nrAggs + aggCtr;
+                        long value = isSum || isAvg ? longSums[state] : longBest[state];
+                        if (isAvg && nonNullCounts[state] > 0) {
+                            value = (int) value / nonNullCounts[state];
+                        }
+                        intTarget.data[group] = (int) value;
+                    }
+                    target = intTarget;
+                    break;
+                }
+                case LONG: {
+                    LongData longTarget = new LongData(nrGroups);
+                    for (int group = 0; group < nrGroups; group++) {
+                        int state = group * nrAggs + aggCtr;
+                        long value = isSum || isAvg ? longSums[state] : longBest[state];
+                        if (isAvg && nonNullCounts[state] > 0) {
+                            value /= nonNullCounts[state];
+                        }
+                        longTarget.data[group] = value;
+                    }
+                    target = longTarget;
+                    break;
+                }
+                case DOUBLE: {
+                    DoubleData doubleTarget = new DoubleData(nrGroups);
+                    for (int group = 0; group < nrGroups; group++) {
+                        int state = group * nrAggs + aggCtr;
+                        double value = isSum || isAvg ? doubleSums[state] : doubleBest[state];
+                        if (isAvg && nonNullCounts[state] > 0) {
+                            value /= nonNullCounts[state];
+                        }
+                        doubleTarget.data[group] = value;
+                    }
+                    target = doubleTarget;
+                    break;
+                }
+                default:
+                    throw new Exception("Error - no factorized aggregate over " + type);
+            }
+            // 常量求和（COUNT(*) 改写而来）在无结果时为 0，与 SumAggregate 一致
+            if (aggAlias[aggCtr] >= 0) {
+                for (int group = 0; group < nrGroups; group++) {
+                    if (nonNullCounts[group * nrAggs + aggCtr] == 0) {
+                        target.isNull.set(group);
+                    }
+                }
+            }
+            BufferManager.colToData.put(targetRef, target);
+            aggTblInfo.addColumn(new ColumnInfo(targetCol, type, false, false, false, false));
+            context.aggToData.put(agg.toString(), targetRef);
+            context.columnMapping.put(targetRef, targetRef);
+        }
+        CatalogManager.updateStats(aggTbl);
+    }
+
+    /**
+     * 分组值（各 GROUP BY 列的 longForRow），与 operators.Group 的比较方式一致。
+     */
+    private static class GroupKey {
+        private final long[] values;
+        private final int hash;
+
+        GroupKey(long[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof GroupKey && Arrays.equals(values, ((GroupKey) other).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package joining;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import catalog.CatalogManager;
+import config.JoinConfig;
+import config.LoggingConfig;
+import joining.parallel.indexing.DoublePartitionIndex;
+import joining.parallel.indexing.IntPartitionIndex;
+import joining.parallel.indexing.PartitionIndex;
+import joining.result.JoinResultSink;
+import predicate.NonEquiNode;
+import predicate.Operator;
+import preprocessing.Context;
+import query.QueryInfo;
+
+/**
+ * 只有非等值连接谓词的查询：基于排序与置换数组的不等值连接（IEJoin）。
+ * 各表依次加入（链式连接），每一步把已连接的中间结果（左侧）与一个新表（右侧）连接：
+ * <ul>
+ * <li>两个范围谓词（&lt;, &lt;=, &gt;, &gt;=，包括同一对列上的区间/band 条件）：
+ *     右表按第一个谓词的列排序（PartitionIndex.sortedRow），左侧按第二个谓词的列排序后扫描，
+ *     把满足第二个谓词的右表行按其在第一列排序中的位置标记到位图中，
+ *     再在第一个谓词对应的连续位置区间内枚举已标记的行；</li>
+ * <li>一个范围谓词：二分查找得到右表排序中的连续区间；</li>
+ * <li>没有范围谓词：笛卡尔积。</li>
+ * </ul>
+ * 其余谓词（第三个及以后的范围谓词、不等、常量比较）在生成结果时逐条检查。
+ * 谓词只能是比较的合取（AND），否则返回 null，由调用方退回嵌套循环。
+ */
+public class InequalityJoin {
+    private final QueryInfo query;
+    private final Context context;
+    private final int nrTables;
+    private final List<NonEquiNode> leaves = new ArrayList<>();    // 合取中的各比较谓词
+    private final Map<PartitionIndex, double[]> valueCache = new HashMap<>();
+
+    private InequalityJoin(QueryInfo query, Context context) {
+        this.query = query;
+        this.context = context;
+        this.nrTables = query.nrJoined;
+    }
+
+    /**
+     * 执行不等值连接。
+     *
+     * @return  各线程的列式连接结果；谓词形式不支持时返回 null
+     */
+    public static List<JoinResultSink> execute(QueryInfo query, Context context) {
+        InequalityJoin join = new InequalityJoin(query, context);
+        for (NonEquiNode node : query.nonEquiJoinNodes) {
+            if (!join.collectLeaves(node)) {
+                return null;
+            }
+        }
+        return join.execute();
+    }
+
+    private List<JoinResultSink> execute() {
+        BitSet joined = new BitSet(nrTables);
+        BitSet applied = new BitSet(leaves.size());
+        // 第一张表：按其常量谓词过滤
+        int firstTable = 0;
+        joined.set(firstTable);
+        List<NonEquiNode> firstFilters = newlyCovered(joined, applied);
+        int[] tuple = new int[nrTables];
+        int firstCard = cardinality(firstTable);
+        int[] firstRows = new int[firstCard];
+        int nrLeft = 0;
+        for (int row = 0; row < firstCard; row++) {
+            tuple[firstTable] = row;
+            if (satisfies(firstFilters, tuple)) {
+                firstRows[nrLeft++] = row;
+            }
+        }
+        int[][] leftCols = new int[nrTables][];
+        leftCols[firstTable] = firstRows;
+        List<JoinResultSink> result = null;
+        while (joined.cardinality() < nrTables) {
+            int newTable = nextTable(joined);
+            List<NonEquiNode> rangePreds = new ArrayList<>();
+            for (int leafCtr = 0; leafCtr < leaves.size(); leafCtr++) {
+                NonEquiNode leaf = leaves.get(leafCtr);
+                if (!applied.get(leafCtr) && rangePreds.size() < 2 && isRange(leaf) &&
+                        connects(leaf, joined, newTable)) {
+                    rangePreds.add(leaf);
+                    applied.set(leafCtr);
+                }
+            }
+            joined.set(newTable);
+            List<NonEquiNode> residuals = newlyCovered(joined, applied);
+            result = step(joined, leftCols, nrLeft, newTable, rangePreds, residuals);
+            if (LoggingConfig.PARALLEL_JOIN_VERBOSE) {
+                System.out.println("Inequality join step with " + (joined.cardinality() - 1) +
+                        " tables and " + rangePreds.size() + " range predicates: " +
+                        JoinResultSink.totalSize(result) + " tuples");
+            }
+            if (joined.cardinality() < nrTables) {
+                // 中间结果转为列式输入
+                nrLeft = JoinResultSink.totalSize(result);
+                for (int table = joined.nextSetBit(0); table >= 0; table = joined.nextSetBit(table + 1)) {
+                    int[] col = new int[nrLeft];
+                    JoinResultSink.forEachChunk(result, table, true, (rows, nrRows, offset) ->
+                            System.arraycopy(rows, 0, col, offset, nrRows));
+                    leftCols[table] = col;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 将中间结果（左侧，leftCols 中已连接表的行号）与新表连接。
+     */
+    private List<JoinResultSink> step(BitSet joined, int[][] leftCols, int nrLeft, int newTable,
+                                      List<NonEquiNode> rangePreds, List<NonEquiNode> residuals) {
+        int[] leftTables = joined.stream().filter(t -> t != newTable).toArray();
+        int rightCard = cardinality(newTable);
+        int nrParts = Math.max(1, Math.min(nrLeft, JoinConfig.NTHREAD * 4));
+        // 左侧与右表上各范围谓词的值（谓词统一为 左 op 右）
+        double[][] leftValues = new double[rangePreds.size()][];
+        double[][] rightValues = new double[rangePreds.size()][];
+        int[][] rightSorted = new int[rangePreds.size()][];
+        Operator[] ops = new Operator[rangePreds.size()];
+        for (int predCtr = 0; predCtr < rangePreds.size(); predCtr++) {
+            NonEquiNode pred = rangePreds.get(predCtr);
+            boolean newOnRight = pred.rightTable == newTable;
+            PartitionIndex leftIndex = newOnRight ? pred.leftIndex : pred.rightIndex;
+            PartitionIndex rightIndex = newOnRight ? pred.rightIndex : pred.leftIndex;
+            int leftTable = newOnRight ? pred.leftTable : pred.rightTable;
+            ops[predCtr] = newOnRight ? pred.operator : flip(pred.operator);
+            double[] values = values(leftIndex);
+            int[] rows = leftCols[leftTable];
+            double[] perLeft = new double[nrLeft];
+            for (int i = 0; i < nrLeft; i++) {
+                perLeft[i] = values[rows[i]];
+            }
+            leftValues[predCtr] = perLeft;
+            rightValues[predCtr] = values(rightIndex);
+            rightSorted[predCtr] = sortedRows(rightIndex, rightValues[predCtr], rightCard);
+        }
+        // 两个谓词时左侧按第二个谓词的值排序后扫描
+        int[] leftOrder = rangePreds.size() == 2 ? util.RadixSort.sortedOrder(leftValues[1], nrLeft) : null;
+        // 右表按第一个谓词排序后的值，以及两个谓词时的置换数组，各部分只读共享
+        double[] xs = rangePreds.isEmpty() ? null : sortedValues(rightValues[0], rightSorted[0], rightCard);
+        int[] posInX = rangePreds.size() == 2 ? positions(rightSorted[0], rightCard) : null;
+        return IntStream.range(0, nrParts).parallel().mapToObj(part -> {
+            JoinResultSink sink = new JoinResultSink(nrTables);
+            int[] tuple = new int[nrTables];
+            MatchConsumer consumer = (left, right) -> {
+                for (int table : leftTables) {
+                    tuple[table] = leftCols[table][left];
+                }
+                tuple[newTable] = right;
+                if (satisfies(residuals, tuple)) {
+                    sink.add(tuple);
+                }
+            };
+            int from = (int) ((long) nrLeft * part / nrParts);
+            int to = (int) ((long) nrLeft * (part + 1) / nrParts);
+            if (rangePreds.isEmpty()) {
+                for (int left = from; left < to; left++) {
+                    for (int right = 0; right < rightCard; right++) {
+                        consumer.accept(left, right);
+                    }
+                }
+            } else if (rangePreds.size() == 1) {
+                rangeJoin(leftValues[0], from, to, ops[0], xs, rightSorted[0], rightCard, consumer);
+            } else {
+                ieJoin(leftValues[0], leftValues[1], leftOrder, from, to, ops[0], ops[1],
+                        xs, posInX, rightValues[1], rightSorted[0], rightSorted[1], rightCard, consumer);
+            }
+            return sink;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * 连接结果的接收方。
+     */
+    interface MatchConsumer {
+        /**
+         * @param left  左侧下标
+         * @param right 右表行号
+         */
+        void accept(int left, int right);
+    }
+
+    /**
+     * 一个范围谓词 左.x op 右.x：对 [from, to) 中每个左侧下标，
+     * 满足谓词的右表行是右表按 x 排序后的一段连续区间。
+     *
+     * @param xs    右表 x 按 sortedX 升序排列的值
+     */
+    static void rangeJoin(double[] lx, int from, int to, Operator op, double[] xs,
+                          int[] sortedX, int card, MatchConsumer consumer) {
+        for (int left = from; left < to; left++) {
+            int lb = lowerPos(xs, card, lx[left], op);
+            int ub = upperPos(xs, card, lx[left], op);
+            for (int pos = lb; pos < ub; pos++) {
+                consumer.accept(left, sortedX[pos]);
+            }
+        }
+    }
+
+    /**
+     * 两个范围谓词 左.x op1 右.x 且 左.y op2 右.y（IEJoin）。
+     * 左侧按 y 的扫描顺序处理 leftOrder[from, to) 中的元组，把满足 op2 的右表行
+     * 按其在 x 排序中的位置标记到位图；满足 op1 的行是 x 排序中的连续区间，
+     * 在区间内枚举位图中已标记的行即为结果。
+     *
+     * @param leftOrder 左侧下标按 y 升序排列
+     * @param xs        右表 x 按 sortedX 升序排列的值
+     * @param posInX    右表行在 x 排序中的位置（置换数组）
+     */
+    static void ieJoin(double[] lx, double[] ly, int[] leftOrder, int from, int to,
+                       Operator op1, Operator op2, double[] xs, int[] posInX, double[] ry,
+                       int[] sortedX, int[] sortedY, int card, MatchConsumer consumer) {
+        long[] bits = new long[(card + 63) >>> 6];
+        // 右.y 需大于（或不小于）左.y 时按 y 降序扫描，否则按升序
+        boolean descending = op2 == Operator.MinorThan || op2 == Operator.MinorThanEquals;
+        int nrLeft = leftOrder.length;
+        int rightPtr = 0;
+        for (int i = from; i < to; i++) {
+            int left = descending ? leftOrder[nrLeft - 1 - i] : leftOrder[i];
+            double y = ly[left];
+            // 插入所有满足 左.y op2 右.y 的右表行（扫描中单调增加）
+            while (rightPtr < card) {
+                int row = descending ? sortedY[card - 1 - rightPtr] : sortedY[rightPtr];
+                if (!compare(y, op2, ry[row])) {
+                    break;
+                }
+                int pos = posInX[row];
+                bits[pos >>> 6] |= 1L << pos;
+                rightPtr++;
+            }
+            int lb = lowerPos(xs, card, lx[left], op1);
+            int ub = upperPos(xs, card, lx[left], op1);
+            // 枚举 [lb, ub) 中已标记的位置
+            for (int word = lb >>> 6; word < bits.length && (word << 6) < ub; word++) {
+                long wordBits = bits[word];
+                if (word == lb >>> 6) {
+                    wordBits &= -1L << lb;
+                }
+                while (wordBits != 0) {
+                    int pos = (word << 6) + Long.numberOfTrailingZeros(wordBits);
+                    if (pos >= ub) {
+                        break;
+                    }
+                    consumer.accept(left, sortedX[pos]);
+                    wordBits &= wordBits - 1;
+                }
+            }
+        }
+    }
+
+    // 左值 op 右值
+    static boolean compare(double left, Operator op, double right) {
+        switch (op) {
+            case MinorThan:
+                return left < right;
+            case MinorThanEquals:
+                return left <= right;
+            case GreaterThan:
+                return left > right;
+            default:
+                return left >= right;
+        }
+    }
+
+    // 满足 左 op 右.x 的区间起点（右表 x 升序排列）
+    static int lowerPos(double[] xs, int card, double value, Operator op) {
+        switch (op) {
+            case MinorThan:         // 右.x > value
+                return firstGreater(xs, card, value);
+            case MinorThanEquals:   // 右.x >= value
+                return firstNotLess(xs, card, value);
+            default:                // 右.x < value 或 <= value
+                return 0;
+        }
+    }
+
+    // 满足 左 op 右.x 的区间终点（不含）
+    static int upperPos(double[] xs, int card, double value, Operator op) {
+        switch (op) {
+            case GreaterThan:       // 右.x < value
+                return firstNotLess(xs, card, value);
+            case GreaterThanEquals: // 右.x <= value
+                return firstGreater(xs, card, value);
+            default:
+                return card;
+        }
+    }
+
+    static int firstNotLess(double[] xs, int card, double value) {
+        int lb = 0;
+        int ub = card;
+        while (lb < ub) {
+            int mid = (lb + ub) >>> 1;
+            if (xs[mid] < value) {
+                lb = mid + 1;
+            } else {
+                ub = mid;
+            }
+        }
+        return lb;
+    }
+
+    static int firstGreater(double[] xs, int card, double value) {
+        int lb = 0;
+        int ub = card;
+        while (lb < ub) {
+            int mid = (lb + ub) >>> 1;
+            if (xs[mid] <= value) {
+                lb = mid + 1;
+            } else {
+                ub = mid;
+            }
+        }
+        return lb;
+    }
+
+    static double[] sortedValues(double[] values, int[] sortedRows, int card) {
+        double[] sorted = new double[card];
+        for (int pos = 0; pos < card; pos++) {
+            sorted[pos] = values[sortedRows[pos]];
+        }
+        return sorted;
+    }
+
+    // 行 -> 在排序中的位置
+    static int[] positions(int[] sortedRows, int card) {
+        int[] posOf = new int[card];
+        for (int pos = 0; pos < card; pos++) {
+            posOf[sortedRows[pos]] = pos;
+        }
+        return posOf;
+    }
+
+    static Operator flip(Operator op) {
+        switch (op) {
+            case MinorThan:
+                return Operator.GreaterThan;
+            case MinorThanEquals:
+                return Operator.GreaterThanEquals;
+            case GreaterThan:
+                return Operator.MinorThan;
+            case GreaterThanEquals:
+                return Operator.MinorThanEquals;
+            default:
+                return op;
+        }
+    }
+
+    /*=========================================谓词===========================================*/
+
+    // 展开合取，收集比较谓词；遇到不支持的形式返回 false
+    private boolean collectLeaves(NonEquiNode node) {
+        if (node.operator == Operator.AND) {
+            return collectLeaves(node.left) && collectLeaves(node.right);
+        }
+        switch (node.operator) {
+            case MinorThan:
+            case MinorThanEquals:
+            case GreaterThan:
+            case GreaterThanEquals:
+            case EqualsTo:
+            case NotEqualsTo:
+                break;
+            default:
+                return false;
+        }
+        if (node.constant != null) {
+            if (node.nonEquiIndex == null) {
+                return false;
+            }
+        } else if (node.leftIndex == null || node.rightIndex == null ||
+                (isRange(node) && (values(node.leftIndex) == null || values(node.rightIndex) == null))) {
+            return false;
+        }
+        leaves.add(node);
+        return true;
+    }
+
+    // 两表之间的范围比较，可由排序处理
+    private static boolean isRange(NonEquiNode leaf) {
+        if (leaf.constant != null || leaf.leftTable == leaf.rightTable) {
+            return false;
+        }
+        switch (leaf.operator) {
+            case MinorThan:
+            case MinorThanEquals:
+            case GreaterThan:
+            case GreaterThanEquals:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean connects(NonEquiNode leaf, BitSet joined, int newTable) {
+        return (leaf.leftTable == newTable && joined.get(leaf.rightTable)) ||
+                (leaf.rightTable == newTable && joined.get(leaf.leftTable));
+    }
+
+    // 所涉及的表都已连接、尚未使用的谓词（标记为已使用）
+    private List<NonEquiNode> newlyCovered(BitSet joined, BitSet applied) {
+        List<NonEquiNode> covered = new ArrayList<>();
+        for (int leafCtr = 0; leafCtr < leaves.size(); leafCtr++) {
+            NonEquiNode leaf = leaves.get(leafCtr);
+            boolean allJoined = leaf.constant != null ? joined.get(leaf.table) :
+                    joined.get(leaf.leftTable) && joined.get(leaf.rightTable);
+            if (!applied.get(leafCtr) && allJoined) {
+                covered.add(leaf);
+                applied.set(leafCtr);
+            }
+        }
+        return covered;
+    }
+
+    private static boolean satisfies(List<NonEquiNode> preds, int[] tuple) {
+        for (NonEquiNode pred : preds) {
+            if (!pred.evaluate(tuple)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 下一个加入的表：与已连接表之间范围谓词最多的表，其次行数较少的表
+    private int nextTable(BitSet joined) {
+        int best = -1;
+        int bestPreds = -1;
+        for (int table = joined.nextClearBit(0); table < nrTables; table = joined.nextClearBit(table + 1)) {
+            int nrPreds = 0;
+            for (NonEquiNode leaf : leaves) {
+                if (isRange(leaf) && connects(leaf, joined, table)) {
+                    nrPreds++;
+                }
+            }
+            if (nrPreds > bestPreds || (nrPreds == bestPreds && cardinality(table) < cardinality(best))) {
+                best = table;
+                bestPreds = nrPreds;
+            }
+        }
+        return best;
+    }
+
+    private int cardinality(int table) {
+        return CatalogManager.getCardinality(context.aliasToFiltered.get(query.aliases[table]));
+    }
+
+    private double[] values(PartitionIndex index) {
+        return valueCache.computeIfAbsent(index, InequalityJoin::columnValues);
+    }
+
+    // 索引列的值（转为 double 比较，int 值精确表示）；不支持的索引返回 null
+    static double[] columnValues(PartitionIndex index) {
+        if (index instanceof IntPartitionIndex) {
+            int[] data = ((IntPartitionIndex) index).intData.data;
+            double[] values = new double[data.length];
+            for (int row = 0; row < data.length; row++) {
+                values[row] = data[row];
+            }
+            return values;
+        } else if (index instanceof DoublePartitionIndex) {
+            return ((DoublePartitionIndex) index).doubleData.data;
+        }
+        return null;
+    }
+
+    /**
+     * 索引的 sortedRow（按值升序的行号），未排序时先排序。
+     */
+    static int[] sortedRows(PartitionIndex index, double[] values, int card) {
+        if (!index.rowsSorted) {
+            index.sortRows();
+        }
+        assert isSortedOrder(index.sortedRow, values, card);
+        return index.sortedRow;
+    }
+
+    private static boolean isSortedOrder(int[] rows, double[] values, int card) {
+        if (rows == null || rows.length != card) {
+            return false;
+        }
+        BitSet seen = new BitSet(card);
+        for (int pos = 0; pos < card; pos++) {
+            int row = rows[pos];
+            if (row < 0 || row >= card || seen.get(row) ||
+                    (pos > 0 && values[rows[pos - 1]] > values[row])) {
+                return false;
+            }
+            seen.set(row);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,44 @@
+package joining;
+
+import joining.result.JoinListGenerator;
+import util.IntArray;
+
+/**
+ * 连接线程的复用缓冲区：Trie 各层的状态数组、LeapFrogJoin 与
+ * JoinListGenerator（含各表的 ResultTrie）在组合之间、层之间重置后复用，
+ * 稳态下每个组合与每个连接任务几乎不再分配内存。
+ * 只能由一个线程使用，且上一个组合的结果必须在创建下一个组合的 Trie 之前消费完。
+ */
+public class JoinArena {
+    static final int TRIE_BUFFERS = 6;      // Trie 中 IntArray 的个数
+
+    final LeapFrogJoin leapFrogJoin;
+    private final IntArray[][] trieBuffers; // aliasID -> Trie 的状态数组
+    private JoinListGenerator generator;
+    NonEquiFilter.Buffers nonEquiBuffers;   // 非等值谓词检查的批缓冲区（按需分配）
+
+    public JoinArena(int nrTables) {
+        leapFrogJoin = new LeapFrogJoin(nrTables);
+        trieBuffers = new IntArray[nrTables][];
+    }
+
+    IntArray[] trieBuffers(int aliasID) {
+        if (trieBuffers[aliasID] == null) {
+            IntArray[] buffers = new IntArray[TRIE_BUFFERS];
+            for (int i = 0; i < TRIE_BUFFERS; i++) {
+                buffers[i] = new IntArray(16, Integer.MAX_VALUE);
+            }
+            trieBuffers[aliasID] = buffers;
+        }
+        return trieBuffers[aliasID];
+    }
+
+    JoinListGenerator generator(Trie[] tries, int totalVarCount) {
+        if (generator == null) {
+            generator = new JoinListGenerator(tries, totalVarCount);
+        } else {
+            generator.init(tries);
+        }
+        return generator;
+    }
+}
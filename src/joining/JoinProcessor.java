@@ -2,7 +2,6 @@ package joining;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
@@ -14,21 +13,29 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 
 import buffer.BufferManager;
-import catalog.CatalogManager;
+import config.JoinConfig;
+import config.PlannerMode;
 import data.ColumnData;
 import data.DoubleData;
+import data.EncodedIntData;
 import data.IntData;
-import expressions.ExpressionInfo;
-import predicate.NonEquiNode;
+import joining.result.JoinResultSink;
 import preprocessing.Context;
 import query.ColumnRef;
 import query.QueryInfo;
+import util.Pair;
 
 
-public class JoinProcessor implements Callable<List<int[]>>{
+public class JoinProcessor implements Callable<JoinResultSink>{
 
     // 生成一个attribute order
     public static List<Set<ColumnRef>> planGenerator(QueryInfo query, Context context) throws Exception {
+        if (JoinConfig.PLANNER == PlannerMode.COST_BASED) {
+            List<Set<ColumnRef>> plan = AttributeOrderPlanner.plan(query, context);
+            if (plan != null) {
+                return plan;
+            }
+        }
         BitSet preStatus = new BitSet(query.aliases.length);
         Map<String, Integer> s2i = query.aliasToIndex;
 
@@ -48,9 +55,8 @@ public class JoinProcessor implements Callable<List<int[]>>{
             for (ColumnRef colRef : eqClass) {
                 String table = context.aliasToFiltered.get(colRef.aliasName);
                 ColumnData colData = BufferManager.getData(new ColumnRef(table, colRef.columnName));
-                if(colData instanceof IntData) {
-                    IntData intData = (IntData) colData;
-                    minCardinality = Math.min(minCardinality, intData.cardinality);
+                if(colData instanceof IntData || colData instanceof EncodedIntData) {
+                    minCardinality = Math.min(minCardinality, colData.cardinality);
                 }
                 else if(colData instanceof DoubleData) {
                     DoubleData doubleData = (DoubleData) colData;
@@ -213,11 +219,21 @@ public class JoinProcessor implements Callable<List<int[]>>{
     static QueryInfo query;
     static Context context;
     static List<Set<ColumnRef>> varOrder;
+    // 非等值谓词及未参与等值连接的表的处理（各线程共享）
+    static NonEquiFilter nonEquiFilter;
 
     int threadId;
+    // 分解式聚合模式下本线程的部分聚合结果，否则为 null
+    final FactorizedAggregator aggregator;
     
     JoinProcessor(int threadId, QueryInfo query, Context context, List<Set<ColumnRef>> varOrder) {
+        this(threadId, query, context, varOrder, null);
+    }
+
+    JoinProcessor(int threadId, QueryInfo query, Context context, List<Set<ColumnRef>> varOrder,
+            FactorizedAggregator aggregator) {
         this.threadId = threadId;
+        this.aggregator = aggregator;
         static_init(query, context, varOrder);
     }
 
@@ -225,121 +241,95 @@ public class JoinProcessor implements Callable<List<int[]>>{
         query = _query;
         context = _context;
         varOrder = _varOrder;
+        if (nonEquiFilter == null || nonEquiFilter.query != _query) {
+            nonEquiFilter = new NonEquiFilter(_query, _context);
+        }
     }
 
     @Override
-    public List<int[]> call() throws Exception {
-        List<int[]> joinResults = new ArrayList<>();
-        while(true) {
-            Trie[] tries =  manager.next_tries();
-            if(tries == null) break;
-            LeapFrogTrieJoin lftj = new LeapFrogTrieJoin(tries);
-            for (Set<ColumnRef> var : varOrder) {
-                lftj.executeJoin(var);
+    public JoinResultSink call() throws Exception {
+        // 本线程的列式连接结果
+        JoinResultSink joinResults = new JoinResultSink(query.nrJoined);
+        boolean noNonEqui = query.nonEquiJoinPreds.isEmpty();
+        long busyNanos = 0;
+        int nrProcessed = 0;
+        long nrJoinLists = 0;
+        // 本线程在各组合间复用的缓冲区
+        JoinArena arena = new JoinArena(query.nrJoined);
+        long startAllocated = TrieManager.allocatedBytes();
+        manager.workerStarted();
+        try {
+            while(true) {
+                Pair<Integer, Integer>[] domains = manager.nextDomains(threadId);
+                if(domains == null) break;
+                // 计时包含 trie 构建（在 execute 中）
+                long startNanos = System.nanoTime();
+                LeapFrogTrieJoin lftj = execute(domains, startNanos, arena);
+                if (lftj == null) {
+                    // 结果数已达到 LIMIT
+                    busyNanos += System.nanoTime() - startNanos;
+                    break;
+                }
+                nrJoinLists += lftj.intersections;
+                if (aggregator != null) {
+                    lftj.aggregateResult(aggregator);
+                } else {
+                    // 有 LIMIT 时展开到上限为止
+                    long nrBefore = joinResults.size();
+                    long remaining = manager.remainingResults();
+                    joinResults.setCapacity(remaining == Long.MAX_VALUE ? remaining : nrBefore + remaining);
+                    if (noNonEqui && lftj.allTriesJoined()) {
+                        lftj.genResultTuple(joinResults);
+                    } else {
+                        nonEquiFilter.filter(lftj.genFactorizedResult(), joinResults, arena);
+                    }
+                    manager.addResults(joinResults.size() - nrBefore);
+                }
+                manager.addForkedTasks(lftj.forkedTasks);
+                busyNanos += System.nanoTime() - startNanos;
+                nrProcessed++;
             }
-            joinResults.addAll(handleNonEquiPredicates(lftj.genResultTuple()));
+        } catch (Exception | Error e) {
+            // 出错的线程不再算作活跃，避免空闲线程一直等待
+            manager.workerAborted();
+            throw e;
         }
+        manager.reportThread(threadId, busyNanos, System.nanoTime(), nrProcessed,
+                TrieManager.allocatedBytes() - startAllocated, nrJoinLists);
 
         return joinResults;
     }
 
 
-    public List<int[]> handleNonEquiPredicates(List<int[]> currentResult) {
-        List<int[]> joinResult = new ArrayList<>();
-        if (currentResult.size() > 0) {
-            // we have non equality predicates here.
-            if (query.nonEquiJoinPreds.size() > 0) {
-                // number of non equality join predicates
-                int nrNonEquivalentPredict = query.nonEquiJoinNodes.size();
-                List<ExpressionInfo> nonEquiExpressions = query.nonEquiJoinPreds;
-                // map non equality predicate id to table id
-                HashMap<Integer, Integer> nonEquiTablesToAliasIndex = new HashMap<>();
-                HashMap<Integer, Integer> nonEquiCards = new HashMap<>();
-                Set<Integer> availableTables = new HashSet<>();
-
-                for (int tid = 0; tid < query.nrJoined; tid++) {
-                    availableTables.add(tid);
-                    for (int eid = 0; eid < nrNonEquivalentPredict; eid++) {
-                        if (!nonEquiTablesToAliasIndex.containsKey(eid) && availableTables.containsAll(
-                                nonEquiExpressions.get(eid).aliasIdxMentioned)) {
-                            nonEquiTablesToAliasIndex.put(eid, tid);
-                            String alias = query.aliases[tid];
-                            String table = context.aliasToFiltered.get(alias);
-                            nonEquiCards.put(eid, CatalogManager.getCardinality(table));
-                        }
-                    }
-                }
-
-                Set<Integer> validateRowIds = new HashSet<>(currentResult.size());
-                for (int rid = 0; rid < currentResult.size(); rid++) {
-                    validateRowIds.add(rid);
-                }
-
-                for (int nonEquiPredictId = 0; nonEquiPredictId < nrNonEquivalentPredict; nonEquiPredictId++) {
-                    int processTableId = nonEquiTablesToAliasIndex.get(nonEquiPredictId);
-                    int cardinality = nonEquiCards.get(nonEquiPredictId);
-                    NonEquiNode nonEquiNode = query.nonEquiJoinNodes.get(nonEquiPredictId);
-                    Set<Integer> currentValidateRowIds = new HashSet<>();
-                    for (int rid : validateRowIds) {
-                        int[] result = currentResult.get(rid);
-                        if (result[processTableId] == -1) {
-                            // non equality condition is not mentioned before, should be exist or non-exist in subqueries
-                            // Create a copy to avoid modifying the original array during evaluation
-                            int[] testResult = Arrays.copyOf(result, result.length);
-                            testResult[processTableId] = 0;
-                            while (testResult[processTableId] < cardinality) {
-                                if (nonEquiNode.evaluate(testResult, processTableId, cardinality)) {
-                                    // satisfy condition - update original with found value
-                                    result[processTableId] = testResult[processTableId];
-                                    currentValidateRowIds.add(rid);
-                                    break;
-                                } else {
-                                    testResult[processTableId]++;
-                                }
-                            }
-                        } else {
-                            // test directly
-                            if (nonEquiNode.evaluate(result, processTableId, cardinality)) {
-                                // satisfy condition
-                                currentValidateRowIds.add(rid);
-                            }
-                        }
-                    }
-                    validateRowIds = currentValidateRowIds;
-                }
-
-                for (int validateRowId : validateRowIds) {
-                    joinResult.add(currentResult.get(validateRowId));
-                }
-            } else {
-                // apply cartesian
-                boolean applyCartesianProduct = false;
-                int cartesianProductTableIndex = -1;
-                for (int tid = 0; tid < currentResult.get(0).length; tid++) {
-                    int rid = currentResult.get(0)[tid];
-                    if (rid == -1) {
-                        applyCartesianProduct = true;
-                        cartesianProductTableIndex = tid;
-                        break;
-                    }
-                }
-                if (applyCartesianProduct) {
-                    // add more results here
-                    String alias = query.aliases[cartesianProductTableIndex];
-                    String table = context.aliasToFiltered.get(alias);
-                    int card = CatalogManager.getCardinality(table);
-                    for (int[] result : currentResult) {
-                        for (int i = 0; i < card; i++) {
-                            int[] newResult = Arrays.copyOf(result, result.length);
-                            newResult[cartesianProductTableIndex] = i;
-                            joinResult.add(newResult);
-                        }
-                    }
-                } else {
-                    joinResult.addAll(currentResult);
-                }
+    /**
+     * 对一个组合执行 LFTJ。运行超过 SPLIT_AFTER_MILLIS 且有线程空闲时，
+     * 在变量之间或层内把第一个变量剩余值域的后一半交给空闲线程，
+     * 本线程在已构建的层上继续处理前一半（见 LeapFrogTrieJoin.enableSplitting）。
+     * 其它线程的结果数已达到 LIMIT 时放弃组合，返回 null。
+     */
+    private LeapFrogTrieJoin execute(Pair<Integer, Integer>[] domains, long startNanos,
+            JoinArena arena) throws Exception {
+        // 自适应顺序：组合的行区间允许时在候选顺序中选择
+        int orderIdx = manager.selectOrder(domains);
+        List<Set<ColumnRef>> varOrder = manager.varOrder(orderIdx);
+        LeapFrogTrieJoin lftj = new LeapFrogTrieJoin(manager.createTries(domains, orderIdx, arena), arena, manager);
+        lftj.enableSplitting(domains, startNanos);
+        for (Set<ColumnRef> var : varOrder) {
+            if (manager.limitReached()) {
+                return null;
             }
+            lftj.executeJoin(var);
+        }
+        if (manager.limitReached()) {
+            return null;
+        }
+        // 生成结果之前再检查一次是否需要拆分
+        lftj.splitIfSlow();
+        long inputRows = 0;
+        for (Pair<Integer, Integer> domain : lftj.domains()) {
+            inputRows += domain.getSecond() - domain.getFirst();
         }
-        return joinResult;
+        manager.reportOrder(orderIdx, lftj.trieNodes + lftj.intersections, inputRows);
+        return lftj;
     }
-}
\ No newline at end of file
+}
@@ -2,109 +2,131 @@ package joining;
 
 import java.util.Arrays;
 
+import config.IntersectionKernel;
+import config.JoinConfig;
 
 // 负责在单个连接任务中执行Leapfrog Join算法（针对一组Trie的当前层）
+// 实例可复用：每个连接线程持有一个，对每个连接任务调用 init 后 execute，稳态下不再分配内存
 public class LeapFrogJoin {
-    private int[][] arrays;         // 每个Trie当前层的值数组
-    private int[][] arrayStatus;    // 有效标记
-    private int[][] arrayBounds;    // 每个Trie当前层的值范围（在值数组中的起始和结束索引）
-    private int arrayCnt;           // Trie的数量 - 迭代器数量
-    private int[] currentPositions; // 每个迭代器的当前位置
-    Trie[] inputTries;
+    private final int[][] arrays;         // 每个Trie当前层的值数组
+    private final int[][] arrayStatus;    // 有效标记
+    private final int[] lowerBounds;      // 每个Trie当前层的值范围（在值数组中的起始和结束索引）
+    private final int[] upperBounds;
+    private int arrayCnt;                 // Trie的数量 - 迭代器数量
+    private final int[] currentPositions; // 每个迭代器的当前位置
 
     // 添加emptyResult字段避免重复计算
     private boolean emptyResult = false;
 
-    // Estimated initial result size to minimize array resizing overhead
-    // private static final int INITIAL_RESULT_SIZE = 64; // 增大初始大小
-
     // 预分配临时数组避免重复创建
-    private int[] tempIndices;
-    private int[] tempFirstValues;
+    private final int[] tempIndices;
+    private final int[] tempFirstValues;
+    private final int[][] tempArrays;
+    private final int[][] tempStatus;
+    private final int[] tempLowerBounds;
+    private final int[] tempUpperBounds;
 
     // 缓存数组长度减少字段访问
     private final int[] arrayLengths;
 
+    // 求交内核：每个迭代器的 seek 方式，在 execute 中按列表长度比选择
+    static final int SEEK_BINARY = 0;
+    static final int SEEK_GALLOP = 1;
+    static final int SEEK_BLOCK = 2;
+    static final int LINEAR_RANGE = 8;      // 剩余范围不超过该值时线性扫描
+    static final int BLOCK_RATIO = 32;      // 列表长度不超过最短列表的该倍数时逐块比较，否则倍增查找
+    static final int MERGE_RATIO = 4;       // 两个列表长度相差不超过该倍数时直接归并
+    private final int[] seekKernels;
+
     /**
-     * Constructor with optimized iterator sorting and early validation, 初始化，根据每个Trie的当前层数据，按第一个值排序
-     * @param arrayIdxes 每个Trie的当前层的某个有效父节点的索引->可以获得所有Trie在当前层的在相同父路径下的所有节点值
-     * @param inputTries 与当前连接变量相关的所有Trie
+     * @param maxArrayCnt   最多参与求交的列表数（表数）
      */
-    public LeapFrogJoin(int[] arrayIdxes, Trie[] inputTries) {
-        this.arrayCnt = inputTries.length;
-        this.inputTries = inputTries;
-
-        // Early exit for empty input arrays
-        if (arrayCnt == 0) {
-            emptyResult = true;
-            this.arrayLengths = new int[0];
-            return;
-        }
-
-        this.arrays = new int[arrayCnt][];
-        this.arrayBounds = new int[arrayCnt][];
-        this.arrayStatus = new int[arrayCnt][];
-        this.currentPositions = new int[arrayCnt];
-        this.arrayLengths = new int[arrayCnt];
+    public LeapFrogJoin(int maxArrayCnt) {
+        arrays = new int[maxArrayCnt][];
+        arrayStatus = new int[maxArrayCnt][];
+        lowerBounds = new int[maxArrayCnt];
+        upperBounds = new int[maxArrayCnt];
+        currentPositions = new int[maxArrayCnt];
+        arrayLengths = new int[maxArrayCnt];
+        seekKernels = new int[maxArrayCnt];
+        tempIndices = new int[maxArrayCnt];
+        tempFirstValues = new int[maxArrayCnt];    // 迭代器首个值
+        tempArrays = new int[maxArrayCnt][];
+        tempStatus = new int[maxArrayCnt][];
+        tempLowerBounds = new int[maxArrayCnt];
+        tempUpperBounds = new int[maxArrayCnt];
+    }
 
-        // 预分配临时数组
-        this.tempIndices = new int[arrayCnt];
-        this.tempFirstValues = new int[arrayCnt];   // 迭代器首个值
+    public LeapFrogJoin(int[] arrayIdxes, Trie[] inputTries) {
+        this(inputTries.length);
+        init(arrayIdxes, inputTries);
+    }
 
-        // Validate bounds and collect first values for sorting
-        boolean hasEmptyBound = false;  // 空有效界限，交集为空
-        for (int i = 0; i < arrayCnt; i++) {
+    /**
+     * 初始化一个连接任务，根据每个Trie的当前层数据，按第一个值排序
+     * @param arrayIdxes 每个Trie的当前层的某个有效父节点的索引->可以获得所有Trie在当前层的在相同父路径下的所有节点值
+     * @param inputTries 与当前连接变量相关的所有Trie
+     */
+    public void init(int[] arrayIdxes, Trie[] inputTries) {
+        reset(inputTries.length);
+        for (int i = 0; i < arrayCnt && !emptyResult; i++) {
             Trie trie = inputTries[i];
+            // 父节点值块范围，也即本路径下的本层有效结点值范围
+            int baseIdx = arrayIdxes[i] << 1;
+            int[] arrayBounds = trie.curLevelArrayBounds.data;
+            setList(i, trie.curLevelValues.data, arrayBounds[baseIdx], arrayBounds[baseIdx + 1],
+                    trie.curLevelValueStatus.data);
+        }
+        sortIterators();
+    }
 
-            // 在此处拓展trie的下一层
-
-            int[] arrayBound = trie.boundsOfArray(arrayIdxes[i]);   // 获取父节点值块范围，也即本路径下的本层有效结点值范围
-
-            // Early detection of empty bounds
-            if (arrayBound[0] >= arrayBound[1]) {       // 对应路径没有任何值-交集为空，退出
-                hasEmptyBound = true;
-                break;
-            }
-
-            // Store first value for sorting optimization
-            tempFirstValues[i] = trie.curLevelValues.data[arrayBound[0]];
-            tempIndices[i] = i;
+    /**
+     * 开始设置新的一组列表（供不经过 Trie 的调用方使用，设置完后调用 sortIterators）。
+     */
+    public void reset(int nrLists) {
+        arrayCnt = nrLists;
+        emptyResult = nrLists == 0;
+    }
 
-            // Store references to avoid repeated access
-            arrays[i] = trie.curLevelValues.data;
-            arrayBounds[i] = arrayBound;
-            arrayStatus[i] = trie.curLevelValueStatus.data;
-            arrayLengths[i] = arrayBound[1] - arrayBound[0]; // 缓存长度
+    /**
+     * 设置第 listIdx 个列表：values[lb, ub) 有序且无重复，匹配的位置在 status 中标为 1（可为 null）。
+     */
+    public void setList(int listIdx, int[] values, int lb, int ub, int[] status) {
+        // 对应路径没有任何值-交集为空
+        if (lb >= ub) {
+            emptyResult = true;
+            return;
         }
+        arrays[listIdx] = values;
+        arrayStatus[listIdx] = status;
+        lowerBounds[listIdx] = lb;
+        upperBounds[listIdx] = ub;
+        arrayLengths[listIdx] = ub - lb; // 缓存长度
+        tempFirstValues[listIdx] = values[lb];
+        tempIndices[listIdx] = listIdx;
+    }
 
-        if (hasEmptyBound) {
-            emptyResult = true;
+    // Sort iterators by first value only if multiple iterators exist
+    public void sortIterators() {
+        if (emptyResult || arrayCnt <= 1) {
             return;
         }
+        sortIteratorsByFirstValue(tempFirstValues, tempIndices);
 
-        // Sort iterators by first value only if multiple iterators exist
-        if (arrayCnt > 1) {
-            sortIteratorsByFirstValue(tempFirstValues, tempIndices);
-
-            // Rearrange arrays according to sorted order
-            int[][] tempArrays = new int[arrayCnt][];
-            int[][] tempBounds = new int[arrayCnt][];
-            int[][] tempStatus = new int[arrayCnt][];
-            int[] tempLengths = new int[arrayCnt];
-
-            System.arraycopy(arrays, 0, tempArrays, 0, arrayCnt);
-            System.arraycopy(arrayBounds, 0, tempBounds, 0, arrayCnt);
-            System.arraycopy(arrayStatus, 0, tempStatus, 0, arrayCnt);
-            System.arraycopy(arrayLengths, 0, tempLengths, 0, arrayCnt);
-            
-            // 索引重分配
-            for (int i = 0; i < arrayCnt; i++) {
-                int srcIdx = tempIndices[i];    // 排序后的索引
-                arrays[i] = tempArrays[srcIdx];
-                arrayBounds[i] = tempBounds[srcIdx];
-                arrayStatus[i] = tempStatus[srcIdx];
-                arrayLengths[i] = tempLengths[srcIdx];
-            }
+        // Rearrange arrays according to sorted order
+        System.arraycopy(arrays, 0, tempArrays, 0, arrayCnt);
+        System.arraycopy(arrayStatus, 0, tempStatus, 0, arrayCnt);
+        System.arraycopy(lowerBounds, 0, tempLowerBounds, 0, arrayCnt);
+        System.arraycopy(upperBounds, 0, tempUpperBounds, 0, arrayCnt);
+
+        // 索引重分配
+        for (int i = 0; i < arrayCnt; i++) {
+            int srcIdx = tempIndices[i];    // 排序后的索引
+            arrays[i] = tempArrays[srcIdx];
+            arrayStatus[i] = tempStatus[srcIdx];
+            lowerBounds[i] = tempLowerBounds[srcIdx];
+            upperBounds[i] = tempUpperBounds[srcIdx];
+            arrayLengths[i] = tempUpperBounds[srcIdx] - tempLowerBounds[srcIdx];
         }
     }
 
@@ -173,13 +195,10 @@ public class LeapFrogJoin {
 
         // Single iterator optimization - avoid unnecessary complexity - 单表情况
         if (arrayCnt == 1) {
-            int[] bound = arrayBounds[0];
-            // int size = bound[1] - bound[0];
-
             // Mark all values as processed
             if (arrayStatus[0] != null) {
                 int[] status = arrayStatus[0];
-                Arrays.fill(status, bound[0], bound[1], 1); // 使用Arrays.fill优化
+                Arrays.fill(status, lowerBounds[0], upperBounds[0], 1); // 使用Arrays.fill优化
             }
 
             // Direct copy for better performance
@@ -191,7 +210,7 @@ public class LeapFrogJoin {
 
         // 初始化位置
         for (int i = 0; i < arrayCnt; i++) {
-            currentPositions[i] = arrayBounds[i][0];
+            currentPositions[i] = lowerBounds[i];
         }
 
         // Smart initial sizing based on smallest array
@@ -203,13 +222,42 @@ public class LeapFrogJoin {
         // int[] resultBuffer = new int[initialSize];
         // int resultSize = 0;
 
+        // 选择求交内核
+        IntersectionKernel kernel = JoinConfig.INTERSECTION;
+        int maxSize = 0;
+        for (int i = 0; i < arrayCnt; i++) {
+            maxSize = Math.max(maxSize, arrayLengths[i]);
+        }
+        if (kernel == IntersectionKernel.ADAPTIVE && arrayCnt == 2 &&
+                maxSize <= (long) minSize * MERGE_RATIO) {
+            mergeTwo();
+            return;
+        }
+        for (int i = 0; i < arrayCnt; i++) {
+            switch (kernel) {
+                case BINARY:
+                    seekKernels[i] = SEEK_BINARY;
+                    break;
+                case GALLOPING:
+                    seekKernels[i] = SEEK_GALLOP;
+                    break;
+                case BLOCK:
+                    seekKernels[i] = SEEK_BLOCK;
+                    break;
+                default:
+                    // 相邻两次 seek 之间预计跳过约 长度 / 最短长度 个值
+                    seekKernels[i] = arrayLengths[i] <= (long) minSize * BLOCK_RATIO ?
+                            SEEK_BLOCK : SEEK_GALLOP;
+            }
+        }
+
         // Cache frequently accessed values for performance
         int listIndex = 0;
         int maxIndex = arrayCnt - 1;
 
         // 缓存常用数组引用
         final int[][] localArrays = arrays;
-        final int[][] localBounds = arrayBounds;
+        final int[] localUpperBounds = upperBounds;
         final int[][] localStatus = arrayStatus;
         final int[] localPositions = currentPositions;
 
@@ -245,7 +293,7 @@ public class LeapFrogJoin {
             }
 
             // Check for end condition  越界检查
-            if (localPositions[listIndex] >= localBounds[listIndex][1]) {
+            if (localPositions[listIndex] >= localUpperBounds[listIndex]) {
                 break mainLoop;
             }
 
@@ -263,49 +311,111 @@ public class LeapFrogJoin {
     }
 
     /**
-     * 进一步优化的seek操作
+     * 两个长度相近的列表：无分支归并，相等时标记两侧，较小（或相等）的一侧前进。
+     */
+    private void mergeTwo() {
+        final int[] data0 = arrays[0];
+        final int[] data1 = arrays[1];
+        final int[] status0 = arrayStatus[0];
+        final int[] status1 = arrayStatus[1];
+        final int end0 = upperBounds[0];
+        final int end1 = upperBounds[1];
+        int pos0 = lowerBounds[0];
+        int pos1 = lowerBounds[1];
+        while (pos0 < end0 && pos1 < end1) {
+            final int value0 = data0[pos0];
+            final int value1 = data1[pos1];
+            if (value0 == value1) {
+                if (status0 != null)
+                    status0[pos0] = 1;
+                if (status1 != null)
+                    status1[pos1] = 1;
+            }
+            pos0 += value0 <= value1 ? 1 : 0;
+            pos1 += value0 >= value1 ? 1 : 0;
+        }
+    }
+
+    /**
+     * 将迭代器移动到第一个不小于 value 的位置（不存在时移到末尾）。
      */
     private void seek(int listIndex, int value) {
         final int[] data = arrays[listIndex];
         int pos = currentPositions[listIndex];
-        final int end = arrayBounds[listIndex][1];
+        final int end = upperBounds[listIndex];
 
         // Fast path: already at or beyond target value
-        if (pos >= end)
+        if (pos >= end || data[pos] >= value)
             return;
 
-        int currentValue = data[pos];
-        if (currentValue >= value)
-            return;
-
-        // 对于小范围使用线性搜索，阈值调整为8
-        int range = end - pos;
-        if (range <= 8) {
+        // 对于小范围使用线性搜索
+        if (end - pos <= LINEAR_RANGE) {
             do {
                 pos++;
-                if (pos >= end)
-                    break;
-                currentValue = data[pos];
-            } while (currentValue < value);
+            } while (pos < end && data[pos] < value);
             currentPositions[listIndex] = pos;
             return;
         }
 
-        // Binary search for larger ranges - 优化版本
-        int left = pos + 1;
-        int right = end - 1;
+        switch (seekKernels[listIndex]) {
+            case SEEK_GALLOP:
+                currentPositions[listIndex] = gallop(data, pos, end, value);
+                break;
+            case SEEK_BLOCK:
+                currentPositions[listIndex] = blockScan(data, pos, end, value);
+                break;
+            default:
+                currentPositions[listIndex] = binarySearch(data, pos + 1, end, value);
+        }
+    }
 
+    /**
+     * 在 [left, end) 中二分查找第一个不小于 value 的位置。
+     */
+    static int binarySearch(int[] data, int left, int end, int value) {
+        int right = end - 1;
         while (left <= right) {
             int middle = (left + right) >>> 1; // Unsigned shift for performance
-            int middleValue = data[middle];
-
-            if (middleValue < value) {
+            if (data[middle] < value) {
                 left = middle + 1;
             } else {
                 right = middle - 1;
             }
         }
+        return left;
+    }
 
-        currentPositions[listIndex] = left;
+    /**
+     * 倍增查找：从当前位置（data[pos] < value）开始以 1, 2, 4, ... 的步长
+     * 找到包含目标的区间，再在区间内二分，代价与跳过的距离成对数关系。
+     */
+    static int gallop(int[] data, int pos, int end, int value) {
+        int step = 1;
+        while (pos + step < end && data[pos + step] < value) {
+            pos += step;
+            step <<= 1;
+        }
+        return binarySearch(data, pos + 1, Math.min(pos + step, end), value);
+    }
+
+    /**
+     * 逐块比较：每次比较 8 个值并累加小于 value 的个数（无分支），
+     * 有序列表中该个数即为块内第一个不小于 value 的位置。适合跳过距离较短的稠密列表。
+     */
+    static int blockScan(int[] data, int pos, int end, int value) {
+        while (pos + 8 <= end) {
+            int count = (data[pos] < value ? 1 : 0) + (data[pos + 1] < value ? 1 : 0) +
+                    (data[pos + 2] < value ? 1 : 0) + (data[pos + 3] < value ? 1 : 0) +
+                    (data[pos + 4] < value ? 1 : 0) + (data[pos + 5] < value ? 1 : 0) +
+                    (data[pos + 6] < value ? 1 : 0) + (data[pos + 7] < value ? 1 : 0);
+            pos += count;
+            if (count < 8) {
+                return pos;
+            }
+        }
+        while (pos < end && data[pos] < value) {
+            pos++;
+        }
+        return pos;
     }
-}
\ No newline at end of file
+}
@@ -4,16 +4,22 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
+import config.JoinConfig;
+
+import joining.result.FactorizedResult;
 import joining.result.JoinListGenerator;
+import joining.result.JoinResultSink;
+import joining.result.ResultTrie;
 import query.ColumnRef;
-import util.CartesianProduct;
+import util.Pair;
 
 public class LeapFrogTrieJoin {
 
@@ -30,9 +36,35 @@ public class LeapFrogTrieJoin {
     private int varCount;   // 前已添加的变量数
 
     private JoinListGenerator generator; // 连接列表生成器（JoinListGenerator），用于生成连接任务。
+    private final LeapFrogJoin join;     // 复用的单变量求交器
+
+    // 组合内并行：有空闲的连接线程时，把各 Trie 的 nextLevel 与成块的连接列表拆成 fork/join 子任务，
+    // 在与组合级任务相同的 ForkJoinPool 中由空闲线程窃取执行
+    static final int PARALLEL_MIN_ROWS = 1 << 16;    // 各 Trie 行数之和达到该值时并行构造下一层
+    static final int PARALLEL_MIN_LISTS = 1 << 10;   // 每个子任务至少处理的连接列表数
+    private TrieManager manager;         // 用于判断是否有空闲线程，为 null 时不拆分
+    public long forkedTasks = 0;         // 拆出的子任务数
+
+    // 运行时拆分慢组合：运行超过 SPLIT_AFTER_MILLIS 且有线程空闲时，把第一个变量剩余值域的后一半
+    // 交给空闲线程，本线程剪去这一半后在已构建的层上继续。在变量之间以及层内每处理
+    // SPLIT_CHECK_LISTS 个连接列表后检查。domains 为 null 时不拆分
+    static final int SPLIT_CHECK_LISTS = 1 << 10;
+    private Pair<Integer, Integer>[] domains;   // 组合的各 trie 行区间，拆分后为保留的前一半
+    private long splitStartNanos;               // 开始或上次拆分的时间
 
     // 优化后的构造函数,初始化所有Trie（并行创建）
     public LeapFrogTrieJoin(Trie[] tries) throws Exception {
+        this(tries, null);
+    }
+
+    // arena 为连接线程的复用缓冲区，为 null 时新分配
+    public LeapFrogTrieJoin(Trie[] tries, JoinArena arena) throws Exception {
+        this(tries, arena, null);
+    }
+
+    // manager 不为 null 时，有空闲线程则在组合内部并行
+    public LeapFrogTrieJoin(Trie[] tries, JoinArena arena, TrieManager manager) throws Exception {
+        this.manager = manager;
         
         // 获取变量总数
         totalVarCount = TrieManager.totalVarCount;
@@ -47,11 +79,17 @@ public class LeapFrogTrieJoin {
 
         // 初始化所有Tries
         this.tries = tries;
-        generator = new JoinListGenerator(tries, totalVarCount);        // 初始化结果生成器（直接使用 Trie 合并结构）
+        if (arena == null) {
+            generator = new JoinListGenerator(tries, totalVarCount);        // 初始化结果生成器（直接使用 Trie 合并结构）
+            join = new LeapFrogJoin(tries.length);
+        } else {
+            generator = arena.generator(tries, totalVarCount);
+            join = arena.leapFrogJoin;
+        }
     }
 
     // 计算当前所有已加入等价类后，哪些表已经通过等价类连通，哪些还没连通，并分组
-    public List<TreeSet<Integer>> addVariable(Set<ColumnRef> nextVar) {
+    public List<int[]> addVariable(Set<ColumnRef> nextVar) {
         if (varCount >= totalVarCount) {
             throw new IllegalStateException("Cannot add more variables than totalVarCount: " + totalVarCount);
         }
@@ -77,7 +115,7 @@ public class LeapFrogTrieJoin {
         // 更新varID    (next var)
         varCount++;
 
-        List<TreeSet<Integer>> aliasGrouping = new ArrayList<>();        // Groups
+        List<int[]> aliasGrouping = new ArrayList<>();        // Groups（组内 aliasID 升序）
         updateLevelAliasGrouping(aliasGrouping);
         return aliasGrouping;
 
@@ -122,93 +160,61 @@ public class LeapFrogTrieJoin {
         }
     }
 
-    private void updateLevelAliasGrouping(List<TreeSet<Integer>> aliasGrouping) {
+    private void updateLevelAliasGrouping(List<int[]> aliasGrouping) {
         int curVarId = varCount - 1;    // 前面操作中 varCount++
+        int aliasCnt = alias2ID.size();
 
-        Set<Integer> colSet = new HashSet<>();
-        for (int c = 0; c < alias2ID.size(); c++) {
-            if (trieMatrix[curVarId][c])
-                colSet.add(c);  // 获取相关表
-        }
-
-
-
-        Set<Integer> allCols = new HashSet<>(colSet);   // 保存副本
-
-        // 使用Union-Find高效合并当前(已加入)变量相关的相交集—————— 连通的层， 分为一组，不同组不存在相关约束，同组内各表必定有同约束的路径
+        // 使用Union-Find合并当前变量相关表的历史层——连通的层分为一组，不同组不存在相关约束，同组内各表必定有同约束的路径。
+        // 两个表在同一历史层共同出现时，它们的历史层都与该层合并，因此也在同一组
         UnionFind unionFind = new UnionFind(curVarId);  /// size为当前加入的层数目
-        Map<Integer, List<Integer>> columnToRows = new HashMap<>(); // 构建表-层映射
-
-        // 对当前行中的每列(表)，找出它在之前行的位置
-        for (int c : allCols) {
-            List<Integer> rows = new ArrayList<>();
+        int[] firstRow = new int[aliasCnt];             // 表最近的历史层，-1 表示没有历史层（或不涉及当前变量）
+        Arrays.fill(firstRow, -1);
+        for (int c = 0; c < aliasCnt; c++) {
+            if (!trieMatrix[curVarId][c])
+                continue;
             for (int preVarId = curVarId - 1; preVarId >= 0; preVarId--) {
-                if (trieMatrix[preVarId][c])
-                    rows.add(preVarId); // 记录表c出现的历史层
-            }
-            if (!rows.isEmpty()) {  // 如果表c有历史层， 没有历史层的不处理
-                columnToRows.put(c, rows);  // 添加表-层映射————（一个表有哪些历史层）
-                // 合并所有相关行到同一连接组件
-                for (int i = 1; i < rows.size(); i++)   // 有历史层的可以尝试连通
-                    unionFind.union(rows.get(0), rows.get(i));
-            }
-        }
-        
-        // FIX: 确保在同一历史层共同出现的表被连通
-        // 这样它们在后续层会被分到同一组，保持共同的父路径约束
-        for (Map.Entry<Integer, List<Integer>> entry1 : columnToRows.entrySet()) {
-            for (Map.Entry<Integer, List<Integer>> entry2 : columnToRows.entrySet()) {
-                if (entry1.getKey() >= entry2.getKey()) continue; // 避免重复和自比较
-                
-                List<Integer> rows1 = entry1.getValue();
-                List<Integer> rows2 = entry2.getValue();
-                
-                // 找到它们共同出现的层
-                for (int row1 : rows1) {
-                    if (rows2.contains(row1)) {
-                        // 两个表在 row1 层共同出现，连通它们
-                        if (!rows1.isEmpty() && !rows2.isEmpty()) {
-                            unionFind.union(rows1.get(0), rows2.get(0));
-                        }
-                        break; // 只需连通一次
-                    }
+                if (trieMatrix[preVarId][c]) {
+                    if (firstRow[c] == -1)
+                        firstRow[c] = preVarId;
+                    else
+                        unionFind.union(firstRow[c], preVarId);
                 }
             }
         }
 
-        // 基于连接组件创建分组
-        Map<Integer, Set<Integer>> componentToColumns = new HashMap<>();
-        // 提取连通分量
-        for (Map.Entry<Integer, List<Integer>> entry : columnToRows.entrySet()) {
-            int column = entry.getKey();
-            List<Integer> rows = entry.getValue();
-
-            if (!rows.isEmpty()) {
-                int root = unionFind.find(rows.get(0));
-                if (!componentToColumns.containsKey(root))
-                    componentToColumns.put(root, new HashSet<>());
-                componentToColumns.get(root).add(column);
+        // 基于连接组件创建分组，按根的层号升序；组内 aliasID 升序
+        int[] groupSize = new int[Math.max(curVarId, 1)];
+        int nrRest = 0;
+        for (int c = 0; c < aliasCnt; c++) {
+            if (!trieMatrix[curVarId][c])
+                continue;
+            if (firstRow[c] == -1)
+                nrRest++;
+            else
+                groupSize[unionFind.find(firstRow[c])]++;
+        }
+        for (int root = 0; root < curVarId; root++) {
+            if (groupSize[root] == 0)
+                continue;
+            int[] group = new int[groupSize[root]];
+            int offset = 0;
+            for (int c = 0; c < aliasCnt; c++) {
+                if (firstRow[c] != -1 && unionFind.find(firstRow[c]) == root)
+                    group[offset++] = c;
             }
+            aliasGrouping.add(group);
         }
 
-        // 创建分组--（以前连通，并且当前层也连通的表）  这里感觉是不是多余了？
-        for (Set<Integer> colGroup : componentToColumns.values()) { // 对每个连通分量（包含表）
-            TreeSet<Integer> finalColGroup = new TreeSet<>();
-            for (int column : colGroup) {
-                // 只添加也存在于当前层的表（重检查防止多线程竞争导致的脏数据？）
-                if (trieMatrix[curVarId][column])
-                    finalColGroup.add(column);
-            }   
-            if (!finalColGroup.isEmpty()) {
-                allCols.removeAll(finalColGroup);   // 从剩余表中移除
-                aliasGrouping.add(finalColGroup);
+        // 将剩下的表（没有历史层的表）设为一组
+        if (nrRest > 0) {
+            int[] group = new int[nrRest];
+            int offset = 0;
+            for (int c = 0; c < aliasCnt; c++) {
+                if (trieMatrix[curVarId][c] && firstRow[c] == -1)
+                    group[offset++] = c;
             }
+            aliasGrouping.add(group);
         }
-
-        // 将剩下的表（历史层不连通的表）设为一组
-        if (!allCols.isEmpty())
-            aliasGrouping.add(new TreeSet<>(allCols));
-
     }
 
     public long nextLevelCost = 0;
@@ -216,17 +222,21 @@ public class LeapFrogTrieJoin {
     public long outterJoinCost = 0;
     public long addVariableCost = 0;
     public long initeTriesCost = 0;
+    // 工作量统计：构造的 trie 结点数与 leapfrog 求交次数
+    public long trieNodes = 0;
+    public long intersections = 0;
 
 
     public void executeJoin(Set<ColumnRef> var) {
+        splitIfSlow();
         int varID = varCount;
 
         // 根据每个表的历史层的连通性将与var相关的表进行分组，没有历史层的表组合为一组
-        List<TreeSet<Integer>> aliasGrouping = addVariable(var);
+        List<int[]> aliasGrouping = addVariable(var);
 
         Trie[] groupedCurTries = new Trie[trieByVar[varID].length];
         int offset = 0;
-        for (TreeSet<Integer> group : aliasGrouping) {
+        for (int[] group : aliasGrouping) {
             for (int aliasID : group) {
                 groupedCurTries[offset++] = tries[aliasID]; // 获得相关的Trie
             }
@@ -242,20 +252,26 @@ public class LeapFrogTrieJoin {
 
 
 
-        // CompletableFuture<?>[] futures = new CompletableFuture[groupedCurTries.length];
-        for (int i = 0; i < groupedCurTries.length; i++) {
-            final Trie trie = groupedCurTries[i];
-            // futures[i] = CompletableFuture.runAsync(() -> {
+        long nrRows = 0;
+        for (Trie trie : groupedCurTries) {
+            nrRows += trie.cardinality;
+        }
+        if (groupedCurTries.length > 1 && nrRows >= PARALLEL_MIN_ROWS && canFork()) {
+            // 各 Trie 的状态数组互不共享，可以同时构造
+            List<NextLevelTask> tasks = new ArrayList<>(groupedCurTries.length);
+            for (Trie trie : groupedCurTries) {
+                tasks.add(new NextLevelTask(trie));
+            }
+            ForkJoinTask.invokeAll(tasks);
+            forkedTasks += tasks.size();
+        } else {
+            for (Trie trie : groupedCurTries) {
                 trie.nextLevel();      // 构造每个Trie的下一层（本层）
-            // }); 
+            }
+        }
+        for (Trie trie : groupedCurTries) {
+            trieNodes += trie.curLevelValues.size;
         }
-        // for (Future<?> future : futures) {
-        //     try {
-        //         future.get();
-        //     } catch (InterruptedException | ExecutionException e) {
-        //         e.printStackTrace();
-        //     }
-        // }
 
 
 
@@ -286,56 +302,239 @@ public class LeapFrogTrieJoin {
     }
 
     private void paraleleExecute(int[][] joinLists, Trie[] groupedCurTries) {
-         for (int[] joinList: joinLists) {
-            LeapFrogJoin join = new LeapFrogJoin(joinList, groupedCurTries);
-            join.execute();
+        intersections += joinLists.length;
+        if (joinLists.length >= 2 * PARALLEL_MIN_LISTS && canFork()) {
+            // 不同连接列表只会把有效标记置为 1，分块并行不影响结果
+            forkedTasks += new JoinListTask(joinLists, 0, joinLists.length, groupedCurTries, join).invoke();
+            return;
+        }
+        for (int from = 0; from < joinLists.length; from += SPLIT_CHECK_LISTS) {
+            int to = Math.min(from + SPLIT_CHECK_LISTS, joinLists.length);
+            executeLists(join, joinLists, from, to, groupedCurTries);
+            if (to < joinLists.length) {
+                splitIfSlow(joinLists, to, groupedCurTries);
+            }
         }
     }
 
-    public List<int[]> genResultTuple() {
+    /**
+     * 允许运行时拆分本组合。
+     *
+     * @param domains       组合的各 trie 行区间
+     * @param startNanos    组合开始处理的时间
+     */
+    public void enableSplitting(Pair<Integer, Integer>[] domains, long startNanos) {
+        this.domains = domains;
+        this.splitStartNanos = startNanos;
+    }
 
+    // 组合当前（拆分后）的各 trie 行区间
+    public Pair<Integer, Integer>[] domains() {
+        return domains;
+    }
 
-        List<int[]> tuples = generator.genResult();
+    // 在变量之间（及生成结果之前）检查是否拆分
+    public void splitIfSlow() {
+        splitIfSlow(null, 0, null);
+    }
 
-        final int cnt = tries.length;
-        
-        for (int i = 0; i < cnt; i++) {
-            tries[i].lastLevel();
+    /**
+     * 运行时间超过 SPLIT_AFTER_MILLIS 且有线程空闲时拆分组合，拆分后重新计时。
+     * joinLists 不为 null 时在层内调用，next 为下一个待处理的连接列表。
+     */
+    private void splitIfSlow(int[][] joinLists, int next, Trie[] groupedCurTries) {
+        if (domains == null || System.nanoTime() - splitStartNanos < JoinConfig.SPLIT_AFTER_MILLIS * 1000000L ||
+                !manager.shouldSplit()) {
+            return;
         }
+        // 已加入 ResultTrie 的变量数（层内时当前变量尚未加入）
+        int nrAdded = joinLists == null ? varCount : varCount - 1;
+        boolean split;
+        if (nrAdded == 0) {
+            split = joinLists == null && splitRoots();
+        } else {
+            split = cutFirstVariable(joinLists, next, groupedCurTries);
+        }
+        if (split) {
+            splitStartNanos = System.nanoTime();
+        }
+    }
 
-        List<int[]> joinResult = new ArrayList<>();
-        
-    
-        for (final int[] tuple : tuples) {
-            List<List<Integer>> dimensions = new ArrayList<>(cnt);
-    
-            for (int tid = 0; tid < cnt; tid++) {
-                final Trie trie = tries[tid];
-                if (trie.curLevel == -1) {
-                    List<Integer> result = new ArrayList<>();
-                    result.add(-1);
-                    dimensions.add(result);
-                } else {
-                    int baseIdx = tuple[tid] << 1;
-                    int start = trie.curLevelValueBounds.data[baseIdx];
-                    int end = trie.curLevelValueBounds.data[baseIdx + 1];
-                    final int[] sourceIndices = trie.tupleIdx;
-                    List<Integer> result = new ArrayList<>();
-
-                    for (int i = start; i < end; i++) {
-                        result.add(sourceIndices[i]);
+    // 尚未构建任何层：缩小各 trie 的根区间
+    private boolean splitRoots() {
+        Pair<Integer, Integer>[] left = manager.split(domains);
+        if (left == null) {
+            return false;
+        }
+        for (int id = 0; id < tries.length; id++) {
+            if (!left[id].getSecond().equals(domains[id].getSecond())) {
+                tries[id].restrictRoot(left[id].getSecond());
+            }
+        }
+        domains = left;
+        return true;
+    }
+
+    /**
+     * 第一个变量已经连接：在其剩余值（不小于下一个待处理连接列表的值）的中位数处切分，
+     * 后一半交给其它线程，本线程从 ResultTrie 中剪去后一半，已构建的层保留。
+     * 层内拆分时，剩余连接列表中指向被剪去父结点的列表变为空列表。
+     */
+    private boolean cutFirstVariable(int[][] joinLists, int next, Trie[] groupedCurTries) {
+        int[] firstVarTries = manager.firstVarTries();
+        if (firstVarTries.length == 0) {
+            return false;
+        }
+        // 剩余值域的起点
+        int progress = Integer.MIN_VALUE;
+        if (joinLists != null) {
+            for (int pos = 0; pos < groupedCurTries.length; pos++) {
+                Trie trie = groupedCurTries[pos];
+                if (Arrays.binarySearch(firstVarTries, trie.aliasID) < 0) {
+                    continue;
+                }
+                int[] arrayBounds = trie.curLevelArrayBounds.data;
+                int baseIdx = joinLists[next][pos] << 1;
+                if (arrayBounds[baseIdx] < arrayBounds[baseIdx + 1]) {
+                    progress = trie.firstValue(trie.curLevelValueBounds.data[arrayBounds[baseIdx] << 1]);
+                }
+                break;
+            }
+        }
+        // 第一个变量在结果中的剩余值（升序，跳过墓碑）
+        ResultTrie rt = tries[firstVarTries[0]].rt;
+        int[] values = rt.levels[1];
+        int lb = rt.levelRanges[1][0];
+        int ub = rt.levelRanges[1][1];
+        int nrRemaining = 0;
+        for (int i = lb; i < ub; i++) {
+            if (values[i] != Integer.MAX_VALUE && values[i] >= progress) {
+                nrRemaining++;
+            }
+        }
+        if (nrRemaining < 2) {
+            return false;
+        }
+        int splitValue = 0;
+        int rank = nrRemaining / 2;
+        for (int i = lb; i < ub; i++) {
+            if (values[i] != Integer.MAX_VALUE && values[i] >= progress && rank-- == 0) {
+                splitValue = values[i];
+                break;
+            }
+        }
+        Pair<Integer, Integer>[] left = manager.splitAt(domains, splitValue);
+        if (left == null) {
+            return false;
+        }
+        for (int id : firstVarTries) {
+            tries[id].rt.cutFirstLevel(splitValue);
+        }
+        if (joinLists != null) {
+            for (Trie trie : groupedCurTries) {
+                if (Arrays.binarySearch(firstVarTries, trie.aliasID) < 0) {
+                    continue;
+                }
+                int[] lastLevel = trie.rt.levels[trie.rt.curMaxLevel];
+                int[] arrayBounds = trie.curLevelArrayBounds.data;
+                for (int i = 0; i < lastLevel.length; i++) {
+                    if (lastLevel[i] == Integer.MAX_VALUE) {
+                        arrayBounds[(i << 1) + 1] = arrayBounds[i << 1];
                     }
-                    dimensions.add(result);
                 }
             }
-            
-            List<List<Integer>> finalResults = CartesianProduct.constructCombinations(dimensions);
-            List<int[]> results = new ArrayList<>();
-            for (List<Integer> finalResult : finalResults) {
-                results.add(finalResult.stream().mapToInt(Integer::intValue).toArray());
+        }
+        domains = left;
+        return true;
+    }
+
+    private static void executeLists(LeapFrogJoin join, int[][] joinLists, int from, int to, Trie[] groupedCurTries) {
+        for (int i = from; i < to; i++) {
+            join.init(joinLists[i], groupedCurTries);
+            join.execute();
+        }
+    }
+
+    // 当前线程属于 ForkJoinPool 且有空闲的连接线程可以窃取子任务
+    private boolean canFork() {
+        return JoinConfig.INTRA_COMBINATION_PARALLELISM && manager != null &&
+                ForkJoinTask.inForkJoinPool() && manager.hasIdleWorkers();
+    }
+
+    // 构造一个 Trie 的下一层
+    @SuppressWarnings("serial")
+    private static class NextLevelTask extends RecursiveAction {
+        private final Trie trie;
+
+        NextLevelTask(Trie trie) {
+            this.trie = trie;
+        }
+
+        @Override
+        protected void compute() {
+            trie.nextLevel();
+        }
+    }
+
+    // 对连接列表 [from, to) 求交，超过两块时对半拆分；返回拆出的子任务数
+    @SuppressWarnings("serial")
+    private static class JoinListTask extends RecursiveTask<Integer> {
+        private final int[][] joinLists;
+        private final int from;
+        private final int to;
+        private final Trie[] groupedCurTries;
+        private final LeapFrogJoin join;    // 调用线程的求交器，拆出的子任务为 null，各自新建
+
+        JoinListTask(int[][] joinLists, int from, int to, Trie[] groupedCurTries, LeapFrogJoin join) {
+            this.joinLists = joinLists;
+            this.from = from;
+            this.to = to;
+            this.groupedCurTries = groupedCurTries;
+            this.join = join;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from < 2 * PARALLEL_MIN_LISTS) {
+                LeapFrogJoin leapFrogJoin = join != null ? join : new LeapFrogJoin(groupedCurTries.length);
+                executeLists(leapFrogJoin, joinLists, from, to, groupedCurTries);
+                return 1;
             }
-            joinResult.addAll(results);
+            int mid = (from + to) >>> 1;
+            JoinListTask right = new JoinListTask(joinLists, mid, to, groupedCurTries, null);
+            right.fork();
+            JoinListTask left = new JoinListTask(joinLists, from, mid, groupedCurTries, join);
+            return left.compute() + right.join();
         }
-        return joinResult;
+    }
+
+    // 分解式结果：每个结果元组对应各表的一段行区间，不展开笛卡尔积
+    public FactorizedResult genFactorizedResult() {
+        List<int[]> tuples = generator.genResult();
+        for (Trie trie : tries) {
+            trie.lastLevel();
+        }
+        return new FactorizedResult(tries, tuples);
+    }
+
+    // 分解式聚合：不展开各表区间的笛卡尔积，直接按区间长度累加
+    public void aggregateResult(FactorizedAggregator aggregator) {
+        aggregator.accumulate(genFactorizedResult());
+    }
+
+    // 所有表都参与了等值连接（没有需要笛卡尔积补全的表）
+    public boolean allTriesJoined() {
+        for (Trie trie : tries) {
+            if (trie.curLevel == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 将结果直接写入列式 sink：每个结果元组按各表行区间的笛卡尔积展开，预先算出积的大小，
+    // 行号直接写入预分配的列块；积很大且有空闲线程时分段并行展开
+    public void genResultTuple(JoinResultSink sink) {
+        forkedTasks += sink.addAll(genFactorizedResult(), canFork());
     }
 }
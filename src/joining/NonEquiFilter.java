@@ -0,0 +1,495 @@
+package joining;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import catalog.CatalogManager;
+import config.JoinConfig;
+import expressions.ExpressionInfo;
+import joining.parallel.indexing.DoublePartitionIndex;
+import joining.parallel.indexing.IntPartitionIndex;
+import joining.parallel.indexing.PartitionIndex;
+import joining.result.FactorizedResult;
+import joining.result.JoinResultSink;
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.CastExpression;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.schema.Column;
+import predicate.NonEquiNode;
+import predicate.Operator;
+import preprocessing.Context;
+import query.ColumnRef;
+import query.QueryInfo;
+
+/**
+ * 等值连接（LFTJ）之后的非等值谓词处理：
+ * <ul>
+ * <li>谓词的合取项若只涉及连接列（即 trie 的变量），在分解元组的各表区间上取值不变，
+ *     在展开笛卡尔积之前用代表行判定一次，不满足的分解元组整体丢弃；</li>
+ * <li>其余谓词在展开后的结果上分批检查，批内有效行用 long[] 位图标记；</li>
+ * <li>谓词涉及未参与等值连接的表（行号为 -1，存在语义，取第一个满足的行）时，
+ *     用该表列上的比较合取项在排序后的索引上二分得到候选区间，只检查区间内的行，
+ *     没有可用合取项时退回逐行扫描。</li>
+ * </ul>
+ * 没有非等值谓词时，未参与等值连接的表与结果做笛卡尔积。
+ * 未参与等值连接的表来自 EXISTS 子查询（半连接），每个外层绑定只需要一个满足条件的行：
+ * 谓词除该表外只涉及一张表时，按那张表的行号缓存找到的行（或不存在），
+ * 展开结果中同一外层行不再重复寻找。
+ * 分析结果在线程间共享，批缓冲区放在各线程的 JoinArena 中。
+ */
+public class NonEquiFilter {
+    static final int BATCH_SIZE = 1 << 12;
+    private static final int[] UNBOUND = {-1};
+    private static final int UNKNOWN = -2;
+
+    final QueryInfo query;
+    private final int nrTables;
+    private final int nrPreds;
+    private final NonEquiNode[] preds;
+    private final int[] processTable;       // 谓词在该表加入后判定（所涉及表的最大下标）
+    private final int[] cards;              // processTable 的行数
+    private final List<NonEquiNode> keyLeaves = new ArrayList<>();  // 只涉及连接列的合取项
+    private final boolean[] residual;       // 谓词是否还需要在展开后检查
+    private final List<List<NonEquiNode>> witnessLeaves = new ArrayList<>();    // 可用于二分候选区间的合取项，null 表示逐行扫描
+    private final boolean[] bound;          // 参与等值连接的表
+    private final int[] outerTable;         // 半连接：寻找满足条件的行只依赖的外层表，-1 表示不缓存
+    private final int[] outerCards;         // outerTable 的行数
+    private final int[][] identityRows;     // 笛卡尔积时未参与等值连接的表的全部行
+    private final Map<PartitionIndex, double[]> sortedValues = new HashMap<>();
+    private final Map<PartitionIndex, int[]> sortedRows = new HashMap<>();
+    private final Map<PartitionIndex, double[]> values = new HashMap<>();
+
+    /**
+     * 各线程的批缓冲区。
+     */
+    static class Buffers {
+        final int[][] batch;        // 按表存放的一批结果行号
+        final long[] valid;         // 批内仍然有效的结果
+        final int[] tuple;
+        final int[] starts;
+        final int[] ends;
+        final int[] positions;
+        final int[][] rows;         // 展开时各表的行号来源
+        final int[][] witnesses;    // 谓词 -> 外层行号 -> 满足条件的行（-1 不存在，UNKNOWN 未寻找）
+
+        Buffers(int nrTables, int nrPreds) {
+            batch = new int[nrTables][BATCH_SIZE];
+            valid = new long[BATCH_SIZE >>> 6];
+            tuple = new int[nrTables];
+            starts = new int[nrTables];
+            ends = new int[nrTables];
+            positions = new int[nrTables];
+            rows = new int[nrTables][];
+            witnesses = new int[nrPreds][];
+        }
+    }
+
+    public NonEquiFilter(QueryInfo query, Context context) {
+        this.query = query;
+        nrTables = query.nrJoined;
+        nrPreds = query.nonEquiJoinNodes.size();
+        preds = query.nonEquiJoinNodes.toArray(new NonEquiNode[0]);
+        bound = new boolean[nrTables];
+        Set<ColumnRef> keyColumns = new HashSet<>();
+        for (Set<ColumnRef> var : query.equiJoinAttribute) {
+            for (ColumnRef col : var) {
+                bound[query.aliasToIndex.get(col.aliasName)] = true;
+                keyColumns.add(col);
+            }
+        }
+        identityRows = new int[nrTables][];
+        if (nrPreds == 0) {
+            for (int tid = 0; tid < nrTables; tid++) {
+                if (!bound[tid]) {
+                    int card = cardinality(context, tid);
+                    identityRows[tid] = new int[card];
+                    for (int row = 0; row < card; row++) {
+                        identityRows[tid][row] = row;
+                    }
+                }
+            }
+        }
+        // 与原逐行处理相同：谓词在其涉及的表都加入后判定
+        processTable = new int[nrPreds];
+        cards = new int[nrPreds];
+        outerTable = new int[nrPreds];
+        outerCards = new int[nrPreds];
+        List<ExpressionInfo> expressions = query.nonEquiJoinPreds;
+        for (int eid = 0; eid < nrPreds; eid++) {
+            Set<Integer> mentioned = expressions.get(eid).aliasIdxMentioned;
+            int maxTable = 0;
+            for (int tid : mentioned) {
+                maxTable = Math.max(maxTable, tid);
+            }
+            processTable[eid] = maxTable;
+            cards[eid] = cardinality(context, maxTable);
+            outerTable[eid] = -1;
+            if (JoinConfig.SEMI_JOIN && !bound[maxTable] && mentioned.size() == 2) {
+                for (int tid : mentioned) {
+                    if (tid != maxTable) {
+                        outerTable[eid] = tid;
+                        outerCards[eid] = cardinality(context, tid);
+                    }
+                }
+            }
+        }
+        residual = new boolean[nrPreds];
+        for (int eid = 0; eid < nrPreds; eid++) {
+            List<NonEquiNode> leaves = new ArrayList<>();
+            boolean comparisons = collectLeaves(preds[eid], leaves);
+            boolean allKeys = comparisons;
+            List<NonEquiNode> witness = comparisons && !bound[processTable[eid]] ? new ArrayList<>() : null;
+            for (NonEquiNode leaf : comparisons ? leaves : new ArrayList<NonEquiNode>(0)) {
+                if (isKeyLeaf(leaf, keyColumns)) {
+                    keyLeaves.add(leaf);
+                } else {
+                    allKeys = false;
+                }
+                if (witness != null && isWitnessLeaf(leaf, processTable[eid])) {
+                    witness.add(leaf);
+                }
+            }
+            residual[eid] = !allKeys;
+            witnessLeaves.add(witness == null || witness.isEmpty() ? null : witness);
+        }
+    }
+
+    /**
+     * 处理一个组合的分解式连接结果，满足所有谓词的结果写入 sink，sink 已满时提前结束。
+     */
+    public void filter(FactorizedResult result, JoinResultSink sink, JoinArena arena) {
+        if (arena.nonEquiBuffers == null) {
+            arena.nonEquiBuffers = new Buffers(nrTables, nrPreds);
+        }
+        Buffers buffers = arena.nonEquiBuffers;
+        // 没有 trie 的表：笛卡尔积时取全部行，否则行号为 -1（由谓词寻找满足条件的行）
+        int[][] rows = buffers.rows;
+        for (int tid = 0; tid < nrTables; tid++) {
+            rows[tid] = result.joined[tid] ? result.rows[tid] :
+                    identityRows[tid] != null ? identityRows[tid] : UNBOUND;
+        }
+        int[] tuple = buffers.tuple;
+        int[] starts = buffers.starts;
+        int[] ends = buffers.ends;
+        int[] positions = buffers.positions;
+        int fill = 0;
+        for (int t = 0; t < result.size && !sink.isFull(); t++) {
+            // 只涉及连接列的合取项：用区间代表行判定整个分解元组
+            if (!keyLeaves.isEmpty()) {
+                for (int tid = 0; tid < nrTables; tid++) {
+                    tuple[tid] = result.joined[tid] ? result.representativeRow(t, tid) : -1;
+                }
+                if (!satisfies(keyLeaves, tuple)) {
+                    continue;
+                }
+            }
+            // 按里程表顺序展开分解元组
+            result.ranges(t, starts, ends);
+            boolean done = false;
+            for (int tid = 0; tid < nrTables; tid++) {
+                if (!result.joined[tid]) {
+                    starts[tid] = 0;
+                    ends[tid] = rows[tid].length;
+                }
+                done |= starts[tid] >= ends[tid];
+                positions[tid] = starts[tid];
+            }
+            while (!done) {
+                for (int tid = 0; tid < nrTables; tid++) {
+                    buffers.batch[tid][fill] = rows[tid][positions[tid]];
+                }
+                if (++fill == BATCH_SIZE) {
+                    flush(buffers, fill, sink);
+                    fill = 0;
+                    if (sink.isFull()) {
+                        return;
+                    }
+                }
+                int tid = nrTables - 1;
+                while (tid >= 0 && ++positions[tid] == ends[tid]) {
+                    positions[tid] = starts[tid];
+                    tid--;
+                }
+                done = tid < 0;
+            }
+        }
+        flush(buffers, fill, sink);
+    }
+
+    // 检查一批展开后的结果，把满足所有谓词的写入 sink
+    private void flush(Buffers buffers, int fill, JoinResultSink sink) {
+        if (fill == 0) {
+            return;
+        }
+        int[][] batch = buffers.batch;
+        long[] valid = buffers.valid;
+        int[] tuple = buffers.tuple;
+        int nrWords = (fill + 63) >>> 6;
+        for (int word = 0; word < nrWords; word++) {
+            valid[word] = -1L;
+        }
+        if ((fill & 63) != 0) {
+            valid[nrWords - 1] = (1L << fill) - 1;
+        }
+        for (int eid = 0; eid < nrPreds; eid++) {
+            if (!residual[eid]) {
+                continue;
+            }
+            int table = processTable[eid];
+            for (int word = 0; word < nrWords; word++) {
+                long bits = valid[word];
+                while (bits != 0) {
+                    int i = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    for (int tid = 0; tid < nrTables; tid++) {
+                        tuple[tid] = batch[tid][i];
+                    }
+                    boolean satisfied;
+                    if (tuple[table] == -1) {
+                        // 谓词涉及的表未参与等值连接：寻找满足条件的行
+                        int row = outerTable[eid] >= 0 ?
+                                cachedWitness(eid, tuple, buffers) : witness(eid, tuple);
+                        satisfied = row >= 0;
+                        if (satisfied) {
+                            batch[table][i] = row;
+                        }
+                    } else {
+                        satisfied = preds[eid].evaluate(tuple, table, cards[eid]);
+                    }
+                    if (!satisfied) {
+                        valid[word] &= ~(1L << i);
+                    }
+                }
+            }
+        }
+        for (int word = 0; word < nrWords; word++) {
+            long bits = valid[word];
+            while (bits != 0) {
+                int i = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                for (int tid = 0; tid < nrTables; tid++) {
+                    tuple[tid] = batch[tid][i];
+                }
+                sink.add(tuple);
+            }
+        }
+    }
+
+    /**
+     * 半连接：同一外层行只寻找一次满足谓词的行。
+     * 存在量词的表不是 trie 的变量，LFTJ 不感知半连接，提前结束只发生在这里
+     * （witness 找到第一个满足的行即返回）。
+     */
+    private int cachedWitness(int eid, int[] tuple, Buffers buffers) {
+        int[] witnesses = buffers.witnesses[eid];
+        if (witnesses == null) {
+            witnesses = new int[outerCards[eid]];
+            Arrays.fill(witnesses, UNKNOWN);
+            buffers.witnesses[eid] = witnesses;
+        }
+        int outerRow = tuple[outerTable[eid]];
+        if (outerRow < 0) {
+            return witness(eid, tuple);
+        }
+        int row = witnesses[outerRow];
+        if (row == UNKNOWN) {
+            row = witness(eid, tuple);
+            witnesses[outerRow] = row;
+        }
+        return row;
+    }
+
+    /**
+     * 为未绑定的表找一个满足谓词的行，没有时返回 -1。
+     */
+    private int witness(int eid, int[] tuple) {
+        int table = processTable[eid];
+        int card = cards[eid];
+        List<NonEquiNode> leaves = witnessLeaves.get(eid);
+        // 在可用的合取项中选候选区间最窄的一个
+        PartitionIndex bestIndex = null;
+        int bestLb = 0;
+        int bestUb = card;
+        if (leaves != null) {
+            for (NonEquiNode leaf : leaves) {
+                PartitionIndex index;
+                Operator op;
+                double value;
+                if (leaf.constant != null) {
+                    index = leaf.nonEquiIndex;
+                    op = leaf.operator;
+                    value = leaf.constant.doubleValue();
+                } else if (leaf.leftTable == table) {
+                    if (tuple[leaf.rightTable] < 0) {
+                        continue;
+                    }
+                    index = leaf.leftIndex;
+                    op = leaf.operator;
+                    value = values(leaf.rightIndex)[tuple[leaf.rightTable]];
+                } else {
+                    if (tuple[leaf.leftTable] < 0) {
+                        continue;
+                    }
+                    index = leaf.rightIndex;
+                    op = InequalityJoin.flip(leaf.operator);
+                    value = values(leaf.leftIndex)[tuple[leaf.leftTable]];
+                }
+                // 列 op value，即 value flip(op) 列
+                double[] xs = sortedValues.get(index);
+                int n = xs.length;
+                int lb;
+                int ub;
+                if (op == Operator.EqualsTo) {
+                    lb = InequalityJoin.firstNotLess(xs, n, value);
+                    ub = InequalityJoin.firstGreater(xs, n, value);
+                } else {
+                    Operator flipped = InequalityJoin.flip(op);
+                    lb = InequalityJoin.lowerPos(xs, n, value, flipped);
+                    ub = InequalityJoin.upperPos(xs, n, value, flipped);
+                }
+                if (bestIndex == null || ub - lb < bestUb - bestLb) {
+                    bestIndex = index;
+                    bestLb = lb;
+                    bestUb = ub;
+                }
+            }
+        }
+        if (bestIndex != null) {
+            int[] rows = sortedRows.get(bestIndex);
+            for (int pos = bestLb; pos < bestUb; pos++) {
+                tuple[table] = rows[pos];
+                if (preds[eid].evaluate(tuple)) {
+                    return rows[pos];
+                }
+            }
+            return -1;
+        }
+        // 逐行扫描（与原实现相同，谓词可能推进行号）
+        tuple[table] = 0;
+        while (tuple[table] < card) {
+            if (preds[eid].evaluate(tuple, table, card)) {
+                return tuple[table];
+            }
+            tuple[table]++;
+        }
+        return -1;
+    }
+
+    /*=========================================谓词分析===========================================*/
+
+    // 展开合取；全部由比较构成时返回 true
+    private static boolean collectLeaves(NonEquiNode node, List<NonEquiNode> leaves) {
+        if (node.operator == Operator.AND) {
+            return collectLeaves(node.left, leaves) && collectLeaves(node.right, leaves);
+        }
+        switch (node.operator) {
+            case EqualsTo:
+            case NotEqualsTo:
+            case GreaterThan:
+            case GreaterThanEquals:
+            case MinorThan:
+            case MinorThanEquals:
+                leaves.add(node);
+                return node.constant != null ? node.nonEquiIndex != null :
+                        node.leftIndex != null && node.rightIndex != null;
+            default:
+                return false;
+        }
+    }
+
+    // 比较的各列都是连接列（所在表参与等值连接）
+    private boolean isKeyLeaf(NonEquiNode leaf, Set<ColumnRef> keyColumns) {
+        if (!(leaf.expression instanceof BinaryExpression)) {
+            return false;
+        }
+        BinaryExpression comparison = (BinaryExpression) leaf.expression;
+        ColumnRef left = columnOf(comparison.getLeftExpression());
+        ColumnRef right = columnOf(comparison.getRightExpression());
+        if (leaf.constant != null) {
+            ColumnRef col = left != null ? left : right;
+            return col != null && keyColumns.contains(col);
+        }
+        return left != null && right != null && keyColumns.contains(left) && keyColumns.contains(right);
+    }
+
+    private static ColumnRef columnOf(Expression expression) {
+        while (expression instanceof Parenthesis || expression instanceof CastExpression) {
+            expression = expression instanceof Parenthesis ?
+                    ((Parenthesis) expression).getExpression() : ((CastExpression) expression).getLeftExpression();
+        }
+        if (expression instanceof Column) {
+            Column column = (Column) expression;
+            return new ColumnRef(column.getTable().getName(), column.getColumnName());
+        }
+        return null;
+    }
+
+    // 可在 table 的排序索引上二分的合取项：table 一侧的列与常量或另一张表的列做范围/相等比较
+    private boolean isWitnessLeaf(NonEquiNode leaf, int table) {
+        if (leaf.operator == Operator.NotEqualsTo) {
+            return false;
+        }
+        PartitionIndex index;
+        if (leaf.constant != null) {
+            // int 列与非整数常量比较时原实现截断常量，不用索引
+            boolean intConstant = leaf.constant instanceof Integer || leaf.constant instanceof Long;
+            if (leaf.table != table || (leaf.nonEquiIndex instanceof IntPartitionIndex && !intConstant)) {
+                return false;
+            }
+            index = leaf.nonEquiIndex;
+        } else if (leaf.leftTable == table && leaf.rightTable != table) {
+            index = leaf.leftIndex;
+            if (!sameType(index, leaf.rightIndex)) {
+                return false;
+            }
+            values(leaf.rightIndex);
+        } else if (leaf.rightTable == table && leaf.leftTable != table) {
+            index = leaf.rightIndex;
+            if (!sameType(index, leaf.leftIndex)) {
+                return false;
+            }
+            values(leaf.leftIndex);
+        } else {
+            return false;
+        }
+        if (!(index instanceof IntPartitionIndex || index instanceof DoublePartitionIndex)) {
+            return false;
+        }
+        if (!sortedRows.containsKey(index)) {
+            double[] columnValues = values(index);
+            int card = index.cardinality;
+            int[] rows = InequalityJoin.sortedRows(index, columnValues, card);
+            sortedRows.put(index, rows);
+            sortedValues.put(index, InequalityJoin.sortedValues(columnValues, rows, card));
+        }
+        return true;
+    }
+
+    private static boolean sameType(PartitionIndex first, PartitionIndex second) {
+        return (first instanceof IntPartitionIndex && second instanceof IntPartitionIndex) ||
+                (first instanceof DoublePartitionIndex && second instanceof DoublePartitionIndex);
+    }
+
+    private double[] values(PartitionIndex index) {
+        return values.computeIfAbsent(index, InequalityJoin::columnValues);
+    }
+
+    private static boolean satisfies(List<NonEquiNode> leaves, int[] tuple) {
+        for (NonEquiNode leaf : leaves) {
+            if (!leaf.evaluate(tuple)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int cardinality(Context context, int tid) {
+        return CatalogManager.getCardinality(context.aliasToFiltered.get(query.aliases[tid]));
+    }
+}
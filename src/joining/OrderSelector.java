@@ -0,0 +1,95 @@
+package joining;
+
+import java.util.List;
+import java.util.Set;
+
+import config.JoinConfig;
+import query.ColumnRef;
+
+/**
+ * 在若干候选属性顺序之间自适应选择（UCT/UCB1 多臂老虎机）。
+ * 每个组合在选中的顺序下执行，执行后上报工作量（构造的 trie 结点数 + leapfrog 求交次数）
+ * 与输入行数之比作为代价。先让每个顺序至少完成一次，之后按
+ * 奖励（最小平均代价 / 该顺序平均代价）加探索项选择，逐渐收敛到代价最小的顺序。
+ */
+public class OrderSelector {
+    private final List<List<Set<ColumnRef>>> orders;
+    private final int[] nrStarted;      // 各顺序被选中的次数
+    private final int[] nrDone;         // 各顺序完成并上报代价的次数
+    private final double[] costSum;     // 各顺序上报代价之和
+    private int nrTotalDone = 0;
+
+    public OrderSelector(List<List<Set<ColumnRef>>> orders) {
+        this.orders = orders;
+        int nrOrders = orders.size();
+        nrStarted = new int[nrOrders];
+        nrDone = new int[nrOrders];
+        costSum = new double[nrOrders];
+    }
+
+    public int nrOrders() {
+        return orders.size();
+    }
+
+    public List<Set<ColumnRef>> order(int orderIdx) {
+        return orders.get(orderIdx);
+    }
+
+    /**
+     * 选择下一个组合使用的顺序。
+     */
+    public synchronized int select() {
+        int nrOrders = orders.size();
+        // 探索阶段：还有顺序未完成时，选被选中次数最少的未完成顺序
+        int choice = -1;
+        for (int orderIdx = 0; orderIdx < nrOrders; orderIdx++) {
+            if (nrDone[orderIdx] == 0 && (choice < 0 || nrStarted[orderIdx] < nrStarted[choice])) {
+                choice = orderIdx;
+            }
+        }
+        if (choice < 0) {
+            double minAvg = Double.MAX_VALUE;
+            for (int orderIdx = 0; orderIdx < nrOrders; orderIdx++) {
+                minAvg = Math.min(minAvg, avgCost(orderIdx));
+            }
+            double bestUcb = -1;
+            double logTotal = Math.log(nrTotalDone);
+            for (int orderIdx = 0; orderIdx < nrOrders; orderIdx++) {
+                double reward = minAvg / Math.max(avgCost(orderIdx), Double.MIN_VALUE);
+                double ucb = reward + JoinConfig.ORDER_EXPLORATION_WEIGHT *
+                        Math.sqrt(logTotal / nrDone[orderIdx]);
+                if (ucb > bestUcb) {
+                    bestUcb = ucb;
+                    choice = orderIdx;
+                }
+            }
+        }
+        nrStarted[choice]++;
+        return choice;
+    }
+
+    /**
+     * 上报一个组合在给定顺序下的工作量。
+     *
+     * @param orderIdx  执行组合时使用的顺序
+     * @param work      构造的 trie 结点数与求交次数之和
+     * @param inputRows 组合各 trie 的行数之和
+     */
+    public synchronized void update(int orderIdx, long work, long inputRows) {
+        costSum[orderIdx] += (double) work / Math.max(1, inputRows);
+        nrDone[orderIdx]++;
+        nrTotalDone++;
+    }
+
+    private double avgCost(int orderIdx) {
+        return costSum[orderIdx] / nrDone[orderIdx];
+    }
+
+    public synchronized void print() {
+        for (int orderIdx = 0; orderIdx < orders.size(); orderIdx++) {
+            System.out.println("Order " + orderIdx + " " + orders.get(orderIdx) +
+                    "\tcombinations: " + nrDone[orderIdx] + "\tavg work per row: " +
+                    (nrDone[orderIdx] == 0 ? "-" : String.format("%.2f", avgCost(orderIdx))));
+        }
+    }
+}
@@ -10,11 +10,14 @@ import java.util.stream.IntStream;
 
 import catalog.CatalogManager;
 import config.JoinConfig;
+import config.LoggingConfig;
 import config.NamingConfig;
 import config.PreConfig;
 import joining.parallel.threads.ThreadPool;
+import joining.result.JoinResultSink;
 import joining.result.ResultTuple;
 import operators.Materialize;
+import postprocessing.PostProcessor;
 import preprocessing.Context;
 import query.ColumnRef;
 import query.QueryInfo;
@@ -67,7 +70,7 @@ public class ParallelJoinProcessor {
         // 如果等价类非空
         else if (query.equiJoinPreds.size() > 0) {
             // Join condition, apply leapfrog triejoin
-            List<ResultTuple> resultTuples = new ArrayList<>();
+            List<JoinResultSink> resultSinks = new ArrayList<>();
             long startJoinMillis = System.currentTimeMillis();
 
             /****************************************
@@ -83,6 +86,10 @@ public class ParallelJoinProcessor {
             // 生成 任务生成器
             TrieManager manager = new TrieManager(query, context, varOrder);
             JoinProcessor.manager = manager;
+            // 没有聚合与排序时，结果数达到 LIMIT 后提前结束连接
+            if (PostProcessor.limitInJoin(query)) {
+                manager.setResultLimit(query.limit);
+            }
 
 
             List<JoinProcessor> tasks = new ArrayList<>();
@@ -92,23 +99,55 @@ public class ParallelJoinProcessor {
             System.out.println("Expected batches per thread: " + (totalCombinations / JoinConfig.NTHREAD));
             System.out.println("Starting join...");
             
+            // 聚合可直接在分解式结果上计算时，不生成连接结果元组
+            boolean aggregateInJoin = PostProcessor.aggregatesInJoin(query);
+
             // join tasks
             for (int i = 0; i < JoinConfig.NTHREAD; i++) {
-                tasks.add(new JoinProcessor(i, query, context, varOrder));
+                tasks.add(new JoinProcessor(i, query, context, varOrder,
+                        aggregateInJoin ? new FactorizedAggregator(query, context) : null));
+            }
+
+            long threadStartNanos = System.nanoTime();
+            List<Future<JoinResultSink>> evaluateResults = ThreadPool.executorService.invokeAll(tasks);
+            if (LoggingConfig.PARALLEL_JOIN_VERBOSE) {
+                manager.printLoadBalance(threadStartNanos, System.nanoTime());
             }
 
-            List<Future<List<int[]>>> evaluateResults = ThreadPool.executorService.invokeAll(tasks);
+            if (aggregateInJoin) {
+                FactorizedAggregator aggregator = tasks.get(0).aggregator;
+                for (Future<JoinResultSink> futureResult : evaluateResults) {
+                    futureResult.get();     // 传播连接线程中的异常
+                }
+                for (int i = 1; i < tasks.size(); i++) {
+                    aggregator.merge(tasks.get(i).aggregator);
+                }
+                context.joinAggregates = aggregator;
+                if (!query.groupByExpressions.isEmpty()) {
+                    // 连接结果只保留每组一行（GROUP BY 列），供后处理计算分组表达式
+                    aggregator.storeGroups(context, NamingConfig.JOINED_NAME);
+                }
+                long joinTime = (System.currentTimeMillis() - startJoinMillis);
+                System.out.println("WCOJ time:" + joinTime);
+                System.out.println("Factorized aggregation over " + aggregator.getCount() +
+                        " join tuples in " + aggregator.getNrGroups() + " groups");
+                JoinStats.exeTime += joinTime;
+                JoinStats.subExeTime.add(joinTime);
+                JoinStats.subMateriazed.add(0L);
+                JoinStats.skinnerJoinCards.add((int) Math.min(Integer.MAX_VALUE, aggregator.getCount()));
+                JoinStats.joinMillis += System.currentTimeMillis() - startMillis;
+                return;
+            }
 
 
-            for (Future<List<int[]>> futureResult : evaluateResults) {
-                List<int[]> joinResults = futureResult.get();
+            // 各线程的列式结果直接用于物化，不再逐条转换为 ResultTuple
+            for (Future<JoinResultSink> futureResult : evaluateResults) {
+                JoinResultSink joinResults = futureResult.get();
                 if (joinResults.size() > 0) {
-                    for (int[] result : joinResults) {
-                        resultTuples.add(new ResultTuple(result));
-                    }
+                    resultSinks.add(joinResults);
                 }
-
             }
+            int nrResultTuples = JoinResultSink.totalSize(resultSinks);
 
             // ===================== join end =====================
 
@@ -138,7 +177,7 @@ public class ParallelJoinProcessor {
             long joinTime = (System.currentTimeMillis() - startJoinMillis);
             System.out.println("WCOJ time:" + joinTime);
             System.out.println("Finish Parallel Join!");
-            System.out.println("Materializing join result with " + resultTuples.size() + " tuples ...");
+            System.out.println("Materializing join result with " + nrResultTuples + " tuples ...");
 
             JoinStats.exeTime += joinTime;
             JoinStats.subExeTime.add(joinTime);
@@ -146,7 +185,7 @@ public class ParallelJoinProcessor {
             // Materialize result table
             long materializeStart = System.currentTimeMillis();
             String targetRelName = NamingConfig.JOINED_NAME;
-            Materialize.execute(resultTuples, query.aliasToIndex,
+            Materialize.execute(resultSinks, query.aliasToIndex,
                     query.colsForPostProcessing,
                     context.columnMapping, targetRelName);
 //            // Update processing context
@@ -159,29 +198,35 @@ public class ParallelJoinProcessor {
             long materializeEnd = System.currentTimeMillis();
             JoinStats.subMateriazed.add(materializeEnd - materializeStart);
             // Store number of join result tuples
-            int skinnerJoinCard = resultTuples.size();
+            int skinnerJoinCard = nrResultTuples;
             JoinStats.skinnerJoinCards.add(skinnerJoinCard);
             System.out.println("Join card: " + skinnerJoinCard + "\tJoin time:" + Arrays.toString(JoinStats.subExeTime.toArray()));
 
         } else if (query.nonEquiJoinPreds.size() > 0) {
             // only contain non equality predicates
             long startJoinMillis = System.currentTimeMillis();
-            // only support two tables here
-            int cardinality1 = CatalogManager.getCardinality(context.aliasToFiltered.get(query.aliases[0]));
-            int cardinality2 = CatalogManager.getCardinality(context.aliasToFiltered.get(query.aliases[1]));
-            // parallel
-            List<ResultTuple> resultTuples = IntStream.range(0, cardinality1).parallel().mapToObj(i -> {
-                List<ResultTuple> currentResultTuples = new ArrayList<>();
-                int[] rowIds = new int[]{i, 0};
-                while (rowIds[1] < cardinality2) {
-                    if (query.nonEquiJoinNodes.get(0).evaluate(rowIds, 1, cardinality2)) {
-                        // satisfy condition
-                        currentResultTuples.add(new ResultTuple(rowIds));
+            // sort-based inequality join; null if predicates are not a conjunction of comparisons
+            List<JoinResultSink> resultSinks = JoinConfig.INEQUALITY_JOIN ?
+                    InequalityJoin.execute(query, context) : null;
+            List<ResultTuple> resultTuples = null;
+            if (resultSinks == null) {
+                // only support two tables here
+                int cardinality1 = CatalogManager.getCardinality(context.aliasToFiltered.get(query.aliases[0]));
+                int cardinality2 = CatalogManager.getCardinality(context.aliasToFiltered.get(query.aliases[1]));
+                // parallel
+                resultTuples = IntStream.range(0, cardinality1).parallel().mapToObj(i -> {
+                    List<ResultTuple> currentResultTuples = new ArrayList<>();
+                    int[] rowIds = new int[]{i, 0};
+                    while (rowIds[1] < cardinality2) {
+                        if (query.nonEquiJoinNodes.get(0).evaluate(rowIds, 1, cardinality2)) {
+                            // satisfy condition
+                            currentResultTuples.add(new ResultTuple(rowIds));
+                        }
+                        rowIds[1]++;
                     }
-                    rowIds[1]++;
-                }
-                return currentResultTuples;
-            }).flatMap(List::stream).collect(Collectors.toList());
+                    return currentResultTuples;
+                }).flatMap(List::stream).collect(Collectors.toList());
+            }
 
             long joinTime = (System.currentTimeMillis() - startJoinMillis);
             JoinStats.exeTime += joinTime;
@@ -189,9 +234,15 @@ public class ParallelJoinProcessor {
 
             long materializeStart = System.currentTimeMillis();
             String targetRelName = NamingConfig.JOINED_NAME;
-            Materialize.execute(resultTuples, query.aliasToIndex,
-                    query.colsForPostProcessing,
-                    context.columnMapping, targetRelName);
+            if (resultSinks != null) {
+                Materialize.execute(resultSinks, query.aliasToIndex,
+                        query.colsForPostProcessing,
+                        context.columnMapping, targetRelName);
+            } else {
+                Materialize.execute(resultTuples, query.aliasToIndex,
+                        query.colsForPostProcessing,
+                        context.columnMapping, targetRelName);
+            }
             context.columnMapping.clear();
             for (ColumnRef postCol : query.colsForPostProcessing) {
                 String newColName = postCol.aliasName + "." + postCol.columnName;
@@ -201,7 +252,8 @@ public class ParallelJoinProcessor {
             long materializeEnd = System.currentTimeMillis();
             JoinStats.subMateriazed.add(materializeEnd - materializeStart);
             // Store number of join result tuples
-            int skinnerJoinCard = resultTuples.size();
+            int skinnerJoinCard = resultSinks != null ?
+                    JoinResultSink.totalSize(resultSinks) : resultTuples.size();
             JoinStats.skinnerJoinCards.add(skinnerJoinCard);
             System.out.println("Join card: " + skinnerJoinCard + "\tJoin time:" + Arrays.toString(JoinStats.subExeTime.toArray()));
         }
@@ -18,9 +18,11 @@ public class Trie {
 
     // 层状态管理
     public final int maxLevel;  // 参与连接的列数：也即最大层数;  但有效层是从0开始的（层下标），也就是说如果curLevel == maxLevel，说明已经不是最后一层了
+    public final boolean existential;   // 半连接的表：结果区间只取第一行（见证行）
     public int curLevel = -1;  // 当前层, 根节点在-1层
     private int[] curValues;    // 当前列的原始数据（转换为int用于比较）
-    public int[] tupleIdx;
+    public int[] tupleIdx;                  // 共享的 BaseTrie.tupleOrder，本 Trie 的行区间为 [offset, offset + cardinality)
+    public final int offset;
     public IntArray curLevelValues; 
     public IntArray curLevelValueParentIdx; 
     public IntArray curLevelValueStatus;
@@ -36,6 +38,13 @@ public class Trie {
 
     // public Trie(String alias, int aliasID, QueryInfo query, Context context, List<Set<ColumnRef>> globalVarOrder) throws Exception {
     public Trie(BaseTrie bt, Pair<Integer, Integer> domain) throws Exception {
+        this(bt, domain, null);
+    }
+
+    /**
+     * @param arena 连接线程的复用缓冲区，为 null 时新分配
+     */
+    public Trie(BaseTrie bt, Pair<Integer, Integer> domain, JoinArena arena) throws Exception {
 
         this.aliasID = bt.aliasID;
         curLevel = -1;  // 根节点
@@ -43,33 +52,54 @@ public class Trie {
         cardinality = domain.getSecond() - domain.getFirst();
         trieCols = bt.trieCols;
         maxLevel = trieCols.size();
+        existential = bt.existential;
         
 
         // 初始化层级管理器
-        curLevelValues = new IntArray(cardinality / 2, cardinality);
-        curLevelValueParentIdx = new IntArray(cardinality / 2, cardinality);
-        curLevelValueStatus = new IntArray(cardinality / 2, cardinality);
-
-        curLevelArrayBounds = new IntArray(cardinality / 2, cardinality * 2);
-        valueBounds1 = new IntArray(cardinality, cardinality * 2);
-        valueBounds2 = new IntArray(cardinality, cardinality * 2);
+        if (arena == null) {
+            curLevelValues = new IntArray(cardinality / 2, cardinality);
+            curLevelValueParentIdx = new IntArray(cardinality / 2, cardinality);
+            curLevelValueStatus = new IntArray(cardinality / 2, cardinality);
+
+            curLevelArrayBounds = new IntArray(cardinality / 2, cardinality * 2);
+            valueBounds1 = new IntArray(cardinality, cardinality * 2);
+            valueBounds2 = new IntArray(cardinality, cardinality * 2);
+        } else {
+            // 复用上一个组合的缓冲区（上一个组合的结果已被消费）
+            IntArray[] buffers = arena.trieBuffers(aliasID);
+            for (IntArray buffer : buffers) {
+                buffer.size = 0;
+            }
+            curLevelValues = buffers[0];
+            curLevelValueParentIdx = buffers[1];
+            curLevelValueStatus = buffers[2];
+            curLevelArrayBounds = buffers[3];
+            valueBounds1 = buffers[4];
+            valueBounds2 = buffers[5];
+        }
+        // 不拷贝行区间：直接引用共享的 tupleOrder（只读），各层的值块位置即为 tupleOrder 中的绝对位置
+        tupleIdx = bt.tupleOrder;
+        offset = domain.getFirst();
 
         curLevelValues.add(-1);             // 添加虚拟根节点值 -1
         curLevelValueStatus.add(1);   // 将虚拟根节点值设为有效
 
-        valueBounds1.add(0);
-        valueBounds1.add(cardinality);
+        valueBounds1.add(offset);
+        valueBounds1.add(offset + cardinality);
+    }
 
-        tupleIdx = Arrays.copyOfRange(bt.tupleOrder, domain.getFirst(), domain.getSecond());
+    /**
+     * 构建第一层之前将行区间缩小为 [offset, ub)（运行时拆分组合，后一半交给其它线程）。
+     */
+    public void restrictRoot(int ub) {
+        valueBounds1.data[1] = ub;
     }
 
-    int[] boundsOfArray(int arrayIdx) {
-        int baseIdx = arrayIdx << 1; // Use bit shift
-        return new int[] {
-                curLevelArrayBounds.data[baseIdx],
-                curLevelArrayBounds.data[baseIdx + 1]
-        };
+    // tupleOrder 中位置 pos 的行在第一层（第一个连接列）的值
+    public int firstValue(int pos) {
+        return trieCols.get(0)[tupleIdx[pos]];
     }
+
     // 处理最后一层（连接列处理完毕），准备结果输出。
     public void lastLevel() {
         curLevel++;
@@ -1,10 +1,19 @@
 package joining;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ManagedBlocker;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.IntStream;
+
+import config.JoinConfig;
 import preprocessing.Context;
 import query.ColumnRef;
 import query.QueryInfo;
@@ -17,13 +26,54 @@ public class TrieManager {
 
     private BaseTrie[] tries;
 
-    // 使用普通变量替代原子变量（串行版本）
     private int totalCombination;
-    private int[] currentIndices;  // 普通数组替代AtomicIntegerArray
+    private final CombinationScheduler scheduler;  // 分发组合编号
+    private List<Pair<Integer, Integer>[]> cubes;  // 按值域切分的子立方体，为 null 时使用按行切分的笛卡尔积
+    // 各线程负载统计
+    private final long[] threadBusyNanos;
+    private final long[] threadFinishNanos;
+    private final int[] threadCombinations;
+    private final long[] threadAllocated;
+    private final long[] threadJoinLists;
     private Pair<Integer, Integer>[][] domains_by_basetire;
     private final int[] blocksPerTrie; // 存储每个trie的分块数
     private int maxCard;
 
+    // 运行时拆分慢组合
+    private final int[] firstVarTries;  // 参与第一个变量的 trie，其第一层即为该变量
+    private final ConcurrentLinkedQueue<Pair<Integer, Integer>[]> splitQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger startedWorkers = new AtomicInteger();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final AtomicInteger nrSplits = new AtomicInteger();
+    private volatile boolean dispenserEmpty = false;
+    private final Object idleLock = new Object();  // 空闲线程在此等待，拆分、线程空闲和达到 LIMIT 时唤醒
+    private final ManagedBlocker idleWait = new ManagedBlocker() {
+        @Override
+        public boolean block() throws InterruptedException {
+            synchronized (idleLock) {
+                while (!isReleasable()) {
+                    idleLock.wait();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return !splitQueue.isEmpty() || activeWorkers.get() == 0 || limitReached();
+        }
+    };
+    private final AtomicLong nrForkedTasks = new AtomicLong();  // 组合内并行拆出的子任务数
+
+    // LIMIT 下推：各线程已生成的结果数达到 resultLimit 后不再分发组合，-1 表示没有限制
+    private long resultLimit = -1;
+    private final AtomicLong nrResults = new AtomicLong();
+
+    // 自适应属性顺序：各候选顺序的 BaseTrie（与主顺序列序相同的表共用），未启用时为 null
+    private BaseTrie[][] orderTries;
+    private OrderSelector orderSelector;
+    private List<Set<ColumnRef>> primaryOrder;
+
     public TrieManager(QueryInfo query, Context context, List<Set<ColumnRef>> globalVarOrder) {
         // 获取变量总数
         totalVarCount = query.equiJoinAttribute.size();
@@ -92,18 +142,22 @@ public class TrieManager {
             topThreeSplits = new int[]{4, 4, 2};
         }
 
-        // 初始化普通变量（串行版本）
-        currentIndices = new int[aliasCnt];
         domains_by_basetire = new Pair[aliasCnt][];
         blocksPerTrie = new int[aliasCnt];
+
+        // 按第一个变量的值域切分，失败时退回按行切分
+        if (JoinConfig.VALUE_PARTITIONING && !globalVarOrder.isEmpty()) {
+            cubes = ValuePartitioner.partition(tries, globalVarOrder.get(0), alias2ID, JoinConfig.NTHREAD);
+        }
         
         // 计算切割方案
-        int[] splits = calculateOptimalSplits(tries, targetCombinations, topThreeSplits);
+        int[] splits = cubes != null ? new int[aliasCnt] :
+                calculateOptimalSplits(tries, targetCombinations, topThreeSplits);
         
         int totalComb = 1;
         for(int i = 0; i < aliasCnt; i++) {
             int blocks = splits[i];
-            if (blocks == 1) {
+            if (blocks <= 1) {
                 // 不切割，保持完整 (Trie会用end-start计算cardinality，所以end要等于cardinality)
                 domains_by_basetire[i] = new Pair[] { new Pair<>(0, tries[i].cardinality) };
             } else {
@@ -120,7 +174,103 @@ public class TrieManager {
             }
         }
         
-        totalCombination = totalComb;
+        totalCombination = cubes != null ? cubes.size() : totalComb;
+        firstVarTries = globalVarOrder.isEmpty() ? new int[0] : globalVarOrder.get(0).stream()
+                .mapToInt(c -> alias2ID.get(c.aliasName)).distinct().sorted().toArray();
+        scheduler = CombinationScheduler.create(JoinConfig.SCHEDULING, totalCombination, JoinConfig.NTHREAD);
+        threadBusyNanos = new long[JoinConfig.NTHREAD];
+        threadFinishNanos = new long[JoinConfig.NTHREAD];
+        threadCombinations = new int[JoinConfig.NTHREAD];
+        threadAllocated = new long[JoinConfig.NTHREAD];
+        threadJoinLists = new long[JoinConfig.NTHREAD];
+        primaryOrder = globalVarOrder;
+        // 候选顺序与主顺序第一个变量相同，按值域切分的组合对所有候选都有效
+        if (JoinConfig.ADAPTIVE_ORDER && cubes != null) {
+            try {
+                initOrders(query, context, globalVarOrder);
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to initialize candidate attribute orders", e);
+            }
+        }
+    }
+
+    private void initOrders(QueryInfo query, Context context, List<Set<ColumnRef>> globalVarOrder) throws Exception {
+        List<List<Set<ColumnRef>>> orders = new ArrayList<>();
+        orders.add(globalVarOrder);
+        orders.addAll(AttributeOrderPlanner.alternatives(query, context, globalVarOrder,
+                JoinConfig.ORDER_CANDIDATES - 1));
+        if (orders.size() < 2) {
+            return;
+        }
+        orderTries = new BaseTrie[orders.size()][];
+        orderTries[0] = tries;
+        for (int orderIdx = 1; orderIdx < orders.size(); orderIdx++) {
+            List<Set<ColumnRef>> order = orders.get(orderIdx);
+            orderTries[orderIdx] = new BaseTrie[aliasCnt];
+            for (int id = 0; id < aliasCnt; id++) {
+                String alias = query.aliases[id];
+                orderTries[orderIdx][id] = aliasColumns(globalVarOrder, alias).equals(aliasColumns(order, alias)) ?
+                        tries[id] : new BaseTrie(alias, id, query, context, order);
+            }
+        }
+        orderSelector = new OrderSelector(orders);
+        System.out.println("Adaptive attribute order candidates: " + orders.size());
+    }
+
+    // 给定顺序下某表 trie 各层对应的列
+    private static List<String> aliasColumns(List<Set<ColumnRef>> order, String alias) {
+        List<String> columns = new ArrayList<>();
+        for (Set<ColumnRef> eqClass : order) {
+            for (ColumnRef colRef : eqClass) {
+                if (colRef.aliasName.equals(alias)) {
+                    columns.add(colRef.columnName);
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * 为组合选择属性顺序。只有各 trie 的行区间在所有候选顺序下包含相同的行时
+     * （全表，或参与第一个变量的 trie 在值边界处切分）才能换用其它顺序，否则使用主顺序。
+     *
+     * @param domains   组合的各 trie 行区间
+     * @return          顺序编号（0 为主顺序）；不能换用顺序时为 -1，按主顺序执行且不计入统计
+     */
+    public int selectOrder(Pair<Integer, Integer>[] domains) {
+        if (orderSelector == null) {
+            return -1;
+        }
+        for (int id = 0; id < aliasCnt; id++) {
+            int lb = domains[id].getFirst();
+            int ub = domains[id].getSecond();
+            if (lb == 0 && ub == tries[id].cardinality) {
+                continue;
+            }
+            if (Arrays.binarySearch(firstVarTries, id) < 0) {
+                return -1;
+            }
+            int[] values = tries[id].trieCols.get(0);
+            int[] order = tries[id].tupleOrder;
+            if ((lb > 0 && lb < ub && values[order[lb - 1]] == values[order[lb]]) ||
+                    (ub < tries[id].cardinality && ub > lb && values[order[ub - 1]] == values[order[ub]])) {
+                return -1;
+            }
+        }
+        return orderSelector.select();
+    }
+
+    public List<Set<ColumnRef>> varOrder(int orderIdx) {
+        return orderIdx < 0 ? primaryOrder : orderSelector.order(orderIdx);
+    }
+
+    /**
+     * 上报组合在选中顺序下的工作量。
+     */
+    public void reportOrder(int orderIdx, long work, long inputRows) {
+        if (orderIdx >= 0) {
+            orderSelector.update(orderIdx, work, inputRows);
+        }
     }
     
     /**
@@ -134,14 +284,17 @@ public class TrieManager {
         int n = tries.length;
         int[] splits = new int[n];
         
-        // 按 cardinality 降序排序的索引
+        // 按 cardinality 降序排序的索引；没有 trie 层的表（如 EXISTS 子查询的表）不参与等值连接，
+        // 各块都会得到相同的连接结果，不能切分；半连接的表切分后每块各保留一个见证行，也不能切分
         Integer[] sortedIndices = IntStream.range(0, n)
+            .filter(i -> tries[i].maxLevel > 0 && !tries[i].existential)
             .boxed()
             .sorted((i, j) -> Integer.compare(tries[j].cardinality, tries[i].cardinality))
             .toArray(Integer[]::new);
+        n = sortedIndices.length;
         
         // 初始化：所有表都不切（1份）
-        for (int i = 0; i < n; i++) {
+        for (int i = 0; i < splits.length; i++) {
             splits[i] = 1;
         }
         
@@ -222,56 +375,264 @@ public class TrieManager {
     }
 
 
-    private synchronized int[] genNext() {
-        if (totalCombination <= 0) {
+    // 取下一个组合的各 trie 行区间
+    @SuppressWarnings("unchecked")
+    private Pair<Integer, Integer>[] genNext(int threadId) {
+        int id = scheduler.next(threadId);
+        if (id < 0) {
             return null;
         }
-        
-        // 递减总数
-        totalCombination--;
-        int[] result =  currentIndices.clone();
-        // 更新索引（从最后一个开始递增）
+        if (cubes != null) {
+            return cubes.get(id);
+        }
+        // 将组合编号解码为各 trie 的块下标（最后一维变化最快，与原顺序一致）
+        Pair<Integer, Integer>[] result = new Pair[aliasCnt];
         for (int i = aliasCnt - 1; i >= 0; i--) {
-            currentIndices[i]++;
-            
-            if (currentIndices[i] < blocksPerTrie[i]) {
-                break;
-            } else {
-                // 当前维度归零，继续处理前一个维度
-                currentIndices[i] = 0;
-            }
+            result[i] = domains_by_basetire[i][id % blocksPerTrie[i]];
+            id /= blocksPerTrie[i];
         }
-        
         return result;
     }
 
-    public Trie[] next_tries() {
+    public Trie[] next_tries(int threadId) {
+        // 获取下一个组合的域范围
+        Pair<Integer, Integer>[] temp_domains = nextDomains(threadId);
+        if(temp_domains == null) return null;
+        return createTries(temp_domains);
+    }
 
-        // 获取当前状态的快照
-        int[] currentSnapshot = genNext();
-        if(currentSnapshot == null) return null;
-        
-        // 创建Trie数组
-        Pair<Integer, Integer>[] temp_domains = new Pair[aliasCnt];
-        Trie[] _tries = new Trie[aliasCnt];
-        
-        // 获取对应的域范围
-        for (int i = 0; i < aliasCnt; i++) {
-            int index = currentSnapshot[i];
-            // 添加边界检查
-            if (index < 0 || index >= domains_by_basetire[i].length) {
-                System.err.println("Invalid index for trie " + i + ": " + index + 
-                    " (max: " + (domains_by_basetire[i].length - 1) + ")");
-                // 使用第一个有效域
-                index = 0;
+    /**
+     * 连接线程开始取任务前调用，用于判断何时所有线程都已空闲。
+     */
+    public void workerStarted() {
+        startedWorkers.incrementAndGet();
+        activeWorkers.incrementAndGet();
+    }
+
+    /**
+     * 连接线程处理组合时出错退出时调用。
+     */
+    public void workerAborted() {
+        if (activeWorkers.decrementAndGet() == 0) {
+            wakeIdleWorkers();
+        }
+    }
+
+    // 唤醒等待拆分组合的空闲线程（条件变化后调用）
+    private void wakeIdleWorkers() {
+        synchronized (idleLock) {
+            idleLock.notifyAll();
+        }
+    }
+
+    /**
+     * 取下一个组合的各 trie 行区间：优先取拆分出的组合，其次取调度器中的组合。
+     * 都为空时线程进入空闲，等待其它线程拆分慢组合，直到所有线程都空闲。
+     *
+     * @param threadId  调用线程的编号
+     * @return          各 trie 的行区间，没有剩余工作时返回 null
+     */
+    public Pair<Integer, Integer>[] nextDomains(int threadId) {
+        if (limitReached()) {
+            return null;
+        }
+        Pair<Integer, Integer>[] domains = splitQueue.poll();
+        if (domains != null) {
+            return domains;
+        }
+        if (!dispenserEmpty) {
+            domains = genNext(threadId);
+            if (domains != null) {
+                return domains;
+            }
+            dispenserEmpty = true;
+        }
+        if (!JoinConfig.ADAPTIVE_SPLITTING) {
+            return null;
+        }
+        // 空闲：等待被拆分出的组合；所有线程都空闲时结束
+        if (activeWorkers.decrementAndGet() == 0) {
+            wakeIdleWorkers();
+        }
+        while (true) {
+            boolean allIdle = activeWorkers.get() == 0;
+            domains = splitQueue.poll();
+            if (domains != null) {
+                activeWorkers.incrementAndGet();
+                return domains;
+            }
+            if (allIdle || limitReached()) {
+                return null;
+            }
+            // 在 ForkJoinPool 中阻塞等待时，线程池启用备用线程执行其它线程在组合内拆出的子任务
+            try {
+                ForkJoinPool.managedBlock(idleWait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 是否有空闲（等待拆分组合）的连接线程，此时组合内部的工作值得拆成子任务。
+     */
+    public boolean hasIdleWorkers() {
+        return activeWorkers.get() < startedWorkers.get();
+    }
+
+    // 线程处理完一个组合后上报组合内并行拆出的子任务数
+    public void addForkedTasks(long nrTasks) {
+        nrForkedTasks.addAndGet(nrTasks);
+    }
+
+    /**
+     * 调度器已分发完毕、没有待取的拆分组合且有线程空闲时，正在运行的组合应拆分。
+     */
+    public boolean shouldSplit() {
+        return JoinConfig.ADAPTIVE_SPLITTING && dispenserEmpty && splitQueue.isEmpty() &&
+                activeWorkers.get() < startedWorkers.get() && !limitReached();
+    }
+
+    /**
+     * 设置结果数上限（需在连接线程启动前调用）：达到后线程不再取新的组合，
+     * 正在处理的组合也尽早结束。
+     */
+    public void setResultLimit(long limit) {
+        resultLimit = limit;
+    }
+
+    // 已生成的结果数是否达到上限
+    public boolean limitReached() {
+        return resultLimit >= 0 && nrResults.get() >= resultLimit;
+    }
+
+    // 距离上限还可加入的结果数，没有上限时为 Long.MAX_VALUE
+    public long remainingResults() {
+        return resultLimit < 0 ? Long.MAX_VALUE : Math.max(0, resultLimit - nrResults.get());
+    }
+
+    // 线程处理完一个组合后上报新增的结果数
+    public void addResults(long nrAdded) {
+        if (resultLimit >= 0 && nrResults.addAndGet(nrAdded) - nrAdded < resultLimit &&
+                limitReached()) {
+            wakeIdleWorkers();
+        }
+    }
+
+    /**
+     * 尚未构建任何层的组合按第一个变量的值域一分为二，后一半放回队列供空闲线程处理。
+     * 在最大参与 trie 行区间的中位值处切分；行区间内只有一个值时按最大 trie 的行切分。
+     *
+     * @param domains   当前组合的各 trie 行区间
+     * @return          调用线程继续处理的前一半；无法拆分时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public Pair<Integer, Integer>[] split(Pair<Integer, Integer>[] domains) {
+        if (firstVarTries.length == 0) {
+            return null;
+        }
+        // 行区间最大的参与 trie（半连接的表不按行切分）
+        int largest = -1;
+        for (int id : firstVarTries) {
+            if (!tries[id].existential && (largest < 0 || span(domains[id]) > span(domains[largest]))) {
+                largest = id;
+            }
+        }
+        if (largest < 0) {
+            return null;
+        }
+        int lb = domains[largest].getFirst();
+        int ub = domains[largest].getSecond();
+        if (ub - lb < 2) {
+            return null;
+        }
+        int[] values = tries[largest].trieCols.get(0);
+        int[] order = tries[largest].tupleOrder;
+        int firstValue = values[order[lb]];
+        int splitValue = values[order[(lb + ub) >>> 1]];
+        if (splitValue == firstValue && values[order[ub - 1]] != firstValue) {
+            splitValue = firstValue + 1;
+        }
+        if (splitValue != firstValue) {
+            return splitAt(domains, splitValue);
+        }
+        // 只有一个值：按行切分最大的 trie
+        Pair<Integer, Integer>[] left = domains.clone();
+        Pair<Integer, Integer>[] right = domains.clone();
+        int mid = (lb + ub) >>> 1;
+        left[largest] = new Pair<>(lb, mid);
+        right[largest] = new Pair<>(mid, ub);
+        splitQueue.add(right);
+        nrSplits.incrementAndGet();
+        wakeIdleWorkers();
+        return left;
+    }
+
+    /**
+     * 在第一个变量的值 splitValue 处切分组合：所有参与第一个变量的 trie 在同一个值处切分，
+     * 值不小于 splitValue 的一半放回队列，两半的结果互不相交。
+     * 已构建层的组合由调用方按同一个值剪去后一半（见 LeapFrogTrieJoin）。
+     *
+     * @param domains       当前组合的各 trie 行区间
+     * @param splitValue    后一半的最小值
+     * @return              调用线程继续处理的前一半；某个 trie 的一半为空时不拆分，返回 null
+     */
+    public Pair<Integer, Integer>[] splitAt(Pair<Integer, Integer>[] domains, int splitValue) {
+        Pair<Integer, Integer>[] left = domains.clone();
+        Pair<Integer, Integer>[] right = domains.clone();
+        for (int id : firstVarTries) {
+            int idLB = domains[id].getFirst();
+            int idUB = domains[id].getSecond();
+            int cut = ValuePartitioner.seek(tries[id].trieCols.get(0), tries[id].tupleOrder,
+                    idLB, idUB, splitValue);
+            // 某一半为空时连接结果全在另一半，拆分无意义
+            if (cut == idLB || cut == idUB) {
+                return null;
             }
-            temp_domains[i] = domains_by_basetire[i][index];
+            left[id] = new Pair<>(idLB, cut);
+            right[id] = new Pair<>(cut, idUB);
         }
+        splitQueue.add(right);
+        nrSplits.incrementAndGet();
+        wakeIdleWorkers();
+        return left;
+    }
+
+    // 参与第一个变量的 trie（升序）
+    int[] firstVarTries() {
+        return firstVarTries;
+    }
+
+    private static int span(Pair<Integer, Integer> domain) {
+        return domain.getSecond() - domain.getFirst();
+    }
+
+    /**
+     * 为给定行区间创建各表的 Trie。
+     */
+    public Trie[] createTries(Pair<Integer, Integer>[] temp_domains) {
+        return createTries(temp_domains, -1);
+    }
+
+    /**
+     * 为给定行区间创建各表在第 orderIdx 个候选顺序（-1 为主顺序）下的 Trie。
+     */
+    public Trie[] createTries(Pair<Integer, Integer>[] temp_domains, int orderIdx) {
+        return createTries(temp_domains, orderIdx, null);
+    }
+
+    /**
+     * 同上，Trie 的状态数组取自连接线程的复用缓冲区 arena（为 null 时新分配）。
+     */
+    public Trie[] createTries(Pair<Integer, Integer>[] temp_domains, int orderIdx, JoinArena arena) {
+        BaseTrie[] tries = orderIdx < 0 ? this.tries : orderTries[orderIdx];
+        Trie[] _tries = new Trie[aliasCnt];
         
         // 创建 Trie 实例
         for (int i = 0; i < aliasCnt; i++) {
             try {
-                _tries[i] = new Trie(tries[i], temp_domains[i]);
+                _tries[i] = new Trie(tries[i], temp_domains[i], arena);
             } catch (Exception e) {
                 System.err.println("Failed to create Trie for index: " + i);
                 System.err.println("Domain: " + temp_domains[i]);
@@ -286,7 +647,66 @@ public class TrieManager {
     public long getTotalCombinations() {
         return totalCombination;
     }
-    
+
+    /**
+     * 记录一个连接线程的负载：处理组合的时间（busy）、
+     * 等待调度与结束后等待其它线程的时间（idle）由调用方在连接结束后计算。
+     * 同时记录该线程分配的内存与执行的连接任务（join list）数。
+     */
+    public void reportThread(int threadId, long busyNanos, long finishNanos, int nrProcessed,
+                             long allocatedBytes, long nrJoinLists) {
+        threadBusyNanos[threadId] = busyNanos;
+        threadFinishNanos[threadId] = finishNanos;
+        threadCombinations[threadId] = nrProcessed;
+        threadAllocated[threadId] = allocatedBytes;
+        threadJoinLists[threadId] = nrJoinLists;
+    }
+
+    /**
+     * 当前线程累计分配的字节数，JVM 不支持时返回 0。
+     */
+    public static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * 打印各线程 busy / idle 时间，idle = 连接总时间 - busy。
+     *
+     * @param startNanos    连接开始时间
+     * @param endNanos      所有线程结束的时间
+     */
+    public void printLoadBalance(long startNanos, long endNanos) {
+        long wallNanos = endNanos - startNanos;
+        long maxBusy = 0;
+        long sumBusy = 0;
+        for (int t = 0; t < threadBusyNanos.length; t++) {
+            long busy = threadBusyNanos[t];
+            maxBusy = Math.max(maxBusy, busy);
+            sumBusy += busy;
+            System.out.println("Thread " + t + "\tcombinations: " + threadCombinations[t] +
+                    "\tbusy: " + busy / 1000000 + " ms\tidle: " + (wallNanos - busy) / 1000000 +
+                    " ms\tfinished after: " + (threadFinishNanos[t] - startNanos) / 1000000 + " ms" +
+                    "\tallocated: " + threadAllocated[t] / (1 << 20) + " MB\tjoin lists: " +
+                    threadJoinLists[t]);
+        }
+        double avgBusy = (double) sumBusy / Math.max(1, threadBusyNanos.length);
+        System.out.println("Scheduler: " + scheduler.getClass().getSimpleName() +
+                "\tload imbalance (max/avg busy): " +
+                String.format("%.2f", maxBusy / Math.max(1.0, avgBusy)) +
+                "\tstraggler splits: " + nrSplits.get() + "\tforked tasks: " + nrForkedTasks.get());
+        if (orderSelector != null) {
+            orderSelector.print();
+        }
+        if (resultLimit >= 0) {
+            System.out.println("Result limit: " + resultLimit + "\tresults generated: " + nrResults.get());
+        }
+    }
+
 }
 
 
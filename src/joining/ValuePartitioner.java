@@ -0,0 +1,243 @@
+package joining;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import config.LoggingConfig;
+import query.ColumnRef;
+import util.Pair;
+
+/**
+ * 按第一个连接变量的取值范围切分连接空间（hypercube 切分）。
+ * 每个组合是所有 trie 上一致的子立方体：参与第一个变量的 trie 取该值域对应的行区间
+ * （tupleOrder 按第一列有序，值域对应连续区间），其余 trie 取全表。
+ * 切分依据各值的估计工作量，重值（heavy hitter）单独成块，并按最大表的行继续细分。
+ */
+public class ValuePartitioner {
+    /**
+     * 每个线程期望分到的子立方体数。
+     */
+    static final int PARTS_PER_THREAD = 8;
+    /**
+     * 子立方体数上限。
+     */
+    static final int MAX_PARTS = 1024;
+    /**
+     * 每个子立方体的最小估计工作量，避免小查询切得过碎。
+     */
+    static final double MIN_WORK_PER_PART = 1 << 16;
+
+    /**
+     * 生成子立方体列表，每项为各 trie 的行区间 [first, second)。
+     *
+     * @param tries         所有表的 BaseTrie
+     * @param firstVar      变量顺序中的第一个变量
+     * @param alias2ID      别名到 trie 下标的映射
+     * @param nrThreads     连接线程数
+     * @return              子立方体列表；无法按值切分时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Pair<Integer, Integer>[]> partition(BaseTrie[] tries, Set<ColumnRef> firstVar,
+            Map<String, Integer> alias2ID, int nrThreads) {
+        // 参与第一个变量的 trie，其第一层即为该变量
+        int[] joined = firstVar.stream().mapToInt(c -> alias2ID.get(c.aliasName))
+                .distinct().sorted().toArray();
+        if (joined.length < 2) {
+            return null;
+        }
+        for (BaseTrie trie : tries) {
+            if (trie.cardinality == 0 || trie.maxLevel == 0) {
+                return null;
+            }
+        }
+        final int k = joined.length;
+        int[][] values = new int[k][];
+        int[][] orders = new int[k][];
+        int[] cards = new int[k];
+        int largest = -1;  // 重值按行切分的表，半连接的表不能按行切分
+        for (int t = 0; t < k; t++) {
+            BaseTrie trie = tries[joined[t]];
+            values[t] = trie.trieCols.get(0);
+            orders[t] = trie.tupleOrder;
+            cards[t] = trie.cardinality;
+            if (!trie.existential && (largest < 0 || cards[t] > cards[largest])) {
+                largest = t;
+            }
+        }
+        if (largest < 0) {
+            return null;
+        }
+
+        // 对各 trie 的有序第一列做 leapfrog 求交，记录公共值在每个 trie 中的行区间及工作量
+        IntList starts = new IntList(k);
+        IntList ends = new IntList(k);
+        double[] works = new double[16];
+        int nrValues = 0;
+        double totalWork = 0;
+        int[] pos = new int[k];
+        int[] end = new int[k];
+        outer:
+        while (true) {
+            int max = Integer.MIN_VALUE;
+            for (int t = 0; t < k; t++) {
+                if (pos[t] >= cards[t]) {
+                    break outer;
+                }
+                max = Math.max(max, values[t][orders[t][pos[t]]]);
+            }
+            boolean allEqual = true;
+            for (int t = 0; t < k; t++) {
+                if (values[t][orders[t][pos[t]]] < max) {
+                    pos[t] = seek(values[t], orders[t], pos[t], cards[t], max);
+                    allEqual = false;
+                }
+            }
+            if (!allEqual) {
+                continue;
+            }
+            // 公共值：工作量 = 各表行数之和 + 行数之积（该值下中间结果的上界）
+            double sum = 0, product = 1;
+            for (int t = 0; t < k; t++) {
+                end[t] = max == Integer.MAX_VALUE ? cards[t] :
+                        seek(values[t], orders[t], pos[t], cards[t], max + 1);
+                int count = end[t] - pos[t];
+                sum += count;
+                product *= count;
+            }
+            starts.add(pos);
+            ends.add(end);
+            if (nrValues == works.length) {
+                works = Arrays.copyOf(works, nrValues * 2);
+            }
+            works[nrValues++] = sum + product;
+            totalWork += sum + product;
+            if (max == Integer.MAX_VALUE) {
+                break;
+            }
+            System.arraycopy(end, 0, pos, 0, k);
+        }
+
+        List<Pair<Integer, Integer>[]> cubes = new ArrayList<>();
+        if (nrValues == 0) {
+            // 第一个变量无公共值，连接结果为空
+            return cubes;
+        }
+        int nrParts = (int) Math.min(Math.min(MAX_PARTS, (long) nrThreads * PARTS_PER_THREAD),
+                Math.ceil(totalWork / MIN_WORK_PER_PART));
+        nrParts = Math.max(1, nrParts);
+        double target = totalWork / nrParts;
+
+        int nrHeavy = 0;
+        int rangeStart = -1;       // 当前累积值域的第一个公共值
+        double rangeWork = 0;
+        for (int v = 0; v < nrValues; v++) {
+            double work = works[v];
+            if (work >= 2 * target) {
+                // 重值：先结束当前值域，再按最大表的行切分该值
+                if (rangeStart >= 0) {
+                    cubes.add(cube(tries, joined, starts, ends, rangeStart, v - 1));
+                    rangeStart = -1;
+                    rangeWork = 0;
+                }
+                int lb = starts.get(v, largest);
+                int ub = ends.get(v, largest);
+                int chunks = (int) Math.min(ub - lb, Math.ceil(work / target));
+                for (int c = 0; c < chunks; c++) {
+                    Pair<Integer, Integer>[] heavy = cube(tries, joined, starts, ends, v, v);
+                    heavy[joined[largest]] = new Pair<>(
+                            lb + (int) ((long) c * (ub - lb) / chunks),
+                            lb + (int) ((long) (c + 1) * (ub - lb) / chunks));
+                    cubes.add(heavy);
+                }
+                nrHeavy++;
+                continue;
+            }
+            if (rangeStart < 0) {
+                rangeStart = v;
+            }
+            rangeWork += work;
+            if (rangeWork >= target) {
+                cubes.add(cube(tries, joined, starts, ends, rangeStart, v));
+                rangeStart = -1;
+                rangeWork = 0;
+            }
+        }
+        if (rangeStart >= 0) {
+            cubes.add(cube(tries, joined, starts, ends, rangeStart, nrValues - 1));
+        }
+        if (LoggingConfig.PARALLEL_JOIN_VERBOSE) {
+            System.out.println("Value partitions: " + cubes.size() + "\tCommon values: " + nrValues +
+                    "\tHeavy hitters: " + nrHeavy);
+        }
+        return cubes;
+    }
+
+    /**
+     * 构造公共值 [firstValue, lastValue] 对应的子立方体。
+     */
+    @SuppressWarnings("unchecked")
+    private static Pair<Integer, Integer>[] cube(BaseTrie[] tries, int[] joined, IntList starts,
+            IntList ends, int firstValue, int lastValue) {
+        Pair<Integer, Integer>[] domains = (Pair<Integer, Integer>[]) new Pair<?, ?>[tries.length];
+        for (int i = 0; i < tries.length; i++) {
+            domains[i] = new Pair<>(0, tries[i].cardinality);
+        }
+        for (int t = 0; t < joined.length; t++) {
+            domains[joined[t]] = new Pair<>(starts.get(firstValue, t), ends.get(lastValue, t));
+        }
+        return domains;
+    }
+
+    /**
+     * 在有序区间 [from, to) 中找第一个值不小于 key 的位置（指数搜索 + 二分）。
+     */
+    static int seek(int[] values, int[] order, int from, int to, int key) {
+        int step = 1;
+        int lb = from;
+        int ub = from;
+        while (ub < to && values[order[ub]] < key) {
+            lb = ub + 1;
+            ub = from + step;
+            step <<= 1;
+        }
+        ub = Math.min(ub, to);
+        while (lb < ub) {
+            int mid = (lb + ub) >>> 1;
+            if (values[order[mid]] < key) {
+                lb = mid + 1;
+            } else {
+                ub = mid;
+            }
+        }
+        return lb;
+    }
+
+    /**
+     * 按行存储的定长 int 记录（每个公共值一行，每个 trie 一列）。
+     */
+    private static class IntList {
+        private final int width;
+        private int[] data;
+        private int size = 0;
+
+        IntList(int width) {
+            this.width = width;
+            data = new int[width * 16];
+        }
+
+        void add(int[] row) {
+            if ((size + 1) * width > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            System.arraycopy(row, 0, data, size * width, width);
+            size++;
+        }
+
+        int get(int row, int col) {
+            return data[row * width + col];
+        }
+    }
+}
@@ -8,9 +8,9 @@ import config.ParallelConfig;
 import data.DoubleData;
 import predicate.Operator;
 import query.ColumnRef;
+import util.RadixSort;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.stream.IntStream;
 
@@ -540,9 +540,8 @@ public class DoublePartitionIndex extends PartitionIndex {
 
     @Override
     public void sortRows() {
-        sortedRow = IntStream.range(0, cardinality)
-                .boxed().sorted(Comparator.comparingDouble(i -> doubleData.data[i]))
-                .mapToInt(ele -> ele).toArray();
+        sortedRow = RadixSort.sortedOrder(doubleData.data, cardinality);
+        rowsSorted = true;
     }
 
     @Override
@@ -8,9 +8,11 @@ import config.ParallelConfig;
 import data.IntData;
 import predicate.Operator;
 import query.ColumnRef;
+import util.RadixSort;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.IntStream;
 
@@ -77,6 +79,87 @@ public class IntPartitionIndex extends PartitionIndex {
         }
     }
 
+    /**
+     * Create index on the given integer column by extending the index
+     * on its first rows with rows appended afterwards. The rows of each
+     * key are stored in increasing order, so appended rows are copied
+     * to the end of the run of their key and rows of the prior index
+     * keep their relative positions (and thread scopes).
+     *
+     * @param intData       integer data including appended rows.
+     * @param prior         index on the rows before appended rows.
+     */
+    public IntPartitionIndex(IntData intData, IntPartitionIndex prior) {
+        super(intData.cardinality);
+        this.nrThreads = prior.nrThreads;
+        this.intData = intData;
+        this.scopes = Arrays.copyOf(prior.scopes, this.cardinality);
+        this.queryRef = prior.queryRef;
+        int[] data = intData.data;
+        int priorCardinality = prior.cardinality;
+        // Count number of appended rows for each value
+        IntIntMap keyToNrAppended = HashIntIntMaps.newMutableMap();
+        for (int i = priorCardinality; i < cardinality; ++i) {
+            if (!intData.isNull.get(i)) {
+                keyToNrAppended.addValue(data[i], 1);
+            }
+        }
+        // Assign offsets to keys with indexed rows
+        keyToPositions = HashIntIntMaps.newMutableMap(
+                prior.keyToPositions.size() + keyToNrAppended.size());
+        int prefixSum = 0;
+        IntIntCursor priorCursor = prior.keyToPositions.cursor();
+        while (priorCursor.moveNext()) {
+            int key = priorCursor.key();
+            int nr = prior.positions[priorCursor.value()] +
+                    keyToNrAppended.getOrDefault(key, 0);
+            if (nr > 0) {
+                keyToPositions.put(key, prefixSum);
+                prefixSum += nr + 1;
+            }
+        }
+        IntIntCursor appendedCursor = keyToNrAppended.cursor();
+        while (appendedCursor.moveNext()) {
+            int key = appendedCursor.key();
+            if (!keyToPositions.containsKey(key)) {
+                keyToPositions.put(key, prefixSum);
+                prefixSum += appendedCursor.value() + 1;
+            }
+        }
+        // Copy runs of prior rows
+        positions = new int[prefixSum];
+        IntIntCursor keyCursor = keyToPositions.cursor();
+        while (keyCursor.moveNext()) {
+            int startPos = keyCursor.value();
+            int priorPos = prior.keyToPositions.getOrDefault(keyCursor.key(), -1);
+            int nrPrior = priorPos < 0 ? 0 : prior.positions[priorPos];
+            System.arraycopy(prior.positions, priorPos + 1,
+                    positions, startPos + 1, nrPrior);
+            positions[startPos] = nrPrior;
+        }
+        // Add appended rows at the end of their runs
+        for (int i = priorCardinality; i < cardinality; ++i) {
+            if (!intData.isNull.get(i)) {
+                int startPos = keyToPositions.get(data[i]);
+                positions[startPos] += 1;
+                int offset = positions[startPos];
+                positions[startPos + offset] = i;
+                scopes[i] = (byte) ((offset - 1) % nrThreads);
+            }
+        }
+        if (prior.groupIds != null) {
+            groupIds = keyToPositions.values().toIntArray();
+        }
+        // Merge sorted runs instead of sorting all rows again
+        if (prior.rowsSorted) {
+            sortedRow = RadixSort.mergeAppended(prior.sortedRow,
+                    Collections.singletonList(data), cardinality);
+            rowsSorted = true;
+        } else {
+            sortedRow = new int[cardinality];
+        }
+    }
+
     /**
      * Parallel method optimized for key column.
      * A key column is defined as unique value of each row.
@@ -542,17 +625,8 @@ public class IntPartitionIndex extends PartitionIndex {
 
     @Override
     public void sortRows() {
-        sortedRow = IntStream.range(0, cardinality)
-                .boxed().sorted((o1, o2) -> {
-                    int d1 = intData.data[o1];
-                    int d2 = intData.data[o2];
-                    int diff = d1 - d2;
-                    if (diff == 0) {
-                        return o1 - o2;
-                    }
-                    return diff;
-                })
-                .mapToInt(ele -> ele).toArray();
+        sortedRow = RadixSort.sortedOrder(intData.data, cardinality);
+        rowsSorted = true;
     }
 
     @Override
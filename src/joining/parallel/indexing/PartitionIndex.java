@@ -12,6 +12,10 @@ import predicate.Operator;
  *
  */
 public abstract class PartitionIndex extends Index {
+    /**
+     * Whether sortedRow contains the rows sorted by value.
+     */
+    public boolean rowsSorted = false;
     /**
      * Initialize for given cardinality of indexed table.
      *
@@ -4,6 +4,7 @@ import net.openhft.affinity.AffinityThreadFactory;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 import static net.openhft.affinity.AffinityStrategies.*;
 
@@ -28,7 +29,9 @@ public class ThreadPool {
     public static void initThreadsPool(int nrThreads, int preThreads) {
 //        executorService = Executors.newFixedThreadPool(nrThreads,
 //                new AffinityThreadFactory("bg", SAME_CORE, DIFFERENT_SOCKET, ANY));
-        executorService = Executors.newFixedThreadPool(nrThreads);
+        // Fork/join pool: idle join threads may execute sub-tasks
+        // split off from combinations processed by other threads.
+        executorService = new ForkJoinPool(nrThreads);
         preprocessingService = Executors.newFixedThreadPool(preThreads);
     }
 
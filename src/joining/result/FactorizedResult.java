@@ -0,0 +1,92 @@
+package joining.result;
+
+import java.util.List;
+
+import joining.Trie;
+
+/**
+ * 分解式连接结果：ResultTrie 连接得到的每个结果元组（各表最后一层的值下标）
+ * 对应各表 trie 中的一段行区间，真正的连接结果是这些区间的笛卡尔积。
+ * 同一区间内的行在该表所有连接列上取值相同，因此按连接键分组、
+ * 只读连接键的投影都可以用区间的代表行完成，而不必展开。
+ */
+public class FactorizedResult {
+    public final int nrTables;
+    public final int size;          // 分解元组数
+    public final int[][] rows;      // 各表 trie 的 tupleIdx（区间位置 -> 过滤后表的行号）
+    public final boolean[] joined;  // 参与了等值连接的表；其余表没有 trie 层，区间为空
+    private final int[] bounds;     // 按元组连续存放各表区间 [start, end)
+
+    /**
+     * @param tries     已调用 lastLevel() 的 trie
+     * @param tuples    ResultTrie 连接结果（各表最后一层的值下标）
+     */
+    public FactorizedResult(Trie[] tries, List<int[]> tuples) {
+        nrTables = tries.length;
+        size = tuples.size();
+        rows = new int[nrTables][];
+        joined = new boolean[nrTables];
+        for (int tid = 0; tid < nrTables; tid++) {
+            rows[tid] = tries[tid].tupleIdx;
+            joined[tid] = tries[tid].curLevel != -1;
+        }
+        bounds = new int[size * nrTables * 2];
+        int pos = 0;
+        for (int[] tuple : tuples) {
+            for (int tid = 0; tid < nrTables; tid++) {
+                if (!joined[tid]) {
+                    pos += 2;
+                    continue;
+                }
+                int baseIdx = tuple[tid] << 1;
+                int start = tries[tid].curLevelValueBounds.data[baseIdx];
+                bounds[pos++] = start;
+                // 半连接：区间非空即说明存在见证行，只保留第一行，每个外层绑定只产生一个结果
+                bounds[pos++] = tries[tid].existential ? start + 1 :
+                        tries[tid].curLevelValueBounds.data[baseIdx + 1];
+            }
+        }
+    }
+
+    public int start(int tuple, int table) {
+        return bounds[(tuple * nrTables + table) << 1];
+    }
+
+    public int end(int tuple, int table) {
+        return bounds[((tuple * nrTables + table) << 1) + 1];
+    }
+
+    // 将一个元组的各表区间写入 starts / ends
+    public void ranges(int tuple, int[] starts, int[] ends) {
+        int pos = (tuple * nrTables) << 1;
+        for (int tid = 0; tid < nrTables; tid++) {
+            starts[tid] = bounds[pos++];
+            ends[tid] = bounds[pos++];
+        }
+    }
+
+    // 区间代表行：该表连接列（即连接键）在整个区间上取值相同
+    public int representativeRow(int tuple, int table) {
+        return rows[table][start(tuple, table)];
+    }
+
+    // 一个分解元组展开后的连接结果条数
+    public long multiplicity(int tuple) {
+        long product = 1;
+        int pos = (tuple * nrTables) << 1;
+        for (int tid = 0; tid < nrTables; tid++) {
+            product *= bounds[pos + 1] - bounds[pos];
+            pos += 2;
+        }
+        return product;
+    }
+
+    // 展开后的连接结果总条数
+    public long count() {
+        long count = 0;
+        for (int tuple = 0; tuple < size; tuple++) {
+            count += multiplicity(tuple);
+        }
+        return count;
+    }
+}
@@ -3,15 +3,12 @@ package joining.result;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 import joining.Trie;
 import util.CartesianProduct;
+import util.IntArray;
 
 
 public class JoinListGenerator {
@@ -19,28 +16,39 @@ public class JoinListGenerator {
     private int varCount;
     public ResultTrie[] resultTries;             // 连接结果数组
     public ResultTrie[][] trieByVar;             // 关联variable
-    public Map<Integer, Integer>[] varID2Level;  // variable id -> level
+    public int[][] varID2Level;                  // aliasID -> variable id -> level，-1 表示表不含该变量
     private boolean[] trieAdded;                 // 表是否已添加到当前连接层级
     private CartesianProduct curCPGenerator;     // 笛卡尔积生成器
+    private final IntArray needToStore = new IntArray(16, Integer.MAX_VALUE);   // 剪枝时保留的父结点值（升序、无重复）
 
-    @SuppressWarnings("unchecked")
     public JoinListGenerator(Trie[] tries, int totalVarCount) {
         // 初始化 ResultTrie 和 Trie 数组
         resultTries = new ResultTrie[tries.length];
 
         for (Trie trie : tries) {
             resultTries[trie.aliasID] = new ResultTrie(trie.aliasID, trie.maxLevel);
-            trie.rt = resultTries[trie.aliasID]; // 关联 Trie 和 ResultTrie
         }
             
         
         // 初始化状态记录
-        varID2Level = new HashMap[tries.length];
-        for (int i = 0; i < varID2Level.length; i++)
-            varID2Level[i] = new HashMap<>();
+        varID2Level = new int[tries.length][totalVarCount];
 
         trieAdded = new boolean[tries.length]; 
         trieByVar = new ResultTrie[totalVarCount][];     // 按连接层级组织的表数组
+        init(tries);
+    }
+
+    // 为新组合的 Trie 重置状态，复用 ResultTrie 与状态数组
+    public void init(Trie[] tries) {
+        for (Trie trie : tries) {
+            resultTries[trie.aliasID].clear();
+            trie.rt = resultTries[trie.aliasID]; // 关联 Trie 和 ResultTrie
+        }
+        for (int[] levels : varID2Level)
+            Arrays.fill(levels, -1);
+        Arrays.fill(trieAdded, false);
+        Arrays.fill(trieByVar, null);
+        curCPGenerator = null;
         varCount = 0;
     }
 
@@ -71,16 +79,16 @@ public class JoinListGenerator {
 
             if (validCount == 0) {
                 resultTrie.addLayer(new int[0], new int[0], 0);    // 添加新层级到ResultTrie
-                varID2Level[resultTrie.aliasID].put(varCount, resultTrie.curMaxLevel);
+                varID2Level[resultTrie.aliasID][varCount] = resultTrie.curMaxLevel;
                 continue;
             }
 
             int[] filteredValues = new int[validCount];
             int[] filteredValueParentIdx = new int[validCount];
 
-            // 使用 HashSet 预分配大小
-            HashSet<Integer> needToStore = new HashSet<>(validCount);
             int[] curLevel = resultTrie.levels[resultTrie.curMaxLevel];
+            needToStore.size = 0;
+            int lastParentIdx = -1;
 
             // long start = System.nanoTime();
             // 记录父节点索引，便于后续剪枝和结果回溯
@@ -92,10 +100,12 @@ public class JoinListGenerator {
                     int parentIdx = parentIdxData[i];
                     filteredValueParentIdx[idx] = parentIdx;
 
-                    if (parentIdx < curLevel.length) {
+                    // 同一父结点的子结点相邻，父结点值只记录一次
+                    if (parentIdx != lastParentIdx && parentIdx < curLevel.length) {
                         int parentValue = curLevel[parentIdx];
                         if (parentValue != -1 && parentValue != Integer.MAX_VALUE)
                             needToStore.add(parentValue);
+                        lastParentIdx = parentIdx;
                     }
                     idx++;
                 }
@@ -105,12 +115,13 @@ public class JoinListGenerator {
 
             // System.out.println(Arrays.toString(filteredValues));
             resultTrie.addLayer(filteredValues, filteredValueParentIdx, validCount);
-            varID2Level[resultTrie.aliasID].put(varCount, resultTrie.curMaxLevel);
+            varID2Level[resultTrie.aliasID][varCount] = resultTrie.curMaxLevel;
             
             int needToPrune = findPruningVar(trie.aliasID);
             if (needToPrune != -1) {
+                int nrNeedToStore = sortUnique(needToStore);
                 for (ResultTrie rt : trieByVar[needToPrune])
-                    rt.pruneUpward(needToStore, varID2Level[rt.aliasID].get(needToPrune));
+                    rt.pruneUpward(needToStore.data, nrNeedToStore, varID2Level[rt.aliasID][needToPrune]);
             }
         }
 
@@ -118,6 +129,19 @@ public class JoinListGenerator {
         varCount++;
     }
 
+    // 排序并去重，返回不同值的个数
+    private static int sortUnique(IntArray values) {
+        int[] data = values.data;
+        Arrays.sort(data, 0, values.size);
+        int nrUnique = 0;
+        for (int i = 0; i < values.size; i++) {
+            if (nrUnique == 0 || data[i] != data[nrUnique - 1])
+                data[nrUnique++] = data[i];
+        }
+        values.size = nrUnique;
+        return nrUnique;
+    }
+
     // 将调试打印提取为单独方法
     private void printDebugInfo() {
         for (ResultTrie resultTrie : resultTries) {
@@ -152,11 +176,11 @@ public class JoinListGenerator {
 
 
     // 根据当前所有等价类的全局分组（aliasGrouping），为每个分组生成 join 任务列表
-    public void genJoinList(List<TreeSet<Integer>> aliasGrouping) {
+    public void genJoinList(List<int[]> aliasGrouping) {
         final int groupCount = aliasGrouping.size();        // 提取组数
         List<List<int[]>> joinListInGroups = new ArrayList<>(groupCount);
 
-        // for (TreeSet<Integer> group : aliasGrouping) {
+        // for (int[] group : aliasGrouping) {
         //     List<int[]> joinListInGroup = processGroup(group);// 处理分组, 组内连接
         //     joinListInGroups.add(joinListInGroup);
         // }
@@ -175,7 +199,7 @@ public class JoinListGenerator {
     }
 
     // 提取组处理逻辑为单独方法 // 为一个分组生成 join 任务。
-    private List<int[]> processGroup(TreeSet<Integer> group) {
+    private List<int[]> processGroup(int[] group) {
         List<int[]> joinListInGroup = new ArrayList<>();        // list[i] means  in current level all tries' valid data's row index, not after join
 
         // 检查组内所有 Trie 是否都已添加到当前 join 层级
@@ -188,14 +212,14 @@ public class JoinListGenerator {
         }
         // 如果有未添加的，直接返回空任务（占位）
         if (!allAdded) {
-            int[] list = new int[group.size()];
+            int[] list = new int[group.length];
             joinListInGroup.add(list);
             return joinListInGroup;
         }
 
         // 组内单个trie的情况   枚举该 Trie 的所有结果
-        if (group.size() == 1) {
-            return processSingleTrie(group.first());
+        if (group.length == 1) {
+            return processSingleTrie(group[0]);
         }
 
         // 多个trie的情况
@@ -222,32 +246,29 @@ public class JoinListGenerator {
         return joinListInGroup;
     }
 
-    private List<int[]> processMultipleTries(TreeSet<Integer> group) {
-        // 记录组内的ResultTrie数组
-        ResultTrie[] allTrie = new ResultTrie[group.size()];
-        int offset = 0;
-        for (int i = 0; i < resultTries.length; i++) {
-            ResultTrie rtrie = resultTries[i];
-            if (group.contains(rtrie.aliasID)) {
-                allTrie[offset] = rtrie;
-                offset++; 
-            }
+    private List<int[]> processMultipleTries(int[] group) {
+        // 记录组内的ResultTrie数组（resultTries 按 aliasID 存放，组内 aliasID 升序）
+        ResultTrie[] allTrie = new ResultTrie[group.length];
+        boolean[] inGroup = new boolean[resultTries.length];
+        for (int i = 0; i < group.length; i++) {
+            allTrie[i] = resultTries[group[i]];
+            inGroup[group[i]] = true;
         }
 
         // 构建组内变量的trie数组
-        ResultTrie[][] groupTrieByVar = buildGroupTrieByVar(group);
+        ResultTrie[][] groupTrieByVar = buildGroupTrieByVar(inGroup);
         // 基于我们已经连接好的这些条件，在本组内部的这些表之间，有哪些行组合是满足所有历史连接条件的？返回 curVID-1 层的索引，也即预连接层的值块范围
         ResultLeapFrogTrieJoin rlfrj = new ResultLeapFrogTrieJoin(groupTrieByVar, allTrie);
         return rlfrj.execute(); // 执行连接
     }
 
-    private ResultTrie[][] buildGroupTrieByVar(TreeSet<Integer> group) {
+    private ResultTrie[][] buildGroupTrieByVar(boolean[] inGroup) {
         // 先计算需要的数组大小
         int varGroupCount = 0;
         for (int varId = 0; varId < varCount; varId++) {
             boolean hasTrieInGroup = false;
             for (ResultTrie trie : trieByVar[varId]) {
-                if (group.contains(trie.aliasID)) {
+                if (inGroup[trie.aliasID]) {
                     hasTrieInGroup = true;
                     break;
                 }
@@ -263,7 +284,7 @@ public class JoinListGenerator {
             // 计算该变量在组内的trie数量
             int trieCount = 0;
             for (ResultTrie trie : trieByVar[varId]) {
-                if (group.contains(trie.aliasID))
+                if (inGroup[trie.aliasID])
                     trieCount++;
             }
 
@@ -271,7 +292,7 @@ public class JoinListGenerator {
                 ResultTrie[] trieOfVar = new ResultTrie[trieCount];
                 int trieIdx = 0;
                 for (ResultTrie trie : trieByVar[varId]) {
-                    if (group.contains(trie.aliasID))
+                    if (inGroup[trie.aliasID])
                         trieOfVar[trieIdx++] = trie;
                 }
                 groupTrieByVar[varGroupIdx++] = trieOfVar;  // for per var , compute how many tries in group that hava it
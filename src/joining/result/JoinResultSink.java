@@ -0,0 +1,376 @@
+package joining.result;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+/**
+ * Collects join result tuples of one join thread in
+ * columnar form: tuples are stored in fixed-size chunks
+ * with one primitive row index array per table.
+ * Result columns are later gathered chunk by chunk
+ * (and in parallel) from all sinks.
+ *
+ */
+public class JoinResultSink {
+	/**
+	 * Base-2 logarithm of the chunk size.
+	 */
+	static final int CHUNK_SHIFT = 14;
+	/**
+	 * Number of result tuples per chunk.
+	 */
+	public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	/**
+	 * Products with at least twice that many tuples are
+	 * expanded by several fork-join tasks if requested.
+	 */
+	public static final int PARALLEL_MIN_TUPLES = 1 << 18;
+	/**
+	 * Number of joined tables.
+	 */
+	final int nrTables;
+	/**
+	 * Full or partially filled chunks, indexed by
+	 * table first and by tuple second.
+	 */
+	final List<int[][]> chunks = new ArrayList<>();
+	/**
+	 * Chunk currently being filled.
+	 */
+	int[][] curChunk = null;
+	/**
+	 * Number of tuples in current chunk.
+	 */
+	int curFill = CHUNK_SIZE;
+	/**
+	 * Total number of stored tuples.
+	 */
+	long size = 0;
+	/**
+	 * Tuples beyond this number are not stored (used
+	 * to stop expanding results early under a LIMIT).
+	 */
+	long capacity = Long.MAX_VALUE;
+	/**
+	 * Initializes empty result for given number of tables.
+	 *
+	 * @param nrTables	number of joined tables
+	 */
+	public JoinResultSink(int nrTables) {
+		this.nrTables = nrTables;
+	}
+	/**
+	 * Adds a new chunk if the current one is full.
+	 */
+	void ensureCapacity() {
+		if (curFill == CHUNK_SIZE) {
+			curChunk = new int[nrTables][CHUNK_SIZE];
+			chunks.add(curChunk);
+			curFill = 0;
+		}
+	}
+	/**
+	 * Adds one result tuple.
+	 *
+	 * @param tuple	row index for each table
+	 */
+	public void add(int[] tuple) {
+		if (size >= capacity) {
+			return;
+		}
+		ensureCapacity();
+		for (int table = 0; table < nrTables; ++table) {
+			curChunk[table][curFill] = tuple[table];
+		}
+		++curFill;
+		++size;
+	}
+	/**
+	 * Adds all given result tuples.
+	 *
+	 * @param tuples	list of result tuples
+	 */
+	public void addAll(List<int[]> tuples) {
+		for (int[] tuple : tuples) {
+			add(tuple);
+		}
+	}
+	/**
+	 * Adds the Cartesian product of given row ranges, i.e. for
+	 * each table all rows in rows[table][starts[table], ends[table]).
+	 * Stops once the capacity is reached.
+	 *
+	 * @param rows		row indices (e.g., trie tuple orders) per table
+	 * @param starts	first position in row indices per table
+	 * @param ends		end position (exclusive) per table
+	 */
+	public void addProduct(int[][] rows, int[] starts, int[] ends) {
+		addProduct(rows, starts, ends, false);
+	}
+	/**
+	 * Adds the Cartesian product of given row ranges. The
+	 * product size is calculated up front, all chunks it
+	 * needs are allocated at once, and row indices are
+	 * written directly into the chunk columns. Large
+	 * products are optionally split into contiguous parts
+	 * that are expanded by separate fork-join tasks.
+	 *
+	 * @param rows		row indices (e.g., trie tuple orders) per table
+	 * @param starts	first position in row indices per table
+	 * @param ends		end position (exclusive) per table
+	 * @param parallel	whether large products may be split
+	 * @return			number of forked tasks (zero if not split)
+	 */
+	public int addProduct(int[][] rows, int[] starts, int[] ends, boolean parallel) {
+		long limit = capacity - size;
+		long nrTuples = 1;
+		for (int table = 0; table < nrTables; ++table) {
+			int length = ends[table] - starts[table];
+			if (length <= 0) {
+				return 0;
+			}
+			nrTuples = nrTuples > limit / length ? limit : nrTuples * length;
+		}
+		nrTuples = Math.min(nrTuples, limit);
+		if (nrTuples <= 0) {
+			return 0;
+		}
+		reserve(nrTuples);
+		int nrTasks = 0;
+		if (parallel && nrTuples >= 2 * PARALLEL_MIN_TUPLES &&
+				ForkJoinTask.inForkJoinPool()) {
+			nrTasks = new ProductTask(rows, starts, ends, size, 0, nrTuples).invoke();
+		} else {
+			fill(rows, starts, ends, size, 0, nrTuples);
+		}
+		size += nrTuples;
+		curChunk = chunks.get(chunks.size() - 1);
+		curFill = (int) (size - ((long) (chunks.size() - 1) << CHUNK_SHIFT));
+		return nrTasks;
+	}
+	/**
+	 * Allocates all chunks needed to store given number
+	 * of tuples after the ones already stored.
+	 *
+	 * @param nrTuples	number of tuples to make room for
+	 */
+	void reserve(long nrTuples) {
+		long end = size + nrTuples;
+		while (((long) chunks.size() << CHUNK_SHIFT) < end) {
+			chunks.add(new int[nrTables][CHUNK_SIZE]);
+		}
+	}
+	/**
+	 * Writes tuples [from, to) of the Cartesian product (the
+	 * last table varying fastest) into the reserved chunks,
+	 * starting at result position base + from. Advances one
+	 * index counter per table like an odometer.
+	 *
+	 * @param rows		row indices per table
+	 * @param starts	first position in row indices per table
+	 * @param ends		end position (exclusive) per table
+	 * @param base		result position of first product tuple
+	 * @param from		first product tuple to write
+	 * @param to		end of product tuples to write (exclusive)
+	 */
+	void fill(int[][] rows, int[] starts, int[] ends,
+			long base, long from, long to) {
+		int last = nrTables - 1;
+		// Decode counters of first tuple from its product index
+		int[] positions = new int[nrTables];
+		long rest = from;
+		for (int table = last; table >= 0; --table) {
+			int length = ends[table] - starts[table];
+			positions[table] = starts[table] + (int) (rest % length);
+			rest /= length;
+		}
+		long pos = base + from;
+		long remaining = to - from;
+		while (remaining > 0) {
+			int[][] chunk = chunks.get((int) (pos >>> CHUNK_SHIFT));
+			int offset = (int) (pos & (CHUNK_SIZE - 1));
+			// Copy run of last table into current chunk
+			int runLength = (int) Math.min(Math.min(ends[last] - positions[last],
+					CHUNK_SIZE - offset), remaining);
+			for (int table = 0; table < last; ++table) {
+				int row = rows[table][positions[table]];
+				int[] chunkCol = chunk[table];
+				for (int i = 0; i < runLength; ++i) {
+					chunkCol[offset + i] = row;
+				}
+			}
+			System.arraycopy(rows[last], positions[last],
+					chunk[last], offset, runLength);
+			pos += runLength;
+			remaining -= runLength;
+			positions[last] += runLength;
+			if (positions[last] < ends[last]) {
+				continue;
+			}
+			// Advance remaining tables like an odometer
+			positions[last] = starts[last];
+			for (int table = last - 1; table >= 0; --table) {
+				++positions[table];
+				if (positions[table] < ends[table]) {
+					break;
+				}
+				positions[table] = starts[table];
+			}
+		}
+	}
+	/**
+	 * Expands a contiguous part of a Cartesian product into
+	 * reserved chunks, halving parts above the threshold.
+	 * Parts write disjoint result positions.
+	 */
+	@SuppressWarnings("serial")
+	class ProductTask extends RecursiveTask<Integer> {
+		final int[][] rows;
+		final int[] starts;
+		final int[] ends;
+		final long base;
+		final long from;
+		final long to;
+
+		ProductTask(int[][] rows, int[] starts, int[] ends,
+				long base, long from, long to) {
+			this.rows = rows;
+			this.starts = starts;
+			this.ends = ends;
+			this.base = base;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Integer compute() {
+			if (to - from < 2 * PARALLEL_MIN_TUPLES) {
+				fill(rows, starts, ends, base, from, to);
+				return 1;
+			}
+			long mid = (from + to) >>> 1;
+			ProductTask right = new ProductTask(rows, starts, ends, base, mid, to);
+			right.fork();
+			ProductTask left = new ProductTask(rows, starts, ends, base, from, mid);
+			return left.compute() + right.join();
+		}
+	}
+	/**
+	 * Adds all join result tuples represented by given
+	 * factorized result, expanding per-table row ranges.
+	 *
+	 * @param result	factorized join result
+	 */
+	public void addAll(FactorizedResult result) {
+		addAll(result, false);
+	}
+	/**
+	 * Adds all join result tuples represented by given
+	 * factorized result, expanding per-table row ranges.
+	 *
+	 * @param result	factorized join result
+	 * @param parallel	whether large products may be split
+	 * @return			number of forked tasks
+	 */
+	public int addAll(FactorizedResult result, boolean parallel) {
+		int[] starts = new int[nrTables];
+		int[] ends = new int[nrTables];
+		int nrTasks = 0;
+		for (int tuple = 0; tuple < result.size && size < capacity; ++tuple) {
+			result.ranges(tuple, starts, ends);
+			nrTasks += addProduct(result.rows, starts, ends, parallel);
+		}
+		return nrTasks;
+	}
+	/**
+	 * Returns number of stored tuples.
+	 *
+	 * @return	number of result tuples
+	 */
+	public long size() {
+		return size;
+	}
+	/**
+	 * Limits the number of stored tuples: further tuples
+	 * are dropped once the given number is reached.
+	 *
+	 * @param capacity	maximal number of stored tuples
+	 */
+	public void setCapacity(long capacity) {
+		this.capacity = capacity;
+	}
+	/**
+	 * Returns true iff no further tuples are stored.
+	 *
+	 * @return	true iff the capacity is reached
+	 */
+	public boolean isFull() {
+		return size >= capacity;
+	}
+	/**
+	 * Consumes one chunk of row indices for a given table.
+	 */
+	public interface ChunkConsumer {
+		/**
+		 * Processes row indices rows[0, nrRows) that
+		 * correspond to result positions starting
+		 * from given offset.
+		 *
+		 * @param rows		row indices of chunk
+		 * @param nrRows	number of valid row indices
+		 * @param offset	result position of first row
+		 */
+		void accept(int[] rows, int nrRows, int offset);
+	}
+	/**
+	 * Returns total number of result tuples over all sinks.
+	 *
+	 * @param sinks	join results of all threads
+	 * @return		total number of tuples
+	 */
+	public static int totalSize(List<JoinResultSink> sinks) {
+		long total = 0;
+		for (JoinResultSink sink : sinks) {
+			total += sink.size;
+		}
+		if (total > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Join result too large: " + total);
+		}
+		return (int) total;
+	}
+	/**
+	 * Iterates over all chunks of all sinks for given table,
+	 * passing each chunk with its position in the result.
+	 *
+	 * @param sinks		join results of all threads
+	 * @param tableIdx	iterate over row indices of that table
+	 * @param parallel	whether to process chunks in parallel
+	 * @param consumer	processes each chunk
+	 */
+	public static void forEachChunk(List<JoinResultSink> sinks, int tableIdx,
+			boolean parallel, ChunkConsumer consumer) {
+		List<int[]> chunkRows = new ArrayList<>();
+		List<Integer> chunkSizes = new ArrayList<>();
+		for (JoinResultSink sink : sinks) {
+			int nrChunks = sink.chunks.size();
+			for (int chunkCtr = 0; chunkCtr < nrChunks; ++chunkCtr) {
+				chunkRows.add(sink.chunks.get(chunkCtr)[tableIdx]);
+				chunkSizes.add(chunkCtr == nrChunks - 1 ? sink.curFill : CHUNK_SIZE);
+			}
+		}
+		int nrChunks = chunkRows.size();
+		int[] offsets = new int[nrChunks];
+		for (int chunkCtr = 1; chunkCtr < nrChunks; ++chunkCtr) {
+			offsets[chunkCtr] = offsets[chunkCtr - 1] + chunkSizes.get(chunkCtr - 1);
+		}
+		IntStream chunkStream = IntStream.range(0, nrChunks);
+		if (parallel) {
+			chunkStream = chunkStream.parallel();
+		}
+		chunkStream.forEach(chunkCtr -> consumer.accept(chunkRows.get(chunkCtr),
+				chunkSizes.get(chunkCtr), offsets[chunkCtr]));
+	}
+}
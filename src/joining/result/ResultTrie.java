@@ -2,7 +2,6 @@ package joining.result;
 
 import java.util.Arrays;
 import java.util.BitSet;
-import java.util.Set;
 
 /* 
  * 作用于Trie，与表无关
@@ -33,6 +32,10 @@ public class ResultTrie {
 
     public BitSet status;
 
+    // 压缩：各层被剪枝（墓碑）的结点数；内部层的墓碑在剪枝后删除，只有最后一层保留墓碑
+    private final int[] nrDeleted;
+    private int[] prefix = new int[0];  // 压缩时：旧下标 i 之前保留的结点数，即保留结点的新下标
+
     public ResultTrie(int aliasID, int maxLevel) {
         this.aliasID = aliasID;
         this.maxLevel = maxLevel;
@@ -41,9 +44,17 @@ public class ResultTrie {
         levelRanges = new int[maxLevel + 1][2];
         positions = new int[maxLevel + 1];
         upperBounds = new int[maxLevel + 1];
+        nrDeleted = new int[maxLevel + 1];
 
-        curMaxLevel = 0;                    // 设置根层
         levels[0] = new int[] { -1 };       // 设置根节点的值为 -1
+        ranges[0] = new int[2];
+        status = new BitSet(1);
+        clear();
+    }
+
+    // 恢复为只有根节点的初始状态，以便在下一个组合中复用
+    public void clear() {
+        curMaxLevel = 0;                    // 设置根层
         /*
          * 根节点的子节点范围初始为[-1,-1)
          * 
@@ -53,11 +64,18 @@ public class ResultTrie {
          * 所以在构造本层时，将有效值块标为无效，在最后一层时可以再标为有效
          * 
         */
-        ranges[0] = new int[] { -1, -1 };  
+        ranges[0][0] = -1;
+        ranges[0][1] = -1;
+        for (int level = 1; level <= maxLevel; level++) {
+            levels[level] = null;
+            ranges[level] = null;
+        }
         levelRanges[0][0] = 0;
         levelRanges[0][1] = 1;
-        status = new BitSet(1);
+        status.clear();
         status.set(0);
+        Arrays.fill(nrDeleted, 0);
+        curLevel = 0;
         
         // 初始化缓存
         updateLevelCache();                 // 更新缓存变量
@@ -76,7 +94,13 @@ public class ResultTrie {
 
     // 添加一层  只把有效的 join key（status=1）加入新层
     public void addLayer(int[] currentValues, int[] parentIndexes, int size) {
+        // 父层（原最后一层）变为内部层：删除其中的墓碑，子结点的父下标随之重映射
+        boolean remap = curMaxLevel > 0 && nrDeleted[curMaxLevel] > 0;
+        if (remap) {
+            compact(curMaxLevel);
+        }
         curMaxLevel++;
+        nrDeleted[curMaxLevel] = 0;
         status = new BitSet(size); // 初始化状态位图
         // 引用新层有效节点值
         levels[curMaxLevel] = currentValues;
@@ -93,6 +117,12 @@ public class ResultTrie {
             for (int i = 0; i < size; i++) {
                 // 更新父节点的范围
                 int parentIndex = parentIndexes[i]; // 重映射，第i个值的父结点在上一层的range中的实际索引
+                if (remap) {
+                    // 父结点已被剪枝：子结点不可达
+                    if (prefix[parentIndex + 1] == prefix[parentIndex])
+                        continue;
+                    parentIndex = prefix[parentIndex];
+                }
                 int rangeIndex = parentIndex << 1;  // 准备获取父节点值块范围
                 // 非最后层处理时，会为本层(会在下一层被使用所以是父层)设置为全-1
                 if (parentRanges[rangeIndex] == -1) // 设置子节点起始
@@ -111,6 +141,11 @@ public class ResultTrie {
         for (int i = 0; i < size; i++) {
             // 更新父节点的范围
             int parentIndex = parentIndexes[i];
+            if (remap) {
+                if (prefix[parentIndex + 1] == prefix[parentIndex])
+                    continue;
+                parentIndex = prefix[parentIndex];
+            }
             int rangeIndex = parentIndex << 1;
             if (parentRanges[rangeIndex] == -1)
                 parentRanges[rangeIndex] = i;
@@ -119,9 +154,10 @@ public class ResultTrie {
     }
 
     /**
-     * 优化剪枝操作 - 减少重复计算和数组访问
+     * 剪枝：删除 pruneLevel 层中值不在 needToStore[0, nrNeedToStore)（升序、无重复）中的结点，
+     * 并向上删除失去所有子结点的父结点，最后压缩被修改的内部层。
      */
-    public void pruneUpward(Set<Integer> needToStore, int pruneLevel) {
+    public void pruneUpward(int[] needToStore, int nrNeedToStore, int pruneLevel) {
         // 确保pruneLevel是有效的
         if (pruneLevel <= 0 || pruneLevel > curMaxLevel)
             return;
@@ -144,9 +180,10 @@ public class ResultTrie {
                 continue;
 
             // 判断当前节点是否需要保留
-            if (!needToStore.contains(value)) {
+            if (Arrays.binarySearch(needToStore, 0, nrNeedToStore, value) < 0) {
                 // 将不需要保留的节点标记为删除
                 pruneLevelValues[i] = Integer.MAX_VALUE;
+                nrDeleted[pruneLevel]++;
                 anyNodeDeleted = true;
             } else {
                 // 保留此节点，更新有效范围
@@ -168,6 +205,116 @@ public class ResultTrie {
         // 如果有节点被删除，且不是最顶层，则更新父层节点
         if (anyNodeDeleted && pruneLevel > 0)
             updateParentNodes(pruneLevel);
+
+        // 删除内部层中的墓碑（最后一层在成为父层时压缩）
+        for (int level = Math.min(pruneLevel, curMaxLevel - 1); level >= 1; level--) {
+            if (nrDeleted[level] > 0)
+                compact(level);
+        }
+    }
+
+    /**
+     * 运行时拆分组合：删除第一层中值不小于 splitValue 的结点及其所有后代（交给其它线程处理）。
+     * 第一层只有根一个父结点，值整体有序。内部层的墓碑随后压缩，最后一层保留墓碑，
+     * 其下标仍与 Trie 的父结点编号及 status 对应。
+     *
+     * @return  是否有结点被删除
+     */
+    public boolean cutFirstLevel(int splitValue) {
+        if (curMaxLevel < 1)
+            return false;
+        int[] firstLevel = levels[1];
+        int start = levelRanges[1][0];
+        int end = levelRanges[1][1];
+        int newLastValidPlus1 = start;
+        boolean anyNodeDeleted = false;
+        for (int i = start; i < end; i++) {
+            int value = firstLevel[i];
+            if (value == Integer.MAX_VALUE)
+                continue;
+            if (value >= splitValue) {
+                firstLevel[i] = Integer.MAX_VALUE;
+                nrDeleted[1]++;
+                anyNodeDeleted = true;
+            } else {
+                newLastValidPlus1 = i + 1;
+            }
+        }
+        if (!anyNodeDeleted)
+            return false;
+        if (newLastValidPlus1 == start) {
+            levelRanges[1][0] = 0;
+            levelRanges[1][1] = 0;
+        } else {
+            levelRanges[1][1] = newLastValidPlus1;
+        }
+
+        // 向下删除被删除结点的子结点（已压缩掉的结点的子结点本就不可达）
+        for (int level = 2; level <= curMaxLevel; level++) {
+            int[] parentValues = levels[level - 1];
+            int[] parentRanges = ranges[level - 1];
+            int[] childValues = levels[level];
+            for (int i = 0; i < parentValues.length; i++) {
+                if (parentValues[i] != Integer.MAX_VALUE || parentRanges[i << 1] == -1)
+                    continue;
+                for (int j = parentRanges[i << 1]; j < parentRanges[(i << 1) + 1]; j++) {
+                    if (childValues[j] != Integer.MAX_VALUE) {
+                        childValues[j] = Integer.MAX_VALUE;
+                        nrDeleted[level]++;
+                    }
+                }
+            }
+        }
+
+        // 自下而上压缩内部层
+        for (int level = curMaxLevel - 1; level >= 1; level--) {
+            if (nrDeleted[level] > 0)
+                compact(level);
+        }
+        return true;
+    }
+
+    /**
+     * 压缩一层：删除墓碑结点，本层的子结点区间随结点前移，父层指向本层的区间按新下标重写。
+     * 被删除结点的子结点成为不可达的孤儿，与压缩前相同。
+     * 最后一层的下标与 Trie 的父结点编号及 status 对应，不能在其仍为最后一层时压缩。
+     * 压缩后 prefix[i] 为旧下标 i 之前保留的结点数（旧结点 i 保留时即其新下标）。
+     */
+    private void compact(int level) {
+        int[] values = levels[level];
+        int[] childRanges = ranges[level];
+        int size = values.length;
+        if (prefix.length < size + 1)
+            prefix = new int[size + 1];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            prefix[i] = count;
+            if (values[i] != Integer.MAX_VALUE) {
+                values[count] = values[i];
+                if (childRanges != null) {
+                    childRanges[count << 1] = childRanges[i << 1];
+                    childRanges[(count << 1) + 1] = childRanges[(i << 1) + 1];
+                }
+                count++;
+            }
+        }
+        prefix[size] = count;
+        levels[level] = Arrays.copyOf(values, count);
+        if (childRanges != null)
+            ranges[level] = Arrays.copyOf(childRanges, count << 1);
+
+        // 父层结点的子结点区间：区间内保留的结点在压缩后仍然连续
+        int[] parentRanges = ranges[level - 1];
+        for (int i = 0; i < parentRanges.length; i += 2) {
+            if (parentRanges[i] != -1) {
+                parentRanges[i] = prefix[parentRanges[i]];
+                parentRanges[i + 1] = prefix[parentRanges[i + 1]];
+            }
+        }
+        // 有效范围之外的结点虽未标记删除也不可见，范围同样按新下标重写
+        levelRanges[level][0] = prefix[levelRanges[level][0]];
+        levelRanges[level][1] = prefix[levelRanges[level][1]];
+        nrDeleted[level] = 0;
     }
 
     /**
@@ -213,6 +360,7 @@ public class ResultTrie {
             if (!hasValidChild) {
                 // 没有有效子节点，删除父节点
                 parentValues[i] = Integer.MAX_VALUE;
+                nrDeleted[parentLevel]++;
                 parentChanged = true;
             } else {
                 // 有有效子节点，更新父节点的有效范围
@@ -322,19 +470,14 @@ public class ResultTrie {
             int midKey = currentLevelArray[mid];
 
             if (midKey == Integer.MAX_VALUE) {
-                // 处理删除节点的情况
-                int left = mid - 1;
-                while (left >= lb && currentLevelArray[left] == Integer.MAX_VALUE)
-                    left--;
+                // 墓碑：以右侧最近的有效结点作比较
                 int right = mid + 1;
                 while (right < ub && currentLevelArray[right] == Integer.MAX_VALUE)
                     right++;
-                if (left >= lb) {
-                    ub = left + 1;
-                } else if (right < ub) {
-                    lb = right;
+                if (right == ub || currentLevelArray[right] >= seekKey) {
+                    ub = mid;
                 } else {
-                    break;
+                    lb = right + 1;
                 }
                 continue;
             }
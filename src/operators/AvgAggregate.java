@@ -6,6 +6,7 @@ import catalog.info.ColumnInfo;
 import catalog.info.TableInfo;
 import data.ColumnData;
 import data.DoubleData;
+import data.EncodedIntData;
 import data.IntData;
 import data.LongData;
 import query.ColumnRef;
@@ -89,14 +90,17 @@ public class AvgAggregate {
 		// Switch according to column type (to avoid casts)
 		switch (srcType) {
 		case INT:
-			IntData intSrc = (IntData)srcData;
+			// Encoded columns are read row by row, without decoding
+			int[] intSrc = srcData instanceof IntData ? ((IntData)srcData).data : null;
+			EncodedIntData encodedSrc = intSrc == null ? (EncodedIntData)srcData : null;
 			// Iterate over input column
 			for (int row=0; row<srcCard; ++row) {
 				// Check for null values
 				if (!srcData.isNull.get(row)) {
 					int group = groups[row];
 					genericTarget.isNull.set(group, false);
-					intTarget.data[group] += intSrc.data[row];
+					intTarget.data[group] += intSrc != null ?
+							intSrc[row] : encodedSrc.getInt(row);
 					numbers[group]++;
 				}
 			}
@@ -15,6 +15,7 @@ import config.ParallelConfig;
 import data.*;
 import indexing.Index;
 import joining.parallel.threads.ThreadPool;
+import joining.result.JoinResultSink;
 import joining.result.ResultTuple;
 import print.RelationPrinter;
 import query.ColumnRef;
@@ -118,6 +119,8 @@ public class Materialize {
         CatalogManager.currentDB.addTable(resultTable);
         List<IntData> intSource = new ArrayList<>();
         List<IntData> intTarget = new ArrayList<>();
+        List<EncodedIntData> encodedSource = new ArrayList<>();
+        List<IntData> encodedTarget = new ArrayList<>();
         List<LongData> longSource = new ArrayList<>();
         List<LongData> longTarget = new ArrayList<>();
         List<DoubleData> doubleSource = new ArrayList<>();
@@ -138,8 +141,14 @@ public class Materialize {
             switch (jType) {
                 case INT:
                     IntData intData = new IntData(cardinality);
-                    intSource.add((IntData) srcData);
-                    intTarget.add(intData);
+                    // Encoded columns are read without decoding all rows
+                    if (srcData instanceof EncodedIntData) {
+                        encodedSource.add((EncodedIntData) srcData);
+                        encodedTarget.add(intData);
+                    } else {
+                        intSource.add((IntData) srcData);
+                        intTarget.add(intData);
+                    }
                     BufferManager.colToData.put(resultColRef, intData);
                     break;
                 case LONG:
@@ -191,6 +200,13 @@ public class Materialize {
 //						intDataTarget.isNull.set(offset, intDataSource.isNull.get(row));
                     }
                 }
+                for (int i = 0; i < encodedSource.size(); i++) {
+                    EncodedIntData source = encodedSource.get(i);
+                    int[] target = encodedTarget.get(i).data;
+                    for (int rid = batchFirst; rid <= batchLast; rid++) {
+                        target[rid - first] = source.getInt(sortedRow[rid]);
+                    }
+                }
                 for (int i = 0; i < doubleSource.size(); i++) {
                     DoubleData doubleDataSource = doubleSource.get(i);
                     DoubleData doubleDataTarget = doubleTarget.get(i);
@@ -253,6 +269,8 @@ public class Materialize {
         CatalogManager.currentDB.addTable(resultTable);
         List<IntData> intSource = new ArrayList<>();
         List<IntData> intTarget = new ArrayList<>();
+        List<EncodedIntData> encodedSource = new ArrayList<>();
+        List<IntData> encodedTarget = new ArrayList<>();
         List<LongData> longSource = new ArrayList<>();
         List<LongData> longTarget = new ArrayList<>();
         List<DoubleData> doubleSource = new ArrayList<>();
@@ -273,8 +291,14 @@ public class Materialize {
             switch (jType) {
                 case INT:
                     IntData intData = new IntData(cardinality);
-                    intSource.add((IntData) srcData);
-                    intTarget.add(intData);
+                    // Encoded columns are read without decoding all rows
+                    if (srcData instanceof EncodedIntData) {
+                        encodedSource.add((EncodedIntData) srcData);
+                        encodedTarget.add(intData);
+                    } else {
+                        intSource.add((IntData) srcData);
+                        intTarget.add(intData);
+                    }
                     BufferManager.colToData.put(resultColRef, intData);
                     break;
                 case LONG:
@@ -324,6 +348,13 @@ public class Materialize {
                         target[offset] = source[row];
                     }
                 }
+                for (int i = 0; i < encodedSource.size(); i++) {
+                    EncodedIntData source = encodedSource.get(i);
+                    int[] target = encodedTarget.get(i).data;
+                    for (int rid = batchFirst; rid <= batchLast; rid++) {
+                        target[rid - pos - 1] = source.getInt(index.positions[rid]);
+                    }
+                }
                 for (int i = 0; i < doubleSource.size(); i++) {
                     DoubleData doubleDataSource = doubleSource.get(i);
                     DoubleData doubleDataTarget = doubleTarget.get(i);
@@ -368,6 +399,32 @@ public class Materialize {
         }
     }
 
+    /**
+     * Returns the source rows copied by executeRange, in
+     * the order in which they appear in the target table.
+     *
+     * @param rowList       first and last position in sorted rows
+     * @param index         index whose sorted rows are copied
+     * @return              source row for each target row
+     */
+    public static int[] rangeRows(List<Integer> rowList, Index index) {
+        return Arrays.copyOfRange(index.sortedRow, rowList.get(0), rowList.get(1));
+    }
+
+    /**
+     * Returns the source rows copied by executeEqualPos, in
+     * the order in which they appear in the target table.
+     *
+     * @param rowList       position of the indexed key
+     * @param index         index whose positions are copied
+     * @return              source row for each target row
+     */
+    public static int[] equalPosRows(List<Integer> rowList, Index index) {
+        int pos = rowList.get(0);
+        int cardinality = index.positions[pos];
+        return Arrays.copyOfRange(index.positions, pos + 1, pos + 1 + cardinality);
+    }
+
     /**
      * Materializes a join relation from given indices
      * for a set of base tables.
@@ -418,6 +475,57 @@ public class Materialize {
         CatalogManager.updateStats(targetRelName);
     }
 
+    /**
+     * Materializes a join relation from columnar join results
+     * collected per join thread. Result columns are gathered
+     * chunk by chunk without creating per-tuple objects.
+     *
+     * @param sinks          join results collected by join threads
+     * @param tableToIdx     maps table names to base table indices
+     * @param sourceCols     set of columns to copy
+     * @param columnMappings maps source columns, as in query, to DB columns
+     * @param targetRelName  name of materialized result relation
+     * @throws Exception
+     */
+    public static void execute(List<JoinResultSink> sinks,
+                               Map<String, Integer> tableToIdx,
+                               Collection<ColumnRef> sourceCols,
+                               Map<ColumnRef, ColumnRef> columnMappings,
+                               String targetRelName) throws Exception {
+        // Update catalog, insert result table
+        TableInfo resultInfo = new TableInfo(targetRelName, true);
+        CatalogManager.currentDB.addTable(resultInfo);
+        // Add result columns to catalog
+        for (ColumnRef srcQueryRef : sourceCols) {
+            // Map query column to DB column
+            ColumnRef srcDBref = columnMappings.get(srcQueryRef);
+            // Extract information on source column
+            String srcAlias = srcQueryRef.aliasName;
+            String srcColName = srcQueryRef.columnName;
+            ColumnInfo srcInfo = CatalogManager.getColumn(srcDBref);
+            // Generate target column
+            String targetColName = srcAlias + "." + srcColName;
+            ColumnInfo targetInfo = new ColumnInfo(targetColName,
+                    srcInfo.type, false, false, false, false);
+            resultInfo.addColumn(targetInfo);
+        }
+        // Materialize result columns (each column gathers its chunks in parallel)
+        for (ColumnRef srcQueryRef : sourceCols) {
+            // Generate target column reference
+            String targetCol = srcQueryRef.aliasName + "." + srcQueryRef.columnName;
+            ColumnRef targetRef = new ColumnRef(targetRelName, targetCol);
+            // Generate target column
+            int tableIdx = tableToIdx.get(srcQueryRef.aliasName);
+            ColumnRef srcDBref = columnMappings.get(srcQueryRef);
+            ColumnData srcData = BufferManager.colToData.get(srcDBref);
+            ColumnData targetData = srcData.copyRows(sinks, tableIdx);
+            // Insert into buffer pool
+            BufferManager.colToData.put(targetRef, targetData);
+        }
+        // Update statistics in catalog
+        CatalogManager.updateStats(targetRelName);
+    }
+
     /**
      * Materializes a join relation from given an existing relation
      *
@@ -1,7 +1,9 @@
 package operators;
 
 import config.ParallelConfig;
+import data.ColumnData;
 import data.DoubleData;
+import data.EncodedIntData;
 import data.IntData;
 import data.LongData;
 
@@ -45,31 +47,37 @@ public class OperatorUtils {
         return batches;
     }
 
-    public static List<Integer> filterBatch(IntData intData,
+    public static List<Integer> filterBatch(ColumnData intData,
                                             RowRange batch) {
         List<Integer> result = new ArrayList<>();
+        // Encoded columns are read row by row, without decoding
+        int[] values = intData instanceof IntData ? ((IntData) intData).data : null;
+        EncodedIntData encoded = values == null ? (EncodedIntData) intData : null;
         // Evaluate predicate for each table row
         int batchData = 0;
         for (int resultRow = batch.firstTuple; resultRow <= batch.lastTuple; ++resultRow) {
             // Either map row to row or row to group
             if (!intData.isNull.get(resultRow)) {
-                batchData += intData.data[resultRow];
+                batchData += values != null ? values[resultRow] : encoded.getInt(resultRow);
             }
         }
         result.add(batchData);
         return result;
     }
 
-    public static List<Integer> filterBatch(IntData intData,
+    public static List<Integer> filterBatch(ColumnData intData,
                                      RowRange batch, List<Integer> groupRows) {
         List<Integer> result = new ArrayList<>();
+        // Encoded columns are read row by row, without decoding
+        int[] values = intData instanceof IntData ? ((IntData) intData).data : null;
+        EncodedIntData encoded = values == null ? (EncodedIntData) intData : null;
         // Evaluate predicate for each table row
         int batchData = 0;
         for (int resultRow = batch.firstTuple; resultRow <= batch.lastTuple; ++resultRow) {
             // Either map row to row or row to group
             int row = groupRows.get(resultRow);
             if (!intData.isNull.get(row)) {
-                batchData += intData.data[row];
+                batchData += values != null ? values[row] : encoded.getInt(row);
             }
         }
         result.add(batchData);
@@ -139,9 +147,12 @@ public class OperatorUtils {
         return result;
     }
 
-    public static List<int[]> avgBatch(IntData intData,
+    public static List<int[]> avgBatch(ColumnData intData,
                                       RowRange batch, List<Integer> groupRows) {
         List<int[]> result = new ArrayList<>();
+        // Encoded columns are read row by row, without decoding
+        int[] values = intData instanceof IntData ? ((IntData) intData).data : null;
+        EncodedIntData encoded = values == null ? (EncodedIntData) intData : null;
         // Evaluate predicate for each table row
         int batchData = 0;
         int batchNr = 0;
@@ -149,7 +160,7 @@ public class OperatorUtils {
             // Either map row to row or row to group
             int row = groupRows.get(resultRow);
             if (!intData.isNull.get(row)) {
-                batchData += intData.data[row];
+                batchData += values != null ? values[row] : encoded.getInt(row);
                 batchNr++;
             }
         }
@@ -111,14 +111,17 @@ public class SumAggregate {
 		switch (srcType) {
 		case INT:
 		{
-			IntData intSrc = (IntData)srcData;
+			// Encoded columns are read row by row, without decoding
+			int[] intSrc = srcData instanceof IntData ? ((IntData)srcData).data : null;
+			EncodedIntData encodedSrc = intSrc == null ? (EncodedIntData)srcData : null;
 			// Iterate over input column
 			for (int row=0; row<srcCard; ++row) {
 				// Check for null values
 				if (!srcData.isNull.get(row)) {
 					int group = groups[row];
 					genericTarget.isNull.set(group, false);
-					intTarget.data[group] += intSrc.data[row];
+					intTarget.data[group] += intSrc != null ?
+							intSrc[row] : encodedSrc.getInt(row);
 				}
 			}			
 		}
@@ -7,6 +7,7 @@ import catalog.info.TableInfo;
 import com.koloboke.collect.IntCollection;
 import data.ColumnData;
 import data.DoubleData;
+import data.EncodedIntData;
 import data.IntData;
 import data.LongData;
 import expressions.ExpressionInfo;
@@ -81,7 +82,7 @@ public class ParallelAvgAggregate {
 		switch (srcType) {
 		case INT:
 		{
-			IntData intSrc = (IntData)srcData;
+			ColumnData intSrc = srcData;
 			if (grouping) {
 				System.out.println("groupBy");
 				groupMapping.values().parallelStream().forEach(groupIndex -> {
@@ -199,7 +200,9 @@ public class ParallelAvgAggregate {
 		switch (srcType) {
 			case INT:
 			{
-				IntData intSrc = (IntData)srcData;
+				// Encoded columns are read row by row, without decoding
+				int[] intSrc = srcData instanceof IntData ? ((IntData)srcData).data : null;
+				EncodedIntData encodedSrc = intSrc == null ? (EncodedIntData)srcData : null;
 				System.out.println("groupBy");
 				int[] positions = index.positions;
 				int[] gids = index.groupIds;
@@ -209,7 +212,7 @@ public class ParallelAvgAggregate {
 					double data = 0;
 					for (int i = pos + 1; i <= pos + groupCard; i++) {
 						int rid = positions[i];
-						data += intSrc.data[rid];
+						data += intSrc != null ? intSrc[rid] : encodedSrc.getInt(rid);
 					}
 					if (data != 0) {
 						data = data / groupCard;
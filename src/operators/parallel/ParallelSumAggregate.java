@@ -120,7 +120,7 @@ public class ParallelSumAggregate {
 		switch (srcType) {
 		case INT:
 		{
-			IntData intSrc = (IntData)srcData;
+			ColumnData intSrc = srcData;
 			IntData finalIntTarget = intTarget;
 			if (grouping) {
 				System.out.println("groupBy");
@@ -188,7 +188,12 @@ public class ParallelPostProcessor {
         // Update query context for following steps
         context.groupRef = targetRef;
 //        context.nrGroups = GroupBy.execute(sourceRefs, targetRef);
-        if (index != null) {
+        if (context.joinAggregates != null) {
+            // Groups were formed during the join phase - keep group order
+            context.groupsToIndex = null;
+            context.nrGroups = GroupBy.execute(sourceRefs, targetRef);
+        }
+        else if (index != null) {
             context.groupsToIndex = ParallelGroupBy.executeIndex(sourceRefs, targetRef, index);
             context.nrGroups = index.groupIds.length;
         }
@@ -218,6 +223,11 @@ public class ParallelPostProcessor {
         String aggTbl = NamingConfig.AGG_TBL_NAME;
         TableInfo aggTblInfo = new TableInfo(aggTbl, true);
         CatalogManager.currentDB.nameToTable.put(aggTbl, aggTblInfo);
+        // Were aggregates already computed during the join phase?
+        if (context.joinAggregates != null) {
+            context.joinAggregates.store(context, aggTbl);
+            return;
+        }
         // Iterate over aggregates for processing
         int aggInputCtr = 0;
         int aggCtr = 0;
@@ -306,6 +316,11 @@ public class ParallelPostProcessor {
         String aggTbl = NamingConfig.AGG_TBL_NAME;
         TableInfo aggTblInfo = new TableInfo(aggTbl, true);
         CatalogManager.currentDB.nameToTable.put(aggTbl, aggTblInfo);
+        // Were aggregates already computed during the join phase?
+        if (context.joinAggregates != null) {
+            context.joinAggregates.store(context, aggTbl);
+            return;
+        }
         // Iterate over aggregates for processing
         int aggInputCtr = 0;
         // Generate table holding result
@@ -550,9 +565,9 @@ public class ParallelPostProcessor {
                                    Context context,
                                    String resultRelName,
                                    boolean tempResult) throws Exception {
-        // Use index
+        // Use index (join result holds one row per group if grouped during join)
         int joinCard = CatalogManager.getCardinality(NamingConfig.JOINED_NAME);
-        Index index = query.groupByExpressions.size() == 1 ?
+        Index index = query.groupByExpressions.size() == 1 && context.joinAggregates == null ?
                 BufferManager.colToIndex.get(query.groupByExpressions.iterator().next().
                         columnsMentioned.iterator().next()) : null;
         // Determine whether query has HAVING clause
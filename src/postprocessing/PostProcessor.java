@@ -4,22 +4,28 @@ import buffer.BufferManager;
 import catalog.CatalogManager;
 import catalog.info.ColumnInfo;
 import catalog.info.TableInfo;
+import config.JoinConfig;
 import config.LoggingConfig;
 import config.NamingConfig;
 import data.ColumnData;
 import data.IntData;
 import expressions.ExpressionInfo;
 import expressions.aggregates.AggInfo;
+import expressions.aggregates.SQLaggFunction;
+import net.sf.jsqlparser.expression.LongValue;
 import net.sf.jsqlparser.schema.Column;
 import operators.*;
 import preprocessing.Context;
 import print.RelationPrinter;
+import query.AggregationType;
 import query.ColumnRef;
 import query.QueryInfo;
 import statistics.PostStats;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Uses the result of the join phase as input and
@@ -102,6 +108,11 @@ public class PostProcessor {
 		String aggTbl = NamingConfig.AGG_TBL_NAME;
 		TableInfo aggTblInfo = new TableInfo(aggTbl, true);
 		CatalogManager.currentDB.nameToTable.put(aggTbl, aggTblInfo);
+		// Were aggregates already computed during the join phase?
+		if (context.joinAggregates != null) {
+			context.joinAggregates.store(context, aggTbl);
+			return;
+		}
 		// Iterate over aggregates for processing
 		int aggInputCtr = 0;
 		int aggCtr = 0;
@@ -502,6 +513,105 @@ public class PostProcessor {
 			OrderBy.execute(orderRefs, query.orderByAsc, resultRelName);			
 		}
 	}
+	/**
+	 * Returns true iff the join phase may stop as soon as the
+	 * number of join result tuples reaches the query LIMIT.
+	 * This is the case for queries without aggregates and
+	 * without ORDER BY clause where any LIMIT join result
+	 * tuples yield a valid query result.
+	 * 
+	 * @param query		query to check
+	 * @return			true iff the LIMIT can be applied during the join
+	 */
+	public static boolean limitInJoin(QueryInfo query) {
+		return JoinConfig.LIMIT_PUSHDOWN && query.limit != -1 &&
+				query.aggregationType == AggregationType.NONE &&
+				query.groupByExpressions.isEmpty() &&
+				query.orderByExpressions.isEmpty();
+	}
+	/**
+	 * Checks whether all aggregates of the query can be computed
+	 * during the join phase, directly from the factorized join
+	 * result (i.e., without materializing join result tuples).
+	 * This is the case for aggregates over pure equi-joins
+	 * where each aggregate is a sum, average, minimum, or
+	 * maximum over a single numerical column or a sum over
+	 * an integer constant (e.g., rewritten COUNT(*)), and
+	 * where each group-by item (if any) is a numerical
+	 * equi-join column.
+	 * 
+	 * @param query		query to check
+	 * @return			true iff aggregates can be computed in join phase
+	 */
+	public static boolean aggregatesInJoin(QueryInfo query) {
+		if (!JoinConfig.FACTORIZED_AGGREGATION ||
+				query.aggregationType == AggregationType.NONE ||
+				query.equiJoinPreds.isEmpty() ||
+				!query.nonEquiJoinPreds.isEmpty()) {
+			return false;
+		}
+		// Rows joined on the same keys fall into the same group
+		for (ExpressionInfo groupExpr : query.groupByExpressions) {
+			if (!(groupExpr.finalExpression instanceof Column) ||
+					!query.equiJoinCols.contains(
+							groupExpr.columnsMentioned.iterator().next())) {
+				return false;
+			}
+			switch (groupExpr.resultType) {
+			case INT:
+			case LONG:
+			case DOUBLE:
+				break;
+			default:
+				return false;
+			}
+		}
+		// Each table must be connected via equi-joins
+		Set<String> joinedAliases = new HashSet<>();
+		for (Set<ColumnRef> eqClass : query.equiJoinAttribute) {
+			for (ColumnRef colRef : eqClass) {
+				joinedAliases.add(colRef.aliasName);
+			}
+		}
+		for (String alias : query.aliases) {
+			if (!joinedAliases.contains(alias)) {
+				return false;
+			}
+		}
+		for (AggInfo aggInfo : query.aggregates) {
+			ExpressionInfo aggInput = aggInfo.aggInput;
+			if (aggInfo.isDistinct) {
+				return false;
+			}
+			if (aggInput.finalExpression instanceof LongValue) {
+				// Sum over constant (e.g., rewritten COUNT(*))
+				if (aggInfo.aggFunction != SQLaggFunction.SUM) {
+					return false;
+				}
+			} else if (aggInput.finalExpression instanceof Column) {
+				switch (aggInfo.aggFunction) {
+				case SUM:
+				case AVG:
+				case MIN:
+				case MAX:
+					break;
+				default:
+					return false;
+				}
+			} else {
+				return false;
+			}
+			switch (aggInput.resultType) {
+			case INT:
+			case LONG:
+			case DOUBLE:
+				break;
+			default:
+				return false;
+			}
+		}
+		return true;
+	}
 	/**
 	 * Generate debugging output if activated.
 	 * 
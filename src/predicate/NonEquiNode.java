@@ -23,9 +23,9 @@ import java.util.Map;
  * @author  Ziyun Wei
  */
 public class NonEquiNode {
-    NonEquiNode left;
-    NonEquiNode right;
-    Expression expression;
+    public NonEquiNode left;
+    public NonEquiNode right;
+    public Expression expression;
     public PartitionIndex nonEquiIndex;
     public PartitionIndex leftIndex;
     public PartitionIndex rightIndex;
@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import joining.FactorizedAggregator;
 import operators.Group;
 import operators.parallel.GroupIndex;
 import query.ColumnRef;
@@ -32,6 +33,13 @@ public class Context {
 	 */
 	public final Map<String, String> aliasToFiltered =
 			new ConcurrentHashMap<String, String>();
+	/**
+	 * Maps each filtered table to the rows of the original
+	 * table (referenced by the query alias) it was copied
+	 * from: the i-th filtered row stems from the i-th entry.
+	 */
+	public final Map<String, int[]> filteredToBaseRows =
+			new ConcurrentHashMap<String, int[]>();
 	/**
 	 * References column that contains group IDs for
 	 * each row in the join result (null if query
@@ -54,6 +62,12 @@ public class Context {
 	 * to columns containing corresponding (per-group) results.
 	 */
 	public Map<String, ColumnRef> aggToData = new HashMap<>();
+	/**
+	 * Aggregates computed during the join phase from the
+	 * factorized join result (null if the join result
+	 * was materialized instead).
+	 */
+	public FactorizedAggregator joinAggregates = null;
 	
 	@Override
 	public String toString() {
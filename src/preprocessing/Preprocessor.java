@@ -3,6 +3,7 @@ package preprocessing;
 import buffer.BufferManager;
 import catalog.CatalogManager;
 import catalog.info.ColumnInfo;
+import catalog.info.TableInfo;
 import config.GeneralConfig;
 import config.LoggingConfig;
 import config.NamingConfig;
@@ -22,6 +23,7 @@ import query.QueryInfo;
 import statistics.PreStats;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -98,6 +100,8 @@ public class Preprocessor {
 		// Initialize mapping from query alias to DB tables
 		preSummary.aliasToFiltered.putAll(query.aliasToTable);
 		log("Column mapping:\t" + preSummary.columnMapping.toString());
+		// Make sure that base table columns are in the buffer
+		loadColumns(preSummary.columnMapping.values());
 		// Iterate over query aliases
 		for (String alias: query.aliasToTable.keySet()) {
 			long s1 = System.currentTimeMillis();
@@ -162,6 +166,8 @@ public class Preprocessor {
 						}
 						Materialize.execute(tableName, columnNames,
 								inCacheRows, null, filteredName, true);
+						recordBaseRows(preSummary, tableName, filteredName,
+								toArray(inCacheRows));
 						// Update pre-processing summary
 						for (ColumnRef srcRef : curRequiredCols) {
 							String columnName = srcRef.columnName;
@@ -334,14 +340,20 @@ public class Preprocessor {
 			if (indexFilter.isFull) {
 				Materialize.execute(table, requiredCols, rows,
 						null, targetRelName, true);
+				recordBaseRows(preSummary, table, targetRelName,
+						toArray(rows));
 			}
 			else if (!indexFilter.equalFull && rows.size() == 1) {
 				Materialize.executeEqualPos(table, requiredCols, rows,
 						indexFilter.lastIndex, targetRelName, true);
+				recordBaseRows(preSummary, table, targetRelName,
+						Materialize.equalPosRows(rows, indexFilter.lastIndex));
 			}
 			else {
 				Materialize.executeRange(table, requiredCols, rows,
 						indexFilter.lastIndex, targetRelName, true);
+				recordBaseRows(preSummary, table, targetRelName,
+						Materialize.rangeRows(rows, indexFilter.lastIndex));
 			}
 			long timer2 = System.currentTimeMillis();
 			System.out.println("Materializing: " + targetRelName + " took " + (timer2 - timer1) + " ms");
@@ -392,6 +404,8 @@ public class Preprocessor {
 		}
 		Materialize.execute(tableName, columnNames, 
 				satisfyingRows, null, filteredName, true);
+		recordBaseRows(preSummary, tableName, filteredName,
+				toArray(satisfyingRows));
 //		long s3 = System.currentTimeMillis();
 //		System.out.println("Filtering using " + unaryPred + " took " + (s2 - s1) + "\t" + (s3 - s2));
 		// Update pre-processing summary
@@ -411,6 +425,40 @@ public class Preprocessor {
 //		}
 		return satisfyingRows;
 	}
+	/**
+	 * Remembers from which rows of the original table the rows of
+	 * a filtered table were copied. If the source is itself a
+	 * filtered table, its mapping is composed with the given one.
+	 *
+	 * @param preSummary		summary of pre-processing steps
+	 * @param sourceRelName		table that rows were copied from
+	 * @param filteredName		name of filtered table
+	 * @param sourceRows		source row for each filtered row
+	 */
+	static void recordBaseRows(Context preSummary, String sourceRelName,
+			String filteredName, int[] sourceRows) {
+		int[] sourceToBase = preSummary.filteredToBaseRows.get(sourceRelName);
+		if (sourceToBase != null) {
+			for (int i = 0; i < sourceRows.length; ++i) {
+				sourceRows[i] = sourceToBase[sourceRows[i]];
+			}
+		}
+		preSummary.filteredToBaseRows.put(filteredName, sourceRows);
+	}
+	/**
+	 * Converts a list of row indices into an array.
+	 *
+	 * @param rows	list of row indices
+	 * @return		array containing the same rows
+	 */
+	static int[] toArray(List<Integer> rows) {
+		int[] result = new int[rows.size()];
+		int rowCtr = 0;
+		for (int row : rows) {
+			result[rowCtr++] = row;
+		}
+		return result;
+	}
 	/**
 	 * Create indices on equality join columns if not yet available.
 	 *
@@ -492,6 +540,24 @@ public class Preprocessor {
 		System.out.println("Created all indices in " + totalMillis + " ms.");
 		log("Created all indices in " + totalMillis + " ms.");
 	}
+	/**
+	 * Loads given base table columns into the buffer unless
+	 * they are loaded already. Operators read columns from
+	 * the buffer directly so they must be present before
+	 * query processing starts (and are pinned from then on).
+	 *
+	 * @param dbRefs	references to database columns
+	 * @throws Exception
+	 */
+	static void loadColumns(Collection<ColumnRef> dbRefs) throws Exception {
+		for (ColumnRef dbRef : dbRefs) {
+			TableInfo table = CatalogManager.currentDB.
+					nameToTable.get(dbRef.aliasName);
+			if (table != null && !table.tempTable) {
+				BufferManager.getData(dbRef);
+			}
+		}
+	}
 	/**
 	 * Output logging message if pre-processing logging activated.
 	 * 
@@ -4,6 +4,7 @@ import buffer.BufferManager;
 import catalog.CatalogManager;
 import catalog.info.ColumnInfo;
 import catalog.info.TableInfo;
+import config.JoinConfig;
 import config.LoggingConfig;
 import config.NamingConfig;
 import expressions.ExpressionInfo;
@@ -12,6 +13,7 @@ import expressions.typing.ExpressionScope;
 import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.expression.Function;
 import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.Parenthesis;
 import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
 import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
 import net.sf.jsqlparser.schema.Column;
@@ -21,6 +23,7 @@ import org.apache.commons.lang3.StringUtils;
 import predicate.NonEquiCols;
 import predicate.NonEquiNode;
 import predicate.NonEquiNodesTest;
+import predicate.Operator;
 import preprocessing.Context;
 import query.from.FromUtil;
 import query.select.SelectUtil;
@@ -217,6 +220,13 @@ public class QueryInfo {
      * inner sub query.
      */
     public final Set<Integer> temporaryTables = new HashSet<>();
+    /**
+     * Aliases of EXISTS sub-queries that are joined as
+     * semi-joins: their equality predicates become equi-join
+     * predicates and each join result keeps a single row
+     * (a witness) of these aliases.
+     */
+    public final Set<String> existentialAliases = new HashSet<>();
 
     /**
      * Extract information from the FROM clause (e.g.,
@@ -386,7 +396,9 @@ public class QueryInfo {
 
     Set<ColumnRef> extractNonEquiJoinCols(ExpressionInfo exprInfo) {
         NonEquiCols nonEquiCols = new NonEquiCols(this);
-        exprInfo.conjuncts.get(0).accept(nonEquiCols);
+        for (Expression conjunct : exprInfo.conjuncts) {
+            conjunct.accept(nonEquiCols);
+        }
         return nonEquiCols.extractedCols;
     }
 
@@ -402,6 +414,10 @@ public class QueryInfo {
             ExpressionInfo whereInfo = new ExpressionInfo(this, where);
             // Decompose into conjuncts
             List<Expression> conjuncts = whereInfo.conjuncts;
+            // Join EXISTS sub-queries as semi-joins if possible
+            if (JoinConfig.SEMI_JOIN) {
+                conjuncts = extractSemiJoins(conjuncts);
+            }
             // Merge conditions that refer to the same tables
             Map<Set<String>, Expression> tablesToCondition =
                     new HashMap<Set<String>, Expression>();
@@ -468,6 +484,152 @@ public class QueryInfo {
         } // if where clause
     }
 
+    /**
+     * Identifies aliases of unnested EXISTS sub-queries that
+     * can be joined as semi-joins: the alias is connected to
+     * other aliases by a single existential conjunct, made of
+     * equalities between its columns and columns of (non
+     * sub-query) aliases and of predicates on the alias alone.
+     * Such conjuncts are replaced by plain equalities (which
+     * become equi-join predicates) and unary predicates.
+     *
+     * @param conjuncts	conjuncts of normalized WHERE clause
+     * @return			conjuncts after rewriting semi-joins
+     * @throws Exception
+     */
+    List<Expression> extractSemiJoins(List<Expression> conjuncts) throws Exception {
+        int nrConjuncts = conjuncts.size();
+        String[] semiJoinAlias = new String[nrConjuncts];
+        List<List<Expression>> conjunctParts = new ArrayList<>();
+        Set<String> rejected = new HashSet<>();
+        Set<String> candidates = new HashSet<>();
+        for (int i = 0; i < nrConjuncts; ++i) {
+            Expression conjunct = conjuncts.get(i);
+            List<Expression> parts = existentialParts(conjunct);
+            conjunctParts.add(parts);
+            Set<String> aliases = new ExpressionInfo(this, conjunct).aliasesMentioned;
+            if (aliases.size() < 2) {
+                continue;
+            }
+            String alias = parts == null ? null : semiJoinAlias(parts);
+            // Alias must not be joined by any other predicate
+            for (String mentioned : aliases) {
+                if (!mentioned.equals(alias)) {
+                    rejected.add(mentioned);
+                }
+            }
+            if (alias != null && !candidates.add(alias)) {
+                rejected.add(alias);
+            }
+            semiJoinAlias[i] = alias;
+        }
+        List<Expression> rewritten = new ArrayList<>();
+        for (int i = 0; i < nrConjuncts; ++i) {
+            String alias = semiJoinAlias[i];
+            if (alias == null || rejected.contains(alias)) {
+                rewritten.add(conjuncts.get(i));
+                continue;
+            }
+            existentialAliases.add(alias);
+            for (Expression part : conjunctParts.get(i)) {
+                if (part instanceof EqualsTo) {
+                    EqualsTo equalsTo = (EqualsTo) part;
+                    EqualsTo equiJoin = new EqualsTo();
+                    equiJoin.setLeftExpression(equalsTo.getLeftExpression());
+                    equiJoin.setRightExpression(equalsTo.getRightExpression());
+                    rewritten.add(equiJoin);
+                } else {
+                    rewritten.add(part);
+                }
+            }
+        }
+        log("Semi-join aliases: " + existentialAliases);
+        return rewritten;
+    }
+
+    /**
+     * Returns the parts of an existential conjunct (as produced
+     * by unnesting EXISTS sub-queries) or null if the conjunct
+     * is not existential.
+     *
+     * @param conjunct	conjunct of WHERE clause
+     * @return			parts of existential conjunct or null
+     */
+    List<Expression> existentialParts(Expression conjunct) {
+        if (conjunct instanceof EqualsTo && ((EqualsTo) conjunct).isNot()) {
+            return Collections.singletonList(conjunct);
+        }
+        if (conjunct instanceof AndExpression && ((AndExpression) conjunct).isNot()) {
+            AndExpression and = (AndExpression) conjunct;
+            List<Expression> parts = new ArrayList<>();
+            collectParts(and.getLeftExpression(), parts);
+            collectParts(and.getRightExpression(), parts);
+            return parts;
+        }
+        return null;
+    }
+
+    /**
+     * Adds conjuncts of given expression to list of parts.
+     */
+    void collectParts(Expression expression, List<Expression> parts) {
+        if (expression instanceof Parenthesis) {
+            collectParts(((Parenthesis) expression).getExpression(), parts);
+        } else if (expression instanceof AndExpression &&
+                !((AndExpression) expression).isNot()) {
+            AndExpression and = (AndExpression) expression;
+            collectParts(and.getLeftExpression(), parts);
+            collectParts(and.getRightExpression(), parts);
+        } else {
+            parts.add(expression);
+        }
+    }
+
+    /**
+     * Returns the sub-query alias that is semi-joined by the
+     * given parts of an existential conjunct, or null if the
+     * parts do not form a semi-join.
+     *
+     * @param parts	parts of existential conjunct
+     * @return		semi-joined alias or null
+     * @throws Exception
+     */
+    String semiJoinAlias(List<Expression> parts) throws Exception {
+        String alias = null;
+        Set<String> unaryAliases = new HashSet<>();
+        for (Expression part : parts) {
+            Set<String> aliases = new ExpressionInfo(this, part).aliasesMentioned;
+            if (aliases.size() == 1) {
+                unaryAliases.addAll(aliases);
+                continue;
+            }
+            if (aliases.size() != 2 || !(part instanceof EqualsTo) ||
+                    !(((EqualsTo) part).getLeftExpression() instanceof Column) ||
+                    !(((EqualsTo) part).getRightExpression() instanceof Column)) {
+                return null;
+            }
+            // Exactly one side refers to the sub-query
+            String inner = null;
+            for (String mentioned : aliases) {
+                if (temporaryAlias.contains(mentioned)) {
+                    if (inner != null) {
+                        return null;
+                    }
+                    inner = mentioned;
+                }
+            }
+            if (inner == null || (alias != null && !alias.equals(inner))) {
+                return null;
+            }
+            alias = inner;
+        }
+        if (alias == null || unaryAliases.size() > 1 ||
+                (!unaryAliases.isEmpty() && !unaryAliases.contains(alias))) {
+            return null;
+        }
+        return alias;
+    }
+
 	/**
 	 * Partition columns involved in equality joins
 	 * into equivalence classes.
@@ -600,9 +762,18 @@ public class QueryInfo {
         // Build non-equi nodes
         NonEquiNodesTest nonEquiNodesTest = new NonEquiNodesTest(this, context.columnMapping);
         nonEquiJoinPreds.forEach(pred -> {
-            pred.conjuncts.get(0).accept(nonEquiNodesTest);
-            if (nonEquiNodesTest.nonEquiNodes.size() > 0)
-                nonEquiJoinNodes.add(nonEquiNodesTest.nonEquiNodes.pop());
+            // all conjuncts of the predicate must hold
+            NonEquiNode predNode = null;
+            for (Expression conjunct : pred.conjuncts) {
+                conjunct.accept(nonEquiNodesTest);
+                if (nonEquiNodesTest.nonEquiNodes.size() > 0) {
+                    NonEquiNode conjunctNode = nonEquiNodesTest.nonEquiNodes.pop();
+                    predNode = predNode == null ? conjunctNode : new NonEquiNode(predNode,
+                            conjunctNode, pred.finalExpression, null, null, Operator.AND, -1);
+                }
+            }
+            if (predNode != null)
+                nonEquiJoinNodes.add(predNode);
         });
     }
 
@@ -0,0 +1,84 @@
+package tools;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import catalog.CatalogManager;
+import catalog.info.ColumnInfo;
+import catalog.info.TableInfo;
+import data.ColumnData;
+import diskio.ColumnFile;
+import diskio.DiskUtil;
+import diskio.PathUtil;
+
+/**
+ * Converts the columns of an existing database from
+ * serialized Java objects into the binary columnar
+ * format that is loaded via memory mapping.
+ *
+ */
+public class ConvertData {
+	/**
+	 * Converts all columns of the database in the given
+	 * directory in place. Columns that are already in
+	 * the binary format are skipped.
+	 *
+	 * @param args	path to database directory
+	 */
+	public static void main(String[] args) throws Exception {
+		// Check number of command line parameters
+		if (args.length != 1) {
+			System.out.println("Specify database directory!");
+			return;
+		}
+		String dbDir = args[0];
+		PathUtil.initSchemaPaths(dbDir);
+		CatalogManager.loadDB(PathUtil.schemaPath);
+		PathUtil.initDataPaths(CatalogManager.currentDB);
+		int nrConverted = 0;
+		int nrSkipped = 0;
+		// Iterate over database tables
+		for (TableInfo table :
+			CatalogManager.currentDB.nameToTable.values()) {
+			// Iterate over table columns
+			for (ColumnInfo column : table.nameToCol.values()) {
+				String dataPath = PathUtil.colToPath.get(column);
+				if (!Files.exists(Paths.get(dataPath))) {
+					System.out.println("No data for " + table.name +
+							"." + column.name);
+					continue;
+				}
+				if (ColumnFile.isColumnFile(dataPath)) {
+					++nrSkipped;
+					continue;
+				}
+				long startMillis = System.currentTimeMillis();
+				convertColumn(dataPath);
+				long totalMillis = System.currentTimeMillis() - startMillis;
+				System.out.println("Converted " + table.name + "." +
+						column.name + " in " + totalMillis + " ms");
+				++nrConverted;
+			}
+		}
+		System.out.println("Converted " + nrConverted +
+				" columns, skipped " + nrSkipped + " converted columns.");
+	}
+	/**
+	 * Rewrites serialized column at given path in the binary
+	 * format. Writes to a temporary file first so that an
+	 * interrupted conversion leaves the original intact.
+	 *
+	 * @param dataPath	path to serialized column
+	 * @throws Exception
+	 */
+	static void convertColumn(String dataPath) throws Exception {
+		ColumnData data = (ColumnData)DiskUtil.loadObject(dataPath);
+		Path target = Paths.get(dataPath);
+		Path tempPath = Paths.get(dataPath + ".tmp");
+		ColumnFile.write(data, tempPath.toString());
+		Files.move(tempPath, target, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+}
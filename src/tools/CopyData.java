@@ -8,7 +8,6 @@ import catalog.CatalogManager;
 import catalog.info.ColumnInfo;
 import catalog.info.TableInfo;
 import data.ColumnData;
-import data.IntData;
 import data.StringData;
 import query.ColumnRef;
 import types.SQLtype;
@@ -72,9 +71,8 @@ public class CopyData {
 		// Distinguish compressed string columns
 		if (colInfo.type.equals(SQLtype.STRING_CODE)) {
 			StringData stringData = new StringData(newCard);
-			IntData intSource = (IntData)sourceData;
 			for (int i=0; i<newCard; ++i) {
-				int code = intSource.data[i];
+				int code = (int)sourceData.longForRow(i);
 				String token = BufferManager.dictionary.getString(code);
 				stringData.data[i] = token;
 			}
@@ -695,6 +695,15 @@ public class UnnestingVisitor extends CopyVisitor implements SelectVisitor {
                             NotExpression notExpression = new NotExpression(andWheres);
                             unnestedConjuncts.add(notExpression);
                         }
+                        // single correlated equality: same as NOT IN
+                        else if (isColumnEquality(wheres)) {
+                            EqualsTo equalsTo = (EqualsTo) wheres;
+                            NotEqualsTo unnestedConjunct = new NotEqualsTo();
+                            unnestedConjunct.setLeftExpression(equalsTo.getLeftExpression());
+                            unnestedConjunct.setRightExpression(equalsTo.getRightExpression());
+                            unnestedConjunct.setNot();
+                            unnestedConjuncts.add(unnestedConjunct);
+                        }
                     }
                     else {
                         PlainSelect subSelect = (PlainSelect) ((SubSelect)existExpr.getRightExpression()).getSelectBody();
@@ -732,6 +741,12 @@ public class UnnestingVisitor extends CopyVisitor implements SelectVisitor {
                             andWheres.setNot();
                             unnestedConjuncts.add(andWheres);
                         }
+                        // single correlated equality: same as IN
+                        else if (isColumnEquality(wheres)) {
+                            EqualsTo equalsTo = (EqualsTo) wheres;
+                            equalsTo.setNot();
+                            unnestedConjuncts.add(equalsTo);
+                        }
                     }
                     continue;
                 }
@@ -744,6 +759,19 @@ public class UnnestingVisitor extends CopyVisitor implements SelectVisitor {
         }
     }
 
+    /**
+     * Returns true iff the given expression is an equality
+     * between two columns (e.g., a correlated EXISTS predicate).
+     */
+    boolean isColumnEquality(Expression expression) {
+        if (expression instanceof EqualsTo) {
+            EqualsTo equalsTo = (EqualsTo) expression;
+            return equalsTo.getLeftExpression() instanceof Column &&
+                    equalsTo.getRightExpression() instanceof Column;
+        }
+        return false;
+    }
+
     List<Column> extractColumnsInExist(ExistsExpression existExpr) {
         List<Column> columns = new ArrayList<>();
         PlainSelect subSelect = (PlainSelect) ((SubSelect) existExpr
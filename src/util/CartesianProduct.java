@@ -1,36 +1,12 @@
 package util;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveTask;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class CartesianProduct {
 
-    public static <T> List<List<T>> constructCombinations(
-            Collection<? extends Collection<T>> collections) {
-        return constructCombinations(
-                new ArrayList<Collection<T>>(collections),
-                Collections.emptyList()).collect(Collectors.toList());
-    }
-
-    private static <T> Stream<List<T>> constructCombinations(
-            List<? extends Collection<T>> collections, List<T> current) {
-        return collections.isEmpty() ? Stream.of(current) :
-                collections.get(0).stream().flatMap(e -> {
-                    List<T> list = new ArrayList<T>(current);
-                    list.add(e);
-                    return constructCombinations(
-                            collections.subList(1, collections.size()), list);
-                });
-    }
-
-
-
     // 移除静态 ForkJoinPool 以避免多线程竞争和死锁
     // private static final ForkJoinPool FORK_JOIN_POOL = new ForkJoinPool(
     //         Math.min(Runtime.getRuntime().availableProcessors(), 8));
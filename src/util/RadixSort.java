@@ -0,0 +1,507 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import data.ColumnData;
+import data.DoubleData;
+import data.EncodedIntData;
+import data.IntData;
+import data.LongData;
+
+/**
+ * Primitive multi-key sort engine producing row permutations.
+ * Rows are ordered lexicographically by the given columns
+ * via a parallel, stable LSD radix sort: columns are processed
+ * from the least to the most significant one, each column by
+ * 8-bit digits over the (max - min) value range only. Ties are
+ * broken by row index, as no boxing or comparator is involved.
+ */
+public class RadixSort {
+    /**
+     * Number of bits sorted per pass.
+     */
+    private static final int DIGIT_BITS = 8;
+    /**
+     * Number of buckets per pass.
+     */
+    private static final int NR_BUCKETS = 1 << DIGIT_BITS;
+    /**
+     * Below this number of rows, passes run single-threaded.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    /**
+     * Minimal number of rows handled by one chunk.
+     */
+    private static final int MIN_CHUNK_SIZE = 1 << 14;
+
+    /**
+     * Returns row order sorting on a single integer column.
+     *
+     * @param values        column values
+     * @param cardinality   number of rows to sort
+     * @return              permutation of row indices
+     */
+    public static int[] sortedOrder(int[] values, int cardinality) {
+        int[] perm = identity(cardinality);
+        return sortByInt(values, null, false, perm, cardinality);
+    }
+
+    /**
+     * Returns row order sorting on a single double column.
+     *
+     * @param values        column values
+     * @param cardinality   number of rows to sort
+     * @return              permutation of row indices
+     */
+    public static int[] sortedOrder(double[] values, int cardinality) {
+        int[] perm = identity(cardinality);
+        return sortByDouble(values, null, false, perm, cardinality);
+    }
+
+    /**
+     * Returns row order sorting lexicographically on the given
+     * integer columns (first column is most significant).
+     *
+     * @param keyCols       integer columns in significance order
+     * @param cardinality   number of rows to sort
+     * @return              permutation of row indices
+     */
+    public static int[] sortedOrder(List<int[]> keyCols, int cardinality) {
+        int[] perm = identity(cardinality);
+        for (int colCtr = keyCols.size() - 1; colCtr >= 0; --colCtr) {
+            perm = sortByInt(keyCols.get(colCtr), null, false, perm, cardinality);
+        }
+        return perm;
+    }
+
+    /**
+     * Returns row order sorting lexicographically on the given
+     * columns (first column is most significant). If requested,
+     * NULL values are ordered before all other values and are
+     * considered equal to each other. Columns without radix keys
+     * are sorted by row comparisons (with NULL values first).
+     *
+     * @param columns       columns in significance order
+     * @param cardinality   number of rows to sort
+     * @param nullsFirst    whether to take NULL flags into account
+     * @return              permutation of row indices
+     */
+    public static int[] sortedColumnOrder(List<ColumnData> columns,
+                                          int cardinality, boolean nullsFirst) {
+        int[] perm = identity(cardinality);
+        for (int colCtr = columns.size() - 1; colCtr >= 0; --colCtr) {
+            ColumnData colData = columns.get(colCtr);
+            BitSet isNull = nullsFirst ? colData.isNull : null;
+            if (colData instanceof IntData) {
+                perm = sortByInt(((IntData) colData).data, isNull,
+                        nullsFirst, perm, cardinality);
+            } else if (colData instanceof DoubleData) {
+                perm = sortByDouble(((DoubleData) colData).data, isNull,
+                        nullsFirst, perm, cardinality);
+            } else if (colData instanceof LongData) {
+                perm = sortByLong(((LongData) colData).data, isNull,
+                        nullsFirst, perm, cardinality);
+            } else if (colData instanceof EncodedIntData) {
+                perm = sortByInt(((EncodedIntData) colData).decode().data,
+                        isNull, nullsFirst, perm, cardinality);
+            } else {
+                perm = sortByComparison(colData, perm, cardinality);
+            }
+        }
+        return perm;
+    }
+
+    /**
+     * Stably sorts given permutation by values of a column of
+     * a type without radix keys (e.g., strings) via the column's
+     * row comparison. NULL values are ordered first.
+     *
+     * @param colData       column to sort by
+     * @param perm          current permutation of row indices
+     * @param cardinality   number of rows to sort
+     * @return              new permutation of row indices
+     */
+    private static int[] sortByComparison(ColumnData colData, int[] perm,
+                                          int cardinality) {
+        Integer[] rows = new Integer[cardinality];
+        for (int i = 0; i < cardinality; i++) {
+            rows[i] = perm[i];
+        }
+        // Object sort is a stable merge sort
+        Arrays.sort(rows, (row1, row2) -> {
+            int cmp = colData.compareRows(row1, row2);
+            if (cmp == 2) {
+                boolean row1null = colData.isNull.get(row1);
+                boolean row2null = colData.isNull.get(row2);
+                return row1null == row2null ? 0 : (row1null ? -1 : 1);
+            }
+            return cmp;
+        });
+        int[] result = new int[cardinality];
+        for (int i = 0; i < cardinality; i++) {
+            result[i] = rows[i];
+        }
+        return result;
+    }
+
+    /**
+     * Extends a row order that sorts the first rows lexicographically
+     * on the given integer columns to rows appended afterwards. The
+     * appended rows are sorted separately and both sorted runs are
+     * merged. As ties are broken by row index, the result equals the
+     * order obtained by sorting all rows.
+     *
+     * @param order         sorted order of the rows before appended rows
+     * @param keyCols       integer columns in significance order
+     * @param cardinality   number of rows including appended rows
+     * @return              permutation of all row indices
+     */
+    public static int[] mergeAppended(int[] order, List<int[]> keyCols,
+                                      int cardinality) {
+        int oldCardinality = order.length;
+        int nrAppended = cardinality - oldCardinality;
+        List<int[]> appendedCols = new ArrayList<>(keyCols.size());
+        for (int[] keyCol : keyCols) {
+            appendedCols.add(Arrays.copyOfRange(keyCol, oldCardinality, cardinality));
+        }
+        int[] appendedOrder = sortedOrder(appendedCols, nrAppended);
+        int[] merged = new int[cardinality];
+        int oldCtr = 0;
+        int newCtr = 0;
+        int mergedCtr = 0;
+        while (oldCtr < oldCardinality && newCtr < nrAppended) {
+            int oldRow = order[oldCtr];
+            int newRow = appendedOrder[newCtr] + oldCardinality;
+            // Rows with equal keys stay ordered by row index
+            if (compareRows(keyCols, newRow, oldRow) < 0) {
+                merged[mergedCtr++] = newRow;
+                ++newCtr;
+            } else {
+                merged[mergedCtr++] = oldRow;
+                ++oldCtr;
+            }
+        }
+        while (oldCtr < oldCardinality) {
+            merged[mergedCtr++] = order[oldCtr++];
+        }
+        while (newCtr < nrAppended) {
+            merged[mergedCtr++] = appendedOrder[newCtr++] + oldCardinality;
+        }
+        return merged;
+    }
+
+    /**
+     * Compares two rows lexicographically on the given columns.
+     *
+     * @param keyCols   integer columns in significance order
+     * @param row1      index of first row
+     * @param row2      index of second row
+     * @return          negative, zero, or positive value
+     */
+    static int compareRows(List<int[]> keyCols, int row1, int row2) {
+        for (int[] keyCol : keyCols) {
+            int cmp = Integer.compare(keyCol[row1], keyCol[row2]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the identity permutation.
+     */
+    static int[] identity(int cardinality) {
+        int[] perm = new int[cardinality];
+        if (cardinality < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < cardinality; i++) {
+                perm[i] = i;
+            }
+        } else {
+            IntStream.range(0, cardinality).parallel().forEach(i -> perm[i] = i);
+        }
+        return perm;
+    }
+
+    /**
+     * Stable sort of the given permutation by one integer column.
+     */
+    private static int[] sortByInt(int[] values, BitSet isNull, boolean nullsFirst,
+                                   int[] perm, int cardinality) {
+        // Determine value range (ignoring NULL rows if requested)
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int row = 0; row < cardinality; row++) {
+            if (isNull != null && isNull.get(row)) {
+                continue;
+            }
+            int value = values[row];
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+        if (min > max) {
+            return perm;
+        }
+        // Key 0 is reserved for NULL values
+        final long offset = nullsFirst ? min - 1 : min;
+        final long range = max - offset;
+        if (range == 0) {
+            return perm;
+        }
+        if (range <= 0xFFFFFFFFL) {
+            int[] keys = new int[cardinality];
+            gather(cardinality, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    int row = perm[i];
+                    keys[i] = isNull != null && isNull.get(row) ?
+                            0 : (int) (values[row] - offset);
+                }
+            });
+            return radixInt(keys, perm, bitsOf(range));
+        } else {
+            long[] keys = new long[cardinality];
+            gather(cardinality, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    int row = perm[i];
+                    keys[i] = isNull != null && isNull.get(row) ?
+                            0 : values[row] - offset;
+                }
+            });
+            return radixLong(keys, perm, bitsOf(range));
+        }
+    }
+
+    /**
+     * Stable sort of the given permutation by one long column.
+     */
+    private static int[] sortByLong(long[] values, BitSet isNull, boolean nullsFirst,
+                                    int[] perm, int cardinality) {
+        long[] keys = new long[cardinality];
+        gather(cardinality, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                keys[i] = values[perm[i]];
+            }
+        });
+        return sortBySignedKeys(keys, isNull, nullsFirst, perm, cardinality);
+    }
+
+    /**
+     * Stable sort of the given permutation by one double column
+     * (following the order of Double.compare).
+     */
+    private static int[] sortByDouble(double[] values, BitSet isNull, boolean nullsFirst,
+                                      int[] perm, int cardinality) {
+        long[] keys = new long[cardinality];
+        gather(cardinality, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                long bits = Double.doubleToLongBits(values[perm[i]]);
+                // Flip magnitude bits of negative values to make them signed-comparable
+                keys[i] = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+            }
+        });
+        return sortBySignedKeys(keys, isNull, nullsFirst, perm, cardinality);
+    }
+
+    /**
+     * Stable sort of the given permutation by signed long keys,
+     * already gathered in permutation order.
+     */
+    private static int[] sortBySignedKeys(long[] keys, BitSet isNull, boolean nullsFirst,
+                                          int[] perm, int cardinality) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < cardinality; i++) {
+            if (isNull != null && isNull.get(perm[i])) {
+                continue;
+            }
+            long key = keys[i];
+            if (key < min) min = key;
+            if (key > max) max = key;
+        }
+        if (min > max) {
+            return perm;
+        }
+        // Shift to unsigned keys starting at 0 (or at 1 if 0 marks NULL)
+        final long offset = nullsFirst ? min - 1 : min;
+        final long range = max - offset;
+        if (range == 0) {
+            return perm;
+        }
+        gather(cardinality, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                keys[i] = isNull != null && isNull.get(perm[i]) ?
+                        0 : keys[i] - offset;
+            }
+        });
+        return radixLong(keys, perm, bitsOf(range));
+    }
+
+    /**
+     * LSD radix passes over unsigned integer keys, moving the
+     * permutation along with the keys.
+     *
+     * @param keys      keys in permutation order
+     * @param perm      current permutation
+     * @param bits      number of significant key bits
+     * @return          permutation sorted by keys
+     */
+    private static int[] radixInt(int[] keys, int[] perm, int bits) {
+        final int n = keys.length;
+        final int nrChunks = nrChunks(n);
+        int[] keysOut = new int[n];
+        int[] permOut = new int[n];
+        int[][] counts = new int[nrChunks][NR_BUCKETS];
+        for (int shift = 0; shift < bits; shift += DIGIT_BITS) {
+            final int curShift = shift;
+            final int[] keysIn = keys;
+            forChunks(n, nrChunks, (chunk, from, to) -> {
+                int[] count = counts[chunk];
+                Arrays.fill(count, 0);
+                for (int i = from; i < to; i++) {
+                    count[(keysIn[i] >>> curShift) & (NR_BUCKETS - 1)]++;
+                }
+            });
+            if (!prefixOffsets(counts, n)) {
+                continue;
+            }
+            final int[] permIn = perm;
+            final int[] kOut = keysOut;
+            final int[] pOut = permOut;
+            forChunks(n, nrChunks, (chunk, from, to) -> {
+                int[] offset = counts[chunk];
+                for (int i = from; i < to; i++) {
+                    int key = keysIn[i];
+                    int pos = offset[(key >>> curShift) & (NR_BUCKETS - 1)]++;
+                    kOut[pos] = key;
+                    pOut[pos] = permIn[i];
+                }
+            });
+            keysOut = keys;
+            permOut = perm;
+            keys = kOut;
+            perm = pOut;
+        }
+        return perm;
+    }
+
+    /**
+     * LSD radix passes over unsigned long keys, moving the
+     * permutation along with the keys.
+     *
+     * @param keys      keys in permutation order
+     * @param perm      current permutation
+     * @param bits      number of significant key bits
+     * @return          permutation sorted by keys
+     */
+    private static int[] radixLong(long[] keys, int[] perm, int bits) {
+        final int n = keys.length;
+        final int nrChunks = nrChunks(n);
+        long[] keysOut = new long[n];
+        int[] permOut = new int[n];
+        int[][] counts = new int[nrChunks][NR_BUCKETS];
+        for (int shift = 0; shift < bits; shift += DIGIT_BITS) {
+            final int curShift = shift;
+            final long[] keysIn = keys;
+            forChunks(n, nrChunks, (chunk, from, to) -> {
+                int[] count = counts[chunk];
+                Arrays.fill(count, 0);
+                for (int i = from; i < to; i++) {
+                    count[(int) (keysIn[i] >>> curShift) & (NR_BUCKETS - 1)]++;
+                }
+            });
+            if (!prefixOffsets(counts, n)) {
+                continue;
+            }
+            final int[] permIn = perm;
+            final long[] kOut = keysOut;
+            final int[] pOut = permOut;
+            forChunks(n, nrChunks, (chunk, from, to) -> {
+                int[] offset = counts[chunk];
+                for (int i = from; i < to; i++) {
+                    long key = keysIn[i];
+                    int pos = offset[(int) (key >>> curShift) & (NR_BUCKETS - 1)]++;
+                    kOut[pos] = key;
+                    pOut[pos] = permIn[i];
+                }
+            });
+            keysOut = keys;
+            permOut = perm;
+            keys = kOut;
+            perm = pOut;
+        }
+        return perm;
+    }
+
+    /**
+     * Turns per-chunk bucket counts into per-chunk scatter offsets
+     * (bucket-major, chunk-minor to keep the sort stable).
+     *
+     * @return  false if all keys fall into one bucket (pass can be skipped)
+     */
+    private static boolean prefixOffsets(int[][] counts, int n) {
+        int nrChunks = counts.length;
+        int sum = 0;
+        for (int bucket = 0; bucket < NR_BUCKETS; bucket++) {
+            int bucketTotal = 0;
+            for (int chunk = 0; chunk < nrChunks; chunk++) {
+                bucketTotal += counts[chunk][bucket];
+            }
+            if (bucketTotal == n) {
+                return false;
+            }
+            for (int chunk = 0; chunk < nrChunks; chunk++) {
+                int count = counts[chunk][bucket];
+                counts[chunk][bucket] = sum;
+                sum += count;
+            }
+        }
+        return true;
+    }
+
+    private static int bitsOf(long range) {
+        return 64 - Long.numberOfLeadingZeros(range);
+    }
+
+    private static int nrChunks(int n) {
+        if (n < PARALLEL_THRESHOLD) {
+            return 1;
+        }
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        return Math.max(1, Math.min(parallelism * 4, n / MIN_CHUNK_SIZE));
+    }
+
+    /**
+     * Processes row range [from, to) of one chunk.
+     */
+    private interface ChunkTask {
+        void run(int chunk, int from, int to);
+    }
+
+    /**
+     * Processes row range [from, to) without chunk identity.
+     */
+    private interface RangeTask {
+        void run(int from, int to);
+    }
+
+    private static void forChunks(int n, int nrChunks, ChunkTask task) {
+        if (nrChunks == 1) {
+            task.run(0, 0, n);
+            return;
+        }
+        IntStream.range(0, nrChunks).parallel().forEach(chunk -> {
+            int from = (int) ((long) chunk * n / nrChunks);
+            int to = (int) ((long) (chunk + 1) * n / nrChunks);
+            task.run(chunk, from, to);
+        });
+    }
+
+    private static void gather(int n, RangeTask task) {
+        forChunks(n, nrChunks(n), (chunk, from, to) -> task.run(from, to));
+    }
+}